@@ -22,6 +22,12 @@ public class Main {
 				playSound = false;
 			} else if ("--glow".equals(s)) {
 				glow = true;
+			} else if (s.startsWith("--palette=")) {
+				ColourBlindGame.PALETTE = "data/palettes/" + s.substring("--palette=".length()) + ".json";
+			} else if (s.startsWith("--record=")) {
+				ColourBlindGame.RECORD_FILE = s.substring("--record=".length());
+			} else if (s.startsWith("--replay=")) {
+				ColourBlindGame.REPLAY_FILE = s.substring("--replay=".length());
 			}
 		}
 
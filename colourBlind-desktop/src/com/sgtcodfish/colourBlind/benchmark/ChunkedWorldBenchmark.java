@@ -0,0 +1,197 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import java.io.File;
+import java.util.Random;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.CBColour.GameColour;
+import com.sgtcodfish.colourBlind.systems.CollisionSystem;
+import com.sgtcodfish.colourBlind.tiled.ChunkSource;
+import com.sgtcodfish.colourBlind.tiled.ChunkedTileWorld;
+import com.sgtcodfish.colourBlind.tiled.CompiledChunkSource;
+import com.sgtcodfish.colourBlind.tiled.LevelParser;
+import com.sgtcodfish.colourBlind.tiled.TileChunk;
+
+/**
+ * Streams a level through a {@link ChunkedTileWorld} by panning a view across
+ * it, checking tiles in view through a {@link CollisionSystem} each frame as
+ * entities would, and reports how many chunks were resident and how long each
+ * frame's streaming took. It's run on level1 and on a generated level of
+ * 100,000 by 1,000 tiles, which should need the same number of chunks.
+ * 
+ * Nothing is drawn, so the chunks' static geometry isn't built.
+ * 
+ * Runs without a window; usage: ChunkedWorldBenchmark [level1.tmx]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class ChunkedWorldBenchmark {
+	private static final String	DEFAULT_LEVEL	= "colourBlind-android/assets/data/maps/level1.tmx";
+
+	private static final int	VIEW_WIDTH		= 1280;
+	private static final int	VIEW_HEIGHT		= 720;
+
+	/** How far the view moves each frame, in pixels. */
+	private static final float	PAN_SPEED		= 64.0f;
+
+	/** How many tiles are checked for collisions each frame. */
+	private static final int	CHECKS			= 256;
+
+	private static final long	SEED			= 2014L;
+
+	public static void main(String[] args) throws Exception {
+		FileHandle level1 = new FileHandle(new File(args.length > 0 ? args[0] : DEFAULT_LEVEL));
+		ChunkSource level1Source = new CompiledChunkSource(LevelParser.parseNow(level1));
+		ChunkSource hugeSource = new GeneratedSource(100000, 1000, 32);
+
+		// run each once to warm up, then for real
+		run("level1", level1Source, 1000, false);
+		run("generated", hugeSource, 1000, false);
+
+		run("level1", level1Source, 50000, true);
+		run("generated", hugeSource, 50000, true);
+	}
+
+	private static void run(String name, ChunkSource source, int maxFrames, boolean report) {
+		Random random = new Random(SEED);
+		ChunkedTileWorld world = new ChunkedTileWorld(source);
+		CollisionSystem collisionSystem = new CollisionSystem(world);
+
+		final float levelWidth = (float) source.getWidth() * source.getTileWidth();
+		final float levelHeight = (float) source.getHeight() * source.getTileHeight();
+		final int viewTilesWide = VIEW_WIDTH / source.getTileWidth();
+		final int viewTilesHigh = VIEW_HEIGHT / source.getTileHeight();
+		final GameColour[] colours = GameColour.values();
+
+		int maxResident = 0;
+		long totalTime = 0L;
+		long worstFrame = 0L;
+		int solid = 0;
+		int frames = 0;
+
+		// sweep left to right along the bottom of the level, then back along
+		// the top, until the level has been crossed or the frames run out
+		for (float x = 0.0f; frames < maxFrames && x < 2 * levelWidth; x += PAN_SPEED, frames++) {
+			final float viewX = (x < levelWidth ? x : 2 * levelWidth - x) - VIEW_WIDTH / 2;
+			final float viewY = (x < levelWidth ? 0.0f : Math.max(0.0f, levelHeight - VIEW_HEIGHT));
+
+			final long start = TimeUtils.nanoTime();
+
+			world.update(viewX, viewY, VIEW_WIDTH, VIEW_HEIGHT);
+
+			final int tileX = (int) Math.floor(viewX / source.getTileWidth());
+			final int tileY = (int) Math.floor(viewY / source.getTileHeight());
+			for (int i = 0; i < CHECKS; i++) {
+				GameColour colour = (i % 2 == 0 ? null : colours[random.nextInt(colours.length)]);
+
+				if (collisionSystem.isSolidTile(colour, tileX + random.nextInt(viewTilesWide),
+						tileY + random.nextInt(viewTilesHigh))) {
+					solid++;
+				}
+			}
+
+			final long time = TimeUtils.nanoTime() - start;
+			totalTime += time;
+			worstFrame = Math.max(worstFrame, time);
+			maxResident = Math.max(maxResident, world.getResidentChunks().size);
+		}
+
+		if (report) {
+			final int layers = source.getLayerNames().length;
+			final long chunkBytes = (layers * TileChunk.AREA * 2L) + TileChunk.AREA
+					+ ((colours.length + 1) * TileChunk.WORDS * 8L);
+			final long wholeLevelBytes = (long) source.getWidth() * source.getHeight() * (layers * 2L + 4L + 4L);
+
+			System.out.println(name + " (" + source.getWidth() + "x" + source.getHeight() + " tiles): " + frames
+					+ " frames, " + (totalTime / frames) + "ns per frame on average, " + worstFrame + "ns at worst.");
+			System.out.println("  at most " + maxResident + " chunks resident (" + (maxResident * chunkBytes / 1024)
+					+ "KiB), " + world.getChunksDecoded() + " decoded and " + world.getChunksEvicted()
+					+ " evicted; a whole level in memory would need about " + (wholeLevelBytes / 1024) + "KiB.");
+			System.out.println("  (" + solid + " solid tiles hit.)");
+		}
+	}
+
+	/**
+	 * A level made up as it's decoded, so that it can be far bigger than would
+	 * fit in memory: a floor along the bottom, walls every so often, and
+	 * platforms of random colours scattered over the rest.
+	 */
+	private static class GeneratedSource implements ChunkSource {
+		private static final String[]	LAYER_NAMES	= { "bg", "platforms", "level", "door" };
+
+		private final int				width;
+		private final int				height;
+		private final int				tileSize;
+
+		public GeneratedSource(int width, int height, int tileSize) {
+			this.width = width;
+			this.height = height;
+			this.tileSize = tileSize;
+		}
+
+		@Override
+		public int getWidth() {
+			return width;
+		}
+
+		@Override
+		public int getHeight() {
+			return height;
+		}
+
+		@Override
+		public int getTileWidth() {
+			return tileSize;
+		}
+
+		@Override
+		public int getTileHeight() {
+			return tileSize;
+		}
+
+		@Override
+		public String[] getLayerNames() {
+			return LAYER_NAMES;
+		}
+
+		@Override
+		public float getLayerOpacity(int layer) {
+			return 1.0f;
+		}
+
+		@Override
+		public void decode(TileChunk chunk) {
+			final int x1 = chunk.chunkX << TileChunk.SHIFT;
+			final int y1 = chunk.chunkY << TileChunk.SHIFT;
+			final int colours = GameColour.values().length - 1;
+
+			for (int row = 0; row < TileChunk.SIZE && y1 + row < height; row++) {
+				for (int col = 0; col < TileChunk.SIZE && x1 + col < width; col++) {
+					final int x = x1 + col;
+					final int y = y1 + row;
+					final int index = (row << TileChunk.SHIFT) + col;
+					final int hash = hash(x, y);
+
+					chunk.tiles[0][index] = 1;
+
+					if (y < 2 || x % 97 == 0) {
+						chunk.tiles[2][index] = 2;
+					} else if ((hash & 15) == 0) {
+						// platforms run in rows of a few tiles, all one colour
+						chunk.tiles[1][index] = 3;
+						chunk.colours[index] = (byte) (1 + (hash(x >> 2, y) >>> 8) % colours);
+					}
+				}
+			}
+		}
+
+		private static int hash(int x, int y) {
+			int h = (x * 73856093) ^ (y * 19349663);
+			h ^= (h >>> 16);
+			h *= 0x85EBCA6B;
+			h ^= (h >>> 13);
+			return h & 0x7FFFFFFF;
+		}
+	}
+}
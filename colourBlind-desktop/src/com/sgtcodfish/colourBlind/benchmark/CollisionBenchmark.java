@@ -0,0 +1,159 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import java.util.Random;
+
+import com.artemis.Entity;
+import com.artemis.World;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.components.Solid;
+import com.sgtcodfish.colourBlind.components.Velocity;
+import com.sgtcodfish.colourBlind.systems.CollisionSystem;
+import com.sgtcodfish.colourBlind.systems.MovementSystem;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
+
+/**
+ * Compares the cost of the continuous and axis-by-axis collision paths in
+ * {@link CollisionSystem}, and counts how often each one lets an Entity pass
+ * through a solid tile on its way from one tick's position to the next.
+ * 
+ * Only moves which made no contact are checked for tunnelling, since those are
+ * the ones whose path is a straight line from start to end.
+ * 
+ * Runs without a window; usage: CollisionBenchmark [entities] [ticks]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class CollisionBenchmark {
+	private static final int		MAP_SIZE		= 256;
+	private static final int		TILE_SIZE		= 32;
+	private static final float		SOLID_CHANCE	= 0.2f;
+	private static final float		MAX_SPEED		= 48.0f;
+	private static final long		SEED			= 2014L;
+
+	/** How finely each resolved move is sampled when looking for tunnelling. */
+	private static final int		PATH_SAMPLES	= 32;
+
+	private static final Vector2	sample			= new Vector2();
+
+	public static void main(String[] args) {
+		int entities = (args.length > 0 ? Integer.parseInt(args[0]) : 2000);
+		int ticks = (args.length > 1 ? Integer.parseInt(args[1]) : 1000);
+
+		TiledMap map = createMap();
+
+		// run each once to warm up, then for real
+		run(map, false, entities, ticks / 10, false);
+		run(map, true, entities, ticks / 10, false);
+
+		run(map, false, entities, ticks, true);
+		run(map, true, entities, ticks, true);
+	}
+
+	private static TiledMap createMap() {
+		Random random = new Random(SEED);
+		TiledMap map = new TiledMap();
+
+		PackedTileLayer level = new PackedTileLayer(MAP_SIZE, MAP_SIZE, TILE_SIZE, TILE_SIZE, map.getTileSets());
+		level.setName("level");
+
+		for (int y = 0; y < MAP_SIZE; y++) {
+			for (int x = 0; x < MAP_SIZE; x++) {
+				if (random.nextFloat() < SOLID_CHANCE) {
+					level.set(x, y, PackedTileLayer.pack(1, false, false, 0));
+				}
+			}
+		}
+
+		PackedTileLayer platforms = new PackedTileLayer(MAP_SIZE, MAP_SIZE, TILE_SIZE, TILE_SIZE, map.getTileSets());
+		platforms.setName("platforms");
+
+		map.getLayers().add(level);
+		map.getLayers().add(platforms);
+		return map;
+	}
+
+	private static void run(TiledMap map, boolean continuous, int entityCount, int ticks, boolean report) {
+		Random random = new Random(SEED);
+
+		World world = new World();
+		world.setSystem(new MovementSystem());
+		CollisionSystem collisionSystem = world.setSystem(new CollisionSystem(map, null));
+		collisionSystem.continuous = continuous;
+		world.initialize();
+
+		Entity[] entities = new Entity[entityCount];
+		for (int i = 0; i < entityCount; i++) {
+			int tileX, tileY;
+
+			do {
+				tileX = random.nextInt(MAP_SIZE);
+				tileY = random.nextInt(MAP_SIZE);
+			} while (collisionSystem.isSolidTile(tileX, tileY));
+
+			Entity e = world.createEntity();
+			e.addComponent(new Position(tileX * TILE_SIZE + 4.0f, tileY * TILE_SIZE + 4.0f));
+			e.addComponent(new Velocity());
+			e.addComponent(new Solid(0.0f, 0.0f, TILE_SIZE - 8.0f, TILE_SIZE - 8.0f));
+			world.addEntity(e);
+			entities[i] = e;
+		}
+
+		world.setDelta(1.0f / 60.0f);
+		world.process();
+
+		long totalNanos = 0L;
+		int tunnelled = 0;
+
+		for (int tick = 0; tick < ticks; tick++) {
+			for (Entity e : entities) {
+				e.getComponent(Velocity.class).velocity.set((random.nextFloat() * 2.0f - 1.0f) * MAX_SPEED,
+						(random.nextFloat() * 2.0f - 1.0f) * MAX_SPEED);
+			}
+
+			long start = TimeUtils.nanoTime();
+			world.process();
+			totalNanos += TimeUtils.nanoTime() - start;
+
+			for (Entity e : entities) {
+				if (e.getComponent(Solid.class).contacts == Solid.CONTACT_NONE && hasTunnelled(collisionSystem, e)) {
+					tunnelled++;
+				}
+			}
+		}
+
+		if (report) {
+			double nanosPerEntityTick = (double) totalNanos / ((double) ticks * entityCount);
+			System.out.println((continuous ? "continuous" : "axis sweep") + ": " + entityCount + " entities, "
+					+ ticks + " ticks, " + String.format("%.1f", nanosPerEntityTick) + " ns/entity/tick, "
+					+ tunnelled + " moves passed through a solid tile");
+		}
+	}
+
+	private static boolean hasTunnelled(CollisionSystem collisionSystem, Entity e) {
+		Position p = e.getComponent(Position.class);
+		Rectangle r = e.getComponent(Solid.class).rect;
+
+		for (int i = 0; i <= PATH_SAMPLES; i++) {
+			p.interpolate((float) i / PATH_SAMPLES, sample);
+
+			int col1 = (int) Math.floor((sample.x + r.x) / TILE_SIZE);
+			int col2 = (int) Math.ceil((sample.x + r.x + r.width) / TILE_SIZE) - 1;
+			int row1 = (int) Math.floor((sample.y + r.y) / TILE_SIZE);
+			int row2 = (int) Math.ceil((sample.y + r.y + r.height) / TILE_SIZE) - 1;
+
+			for (int row = row1; row <= row2; row++) {
+				for (int col = col1; col <= col2; col++) {
+					if (collisionSystem.isSolidTile(col, row)) {
+						return true;
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,173 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.tiled.CompiledLevel;
+import com.sgtcodfish.colourBlind.tiled.LevelParser;
+import com.sgtcodfish.colourBlind.tools.LevelCompiler;
+
+/**
+ * Compares loading each level from its .tmx file against loading it from a
+ * {@link CompiledLevel}.
+ * 
+ * The .tmx path parses the XML, decodes and inflates every layer and scans the
+ * grids for collision, platform and door data; the compiled path memory maps
+ * the compiled file and reads the same data straight out of it. Both then
+ * colour the platforms. Building the TiledMap itself is left out, since it
+ * needs a GL context for the tileset texture and costs the same either way.
+ * 
+ * Also compares parsing every .tmx file one after another, as a single thread
+ * would at startup, against parsing them all at once on a {@link LevelParser}.
+ * 
+ * The levels are compiled into a temporary folder, so the level folder isn't
+ * changed.
+ * 
+ * Runs without a window; usage: LevelLoadingBenchmark [level folder]
+ * [iterations] [threads]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class LevelLoadingBenchmark {
+	private static final String	DEFAULT_FOLDER	= "colourBlind-android/assets/data/maps";
+
+	public static void main(String[] args) throws IOException {
+		FileHandle folder = new FileHandle(new File(args.length > 0 ? args[0] : DEFAULT_FOLDER));
+		int iterations = (args.length > 1 ? Integer.parseInt(args[1]) : 200);
+		int threads = (args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors());
+
+		FileHandle[] tmxFiles = folder.list(".tmx");
+		Arrays.sort(tmxFiles, new Comparator<FileHandle>() {
+			@Override
+			public int compare(FileHandle a, FileHandle b) {
+				return a.name().compareTo(b.name());
+			}
+		});
+
+		if (tmxFiles.length == 0) {
+			System.err.println("No levels found in " + folder.path());
+			System.exit(1);
+		}
+
+		FileHandle outputFolder = FileHandle.tempDirectory("cblevels");
+		FileHandle[] compiledFiles = new FileHandle[tmxFiles.length];
+
+		try {
+			for (int i = 0; i < tmxFiles.length; i++) {
+				compiledFiles[i] = outputFolder.child(tmxFiles[i].nameWithoutExtension() + CompiledLevel.EXTENSION);
+				LevelCompiler.compile(tmxFiles[i], compiledFiles[i]);
+			}
+
+			// run each once to warm up, then for real
+			run(tmxFiles, compiledFiles, iterations / 10, false);
+			run(tmxFiles, compiledFiles, iterations, true);
+		} finally {
+			outputFolder.deleteDirectory();
+		}
+
+		runParallel(tmxFiles, threads, iterations / 10, false);
+		runParallel(tmxFiles, threads, iterations, true);
+	}
+
+	private static void runParallel(FileHandle[] tmxFiles, int threads, int iterations, boolean report)
+			throws IOException {
+		ArrayList<String> paths = new ArrayList<String>();
+		for (FileHandle tmxFile : tmxFiles) {
+			paths.add(tmxFile.path());
+		}
+
+		LevelParser parser = new LevelParser(new FileHandleResolver() {
+			@Override
+			public FileHandle resolve(String fileName) {
+				return new FileHandle(new File(fileName));
+			}
+		}, threads);
+
+		long serialNanos = 0L;
+		long parallelNanos = 0L;
+
+		try {
+			for (int i = 0; i < iterations; i++) {
+				long start = TimeUtils.nanoTime();
+				for (FileHandle tmxFile : tmxFiles) {
+					CompiledLevel.compile(tmxFile);
+				}
+				serialNanos += TimeUtils.nanoTime() - start;
+
+				start = TimeUtils.nanoTime();
+				parser.parseAll(paths);
+				for (String path : paths) {
+					parser.take(path);
+				}
+				parallelNanos += TimeUtils.nanoTime() - start;
+			}
+		} finally {
+			parser.dispose();
+		}
+
+		if (report) {
+			double serialMicros = serialNanos / (double) iterations / 1000.0;
+			double parallelMicros = parallelNanos / (double) iterations / 1000.0;
+
+			System.out.println(String.format("all .tmx serially:      %.1f us", serialMicros));
+			System.out.println(String.format("all .tmx on %d threads: %.1f us (%.1fx speedup)", threads,
+					parallelMicros, serialMicros / parallelMicros));
+		}
+	}
+
+	private static void run(FileHandle[] tmxFiles, FileHandle[] compiledFiles, int iterations, boolean report)
+			throws IOException {
+		long tmxNanos = 0L;
+		long compiledNanos = 0L;
+		int checksum = 0;
+
+		for (int i = 0; i < iterations; i++) {
+			for (int level = 0; level < tmxFiles.length; level++) {
+				long start = TimeUtils.nanoTime();
+				checksum += loadTmx(tmxFiles[level]);
+				tmxNanos += TimeUtils.nanoTime() - start;
+
+				start = TimeUtils.nanoTime();
+				checksum -= loadCompiled(compiledFiles[level]);
+				compiledNanos += TimeUtils.nanoTime() - start;
+			}
+		}
+
+		if (report) {
+			double loads = (double) iterations * tmxFiles.length;
+			double tmxMicros = tmxNanos / loads / 1000.0;
+			double compiledMicros = compiledNanos / loads / 1000.0;
+
+			System.out.println(tmxFiles.length + " levels, " + iterations + " iterations");
+			System.out.println(String.format(".tmx:     %.1f us/level", tmxMicros));
+			System.out.println(String.format("compiled: %.1f us/level (%.1fx faster)", compiledMicros, tmxMicros
+					/ compiledMicros));
+
+			if (checksum != 0) {
+				System.out.println("Warning: the two paths loaded different data.");
+			}
+		}
+	}
+
+	private static int loadTmx(FileHandle tmxFile) throws IOException {
+		CompiledLevel level = CompiledLevel.compile(tmxFile);
+		level.generatePlatformColours();
+		return summarise(level);
+	}
+
+	private static int loadCompiled(FileHandle compiledFile) throws IOException {
+		CompiledLevel level = CompiledLevel.read(compiledFile);
+		level.generatePlatformColours();
+		return summarise(level);
+	}
+
+	private static int summarise(CompiledLevel level) {
+		return level.platformCount + Arrays.hashCode(level.staticBitplane) + Arrays.hashCode(level.doorTiles);
+	}
+}
@@ -0,0 +1,190 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.DoorManager;
+import com.sgtcodfish.colourBlind.LevelEntityFactory;
+import com.sgtcodfish.colourBlind.systems.CollisionSystem;
+import com.sgtcodfish.colourBlind.tiled.CompiledLevel;
+import com.sgtcodfish.colourBlind.tiled.LevelData;
+import com.sgtcodfish.colourBlind.tiled.LevelParser;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
+
+/**
+ * Measures the work a level transition leaves on the rendering thread for the
+ * collision and door data, cycling through every level many times: first by
+ * rebuilding the collision bitplanes with CollisionSystem.setMap when the
+ * level changes, then by swapping in the grid and doors which a
+ * {@link LevelData} built as the level loaded. The longest single swap of each
+ * is what would show up as a hitch.
+ * 
+ * Along with the shipped levels, a generated level of the given size is
+ * included to show how each grows with the size of a level. Nothing is drawn,
+ * so renderers and their static caches aren't part of the measurement.
+ * 
+ * Runs without a window; usage: LevelTransitionBenchmark [maps folder] [size]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class LevelTransitionBenchmark {
+	private static final String	DEFAULT_FOLDER	= "colourBlind-android/assets/data/maps/";
+	private static final int	DEFAULT_SIZE	= 1024;
+
+	private static final int	TILE_SIZE		= 32;
+	private static final int	CYCLES			= 50;
+	private static final long	SEED			= 2014L;
+
+	public static void main(String[] args) throws Exception {
+		File folder = new File(args.length > 0 ? args[0] : DEFAULT_FOLDER);
+		int size = (args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SIZE);
+
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<LevelData> levels = new ArrayList<LevelData>();
+		long worstBuild = 0L;
+
+		File[] files = folder.listFiles();
+		Arrays.sort(files);
+
+		for (File file : files) {
+			if (!file.getName().endsWith(".tmx")) {
+				continue;
+			}
+
+			CompiledLevel compiled = LevelParser.parseNow(new FileHandle(file));
+			TiledMap map = createMap(compiled);
+
+			final long start = TimeUtils.nanoTime();
+			levels.add(new LevelData(map, compiled.labelPlatforms(), compiled.staticBitplane,
+					compiled.doorTiles));
+			worstBuild = Math.max(worstBuild, TimeUtils.nanoTime() - start);
+			names.add(file.getName());
+		}
+
+		TiledMap generated = createGeneratedMap(size);
+		final long generatedStart = TimeUtils.nanoTime();
+		levels.add(new LevelData(generated, LevelEntityFactory.labelPlatforms(generated, SEED)));
+		final long generatedBuild = TimeUtils.nanoTime() - generatedStart;
+		names.add("generated " + size + "x" + size);
+
+		CollisionSystem collisionSystem = new CollisionSystem(levels.get(0).collisionGrid);
+		DoorManager doorManager = new DoorManager();
+
+		// once to warm up, then for real; rescanning leaves a lot of garbage,
+		// so collect it first to keep it from landing in the swaps
+		cycle(levels, collisionSystem, doorManager, true);
+		cycle(levels, collisionSystem, doorManager, false);
+
+		System.gc();
+		long[] rescans = cycle(levels, collisionSystem, doorManager, true);
+		System.gc();
+		long[] swaps = cycle(levels, collisionSystem, doorManager, false);
+
+		System.out.println("Longest transition on the rendering thread, over " + CYCLES + " passes of each level:");
+		for (int i = 0; i < levels.size(); i++) {
+			LevelData level = levels.get(i);
+			System.out.println("  " + names.get(i) + " (" + level.collisionGrid.widthInTiles + "x"
+					+ level.collisionGrid.heightInTiles + ", " + level.doorTriggers.getDoorCount() + " doors): "
+					+ (rescans[i] / 1000) + "us rescanning, " + swaps[i] + "ns swapping.");
+		}
+
+		System.out.println("Building a shipped level's grid and doors off the rendering thread took at most "
+				+ (worstBuild / 1000) + "us; the generated level's took " + (generatedBuild / 1000) + "us.");
+	}
+
+	/**
+	 * Moves through every level CYCLES times, either rescanning each level's
+	 * map or swapping in its prebuilt data.
+	 * 
+	 * @return The longest time taken to move to each level, in nanoseconds.
+	 */
+	private static long[] cycle(ArrayList<LevelData> levels, CollisionSystem collisionSystem,
+			DoorManager doorManager, boolean rescan) {
+		long[] longest = new long[levels.size()];
+
+		for (int pass = 0; pass < CYCLES; pass++) {
+			for (int i = 0; i < levels.size(); i++) {
+				LevelData level = levels.get(i);
+				final long start = TimeUtils.nanoTime();
+
+				if (rescan) {
+					collisionSystem.setMap(level.map, level.platforms, level.staticBitplane);
+				} else {
+					collisionSystem.setGrid(level.collisionGrid);
+				}
+
+				doorManager.setDoors(level.doorTriggers);
+
+				longest[i] = Math.max(longest[i], TimeUtils.nanoTime() - start);
+			}
+		}
+
+		return longest;
+	}
+
+	/**
+	 * Builds a map from a compiled level with no tileset, which is all the
+	 * collision and door data need.
+	 */
+	private static TiledMap createMap(CompiledLevel compiled) {
+		TiledMap map = new TiledMap();
+
+		for (int i = 0; i < compiled.layerNames.length; i++) {
+			PackedTileLayer layer = new PackedTileLayer(compiled.layerWidths[i], compiled.layerHeights[i],
+					compiled.tileWidth, compiled.tileHeight, map.getTileSets());
+			layer.setName(compiled.layerNames[i]);
+			layer.setOpacity(compiled.layerOpacities[i]);
+
+			final short[] tiles = compiled.layerTiles[i];
+			final int[] packed = layer.getTiles();
+			for (int index = 0; index < packed.length; index++) {
+				packed[index] = tiles[index] & PackedTileLayer.ID_MASK;
+			}
+
+			map.getLayers().add(layer);
+		}
+
+		return map;
+	}
+
+	/**
+	 * Builds a map with solid walls around the edge, random solid tiles and
+	 * platforms, and a door in the top right.
+	 */
+	private static TiledMap createGeneratedMap(int size) {
+		Random random = new Random(SEED);
+		TiledMap map = new TiledMap();
+
+		PackedTileLayer level = new PackedTileLayer(size, size, TILE_SIZE, TILE_SIZE, map.getTileSets());
+		PackedTileLayer platforms = new PackedTileLayer(size, size, TILE_SIZE, TILE_SIZE, map.getTileSets());
+		PackedTileLayer door = new PackedTileLayer(size, size, TILE_SIZE, TILE_SIZE, map.getTileSets());
+		level.setName("level");
+		platforms.setName("platforms");
+		door.setName("door");
+
+		final int tile = PackedTileLayer.pack(1, false, false, 0);
+
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				if (x == 0 || y == 0 || x == size - 1 || random.nextFloat() < 0.1f) {
+					level.set(x, y, tile);
+				} else if (random.nextFloat() < 0.05f) {
+					platforms.set(x, y, tile);
+				}
+			}
+		}
+
+		door.set(size - 2, size - 2, tile);
+		door.set(size - 2, size - 1, tile);
+
+		map.getLayers().add(level);
+		map.getLayers().add(platforms);
+		map.getLayers().add(door);
+		return map;
+	}
+}
@@ -0,0 +1,66 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import com.artemis.Entity;
+import com.artemis.World;
+import com.badlogic.gdx.math.Vector2;
+import com.sgtcodfish.colourBlind.PlayerEntityFactory;
+import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.components.Velocity;
+import com.sgtcodfish.colourBlind.systems.MovementSystem;
+
+/**
+ * Checks that players from PlayerEntityFactory.createLogicPlayerEntity each
+ * have their own position: moving one mustn't move another, and moving one
+ * back to the spawn point on a level change must put it there.
+ * 
+ * Exits with status 1 if the check fails.
+ * 
+ * Runs without a window; usage: LogicPlayerCheck
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class LogicPlayerCheck {
+	private static final float	TILE_HEIGHT	= 32.0f;
+	private static final int	TICKS		= 10;
+
+	public static void main(String[] args) {
+		World world = new World();
+		world.setSystem(new MovementSystem());
+		world.initialize();
+
+		Entity mover = PlayerEntityFactory.createLogicPlayerEntity(world, TILE_HEIGHT);
+		Entity stayer = PlayerEntityFactory.createLogicPlayerEntity(world, TILE_HEIGHT);
+		world.addEntity(mover);
+		world.addEntity(stayer);
+
+		final Vector2 moverPosition = mover.getComponent(Position.class).position;
+		final Vector2 stayerPosition = stayer.getComponent(Position.class).position;
+		boolean passed = true;
+
+		for (int i = 0; i < TICKS; i++) {
+			mover.getComponent(Velocity.class).velocity.x = PlayerEntityFactory.RUN_VELOCITY;
+			world.setDelta(1.0f);
+			world.process();
+		}
+
+		// both fall under gravity, but only one was pushed sideways
+		System.out.println("moved: " + moverPosition + ", left alone: " + stayerPosition);
+		if (moverPosition == stayerPosition || moverPosition.x <= PlayerEntityFactory.INITIAL_X
+				|| stayerPosition.x != PlayerEntityFactory.INITIAL_X) {
+			passed = false;
+		}
+
+		mover.getComponent(Position.class).teleport(PlayerEntityFactory.INITIAL_X, PlayerEntityFactory.INITIAL_Y);
+
+		System.out.println("back at spawn: " + moverPosition + ", left alone: " + stayerPosition);
+		if (moverPosition.x != PlayerEntityFactory.INITIAL_X || moverPosition.y != PlayerEntityFactory.INITIAL_Y
+				|| stayerPosition.x != PlayerEntityFactory.INITIAL_X) {
+			passed = false;
+		}
+
+		System.out.println(passed ? "PASSED" : "FAILED");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import java.util.Random;
+
+import com.artemis.Entity;
+import com.artemis.World;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.MotionStore;
+import com.sgtcodfish.colourBlind.components.Facing;
+import com.sgtcodfish.colourBlind.components.PackedMotion;
+import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.components.Velocity;
+import com.sgtcodfish.colourBlind.components.Weight;
+import com.sgtcodfish.colourBlind.systems.BatchMovementSystem;
+import com.sgtcodfish.colourBlind.systems.MovementSystem;
+
+/**
+ * Compares moving a crowd of entities with {@link MovementSystem} against
+ * {@link BatchMovementSystem}, both for entities which keep Position and
+ * Velocity components as views of the {@link MotionStore} and for entities
+ * which only live in the store. The first two must end up in exactly the same
+ * places, which is checked.
+ * 
+ * Runs without a window; usage: MovementBenchmark [entities] [ticks]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class MovementBenchmark {
+	private static final float	MAX_SPEED	= 16.0f;
+	private static final long	SEED		= 2014L;
+
+	private enum Mode {
+		COMPONENTS, VIEWS, PACKED
+	}
+
+	public static void main(String[] args) {
+		int entities = (args.length > 0 ? Integer.parseInt(args[0]) : 100000);
+		int ticks = (args.length > 1 ? Integer.parseInt(args[1]) : 500);
+
+		// run each once to warm up, then for real
+		for (Mode mode : Mode.values()) {
+			run(mode, entities, ticks / 10, false);
+		}
+
+		float[] expected = null;
+		for (Mode mode : Mode.values()) {
+			float[] result = run(mode, entities, ticks, true);
+
+			if (expected == null) {
+				expected = result;
+			} else if (mode == Mode.VIEWS) {
+				compare(expected, result);
+			}
+		}
+	}
+
+	private static float[] run(Mode mode, int entityCount, int ticks, boolean report) {
+		Random random = new Random(SEED);
+
+		World world = new World();
+		MotionStore store = world.setManager(new MotionStore(entityCount));
+		world.setSystem(new MovementSystem());
+		world.setSystem(new BatchMovementSystem());
+		world.initialize();
+
+		Entity[] entities = new Entity[entityCount];
+		for (int i = 0; i < entityCount; i++) {
+			final float x = random.nextFloat() * 10000.0f;
+			final float y = random.nextFloat() * 10000.0f;
+			final float vx = (random.nextFloat() * 2.0f - 1.0f) * MAX_SPEED;
+			final float vy = (random.nextFloat() * 2.0f - 1.0f) * MAX_SPEED;
+			final boolean heavy = random.nextBoolean();
+
+			Entity e = world.createEntity();
+
+			if (mode == Mode.PACKED) {
+				e.addComponent(new PackedMotion(x, y, vx, vy, (heavy ? Weight.DEFAULT_WEIGHT : 0.0f)));
+			} else {
+				e.addComponent(new Position(x, y));
+				e.addComponent(new Velocity(vx, vy));
+				e.addComponent(new Facing());
+
+				if (heavy) {
+					e.addComponent(new Weight());
+				}
+
+				if (mode == Mode.VIEWS) {
+					e.addComponent(new PackedMotion());
+				}
+			}
+
+			world.addEntity(e);
+			entities[i] = e;
+		}
+
+		world.setDelta(1.0f / 60.0f);
+		world.process();
+
+		long totalNanos = 0L;
+		for (int tick = 0; tick < ticks; tick++) {
+			// give everything a kick now and then so it doesn't all stop
+			if (tick % 50 == 0) {
+				kick(mode, store, entities, random);
+			}
+
+			long start = TimeUtils.nanoTime();
+			world.process();
+			totalNanos += TimeUtils.nanoTime() - start;
+		}
+
+		float[] result = new float[entityCount * 2];
+		for (int i = 0; i < entityCount; i++) {
+			if (mode == Mode.PACKED) {
+				PackedMotion m = entities[i].getComponent(PackedMotion.class);
+				result[i * 2] = m.getX();
+				result[i * 2 + 1] = m.getY();
+			} else {
+				Position p = entities[i].getComponent(Position.class);
+				result[i * 2] = p.position.x;
+				result[i * 2 + 1] = p.position.y;
+			}
+		}
+
+		if (report) {
+			double nanosPerEntityTick = (double) totalNanos / ((double) ticks * entityCount);
+			System.out.println(mode + ": " + entityCount + " entities, " + ticks + " ticks, "
+					+ String.format("%.2f", nanosPerEntityTick) + " ns/entity/tick");
+		}
+
+		return result;
+	}
+
+	private static void kick(Mode mode, MotionStore store, Entity[] entities, Random random) {
+		for (Entity e : entities) {
+			final float vx = (random.nextFloat() * 2.0f - 1.0f) * MAX_SPEED;
+			final float vy = random.nextFloat() * MAX_SPEED;
+
+			if (mode == Mode.PACKED) {
+				final int slot = e.getComponent(PackedMotion.class).slot;
+				store.velocityX[slot] = vx;
+				store.velocityY[slot] = vy;
+			} else {
+				e.getComponent(Velocity.class).velocity.set(vx, vy);
+			}
+		}
+	}
+
+	private static void compare(float[] expected, float[] actual) {
+		int mismatches = 0;
+
+		for (int i = 0; i < expected.length; i++) {
+			if (Float.floatToIntBits(expected[i]) != Float.floatToIntBits(actual[i])) {
+				mismatches++;
+			}
+		}
+
+		System.out.println("  " + mismatches + " coordinates differ from MovementSystem's.");
+	}
+}
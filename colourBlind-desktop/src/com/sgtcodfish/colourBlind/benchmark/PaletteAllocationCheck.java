@@ -0,0 +1,105 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.sgtcodfish.colourBlind.CBColour;
+import com.sgtcodfish.colourBlind.CBColour.GameColour;
+import com.sgtcodfish.colourBlind.tiled.PlatformLabels;
+
+/**
+ * Checks that the colour lookups made every frame allocate nothing, and that
+ * colouring a level's platforms allocates only the colour grid it returns and
+ * nothing per tile.
+ * 
+ * Allocation is measured with the HotSpot per-thread allocation counter, so the
+ * check needs a HotSpot JVM. Exits with status 1 if anything allocates when it
+ * shouldn't.
+ * 
+ * Runs without a window; usage: PaletteAllocationCheck [iterations]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class PaletteAllocationCheck {
+	private static final int	PLATFORM_SIZE	= 512;
+
+	// leeway for the few small arrays allocated once per call
+	private static final long	SLACK_BYTES		= 1024L;
+
+	private static float		sink			= 0.0f;
+
+	public static void main(String[] args) {
+		int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+
+		com.sun.management.ThreadMXBean threads = null;
+		try {
+			threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		} catch (ClassCastException e) {
+			System.out.println("No allocation counter on this JVM; skipping.");
+			return;
+		}
+
+		final long thread = Thread.currentThread().getId();
+		boolean passed = true;
+
+		// warm up so that class loading and compilation aren't counted
+		lookUpColours(iterations);
+
+		long before = threads.getThreadAllocatedBytes(thread);
+		lookUpColours(iterations);
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		System.out.println("colour lookups: " + iterations + " frames, " + allocated + " bytes allocated");
+		if (allocated > SLACK_BYTES) {
+			passed = false;
+		}
+
+		short[] tiles = new short[PLATFORM_SIZE * PLATFORM_SIZE];
+		Random random = new Random(2014L);
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = (short) (random.nextFloat() < 0.5f ? 1 : 0);
+		}
+
+		PlatformLabels labels = PlatformLabels.label(tiles, PLATFORM_SIZE, PLATFORM_SIZE);
+		labels.generateColours(1L, 0.8f);
+
+		before = threads.getThreadAllocatedBytes(thread);
+		float[] grid = labels.generateColours(1L, 0.8f);
+		allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		// the grid itself, plus one packed colour per platform
+		final long expected = 4L * (grid.length + labels.count + 1);
+
+		System.out.println("platform colours: " + tiles.length + " tiles, " + labels.count + " platforms, "
+				+ allocated + " bytes allocated, " + expected + " expected");
+		if (allocated > expected + SLACK_BYTES) {
+			passed = false;
+		}
+
+		System.out.println(passed ? "PASSED" : "FAILED");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Does what the rendering and lighting code does with colours each frame.
+	 */
+	private static void lookUpColours(int iterations) {
+		final GameColour[] gameColours = GameColour.values();
+		float total = 0.0f;
+
+		for (int i = 0; i < iterations; i++) {
+			CBColour colour = CBColour.get(gameColours[i % gameColours.length]);
+
+			total += colour.toFloatBits();
+			total += colour.toFloatBits(0.5f);
+			total += colour.toGdxColour().r;
+			total += colour.nextColour().toFloatBits();
+			total += GameColour.toNumber(colour.getColour());
+			total += GameColour.asString(colour.getColour()).length();
+		}
+
+		sink += total;
+	}
+}
@@ -0,0 +1,179 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import java.util.Random;
+
+import com.artemis.Entity;
+import com.artemis.World;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.WorkerPool;
+import com.sgtcodfish.colourBlind.components.Facing;
+import com.sgtcodfish.colourBlind.components.Flashlight;
+import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.components.Velocity;
+import com.sgtcodfish.colourBlind.components.Weight;
+import com.sgtcodfish.colourBlind.systems.FlashlightSystem;
+import com.sgtcodfish.colourBlind.systems.MovementSystem;
+import com.sgtcodfish.colourBlind.systems.ParallelEntityProcessingSystem;
+
+/**
+ * Runs {@link MovementSystem} and {@link FlashlightSystem} over a crowd of
+ * entities with flashlights, first serially with no {@link WorkerPool} and
+ * then on pools of 1, 2, 4... threads up to the given maximum, and reports
+ * the time per entity per tick of each along with its speedup over serial.
+ * 
+ * Every run must leave every Entity and every tick's lightList exactly as the
+ * serial run did, which is checked; a run on more threads than there are
+ * processors still checks that, but won't be any faster.
+ * 
+ * Runs without a window; usage: ParallelSystemsBenchmark [entities] [ticks]
+ * [max threads]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class ParallelSystemsBenchmark {
+	private static final float	MAX_SPEED		= 16.0f;
+	private static final float	START_CHANCE	= 0.01f;
+	private static final long	SEED			= 2014L;
+
+	// the number of floats describing each Entity in a run's result
+	private static final int	ENTITY_FLOATS	= 9;
+
+	public static void main(String[] args) {
+		int entities = (args.length > 0 ? Integer.parseInt(args[0]) : 100000);
+		int ticks = (args.length > 1 ? Integer.parseInt(args[1]) : 300);
+		int maxThreads = (args.length > 2 ? Integer.parseInt(args[2]) : Math.max(4, Runtime.getRuntime()
+				.availableProcessors()));
+
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors available; chunks are at least "
+				+ ParallelEntityProcessingSystem.MIN_CHUNK_SIZE + " entities.");
+
+		// warm up every path first
+		run(0, entities, ticks / 10);
+		run(maxThreads, entities, ticks / 10);
+
+		Result serial = run(0, entities, ticks);
+		System.out.println("serial: " + String.format("%.2f", serial.nanosPerEntityTick) + " ns/entity/tick, "
+				+ serial.lightsOn + " lights on in total.");
+
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			Result parallel = run(threads, entities, ticks);
+			final double speedup = serial.nanosPerEntityTick / parallel.nanosPerEntityTick;
+
+			System.out.println(threads + " thread(s): " + String.format("%.2f", parallel.nanosPerEntityTick)
+					+ " ns/entity/tick, " + String.format("%.2f", speedup) + "x serial; " + compare(serial, parallel));
+		}
+	}
+
+	/**
+	 * Runs both systems for the given number of ticks.
+	 * 
+	 * @param threads
+	 *        The parallelism of the world's WorkerPool, or 0 for no pool.
+	 */
+	private static Result run(int threads, int entityCount, int ticks) {
+		Random random = new Random(SEED);
+
+		World world = new World();
+		WorkerPool pool = null;
+		if (threads > 0) {
+			pool = world.setManager(new WorkerPool(threads));
+		}
+
+		world.setSystem(new MovementSystem());
+		FlashlightSystem flashlightSystem = world.setSystem(new FlashlightSystem());
+		world.initialize();
+
+		Entity[] entities = new Entity[entityCount];
+		for (int i = 0; i < entityCount; i++) {
+			Entity e = world.createEntity();
+			e.addComponent(new Position(random.nextFloat() * 10000.0f, random.nextFloat() * 10000.0f));
+			e.addComponent(new Velocity((random.nextFloat() * 2.0f - 1.0f) * MAX_SPEED, random.nextFloat()
+					* MAX_SPEED));
+			e.addComponent(new Facing());
+			e.addComponent(new Flashlight(random.nextFloat() * 2.0f, random.nextFloat() * 2.0f));
+
+			if (random.nextBoolean()) {
+				e.addComponent(new Weight());
+			}
+
+			world.addEntity(e);
+			entities[i] = e;
+		}
+
+		world.setDelta(1.0f / 60.0f);
+		world.process();
+
+		Result result = new Result();
+		long totalNanos = 0L;
+
+		for (int tick = 0; tick < ticks; tick++) {
+			// give everything a kick now and then so it doesn't all stop, and
+			// ask for a few flashlights every tick
+			for (Entity e : entities) {
+				if (tick % 50 == 0) {
+					e.getComponent(Velocity.class).velocity.set((random.nextFloat() * 2.0f - 1.0f) * MAX_SPEED,
+							random.nextFloat() * MAX_SPEED);
+				}
+
+				if (random.nextFloat() < START_CHANCE) {
+					e.getComponent(Flashlight.class).flagForStart();
+				}
+			}
+
+			long start = TimeUtils.nanoTime();
+			world.process();
+			totalNanos += TimeUtils.nanoTime() - start;
+
+			result.lightsOn += flashlightSystem.lightsForShader;
+			for (int i = 0; i < flashlightSystem.lightsForShader * FlashlightSystem.FLASHLIGHT_FLOATS; i++) {
+				result.lightHash = result.lightHash * 31 + Float.floatToIntBits(flashlightSystem.lightList[i]);
+			}
+		}
+
+		result.entities = new float[entityCount * ENTITY_FLOATS];
+		for (int i = 0; i < entityCount; i++) {
+			Position p = entities[i].getComponent(Position.class);
+			Velocity v = entities[i].getComponent(Velocity.class);
+			Flashlight f = entities[i].getComponent(Flashlight.class);
+			final int offset = i * ENTITY_FLOATS;
+
+			result.entities[offset + 0] = p.position.x;
+			result.entities[offset + 1] = p.position.y;
+			result.entities[offset + 2] = p.previous.x;
+			result.entities[offset + 3] = p.previous.y;
+			result.entities[offset + 4] = v.velocity.x;
+			result.entities[offset + 5] = v.velocity.y;
+			result.entities[offset + 6] = (entities[i].getComponent(Facing.class).facingLeft ? 1.0f : 0.0f);
+			result.entities[offset + 7] = f.onTime;
+			result.entities[offset + 8] = f.cooldownRemaining;
+		}
+
+		result.nanosPerEntityTick = (double) totalNanos / ((double) ticks * entityCount);
+
+		if (pool != null) {
+			pool.dispose();
+		}
+
+		return result;
+	}
+
+	private static String compare(Result expected, Result actual) {
+		int mismatches = 0;
+
+		for (int i = 0; i < expected.entities.length; i++) {
+			if (Float.floatToIntBits(expected.entities[i]) != Float.floatToIntBits(actual.entities[i])) {
+				mismatches++;
+			}
+		}
+
+		final boolean lightsMatch = (expected.lightsOn == actual.lightsOn && expected.lightHash == actual.lightHash);
+		return mismatches + " values differ from serial, lights " + (lightsMatch ? "match." : "DIFFER.");
+	}
+
+	private static class Result {
+		float[]	entities			= null;
+		long	lightsOn			= 0L;
+		long	lightHash			= 17L;
+		double	nanosPerEntityTick	= 0.0;
+	}
+}
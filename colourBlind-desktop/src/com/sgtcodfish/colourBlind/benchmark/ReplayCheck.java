@@ -0,0 +1,236 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import com.artemis.Entity;
+import com.artemis.World;
+import com.badlogic.gdx.Input.Keys;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.FixedStepClock;
+import com.sgtcodfish.colourBlind.InputActions;
+import com.sgtcodfish.colourBlind.InputRecorder;
+import com.sgtcodfish.colourBlind.InputRecording;
+import com.sgtcodfish.colourBlind.InputReplay;
+import com.sgtcodfish.colourBlind.components.Coloured;
+import com.sgtcodfish.colourBlind.components.Facing;
+import com.sgtcodfish.colourBlind.components.Flashlight;
+import com.sgtcodfish.colourBlind.components.PlayerInputListener;
+import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.components.Solid;
+import com.sgtcodfish.colourBlind.components.Velocity;
+import com.sgtcodfish.colourBlind.components.Weight;
+import com.sgtcodfish.colourBlind.systems.CollisionSystem;
+import com.sgtcodfish.colourBlind.systems.FlashlightSystem;
+import com.sgtcodfish.colourBlind.systems.MovementSystem;
+import com.sgtcodfish.colourBlind.systems.PlayerInputSystem;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
+
+/**
+ * Records a run of players mashing keys on a generated level with an
+ * {@link InputRecorder}, along with a checksum of every player's Position and
+ * Velocity after every tick, then plays the recording back with an
+ * {@link InputReplay} and checks that every tick's checksum matches.
+ * 
+ * A recording saved with "record" is a fixed workload which can be replayed
+ * with "replay" after a change to the physics, to check that nothing has
+ * changed and to time the logic systems running it. With no mode, records a
+ * run, round trips it through the file format and replays it twice, timing
+ * the second.
+ * 
+ * Runs without a window; usage: ReplayCheck [record file [ticks] [players] |
+ * replay file]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class ReplayCheck {
+	private static final int	MAP_SIZE		= 64;
+	private static final int	TILE_SIZE		= 32;
+	private static final float	SOLID_CHANCE	= 0.15f;
+	private static final float	TOGGLE_CHANCE	= 0.05f;
+	private static final long	SEED			= 2014L;
+
+	private static final int[]	KEYS			= { Keys.SPACE, Keys.A, Keys.D, Keys.E, Keys.W, Keys.I, Keys.K,
+			Keys.J, Keys.L						};
+
+	public static void main(String[] args) throws IOException {
+		final String mode = (args.length > 0 ? args[0] : "check");
+
+		if ("record".equals(mode)) {
+			int ticks = (args.length > 2 ? Integer.parseInt(args[2]) : 3600);
+			int players = (args.length > 3 ? Integer.parseInt(args[3]) : 16);
+
+			InputRecording recording = record(players, ticks);
+			FileHandle file = new FileHandle(args[1]);
+			recording.write(file);
+
+			System.out.println("Recorded " + ticks + " ticks of " + players + " player(s) to " + file.path() + " in "
+					+ file.length() + " bytes.");
+		} else if ("replay".equals(mode)) {
+			replay(InputRecording.read(new FileHandle(args[1])), true);
+		} else {
+			InputRecording recording = record(16, 3600);
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			recording.write(bytes);
+			System.out.println("Recorded " + recording.getTickCount() + " ticks in " + bytes.size() + " bytes.");
+
+			recording = InputRecording.read(ByteBuffer.wrap(bytes.toByteArray()));
+
+			// warm up first
+			replay(recording, false);
+			replay(recording, true);
+		}
+	}
+
+	private static InputRecording record(int playerCount, int ticks) {
+		Random random = new Random(SEED);
+
+		World world = new World();
+		FixedStepClock clock = world.setManager(new FixedStepClock());
+		InputActions input = world.setManager(new InputActions());
+		InputRecorder recorder = world.setManager(new InputRecorder(SEED, clock.tickLength));
+		Entity[] players = createWorld(world, clock, playerCount);
+
+		boolean[] down = new boolean[KEYS.length];
+
+		for (int tick = 0; tick < ticks; tick++) {
+			for (int i = 0; i < KEYS.length; i++) {
+				if (random.nextFloat() < TOGGLE_CHANCE) {
+					down[i] = !down[i];
+
+					if (down[i]) {
+						input.keyDown(KEYS[i]);
+					} else {
+						input.keyUp(KEYS[i]);
+					}
+				}
+			}
+
+			clock.update(clock.tickLength);
+			recorder.getRecording().addChecksum(checksum(players));
+		}
+
+		return recorder.getRecording();
+	}
+
+	private static void replay(InputRecording recording, boolean report) {
+		final int ticks = recording.getTickCount();
+		final int playerCount = (ticks > 0 ? recording.getTickSize(0) : 0);
+
+		World world = new World();
+		FixedStepClock clock = world.setManager(new FixedStepClock());
+		world.setManager(new InputReplay(recording));
+		Entity[] players = createWorld(world, clock, playerCount);
+
+		int firstMismatch = -1;
+		int mismatches = 0;
+		long totalNanos = 0L;
+
+		for (int tick = 0; tick < ticks; tick++) {
+			long start = TimeUtils.nanoTime();
+			clock.update(clock.tickLength);
+			totalNanos += TimeUtils.nanoTime() - start;
+
+			if (tick < recording.getChecksumCount() && checksum(players) != recording.getChecksum(tick)) {
+				mismatches++;
+
+				if (firstMismatch < 0) {
+					firstMismatch = tick;
+				}
+			}
+		}
+
+		if (report) {
+			System.out.println("Replayed " + ticks + " ticks of " + playerCount + " player(s): "
+					+ (totalNanos / Math.max(1, ticks)) + "ns/tick.");
+
+			if (recording.getChecksumCount() == 0) {
+				System.out.println("  The recording has no checksums to check against.");
+			} else if (mismatches == 0) {
+				System.out.println("  Every tick matches the recording.");
+			} else {
+				System.out.println("  " + mismatches + " ticks DIFFER from the recording, the first being tick "
+						+ firstMismatch + ".");
+			}
+		}
+	}
+
+	/**
+	 * Adds the logic systems to the world, initialises it and adds the
+	 * players, each in the same place every time.
+	 */
+	private static Entity[] createWorld(World world, FixedStepClock clock, int playerCount) {
+		Random random = new Random(SEED);
+		TiledMap map = createMap(random);
+
+		clock.setLogicSystem(new PlayerInputSystem());
+		clock.setLogicSystem(new MovementSystem());
+		clock.setLogicSystem(new FlashlightSystem());
+		CollisionSystem collisionSystem = clock.setLogicSystem(new CollisionSystem(map, null));
+		world.initialize();
+
+		Entity[] players = new Entity[playerCount];
+		for (int i = 0; i < playerCount; i++) {
+			int tileX, tileY;
+
+			do {
+				tileX = random.nextInt(MAP_SIZE);
+				tileY = random.nextInt(MAP_SIZE);
+			} while (collisionSystem.isSolidTile(tileX, tileY));
+
+			Entity e = world.createEntity();
+			e.addComponent(new Position(tileX * TILE_SIZE, tileY * TILE_SIZE));
+			e.addComponent(new Velocity());
+			e.addComponent(new PlayerInputListener());
+			e.addComponent(new Facing());
+			e.addComponent(new Coloured());
+			e.addComponent(new Weight());
+			e.addComponent(new Solid(0.0f, 0.0f, TILE_SIZE - 8.0f, 5.0f));
+			e.addComponent(new Flashlight());
+
+			world.addEntity(e);
+			players[i] = e;
+		}
+
+		return players;
+	}
+
+	private static TiledMap createMap(Random random) {
+		TiledMap map = new TiledMap();
+
+		PackedTileLayer level = new PackedTileLayer(MAP_SIZE, MAP_SIZE, TILE_SIZE, TILE_SIZE, map.getTileSets());
+		level.setName("level");
+
+		for (int y = 0; y < MAP_SIZE; y++) {
+			for (int x = 0; x < MAP_SIZE; x++) {
+				if (y == 0 || random.nextFloat() < SOLID_CHANCE) {
+					level.set(x, y, PackedTileLayer.pack(1, false, false, 0));
+				}
+			}
+		}
+
+		map.getLayers().add(level);
+		return map;
+	}
+
+	private static int checksum(Entity[] players) {
+		int hash = 17;
+
+		for (Entity e : players) {
+			Position p = e.getComponent(Position.class);
+			Velocity v = e.getComponent(Velocity.class);
+
+			hash = hash * 31 + Float.floatToIntBits(p.position.x);
+			hash = hash * 31 + Float.floatToIntBits(p.position.y);
+			hash = hash * 31 + Float.floatToIntBits(v.velocity.x);
+			hash = hash * 31 + Float.floatToIntBits(v.velocity.y);
+		}
+
+		return hash;
+	}
+}
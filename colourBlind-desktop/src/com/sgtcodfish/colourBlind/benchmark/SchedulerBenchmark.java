@@ -0,0 +1,258 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import java.util.Random;
+
+import com.artemis.Entity;
+import com.artemis.World;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.FixedStepClock;
+import com.sgtcodfish.colourBlind.SystemScheduler;
+import com.sgtcodfish.colourBlind.WorkerPool;
+import com.sgtcodfish.colourBlind.components.Facing;
+import com.sgtcodfish.colourBlind.components.Flashlight;
+import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.components.Solid;
+import com.sgtcodfish.colourBlind.components.Velocity;
+import com.sgtcodfish.colourBlind.components.Weight;
+import com.sgtcodfish.colourBlind.systems.CollisionSystem;
+import com.sgtcodfish.colourBlind.systems.FlashlightSystem;
+import com.sgtcodfish.colourBlind.systems.MovementSystem;
+import com.sgtcodfish.colourBlind.systems.ScheduledSystem;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
+
+/**
+ * Runs the game's logic systems which don't need a window (movement,
+ * flashlights and collision) through a {@link FixedStepClock}: first one at a
+ * time with no {@link SystemScheduler}, then through a scheduler with no
+ * {@link WorkerPool}, then through a scheduler on pools of 1, 2, 4... threads
+ * up to the given maximum.
+ * 
+ * Prints the dependency graph the scheduler built from each system's
+ * {@link ScheduledSystem} declaration, and for each run the average time per
+ * tick, per system and along the critical path. Every run must leave every
+ * Entity and every tick's lights exactly as the first did, which is checked.
+ * 
+ * Runs without a window; usage: SchedulerBenchmark [entities] [ticks] [max
+ * threads]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class SchedulerBenchmark {
+	private static final int	MAP_SIZE		= 256;
+	private static final int	TILE_SIZE		= 32;
+	private static final float	SOLID_CHANCE	= 0.1f;
+	private static final float	MAX_SPEED		= 16.0f;
+	private static final float	START_CHANCE	= 0.01f;
+	private static final long	SEED			= 2014L;
+
+	// the number of floats describing each Entity in a run's result
+	private static final int	ENTITY_FLOATS	= 6;
+
+	// passed as the thread count for runs with no scheduler, or no pool
+	private static final int	NO_SCHEDULER	= -1;
+	private static final int	NO_POOL			= 0;
+
+	public static void main(String[] args) {
+		int entities = (args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+		int ticks = (args.length > 1 ? Integer.parseInt(args[1]) : 300);
+		int maxThreads = (args.length > 2 ? Integer.parseInt(args[2]) : Math.max(4, Runtime.getRuntime()
+				.availableProcessors()));
+
+		TiledMap map = createMap();
+
+		System.out.println(Runtime.getRuntime().availableProcessors() + " processors available.");
+
+		// warm up every path first
+		run(map, NO_SCHEDULER, entities, ticks / 10, false);
+		run(map, maxThreads, entities, ticks / 10, false);
+
+		Result sequential = run(map, NO_SCHEDULER, entities, ticks, true);
+		run(map, NO_POOL, entities, ticks, true).compare(sequential);
+
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			run(map, threads, entities, ticks, true).compare(sequential);
+		}
+	}
+
+	private static TiledMap createMap() {
+		Random random = new Random(SEED);
+		TiledMap map = new TiledMap();
+
+		PackedTileLayer level = new PackedTileLayer(MAP_SIZE, MAP_SIZE, TILE_SIZE, TILE_SIZE, map.getTileSets());
+		level.setName("level");
+
+		for (int y = 0; y < MAP_SIZE; y++) {
+			for (int x = 0; x < MAP_SIZE; x++) {
+				if (random.nextFloat() < SOLID_CHANCE) {
+					level.set(x, y, PackedTileLayer.pack(1, false, false, 0));
+				}
+			}
+		}
+
+		map.getLayers().add(level);
+		return map;
+	}
+
+	private static Result run(TiledMap map, int threads, int entityCount, int ticks, boolean report) {
+		Random random = new Random(SEED);
+
+		World world = new World();
+		FixedStepClock clock = world.setManager(new FixedStepClock());
+		SystemScheduler scheduler = null;
+		WorkerPool pool = null;
+
+		if (threads != NO_SCHEDULER) {
+			scheduler = world.setManager(new SystemScheduler());
+		}
+
+		if (threads > 0) {
+			pool = world.setManager(new WorkerPool(threads));
+		}
+
+		clock.setLogicSystem(new MovementSystem());
+		FlashlightSystem flashlightSystem = clock.setLogicSystem(new FlashlightSystem());
+		CollisionSystem collisionSystem = clock.setLogicSystem(new CollisionSystem(map, null));
+		world.initialize();
+
+		Entity[] entities = new Entity[entityCount];
+		for (int i = 0; i < entityCount; i++) {
+			int tileX, tileY;
+
+			do {
+				tileX = random.nextInt(MAP_SIZE);
+				tileY = random.nextInt(MAP_SIZE);
+			} while (collisionSystem.isSolidTile(tileX, tileY));
+
+			Entity e = world.createEntity();
+			e.addComponent(new Position(tileX * TILE_SIZE + 4.0f, tileY * TILE_SIZE + 4.0f));
+			e.addComponent(new Velocity());
+			e.addComponent(new Solid(0.0f, 0.0f, TILE_SIZE - 8.0f, TILE_SIZE - 8.0f));
+			e.addComponent(new Facing());
+			e.addComponent(new Flashlight(random.nextFloat() * 2.0f, random.nextFloat() * 2.0f));
+
+			if (random.nextBoolean()) {
+				e.addComponent(new Weight());
+			}
+
+			world.addEntity(e);
+			entities[i] = e;
+		}
+
+		world.setDelta(clock.tickLength);
+		world.process();
+
+		Result result = new Result();
+		long[] systemNanos = new long[3];
+		long criticalNanos = 0L;
+		long totalNanos = 0L;
+
+		for (int tick = 0; tick < ticks; tick++) {
+			for (Entity e : entities) {
+				if (tick % 50 == 0) {
+					e.getComponent(Velocity.class).velocity.set((random.nextFloat() * 2.0f - 1.0f) * MAX_SPEED,
+							random.nextFloat() * MAX_SPEED);
+				}
+
+				if (random.nextFloat() < START_CHANCE) {
+					e.getComponent(Flashlight.class).flagForStart();
+				}
+			}
+
+			long start = TimeUtils.nanoTime();
+			clock.update(clock.tickLength);
+			totalNanos += TimeUtils.nanoTime() - start;
+
+			if (scheduler != null) {
+				for (int i = 0; i < systemNanos.length; i++) {
+					systemNanos[i] += scheduler.getSystemNanos(i);
+				}
+
+				criticalNanos += scheduler.getCriticalPathNanos();
+			}
+
+			result.addLights(flashlightSystem);
+		}
+
+		result.setEntities(entities);
+
+		if (report) {
+			String name = (threads == NO_SCHEDULER ? "no scheduler" : (threads == NO_POOL ? "scheduler, no pool"
+					: "scheduler, " + threads + " thread(s)"));
+			System.out.println(name + ": " + (totalNanos / ticks / 1000L) + "us/tick");
+
+			if (scheduler != null) {
+				StringBuilder builder = new StringBuilder("  ");
+
+				for (int i = 0; i < scheduler.getSystemCount(); i++) {
+					builder.append(scheduler.getSystem(i).getClass().getSimpleName()).append(' ')
+							.append(systemNanos[i] / ticks / 1000L).append("us");
+
+					for (int j = 0; j < i; j++) {
+						if (scheduler.dependsOn(i, j)) {
+							builder.append(" (after ").append(scheduler.getSystem(j).getClass().getSimpleName())
+									.append(')');
+						}
+					}
+
+					builder.append(", ");
+				}
+
+				builder.append("critical path ").append(criticalNanos / ticks / 1000L).append("us/tick");
+				System.out.println(builder);
+			}
+		}
+
+		if (pool != null) {
+			pool.dispose();
+		}
+
+		return result;
+	}
+
+	private static class Result {
+		float[]	entities	= null;
+		long	lightsOn	= 0L;
+		long	lightHash	= 17L;
+
+		void addLights(FlashlightSystem flashlightSystem) {
+			lightsOn += flashlightSystem.lightsForShader;
+
+			for (int i = 0; i < flashlightSystem.lightsForShader * FlashlightSystem.FLASHLIGHT_FLOATS; i++) {
+				lightHash = lightHash * 31 + Float.floatToIntBits(flashlightSystem.lightList[i]);
+			}
+		}
+
+		void setEntities(Entity[] all) {
+			entities = new float[all.length * ENTITY_FLOATS];
+
+			for (int i = 0; i < all.length; i++) {
+				Position p = all[i].getComponent(Position.class);
+				Velocity v = all[i].getComponent(Velocity.class);
+				Flashlight f = all[i].getComponent(Flashlight.class);
+				final int offset = i * ENTITY_FLOATS;
+
+				entities[offset + 0] = p.position.x;
+				entities[offset + 1] = p.position.y;
+				entities[offset + 2] = v.velocity.x;
+				entities[offset + 3] = v.velocity.y;
+				entities[offset + 4] = f.onTime;
+				entities[offset + 5] = f.cooldownRemaining;
+			}
+		}
+
+		void compare(Result expected) {
+			int mismatches = 0;
+
+			for (int i = 0; i < expected.entities.length; i++) {
+				if (Float.floatToIntBits(expected.entities[i]) != Float.floatToIntBits(entities[i])) {
+					mismatches++;
+				}
+			}
+
+			final boolean lightsMatch = (expected.lightsOn == lightsOn && expected.lightHash == lightHash);
+			System.out.println("  " + mismatches + " values differ from running one at a time, lights "
+					+ (lightsMatch ? "match." : "DIFFER."));
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.sgtcodfish.colourBlind.benchmark;
+
+import java.util.Random;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer.Cell;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSet;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
+import com.sgtcodfish.colourBlind.tiled.PlatformLabels;
+
+/**
+ * Compares the memory used by a level's tile layers when stored as
+ * TiledMapTileLayers, with a Cell object per tile, and as
+ * {@link PackedTileLayer}s, with an int per tile, along with the time taken to
+ * scan every tile of each as the collision and colouring code does.
+ * 
+ * Each map has the same layers as a real level: a full background, a "level"
+ * layer a quarter full and a "platforms" and "door" layer which are mostly
+ * empty. Memory is measured as the growth in the used heap after a full
+ * collection, so run with a fixed heap (e.g. -Xms1g -Xmx1g) for steadier
+ * numbers.
+ * 
+ * Runs without a window; usage: TileLayerMemoryReport [size...]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class TileLayerMemoryReport {
+	private static final int[]		DEFAULT_SIZES	= { 256, 1024, 2048 };
+
+	private static final String[]	LAYER_NAMES		= { "bg", "level", "platforms", "door" };
+	private static final float[]	LAYER_DENSITIES	= { 1.0f, 0.25f, 0.1f, 0.001f };
+
+	private static final int		TILE_SIZE		= 32;
+	private static final int		TILE_COUNT		= 32;
+	private static final long		SEED			= 2014L;
+
+	public static void main(String[] args) {
+		int[] sizes = DEFAULT_SIZES;
+
+		if (args.length > 0) {
+			sizes = new int[args.length];
+
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		for (int size : sizes) {
+			report(size);
+		}
+	}
+
+	private static void report(int size) {
+		final long before = usedMemory();
+		TiledMap cellMap = createCellMap(size);
+		final long cellBytes = usedMemory() - before;
+
+		final long cellStart = TimeUtils.nanoTime();
+		final int cellCount = scanCells(cellMap);
+		final long cellTime = TimeUtils.nanoTime() - cellStart;
+
+		final long packStart = TimeUtils.nanoTime();
+		PackedTileLayer.packLayers(cellMap);
+		final long packTime = TimeUtils.nanoTime() - packStart;
+
+		// the map now only holds the packed layers, the Cells being garbage
+		final long packedBytes = usedMemory() - before;
+
+		final long packedStart = TimeUtils.nanoTime();
+		final int packedCount = scanPacked(cellMap);
+		final long packedTime = TimeUtils.nanoTime() - packedStart;
+
+		if (cellCount != packedCount) {
+			throw new IllegalStateException("Packed layers hold " + packedCount + " tiles but the Cells held "
+					+ cellCount + ".");
+		}
+
+		// labelling scans the platforms layer, as loading a level does
+		final long labelStart = TimeUtils.nanoTime();
+		PlatformLabels.label((PackedTileLayer) cellMap.getLayers().get("platforms"));
+		final long labelTime = TimeUtils.nanoTime() - labelStart;
+
+		System.out.println(size + "x" + size + " (" + cellCount + " tiles over " + LAYER_NAMES.length + " layers):");
+		System.out.println("  Cells:  " + (cellBytes / 1024) + "KiB, " + (cellTime / 1000) + "us to scan.");
+		System.out.println("  packed: " + (packedBytes / 1024) + "KiB, " + (packedTime / 1000) + "us to scan ("
+				+ (packTime / 1000) + "us to pack, " + (labelTime / 1000) + "us to label platforms).");
+	}
+
+	private static TiledMap createCellMap(int size) {
+		Random random = new Random(SEED);
+		TiledMap map = new TiledMap();
+
+		TiledMapTileSet tileSet = new TiledMapTileSet();
+		for (int id = 1; id <= TILE_COUNT; id++) {
+			TiledMapTile tile = new StaticTiledMapTile(new TextureRegion());
+			tile.setId(id);
+			tileSet.putTile(id, tile);
+		}
+		map.getTileSets().addTileSet(tileSet);
+
+		for (int i = 0; i < LAYER_NAMES.length; i++) {
+			TiledMapTileLayer layer = new TiledMapTileLayer(size, size, TILE_SIZE, TILE_SIZE);
+			layer.setName(LAYER_NAMES[i]);
+
+			for (int y = 0; y < size; y++) {
+				for (int x = 0; x < size; x++) {
+					if (random.nextFloat() < LAYER_DENSITIES[i]) {
+						Cell cell = new Cell();
+						cell.setTile(tileSet.getTile(1 + random.nextInt(TILE_COUNT)));
+						layer.setCell(x, y, cell);
+					}
+				}
+			}
+
+			map.getLayers().add(layer);
+		}
+
+		return map;
+	}
+
+	private static int scanCells(TiledMap map) {
+		int count = 0;
+
+		for (MapLayer mapLayer : map.getLayers()) {
+			TiledMapTileLayer layer = (TiledMapTileLayer) mapLayer;
+
+			for (int y = 0; y < layer.getHeight(); y++) {
+				for (int x = 0; x < layer.getWidth(); x++) {
+					if (layer.getCell(x, y) != null) {
+						count++;
+					}
+				}
+			}
+		}
+
+		return count;
+	}
+
+	private static int scanPacked(TiledMap map) {
+		int count = 0;
+
+		for (MapLayer mapLayer : map.getLayers()) {
+			final int[] tiles = ((PackedTileLayer) mapLayer).getTiles();
+
+			for (int i = 0; i < tiles.length; i++) {
+				if (tiles[i] != PackedTileLayer.EMPTY) {
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	private static long usedMemory() {
+		final Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,177 @@
+package com.sgtcodfish.colourBlind.tools;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Audio;
+import com.badlogic.gdx.Files;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Graphics;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.LifecycleListener;
+import com.badlogic.gdx.Net;
+import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.backends.lwjgl.LwjglFiles;
+import com.badlogic.gdx.utils.Clipboard;
+
+/**
+ * The least of an Application needed to run the game's logic without a window:
+ * files, logging and posted runnables, which are run straight away. Graphics,
+ * audio, input and networking are all null, so anything which needs them
+ * can't be used.
+ * 
+ * Call install() before using anything which logs or loads files through Gdx.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class HeadlessApplication implements Application {
+	private final Files	files		= new LwjglFiles();
+	private int			logLevel	= LOG_INFO;
+
+	/**
+	 * Creates an application and makes it the one Gdx uses.
+	 * 
+	 * @param logLevel
+	 *        The level to log at, e.g. Application.LOG_NONE.
+	 * @return The application.
+	 */
+	public static HeadlessApplication install(int logLevel) {
+		HeadlessApplication app = new HeadlessApplication();
+		app.setLogLevel(logLevel);
+
+		Gdx.app = app;
+		Gdx.files = app.files;
+		return app;
+	}
+
+	@Override
+	public ApplicationListener getApplicationListener() {
+		return null;
+	}
+
+	@Override
+	public Graphics getGraphics() {
+		return null;
+	}
+
+	@Override
+	public Audio getAudio() {
+		return null;
+	}
+
+	@Override
+	public Input getInput() {
+		return null;
+	}
+
+	@Override
+	public Files getFiles() {
+		return files;
+	}
+
+	@Override
+	public Net getNet() {
+		return null;
+	}
+
+	@Override
+	public void log(String tag, String message) {
+		if (logLevel >= LOG_INFO) {
+			System.out.println(tag + ": " + message);
+		}
+	}
+
+	@Override
+	public void log(String tag, String message, Throwable exception) {
+		if (logLevel >= LOG_INFO) {
+			System.out.println(tag + ": " + message);
+			exception.printStackTrace(System.out);
+		}
+	}
+
+	@Override
+	public void error(String tag, String message) {
+		if (logLevel >= LOG_ERROR) {
+			System.err.println(tag + ": " + message);
+		}
+	}
+
+	@Override
+	public void error(String tag, String message, Throwable exception) {
+		if (logLevel >= LOG_ERROR) {
+			System.err.println(tag + ": " + message);
+			exception.printStackTrace(System.err);
+		}
+	}
+
+	@Override
+	public void debug(String tag, String message) {
+		if (logLevel >= LOG_DEBUG) {
+			System.out.println(tag + ": " + message);
+		}
+	}
+
+	@Override
+	public void debug(String tag, String message, Throwable exception) {
+		if (logLevel >= LOG_DEBUG) {
+			System.out.println(tag + ": " + message);
+			exception.printStackTrace(System.out);
+		}
+	}
+
+	@Override
+	public void setLogLevel(int logLevel) {
+		this.logLevel = logLevel;
+	}
+
+	@Override
+	public int getLogLevel() {
+		return logLevel;
+	}
+
+	@Override
+	public ApplicationType getType() {
+		return ApplicationType.HeadlessDesktop;
+	}
+
+	@Override
+	public int getVersion() {
+		return 0;
+	}
+
+	@Override
+	public long getJavaHeap() {
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+
+	@Override
+	public long getNativeHeap() {
+		return getJavaHeap();
+	}
+
+	@Override
+	public Preferences getPreferences(String name) {
+		return null;
+	}
+
+	@Override
+	public Clipboard getClipboard() {
+		return null;
+	}
+
+	@Override
+	public void postRunnable(Runnable runnable) {
+		runnable.run();
+	}
+
+	@Override
+	public void exit() {
+	}
+
+	@Override
+	public void addLifecycleListener(LifecycleListener listener) {
+	}
+
+	@Override
+	public void removeLifecycleListener(LifecycleListener listener) {
+	}
+}
@@ -0,0 +1,155 @@
+package com.sgtcodfish.colourBlind.tools;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.artemis.Manager;
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.FixedStepClock;
+import com.sgtcodfish.colourBlind.HeadlessSimulation;
+import com.sgtcodfish.colourBlind.InputActions;
+import com.sgtcodfish.colourBlind.InputRecorder;
+import com.sgtcodfish.colourBlind.InputRecording;
+import com.sgtcodfish.colourBlind.InputReplay;
+import com.sgtcodfish.colourBlind.LevelEntityFactory;
+import com.sgtcodfish.colourBlind.components.PlayerInputListener;
+import com.sgtcodfish.colourBlind.components.Position;
+
+/**
+ * Plays the game's levels through a {@link HeadlessSimulation}, with no window
+ * or GPU, as fast as the CPU allows, and reports how many ticks it ran per
+ * second.
+ * 
+ * The player is driven either by a recording made with --record in the game
+ * or here, or by a bot which mashes the player's keys at random from a seed,
+ * which is useful for fuzzing; its run can be recorded too.
+ * 
+ * Usage: HeadlessRunner [level folder] [ticks] [--replay=file] [--record=file]
+ * [--seed=n] [--debug]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class HeadlessRunner {
+	private static final String	DEFAULT_FOLDER	= "colourBlind-android/assets/data/maps/";
+	private static final float	TOGGLE_CHANCE	= 0.05f;
+
+	public static void main(String[] args) {
+		ArrayList<String> positional = new ArrayList<String>();
+		String replayFile = null;
+		String recordFile = null;
+		long seed = 2014L;
+		boolean debug = false;
+
+		for (String s : args) {
+			if (s.startsWith("--replay=")) {
+				replayFile = s.substring("--replay=".length());
+			} else if (s.startsWith("--record=")) {
+				recordFile = s.substring("--record=".length());
+			} else if (s.startsWith("--seed=")) {
+				seed = Long.parseLong(s.substring("--seed=".length()));
+			} else if ("--debug".equals(s)) {
+				debug = true;
+			} else {
+				positional.add(s);
+			}
+		}
+
+		HeadlessApplication.install(debug ? Application.LOG_DEBUG : Application.LOG_ERROR);
+
+		String folder = (positional.size() > 0 ? positional.get(0) : DEFAULT_FOLDER);
+		int ticks = (positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 1000000);
+
+		ArrayList<Manager> managers = new ArrayList<Manager>();
+		InputActions bot = null;
+		InputRecorder recorder = null;
+
+		if (replayFile != null) {
+			InputReplay replay = new InputReplay(InputRecording.read(new FileHandle(replayFile)));
+			managers.add(replay);
+
+			if (positional.size() <= 1) {
+				ticks = replay.getRecording().getTickCount();
+			}
+		} else {
+			bot = new InputActions();
+			managers.add(bot);
+		}
+
+		if (recordFile != null) {
+			recorder = new InputRecorder(seed, 1.0f / FixedStepClock.DEFAULT_TICK_RATE);
+			managers.add(recorder);
+		}
+
+		LevelEntityFactory levelFactory = new LevelEntityFactory(folder);
+		HeadlessSimulation simulation = new HeadlessSimulation(levelFactory, managers.toArray(new Manager[managers
+				.size()]));
+
+		final long start = TimeUtils.nanoTime();
+		int run = 0;
+
+		if (bot != null) {
+			run = runBot(simulation, bot, seed, ticks);
+		} else {
+			run = simulation.run(ticks);
+		}
+
+		final long nanos = Math.max(1L, TimeUtils.nanoTime() - start);
+		final double ticksPerSecond = run / (nanos / 1000000000.0);
+
+		System.out.println("Ran " + run + " ticks in " + (nanos / 1000000L) + "ms: " + (long) ticksPerSecond
+				+ " ticks/s, " + (long) (ticksPerSecond * 60.0) + " ticks/minute, "
+				+ String.format("%.1f", ticksPerSecond / FixedStepClock.DEFAULT_TICK_RATE) + "x real time.");
+		System.out.println(simulation.getLevelsCompleted() + " level(s) completed"
+				+ (simulation.isFinished() ? ", every level finished" : "") + "; the player ended at "
+				+ simulation.getPlayer().getComponent(Position.class).position + ".");
+
+		if (recorder != null) {
+			recorder.getRecording().write(new FileHandle(recordFile));
+			System.out.println("Recorded " + recorder.getRecording().getTickCount() + " ticks to " + recordFile);
+		}
+
+		levelFactory.dispose();
+	}
+
+	/**
+	 * Runs the simulation with a bot which presses and lets go of each of the
+	 * player's default keys at random.
+	 * 
+	 * @return The number of ticks run.
+	 */
+	private static int runBot(HeadlessSimulation simulation, InputActions bot, long seed, int ticks) {
+		final int[][] bindings = { PlayerInputListener.DEFAULT_JUMP_KEYS, PlayerInputListener.DEFAULT_LEFT_KEYS,
+				PlayerInputListener.DEFAULT_RIGHT_KEYS, PlayerInputListener.DEFAULT_FLASHLIGHT_KEYS,
+				PlayerInputListener.DEFAULT_USE_KEYS, PlayerInputListener.DEFAULT_RED_KEYS,
+				PlayerInputListener.DEFAULT_BLUE_KEYS, PlayerInputListener.DEFAULT_GREEN_KEYS,
+				PlayerInputListener.DEFAULT_YELLOW_KEYS };
+
+		Random random = new Random(seed);
+		boolean[] down = new boolean[bindings.length];
+		int run = 0;
+
+		while (run < ticks) {
+			for (int i = 0; i < bindings.length; i++) {
+				if (random.nextFloat() < TOGGLE_CHANCE) {
+					down[i] = !down[i];
+
+					if (down[i]) {
+						bot.keyDown(bindings[i][0]);
+					} else {
+						bot.keyUp(bindings[i][0]);
+					}
+				}
+			}
+
+			if (!simulation.step()) {
+				break;
+			}
+
+			run++;
+		}
+
+		return run;
+	}
+}
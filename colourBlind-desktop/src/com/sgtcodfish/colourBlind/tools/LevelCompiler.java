@@ -0,0 +1,67 @@
+package com.sgtcodfish.colourBlind.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.sgtcodfish.colourBlind.tiled.CompiledLevel;
+
+/**
+ * Compiles every .tmx level in a folder into a {@link CompiledLevel} beside it,
+ * which the game then loads in preference to the .tmx file. Should be run
+ * whenever a level is changed, before packaging the game; a stale compiled
+ * level will be loaded instead of the edited .tmx file.
+ * 
+ * Runs without a window; usage: LevelCompiler [level folder]
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class LevelCompiler {
+	private static final String	DEFAULT_FOLDER	= "colourBlind-android/assets/data/maps";
+
+	public static void main(String[] args) throws IOException {
+		FileHandle folder = new FileHandle(new File(args.length > 0 ? args[0] : DEFAULT_FOLDER));
+
+		if (!folder.isDirectory()) {
+			System.err.println("Not a folder: " + folder.path());
+			System.exit(1);
+		}
+
+		int compiled = 0;
+		for (FileHandle tmxFile : folder.list(".tmx")) {
+			compile(tmxFile, CompiledLevel.compiledFileFor(tmxFile));
+			compiled++;
+		}
+
+		System.out.println("Compiled " + compiled + " levels in " + folder.path());
+	}
+
+	/**
+	 * Compiles a single level.
+	 * 
+	 * @param tmxFile
+	 *        The .tmx file to compile.
+	 * @param output
+	 *        The file to write the compiled level to.
+	 * @return The compiled level.
+	 * @throws IOException
+	 *         If either file can't be read or written.
+	 */
+	public static CompiledLevel compile(FileHandle tmxFile, FileHandle output) throws IOException {
+		CompiledLevel level = CompiledLevel.compile(tmxFile);
+		OutputStream stream = new BufferedOutputStream(output.write(false));
+
+		try {
+			level.write(stream);
+		} finally {
+			stream.close();
+		}
+
+		System.out.println(tmxFile.name() + " -> " + output.name() + " (" + tmxFile.length() + " -> "
+				+ output.length() + " bytes, " + level.platformCount + " platforms, "
+				+ (level.doorTiles != null ? level.doorTiles.length : 0) + " door tiles)");
+		return level;
+	}
+}
@@ -0,0 +1,186 @@
+package com.sgtcodfish.colourBlind.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import com.badlogic.gdx.Application;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.FixedStepClock;
+import com.sgtcodfish.colourBlind.collision.CollisionGrid;
+import com.sgtcodfish.colourBlind.collision.DoorTriggers;
+import com.sgtcodfish.colourBlind.collision.LevelAnalyser;
+import com.sgtcodfish.colourBlind.tiled.CompiledLevel;
+import com.sgtcodfish.colourBlind.tiled.LevelParser;
+import com.sgtcodfish.colourBlind.tiled.PlatformLabels;
+
+/**
+ * Checks with a {@link LevelAnalyser} that the door of every level can be
+ * reached with the level's own platform colours and with a number of random
+ * colourings, and reports the seeds of any colourings which make a level
+ * impossible, so they can be looked at with
+ * LevelEntityFactory.generatePlatformColours(map, seed).
+ * 
+ * Usage: SolvabilityChecker [level folder or .tmx file] [random colourings per
+ * level (default 100)] [--seed=n] [--plan] [--record=file] [--debug]
+ * 
+ * --plan prints the shortest way through each level with its own colours, and
+ * with a single level --record writes it as an input recording which can be
+ * replayed in the game.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class SolvabilityChecker {
+	private static final String	DEFAULT_FOLDER	= "colourBlind-android/assets/data/maps/";
+	private static final int	MAX_SEEDS_SHOWN	= 10;
+
+	public static void main(String[] args) {
+		ArrayList<String> positional = new ArrayList<String>();
+		String recordFile = null;
+		long seed = 2014L;
+		boolean plan = false;
+		boolean debug = false;
+
+		for (String s : args) {
+			if (s.startsWith("--record=")) {
+				recordFile = s.substring("--record=".length());
+			} else if (s.startsWith("--seed=")) {
+				seed = Long.parseLong(s.substring("--seed=".length()));
+			} else if ("--plan".equals(s)) {
+				plan = true;
+			} else if ("--debug".equals(s)) {
+				debug = true;
+			} else {
+				positional.add(s);
+			}
+		}
+
+		HeadlessApplication.install(debug ? Application.LOG_DEBUG : Application.LOG_ERROR);
+
+		FileHandle target = new FileHandle(positional.size() > 0 ? positional.get(0) : DEFAULT_FOLDER);
+		final int colourings = (positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 100);
+
+		FileHandle[] levels = null;
+		if (target.isDirectory()) {
+			levels = target.list(".tmx");
+			Arrays.sort(levels, new Comparator<FileHandle>() {
+				@Override
+				public int compare(FileHandle a, FileHandle b) {
+					return a.name().compareTo(b.name());
+				}
+			});
+		} else {
+			levels = new FileHandle[] { target };
+		}
+
+		if (recordFile != null && levels.length != 1) {
+			System.err.println("--record needs a single level.");
+			return;
+		}
+
+		final Random random = new Random(seed);
+		int impossible = 0;
+
+		for (FileHandle file : levels) {
+			CompiledLevel compiled = null;
+
+			try {
+				compiled = LevelParser.parseNow(file);
+			} catch (Exception e) {
+				System.out.println(file.name() + ": couldn't be parsed: " + e);
+				continue;
+			}
+
+			if (!compiled.isValidLevel()) {
+				System.out.println(file.name() + ": not a valid level.");
+				continue;
+			}
+
+			final TiledMap map = compiled.createMap(null);
+			final DoorTriggers doors = DoorTriggers.build(map, compiled.doorTiles);
+			final PlatformLabels platforms = compiled.labelPlatforms();
+			final LevelAnalyser analyser = new LevelAnalyser(CollisionGrid.build(map, platforms,
+					compiled.staticBitplane), doors);
+
+			long start = TimeUtils.nanoTime();
+			LevelAnalyser.Result result = analyser.analyse();
+			final long ownNanos = TimeUtils.nanoTime() - start;
+
+			System.out.println(file.name() + " (" + compiled.width + "x" + compiled.height + "), own colours (seed "
+					+ compiled.seed + "): " + describe(result, ownNanos));
+
+			if (plan && result.isReachable()) {
+				System.out.println("  " + result.describeActions());
+			}
+
+			if (recordFile != null && result.isReachable()) {
+				result.toRecording(seed, 1.0f / FixedStepClock.DEFAULT_TICK_RATE).write(new FileHandle(recordFile));
+				System.out.println("  Recorded " + result.getTicks() + " ticks to " + recordFile);
+			}
+
+			if (colourings <= 0) {
+				continue;
+			}
+
+			final ArrayList<Long> unreachable = new ArrayList<Long>();
+			int gaveUp = 0;
+			long totalNanos = 0L;
+			long worstNanos = 0L;
+
+			for (int i = 0; i < colourings; i++) {
+				final long colouringSeed = random.nextLong();
+				platforms.assignColours(colouringSeed);
+				analyser.setGrid(CollisionGrid.build(map, platforms, compiled.staticBitplane));
+
+				start = TimeUtils.nanoTime();
+				result = analyser.analyse();
+				final long nanos = TimeUtils.nanoTime() - start;
+
+				totalNanos += nanos;
+				worstNanos = Math.max(worstNanos, nanos);
+
+				if (!result.isReachable()) {
+					if (result.complete) {
+						unreachable.add(colouringSeed);
+					} else {
+						gaveUp++;
+					}
+				}
+			}
+
+			impossible += unreachable.size();
+
+			System.out.println("  " + (colourings - unreachable.size() - gaveUp) + "/" + colourings
+					+ " random colourings reachable" + (gaveUp > 0 ? ", " + gaveUp + " gave up" : "") + "; "
+					+ millis(totalNanos / colourings) + " average, " + millis(worstNanos) + " worst.");
+
+			if (!unreachable.isEmpty()) {
+				System.out.println("  Unreachable with seeds: "
+						+ unreachable.subList(0, Math.min(unreachable.size(), MAX_SEEDS_SHOWN))
+						+ (unreachable.size() > MAX_SEEDS_SHOWN ? " ..." : ""));
+			}
+		}
+
+		System.out.println(impossible + " impossible colouring(s) found.");
+	}
+
+	private static String describe(LevelAnalyser.Result result, long nanos) {
+		final String states = " (" + result.statesExpanded + "/" + result.statesFound + " states, " + millis(nanos)
+				+ ")";
+
+		if (result.isReachable()) {
+			return "door reached in " + result.getTicks() + " ticks" + states;
+		} else if (result.complete) {
+			return "door unreachable" + states;
+		} else {
+			return "gave up" + states;
+		}
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.2fms", nanos / 1000000.0);
+	}
+}
@@ -2,175 +2,232 @@ package com.sgtcodfish.colourBlind;
 
 import java.util.Random;
 
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
 
 /**
  * Holds a single colour which can be the colour of the flashlight or the
  * player, or a platform. The design is immutable.
  * 
+ * There's exactly one CBColour per {@link GameColour}, got with
+ * CBColour.get(GameColour), so CBColours can be compared with ==. The actual
+ * colour each one is drawn in comes from the palette, which defaults to the
+ * original game's colours and can be replaced from a data file with
+ * loadPalette, e.g. with one designed for colour vision deficiencies.
+ * 
+ * Each colour's Color and packed float bits are worked out once when the
+ * palette is set, so getting them allocates nothing.
+ * 
  * @author Ashley Davis (SgtCoDFish)
  */
 public class CBColour {
 	public enum GameColour {
 		RED, GREEN, BLUE, YELLOW, BLACK;
 
+		// indexed by ordinal
+		private static final int[]	NUMBERS	= { 0, 2, 1, 3, 5 };
+
 		public static String asString(GameColour gc) {
-			switch (gc) {
-			case RED:
-				return "RED";
-			case BLACK:
-				return "BLACK";
-			case BLUE:
-				return "BLUE";
-			case GREEN:
-				return "GREEN";
-			case YELLOW:
-				return "YELLOW";
-			default:
-				return "Wat"; // We shouldn't get here, really. That'd be bad.
-			}
+			return gc.name();
 		}
 
 		public static int toNumber(GameColour gc) {
-			switch (gc) {
-			case RED:
-				return 0;
-			case BLUE:
-				return 1;
-			case GREEN:
-				return 2;
-			case YELLOW:
-				return 3;
-			case BLACK:
-				return 5;
-			default:
-				return -1;
-			}
+			return NUMBERS[gc.ordinal()];
+		}
+	}
+
+	/** The palette used until another is loaded, as RGBA8888 by ordinal. */
+	private static final int[]			DEFAULT_PALETTE	= { 0xFF0000FF, 0x00CC00FF, 0x0000FFFF, 0xFFFF00FF,
+			0x000000FF									};
+
+	// the colours a random CBColour can be, and the order they cycle in.
+	private static final GameColour[]	CYCLE			= { GameColour.RED, GameColour.BLUE, GameColour.GREEN,
+			GameColour.YELLOW							};
+
+	private static final CBColour[]		instances;
+
+	// the seed is kept so that a run can be recorded and played back exactly
+	private static long					seed			= new Random().nextLong();
+	private static Random				random			= new Random(seed);
+
+	static {
+		final GameColour[] gameColours = GameColour.values();
+		instances = new CBColour[gameColours.length];
+
+		for (int i = 0; i < gameColours.length; i++) {
+			instances[i] = new CBColour(gameColours[i]);
 		}
+
+		setPalette(DEFAULT_PALETTE);
 	}
 
-	private GameColour		col		= null;
+	private final GameColour			col;
 
-	private static Random	random	= new Random();
+	// set from the palette; shared, so never handed out to be modified.
+	private final Color					colour			= new Color();
+	private float						packed			= 0.0f;
+
+	private CBColour(GameColour col) {
+		this.col = col;
+	}
 
 	/**
-	 * Creates a random CBColour in RED, GREEN, BLUE or YELLOW.
+	 * @param col
+	 *        The colour to get.
+	 * @return The CBColour for the given GameColour.
 	 */
-	public CBColour() {
-		int randCol = random.nextInt(4);
-		GameColour ncol = null;
-
-		switch (randCol) {
-		case 0:
-			ncol = GameColour.RED;
-			break;
-
-		case 1:
-			ncol = GameColour.BLUE;
-			break;
-
-		case 2:
-			ncol = GameColour.GREEN;
-			break;
-
-		case 3:
-			ncol = GameColour.YELLOW;
-			break;
-		}
+	public static CBColour get(GameColour col) {
+		return instances[col.ordinal()];
+	}
 
-		if (ncol == null) {
-			throw new GdxRuntimeException("Fatal error creating random CBColour.");
-		} else {
-			this.col = ncol;
-		}
+	/**
+	 * @return A random CBColour in RED, GREEN, BLUE or YELLOW.
+	 */
+	public static CBColour random() {
+		return random(random);
 	}
 
-	@Override
-	public boolean equals(Object other) {
-		if (other.getClass() == CBColour.class) {
-			if (((CBColour) other).getColour() == col) {
-				return true;
-			}
-		}
+	/**
+	 * Reseeds the Random used by random(), so that it gives the same colours
+	 * from here on as it did the last time it was given the seed.
+	 * 
+	 * @param seed
+	 *        The new seed.
+	 */
+	public static void setSeed(long seed) {
+		CBColour.seed = seed;
+		random.setSeed(seed);
+	}
 
-		return false;
+	/**
+	 * @return The seed last given to the Random used by random().
+	 */
+	public static long getSeed() {
+		return seed;
 	}
 
 	/**
-	 * Creates a CBColour with the specified GameColour
+	 * Chooses a random CBColour in RED, GREEN, BLUE or YELLOW with the given
+	 * Random, so that a seeded Random gives the same colours every time.
 	 * 
-	 * @param col
-	 *        The colour to use.
+	 * @param random
+	 *        The Random to choose the colour with.
+	 * @return The colour.
 	 */
-	public CBColour(GameColour col) {
-		this.col = col;
+	public static CBColour random(Random random) {
+		return get(CYCLE[random.nextInt(CYCLE.length)]);
 	}
 
 	/**
-	 * @param a
-	 *        The alpha value of the colour returned.
-	 * @return A Gdx Color associated with this GameColour, with an alpha value
-	 *         of a.
+	 * Replaces the palette with the colours in a JSON file, which maps
+	 * GameColour names to hex colours in RRGGBB or RRGGBBAA form, e.g.
+	 * <code>{ "RED": "D55E00", "GREEN": "009E73" }</code>. Colours the file
+	 * doesn't mention keep their current value.
+	 * 
+	 * Only colours packed after the palette is loaded will use it, so it should
+	 * be loaded before any levels are.
+	 * 
+	 * @param file
+	 *        The palette file.
 	 */
-	public Color toGdxColour(float a) {
-		switch (col) {
-		case RED:
-			return new Color(1.0f, 0.0f, 0.0f, a);
+	public static void loadPalette(FileHandle file) {
+		JsonValue root = new JsonReader().parse(file);
+		final int[] palette = new int[instances.length];
 
-		case BLUE:
-			return new Color(0.0f, 0.0f, 1.0f, a);
+		for (int i = 0; i < instances.length; i++) {
+			palette[i] = Color.rgba8888(instances[i].colour);
+		}
 
-		case GREEN:
-			return new Color(0.0f, 0.8f, 0.0f, a);
+		for (JsonValue entry = root.child(); entry != null; entry = entry.next()) {
+			GameColour gc = null;
 
-		case YELLOW:
-			return new Color(1.0f, 1.0f, 0.0f, a);
+			try {
+				gc = GameColour.valueOf(entry.name());
+			} catch (IllegalArgumentException e) {
+				throw new GdxRuntimeException("Unknown colour in palette " + file.path() + ": " + entry.name(), e);
+			}
+
+			palette[gc.ordinal()] = Color.rgba8888(Color.valueOf(entry.asString()));
+		}
 
-		case BLACK:
-			return new Color(0.0f, 0.0f, 0.0f, a);
+		setPalette(palette);
+	}
 
-		default:
-			return null;
+	/**
+	 * Restores the original game's palette.
+	 */
+	public static void resetPalette() {
+		setPalette(DEFAULT_PALETTE);
+	}
+
+	private static void setPalette(int[] palette) {
+		for (int i = 0; i < instances.length; i++) {
+			Color.rgba8888ToColor(instances[i].colour, palette[i]);
+			instances[i].packed = instances[i].colour.toFloatBits();
 		}
 	}
 
+	/**
+	 * @param a
+	 *        The alpha value of the colour returned.
+	 * @return A new Gdx Color associated with this GameColour, with an alpha
+	 *         value of a. Prefer toFloatBits(float) where a packed colour will
+	 *         do, since it doesn't allocate.
+	 */
+	public Color toGdxColour(float a) {
+		return new Color(colour.r, colour.g, colour.b, a);
+	}
+
 	/**
 	 * For cycling through numbers, maps red->blue->green->yellow->red.
 	 * 
-	 * @return The next colour
+	 * @return The next colour; BLACK stays BLACK.
 	 */
-	public void nextColour() {
-		switch (col) {
-		case RED:
-			col = GameColour.BLUE;
-			break;
-		case BLUE:
-			col = GameColour.GREEN;
-			break;
-		case GREEN:
-			col = GameColour.YELLOW;
-			break;
-		case YELLOW:
-			col = GameColour.RED;
-			break;
-		case BLACK:
-			col = GameColour.BLACK;
-			break;
-		default:
-			throw new GdxRuntimeException("Call to nextColour() with invalid colour input.");
+	public CBColour nextColour() {
+		for (int i = 0; i < CYCLE.length; i++) {
+			if (CYCLE[i] == col) {
+				return get(CYCLE[(i + 1) % CYCLE.length]);
+			}
 		}
+
+		return this;
 	}
 
 	/**
 	 * @return Returns the Gdx Color associated with this GameColour with an
-	 *         alpha value of 1.0f.
+	 *         alpha value of 1.0f. The Color is shared and must not be
+	 *         modified.
 	 */
 	public Color toGdxColour() {
-		return toGdxColour(1.0f);
+		return colour;
+	}
+
+	/**
+	 * @return This colour with an alpha of 1.0f, packed with Color.toFloatBits.
+	 */
+	public float toFloatBits() {
+		return packed;
+	}
+
+	/**
+	 * @param a
+	 *        The alpha value to pack.
+	 * @return This colour with the given alpha, packed with
+	 *         Color.toFloatBits, without allocating a Color.
+	 */
+	public float toFloatBits(float a) {
+		return Color.toFloatBits(colour.r, colour.g, colour.b, a);
 	}
 
 	public GameColour getColour() {
 		return col;
 	}
+
+	@Override
+	public String toString() {
+		return col.name();
+	}
 }
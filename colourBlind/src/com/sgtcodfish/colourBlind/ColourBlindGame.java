@@ -1,26 +1,30 @@
 package com.sgtcodfish.colourBlind;
 
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
-
 import com.artemis.Entity;
 import com.artemis.World;
 import com.badlogic.gdx.Application;
+import com.badlogic.gdx.Application.ApplicationType;
 import com.badlogic.gdx.ApplicationListener;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
-import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
 import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.sgtcodfish.colourBlind.components.HumanoidAnimatedSprite;
+import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.components.Solid;
+import com.sgtcodfish.colourBlind.components.Velocity;
 import com.sgtcodfish.colourBlind.systems.CollisionSystem;
 import com.sgtcodfish.colourBlind.systems.FlashlightSystem;
 import com.sgtcodfish.colourBlind.systems.HumanoidAnimatedSpriteRenderingSystem;
 import com.sgtcodfish.colourBlind.systems.MovementSystem;
 import com.sgtcodfish.colourBlind.systems.PlayerInputSystem;
 import com.sgtcodfish.colourBlind.systems.TiledMapRenderingSystem;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
 
 /**
  * Colour Blind, game entry for Global Game Jam 2014 by the University of
@@ -39,6 +43,20 @@ public class ColourBlindGame implements ApplicationListener {
 	// if the game was loaded without sounds you can't start them
 	private static boolean			USE_SOUND		= true;
 
+	// the palette file to load colours from; set before create() is called
+	public static String			PALETTE			= "data/palettes/default.json";
+
+	// local files to record input to, or to play it back from instead of the
+	// keyboard; set before create() is called
+	public static String			RECORD_FILE		= null;
+	public static String			REPLAY_FILE		= null;
+
+	/**
+	 * The number of frames after a door is used over which the longest frame
+	 * is measured, to catch any hitch from changing level.
+	 */
+	public static final int			TRANSITION_SPAN	= 30;
+
 	public World					world			= null;
 	private PlayerEntityFactory		playerFactory	= null;
 
@@ -52,6 +70,24 @@ public class ColourBlindGame implements ApplicationListener {
 	private ShaderProgram			colourShader	= null;
 
 	private BGM						bgm				= null;
+	private GlowEffect				glow			= null;
+
+	private FixedStepClock			clock			= null;
+	private RenderQueue				renderQueue		= null;
+	private DoorManager				doorManager		= null;
+	private WorkerPool				workerPool		= null;
+	private SystemScheduler			scheduler		= null;
+	private InputActions			inputActions	= null;
+	private InputRecorder			recorder		= null;
+	private InputReplay				replay			= null;
+	private float					drawCallTimer	= 0.0f;
+
+	// set when a door has been used but the next level isn't ready yet
+	private boolean					levelPending	= false;
+
+	private int						transitionLeft	= 0;
+	private long					longestFrame	= 0L;
+	private long					lastLongest		= 0L;
 
 	public ColourBlindGame() {
 		this(false, true, false);
@@ -70,6 +106,22 @@ public class ColourBlindGame implements ApplicationListener {
 		ColourBlindGame.USE_GLOW = glow;
 	}
 
+	/**
+	 * Loads the colours of the game from PALETTE, falling back to the built in
+	 * colours if the file doesn't exist. Must happen before any levels are
+	 * loaded, since their platforms' colours are packed as they load.
+	 */
+	private void loadPalette() {
+		FileHandle paletteFile = Gdx.files.internal(PALETTE);
+
+		if (paletteFile.exists()) {
+			CBColour.loadPalette(paletteFile);
+			Gdx.app.debug("PALETTE", "Loaded palette " + PALETTE);
+		} else {
+			Gdx.app.debug("PALETTE", "Palette " + PALETTE + " not found, using built in colours.");
+		}
+	}
+
 	@Override
 	public void create() {
 		ShaderProgram.pedantic = false;
@@ -85,6 +137,8 @@ public class ColourBlindGame implements ApplicationListener {
 		camera.update();
 		batch = new SpriteBatch();
 
+		loadPalette();
+		setupRecording();
 		levelFactory = new LevelEntityFactory(batch, "data/maps/");
 
 		loadShaders();
@@ -99,22 +153,49 @@ public class ColourBlindGame implements ApplicationListener {
 		playerEntity = playerFactory.createPlayerEntity(world, true);
 		levelEntity = levelFactory.generateNextLevelEntity(world);
 
-		float playerHeight = (float) PlayerEntityFactory.DEFAULT_PLAYER_TEXTURE_HEIGHT;
-		float numCells = 2.5f; // number of tiles high the player should be when
-								// rendered.
-		float cellHeight = numCells
-				* ((TiledMapTileLayer) levelFactory.getCurrentMap().getLayers().get(0)).getTileHeight();
-		float scalingFactor = 1 / (playerHeight / cellHeight);
+		float scalingFactor = PlayerEntityFactory.getScalingFactor(((PackedTileLayer) levelFactory.getCurrentMap()
+				.getLayers().get(0)).getTileHeight());
 
 		Gdx.app.debug("SCALE_FACTOR", "Player scaling factor set to: " + scalingFactor);
-		playerEntity.getComponent(HumanoidAnimatedSprite.class).setScalingFactor(scalingFactor);
+		HumanoidAnimatedSprite playerSprite = playerEntity.getComponent(HumanoidAnimatedSprite.class);
+		playerSprite.setScalingFactor(scalingFactor);
+
+		// collide using the size the player is actually drawn at
+		playerEntity.getComponent(Solid.class).rect.setSize(playerSprite.width, playerSprite.height);
+
+		clock = world.setManager(new FixedStepClock());
+		renderQueue = world.setManager(new RenderQueue());
+		doorManager = world.setManager(new DoorManager());
+		workerPool = world.setManager(new WorkerPool());
+		scheduler = world.setManager(new SystemScheduler());
+		if (replay != null) {
+			world.setManager(replay);
+		} else {
+			inputActions = world.setManager(new InputActions());
+			Gdx.input.setInputProcessor(inputActions);
+		}
+
+		if (recorder != null) {
+			world.setManager(recorder);
+		}
+
+		doorManager.setDoors(levelFactory.getCurrentDoorTriggers());
+		renderQueue.setShaderSetup(colourShader, new RenderQueue.ShaderSetup() {
+			@Override
+			public void setup(ShaderProgram program, int layer) {
+				world.getSystem(FlashlightSystem.class).setupShaderUniforms(program);
+				program.setUniformf("platform", (layer == RenderQueue.LAYER_PLATFORMS ? 1.0f : 0.0f));
+			}
+		});
 
-		world.setSystem(new PlayerInputSystem());
-		world.setSystem(new MovementSystem());
-		world.setSystem(new FlashlightSystem());
-		world.setSystem(new CollisionSystem(levelFactory.getCurrentMap()));
-		world.setSystem(new TiledMapRenderingSystem(camera, batch, colourShader));
-		world.setSystem(new HumanoidAnimatedSpriteRenderingSystem(camera, batch, colourShader));
+		clock.setLogicSystem(new PlayerInputSystem());
+		clock.setLogicSystem(new MovementSystem());
+		clock.setLogicSystem(new FlashlightSystem());
+		clock.setLogicSystem(new CollisionSystem(levelFactory.getCurrentCollisionGrid()));
+		// sprites go first so that the camera has followed the player before
+		// the level is culled; the queue puts them back on top when flushed.
+		clock.setFrameSystem(new HumanoidAnimatedSpriteRenderingSystem(camera, batch, colourShader));
+		clock.setFrameSystem(new TiledMapRenderingSystem(camera, batch, colourShader));
 
 		world.initialize();
 
@@ -124,19 +205,137 @@ public class ColourBlindGame implements ApplicationListener {
 
 	@Override
 	public void render() {
+		final long frameStart = TimeUtils.nanoTime();
 		float deltaTime = Gdx.graphics.getDeltaTime();
-		world.setDelta(deltaTime);
+
+		// a replay runs one tick per frame, so that level changes fall between
+		// the same ticks as they did when recorded
+		if (replay != null) {
+			deltaTime = clock.tickLength;
+		}
+
+		// let the next level carry on loading in the background
+		levelFactory.update();
+
+		if (replay != null) {
+			// a replay changes level before exactly the same ticks as were
+			// recorded, waiting for the level if it has to, whatever the doors say
+			doorManager.consumeDoorUsed();
+
+			while (replay.consumeLevelChange()) {
+				levelFactory.finishNextLevel();
+				transitionLeft = TRANSITION_SPAN;
+				longestFrame = 0L;
+
+				if (nextLevel()) {
+					Gdx.app.exit();
+					return;
+				}
+			}
+		} else {
+			if (doorManager.consumeDoorUsed() && !levelPending) {
+				levelPending = true;
+				transitionLeft = TRANSITION_SPAN;
+				longestFrame = 0L;
+			}
+
+			// the level only changes between ticks, once the next one is ready
+			if (levelPending && levelFactory.isNextLevelReady()) {
+				levelPending = false;
+
+				if (nextLevel()) {
+					Gdx.app.exit();
+					return;
+				}
+			}
+		}
+
+		if (glow != null) {
+			glow.begin();
+		}
 
 		Gdx.gl.glClearColor(0.6f, 0.6f, 0.6f, 1.0f);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
-		world.process();
+		clock.update(deltaTime);
+		world.getSystem(FlashlightSystem.class).updateLightGrid(camera);
+		renderQueue.flush(batch);
 
+		if (glow != null) {
+			glow.end(batch, deltaTime);
+		}
+
+		if (transitionLeft > 0) {
+			measureTransitionFrame(TimeUtils.nanoTime() - frameStart);
+		}
+
+		if (DEBUG) {
+			drawCallTimer += deltaTime;
+
+			if (drawCallTimer >= 1.0f) {
+				drawCallTimer = 0.0f;
+				Gdx.app.debug("RENDER", "Draw calls last frame: " + renderQueue.getDrawCallsLastFrame());
+				Gdx.app.debug("SCHEDULER", scheduler.describeLastTick());
+			}
+		}
 	}
 
-	// returns true to exit
+	/**
+	 * Moves on to the next level, putting the player back at the start. The
+	 * level should have been prepared by the level factory ahead of time, in
+	 * which case this only swaps references: the level's renderer, collision
+	 * grid and doors were all built before the door was used.
+	 * 
+	 * @return True if there are no more levels, in which case the game should
+	 *         exit.
+	 */
 	public boolean nextLevel() {
-		throw new NotImplementedException();
+		Entity nextLevelEntity = levelFactory.generateNextLevelEntity(world);
+
+		if (nextLevelEntity == null) {
+			return true;
+		}
+
+		levelEntity.deleteFromWorld();
+		levelEntity = nextLevelEntity;
+		world.addEntity(levelEntity);
+
+		world.getSystem(CollisionSystem.class).setGrid(levelFactory.getCurrentCollisionGrid());
+		doorManager.setDoors(levelFactory.getCurrentDoorTriggers());
+
+		playerEntity.getComponent(Position.class).teleport(PlayerEntityFactory.INITIAL_X,
+				PlayerEntityFactory.INITIAL_Y);
+		playerEntity.getComponent(Velocity.class).velocity.set(0.0f, 0.0f);
+
+		if (recorder != null) {
+			recorder.recordLevelChange();
+		}
+
+		Gdx.app.debug("NEXT_LEVEL", "Moved on to the next level.");
+		return false;
+	}
+
+	/**
+	 * Records how long a frame during a level transition took, logging the
+	 * longest once the transition is over.
+	 */
+	private void measureTransitionFrame(long frameTime) {
+		longestFrame = Math.max(longestFrame, frameTime);
+		transitionLeft--;
+
+		if (transitionLeft == 0) {
+			lastLongest = longestFrame;
+			Gdx.app.debug("NEXT_LEVEL", "Longest frame during transition: " + (lastLongest / 1000L) + "us");
+		}
+	}
+
+	/**
+	 * @return The time taken by the longest frame during the last level
+	 *         transition, in nanoseconds, or 0 if there hasn't been one. Only
+	 *         the time spent in render() is counted, not waiting for vsync.
+	 */
+	public long getLongestTransitionFrame() {
+		return lastLongest;
 	}
 
 	@Override
@@ -151,6 +350,35 @@ public class ColourBlindGame implements ApplicationListener {
 			bgm.dispose();
 		if (levelFactory != null)
 			levelFactory.dispose();
+		if (glow != null)
+			glow.dispose();
+		if (world != null && world.getSystem(FlashlightSystem.class) != null)
+			world.getSystem(FlashlightSystem.class).dispose();
+		if (workerPool != null)
+			workerPool.dispose();
+		if (recorder != null)
+			saveRecording();
+	}
+
+	/**
+	 * Starts recording input to RECORD_FILE, or loads the recording in
+	 * REPLAY_FILE to play back, if either is set. Must happen before anything
+	 * random is chosen, since both reseed CBColour.
+	 */
+	protected void setupRecording() {
+		if (REPLAY_FILE != null) {
+			replay = new InputReplay(InputRecording.read(Gdx.files.local(REPLAY_FILE)));
+			Gdx.app.debug("REPLAY", "Replaying " + replay.getRecording().getTickCount() + " ticks from " + REPLAY_FILE);
+		} else if (RECORD_FILE != null) {
+			recorder = new InputRecorder();
+			Gdx.app.debug("RECORD", "Recording input to " + RECORD_FILE);
+		}
+	}
+
+	private void saveRecording() {
+		InputRecording recording = recorder.getRecording();
+		recording.write(Gdx.files.local(RECORD_FILE));
+		Gdx.app.debug("RECORD", "Recorded " + recording.getTickCount() + " ticks to " + RECORD_FILE);
 	}
 
 	protected void setupSound() {
@@ -167,7 +395,12 @@ public class ColourBlindGame implements ApplicationListener {
 
 	protected void setupGlow() {
 		if (USE_GLOW) {
-			Gdx.app.debug("LOAD_GLOW", "Glow effect enabled.");
+			// the android build gets the cheaper glow
+			GlowEffect.Quality quality = (Gdx.app.getType() == ApplicationType.Android ? GlowEffect.Quality.LOW
+					: GlowEffect.Quality.HIGH);
+
+			glow = new GlowEffect(quality, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+			Gdx.app.debug("LOAD_GLOW", "Glow effect enabled at " + quality + " quality.");
 		}
 	}
 
@@ -190,10 +423,18 @@ public class ColourBlindGame implements ApplicationListener {
 	public void resize(int width, int height) {
 		camera.setToOrtho(false, width, height);
 		camera.update();
+
+		if (glow != null) {
+			glow.resize(width, height);
+		}
 	}
 
 	@Override
 	public void pause() {
+		// keys let go of while paused are never reported as going up
+		if (inputActions != null) {
+			inputActions.clear();
+		}
 	}
 
 	@Override
@@ -0,0 +1,70 @@
+package com.sgtcodfish.colourBlind;
+
+import com.artemis.Manager;
+import com.badlogic.gdx.math.Rectangle;
+import com.sgtcodfish.colourBlind.collision.DoorTriggers;
+
+/**
+ * Tracks the doors of the level being played, and whether one has been used.
+ * Using a door only raises a flag; the level is changed by whoever takes the
+ * flag with consumeDoorUsed(), outside of the world's systems, so that no
+ * system ever sees half of one level and half of the next.
+ * 
+ * The manager can be found through world.getManager(DoorManager.class).
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class DoorManager extends Manager {
+	private DoorTriggers	doors		= null;
+	private boolean			doorUsed	= false;
+
+	@Override
+	protected void initialize() {
+	}
+
+	/**
+	 * Sets the doors of the level being played, clearing any door use which
+	 * hasn't been taken yet.
+	 * 
+	 * @param doors
+	 *        The doors, or null if the level has none.
+	 */
+	public void setDoors(DoorTriggers doors) {
+		this.doors = doors;
+		this.doorUsed = false;
+	}
+
+	public DoorTriggers getDoors() {
+		return doors;
+	}
+
+	/**
+	 * Uses a door if the given box is touching one.
+	 * 
+	 * @param x
+	 *        The x coordinate of the owner of rect.
+	 * @param y
+	 *        The y coordinate of the owner of rect.
+	 * @param rect
+	 *        The box, relative to (x, y).
+	 * @return True if a door was used.
+	 */
+	public boolean use(float x, float y, Rectangle rect) {
+		if (doors != null && doors.overlaps(x, y, rect)) {
+			doorUsed = true;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return True if a door has been used since this was last called, in
+	 *         which case the level should be changed.
+	 */
+	public boolean consumeDoorUsed() {
+		final boolean used = doorUsed;
+		doorUsed = false;
+		return used;
+	}
+}
@@ -0,0 +1,183 @@
+package com.sgtcodfish.colourBlind;
+
+import com.artemis.EntitySystem;
+import com.artemis.Manager;
+import com.artemis.World;
+import com.artemis.utils.Bag;
+
+/**
+ * Drives a {@link World} with a fixed-step accumulator. Logic systems are
+ * registered through the clock, which adds them to the world as passive
+ * systems and then processes them a whole number of times per frame at a
+ * fixed tick length. Rendering systems are registered through the clock too,
+ * and are processed once per frame after that frame's ticks.
+ * 
+ * Each frame starts with World.process(), so entities added, changed or
+ * deleted since the last frame are seen by the first tick which follows
+ * rather than a frame late; any system added to the world directly is
+ * processed then, before the ticks.
+ * 
+ * Renderers should draw positions interpolated by getAlpha() between the last
+ * two ticks, so that motion stays smooth whatever the ratio of frame rate to
+ * tick rate.
+ * 
+ * If the world has a {@link SystemScheduler}, each tick's logic systems are
+ * run by it, so that systems which don't conflict can run at the same time;
+ * otherwise they're run one at a time in order.
+ * 
+ * The clock is a {@link Manager}, so systems can find it through
+ * world.getManager(FixedStepClock.class).
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class FixedStepClock extends Manager {
+	/** The tick rate the game's physics constants were tuned for. */
+	public static final float		DEFAULT_TICK_RATE				= 60.0f;
+
+	/**
+	 * The most ticks that will be run in one frame; any more time than that is
+	 * dropped rather than letting a slow frame snowball into slower frames.
+	 */
+	public static final int			DEFAULT_MAX_TICKS_PER_FRAME		= 5;
+
+	public final float				tickLength;
+	public final int				maxTicksPerFrame;
+
+	private final Bag<EntitySystem>	logicSystems					= new Bag<EntitySystem>();
+	private final Bag<EntitySystem>	frameSystems					= new Bag<EntitySystem>();
+	private SystemScheduler			scheduler						= null;
+
+	private float					accumulator						= 0.0f;
+	private float					alpha							= 1.0f;
+
+	private long					tickCount						= 0L;
+	private int						ticksLastFrame					= 0;
+
+	/**
+	 * Creates a clock with the default tick rate and tick cap.
+	 */
+	public FixedStepClock() {
+		this(DEFAULT_TICK_RATE, DEFAULT_MAX_TICKS_PER_FRAME);
+	}
+
+	/**
+	 * Creates a clock which runs logic at the given rate.
+	 * 
+	 * @param tickRate
+	 *        The number of logic ticks per second.
+	 * @param maxTicksPerFrame
+	 *        The maximum number of ticks to run in any one frame.
+	 */
+	public FixedStepClock(float tickRate, int maxTicksPerFrame) {
+		if (tickRate <= 0.0f || maxTicksPerFrame <= 0) {
+			throw new IllegalArgumentException("FixedStepClock needs a positive tick rate and tick cap.");
+		}
+
+		this.tickLength = 1.0f / tickRate;
+		this.maxTicksPerFrame = maxTicksPerFrame;
+	}
+
+	@Override
+	protected void initialize() {
+		scheduler = world.getManager(SystemScheduler.class);
+	}
+
+	/**
+	 * Adds a system to the world which will be processed once per tick rather
+	 * than once per frame. Systems are processed in the order they were added.
+	 * Must be called after this clock has been set as a manager of the world.
+	 * 
+	 * @param system
+	 *        The logic system to add.
+	 * @return The added system.
+	 */
+	public <T extends EntitySystem> T setLogicSystem(T system) {
+		world.setSystem(system, true);
+		logicSystems.add(system);
+
+		return system;
+	}
+
+	/**
+	 * Adds a system to the world which will be processed once per frame, after
+	 * the frame's logic ticks. Systems are processed in the order they were
+	 * added. Must be called after this clock has been set as a manager of the
+	 * world.
+	 * 
+	 * @param system
+	 *        The frame (e.g. rendering) system to add.
+	 * @return The added system.
+	 */
+	public <T extends EntitySystem> T setFrameSystem(T system) {
+		world.setSystem(system, true);
+		frameSystems.add(system);
+
+		return system;
+	}
+
+	/**
+	 * Processes the world to bring in any entity changes, runs as many logic
+	 * ticks as the elapsed time allows, then processes the frame systems.
+	 * 
+	 * @param frameDelta
+	 *        The time in seconds since the last frame.
+	 */
+	public void update(float frameDelta) {
+		accumulator += frameDelta;
+		ticksLastFrame = 0;
+
+		world.setDelta(frameDelta);
+		world.process();
+
+		world.setDelta(tickLength);
+
+		while (accumulator >= tickLength) {
+			if (ticksLastFrame >= maxTicksPerFrame) {
+				accumulator = 0.0f;
+				break;
+			}
+
+			if (scheduler != null) {
+				scheduler.process(logicSystems);
+			} else {
+				for (int i = 0; i < logicSystems.size(); i++) {
+					logicSystems.get(i).process();
+				}
+			}
+
+			accumulator -= tickLength;
+			ticksLastFrame++;
+			tickCount++;
+		}
+
+		alpha = accumulator / tickLength;
+
+		world.setDelta(frameDelta);
+
+		for (int i = 0; i < frameSystems.size(); i++) {
+			frameSystems.get(i).process();
+		}
+	}
+
+	/**
+	 * @return How far the current frame is between the last tick and the next,
+	 *         from 0.0f to 1.0f.
+	 */
+	public float getAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * @return The total number of ticks run by this clock.
+	 */
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	/**
+	 * @return The number of ticks run during the last call to update.
+	 */
+	public int getTicksLastFrame() {
+		return ticksLastFrame;
+	}
+}
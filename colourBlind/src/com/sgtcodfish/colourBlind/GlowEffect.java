@@ -0,0 +1,273 @@
+package com.sgtcodfish.colourBlind;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Makes coloured parts of the scene glow. The scene is drawn into a frame
+ * buffer between begin() and end(); end() then:
+ * <ol>
+ * <li>Draws the scene to the screen.</li>
+ * <li>Extracts the strongly coloured pixels into a downsampled buffer.</li>
+ * <li>Blurs them horizontally then vertically with blur.glslf.</li>
+ * <li>Adds the blurred result on top of the scene.</li>
+ * </ol>
+ * 
+ * All the frame buffers are kept from frame to frame, and only recreated when
+ * resize() is called with a new size.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class GlowEffect implements Disposable {
+	/**
+	 * How much work the glow does. The downsample factor divides each side of
+	 * the screen for the blur buffers, so 2 means a quarter of the pixels.
+	 */
+	public enum Quality {
+		/** Quarter resolution, 9 tap blur, 8 bits per channel. */
+		HIGH(2, false, Format.RGBA8888),
+
+		/**
+		 * Sixteenth resolution, 5 tap blur taking advantage of linear
+		 * filtering, 16 bit colour which every GLES2 device can render to.
+		 */
+		LOW(4, true, Format.RGB565);
+
+		public final int		downsample;
+		public final boolean	fewerTaps;
+		public final Format		format;
+
+		private Quality(int downsample, boolean fewerTaps, Format format) {
+			this.downsample = downsample;
+			this.fewerTaps = fewerTaps;
+			this.format = format;
+		}
+	}
+
+	/** How saturated a pixel has to be before it glows, from 0.0f to 1.0f. */
+	public static final float	DEFAULT_THRESHOLD	= 0.25f;
+
+	/** The size of the blur in blur buffer pixels. */
+	public static final float	DEFAULT_RADIUS		= 2.0f;
+
+	public float				threshold			= DEFAULT_THRESHOLD;
+	public float				radius				= DEFAULT_RADIUS;
+
+	private Quality				quality				= null;
+
+	private ShaderProgram		extractShader		= null;
+	private ShaderProgram		blurShader			= null;
+
+	private FrameBuffer			sceneBuffer			= null;
+	private FrameBuffer			glowBuffer			= null;
+	private FrameBuffer			blurBuffer			= null;
+
+	private final Matrix4		projection			= new Matrix4();
+	private float				time				= 0.0f;
+
+	/**
+	 * Creates a glow effect for a screen of the given size, loading its
+	 * shaders.
+	 * 
+	 * @param quality
+	 *        The quality to use.
+	 * @param width
+	 *        The width of the screen in pixels.
+	 * @param height
+	 *        The height of the screen in pixels.
+	 */
+	public GlowEffect(Quality quality, int width, int height) {
+		setQuality(quality);
+		resize(width, height);
+	}
+
+	/**
+	 * Changes the quality, reloading the shaders and recreating the buffers
+	 * if it's different.
+	 * 
+	 * @param quality
+	 *        The new quality.
+	 */
+	public void setQuality(Quality quality) {
+		if (quality == this.quality) {
+			return;
+		}
+
+		final boolean hadBuffers = (sceneBuffer != null);
+		final int width = (hadBuffers ? sceneBuffer.getWidth() : 0);
+		final int height = (hadBuffers ? sceneBuffer.getHeight() : 0);
+
+		this.quality = quality;
+		disposeShaders();
+		disposeBuffers();
+
+		String vertex = Gdx.files.internal("data/lights3.glslv").readString();
+		extractShader = compileShader(vertex, Gdx.files.internal("data/glowExtract.glslf").readString(),
+				"glowExtract.glslf");
+
+		String blur = Gdx.files.internal("data/blur.glslf").readString();
+		if (quality.fewerTaps) {
+			blur = blur.replaceFirst("#version 110", "#version 110\n#define FEWER_TAPS");
+		}
+		blurShader = compileShader(vertex, blur, "blur.glslf");
+
+		if (hadBuffers) {
+			resize(width, height);
+		}
+	}
+
+	public Quality getQuality() {
+		return quality;
+	}
+
+	/**
+	 * Recreates the frame buffers for a new screen size. Does nothing if the
+	 * size hasn't changed, or is empty (e.g. while minimised).
+	 * 
+	 * @param width
+	 *        The width of the screen in pixels.
+	 * @param height
+	 *        The height of the screen in pixels.
+	 */
+	public void resize(int width, int height) {
+		if (width <= 0 || height <= 0) {
+			return;
+		} else if (sceneBuffer != null && sceneBuffer.getWidth() == width && sceneBuffer.getHeight() == height) {
+			return;
+		}
+
+		disposeBuffers();
+
+		final int glowWidth = Math.max(1, width / quality.downsample);
+		final int glowHeight = Math.max(1, height / quality.downsample);
+
+		sceneBuffer = new FrameBuffer(quality.format, width, height, false);
+		glowBuffer = new FrameBuffer(quality.format, glowWidth, glowHeight, false);
+		blurBuffer = new FrameBuffer(quality.format, glowWidth, glowHeight, false);
+	}
+
+	/**
+	 * Starts capturing the scene; everything drawn until end() is called will
+	 * glow.
+	 */
+	public void begin() {
+		sceneBuffer.begin();
+	}
+
+	/**
+	 * Stops capturing the scene and draws it to the screen with the glow added.
+	 * 
+	 * @param batch
+	 *        The batch to draw with; must not be drawing already. Its
+	 *        projection matrix is changed.
+	 * @param deltaTime
+	 *        The time since the last frame, which drives the glow's pulse.
+	 */
+	public void end(Batch batch, float deltaTime) {
+		sceneBuffer.end();
+		time += deltaTime;
+
+		final Texture scene = sceneBuffer.getColorBufferTexture();
+		final int glowWidth = glowBuffer.getWidth();
+		final int glowHeight = glowBuffer.getHeight();
+
+		batch.disableBlending();
+
+		// draw the scene to the screen as it is
+		drawFullscreen(batch, null, scene, sceneBuffer.getWidth(), sceneBuffer.getHeight());
+
+		// extract the coloured pixels at low resolution
+		glowBuffer.begin();
+		batch.setShader(extractShader);
+		batch.begin();
+		extractShader.setUniformf("threshold", threshold);
+		drawTexture(batch, scene, glowWidth, glowHeight);
+		batch.end();
+		glowBuffer.end();
+
+		// blur horizontally into the blur buffer, then vertically back again
+		blurPass(batch, glowBuffer, blurBuffer, 1.0f, 0.0f, glowWidth);
+		blurPass(batch, blurBuffer, glowBuffer, 0.0f, 1.0f, glowHeight);
+
+		// and add the glow over the scene
+		batch.enableBlending();
+		batch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE);
+		drawFullscreen(batch, null, glowBuffer.getColorBufferTexture(), sceneBuffer.getWidth(),
+				sceneBuffer.getHeight());
+		batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+	}
+
+	@Override
+	public void dispose() {
+		disposeShaders();
+		disposeBuffers();
+	}
+
+	private void blurPass(Batch batch, FrameBuffer from, FrameBuffer to, float directionX, float directionY,
+			float resolution) {
+		to.begin();
+		batch.setShader(blurShader);
+		batch.begin();
+		blurShader.setUniformf("direction", directionX, directionY);
+		blurShader.setUniformf("resolution", resolution);
+		blurShader.setUniformf("radius", radius);
+		blurShader.setUniformf("timeVal", time);
+		drawTexture(batch, from.getColorBufferTexture(), to.getWidth(), to.getHeight());
+		batch.end();
+		to.end();
+	}
+
+	private void drawFullscreen(Batch batch, ShaderProgram program, Texture texture, int width, int height) {
+		batch.setShader(program);
+		batch.begin();
+		drawTexture(batch, texture, width, height);
+		batch.end();
+	}
+
+	private void drawTexture(Batch batch, Texture texture, int width, int height) {
+		batch.setProjectionMatrix(projection.setToOrtho2D(0.0f, 0.0f, width, height));
+		// frame buffer textures are upside down
+		batch.draw(texture, 0.0f, 0.0f, width, height, 0, 0, texture.getWidth(), texture.getHeight(), false, true);
+	}
+
+	private static ShaderProgram compileShader(String vertex, String fragment, String name) {
+		ShaderProgram program = new ShaderProgram(vertex, fragment);
+
+		if (!program.isCompiled()) {
+			throw new GdxRuntimeException("Failed to compile " + name + ":\n" + program.getLog());
+		}
+
+		return program;
+	}
+
+	private void disposeShaders() {
+		if (extractShader != null) {
+			extractShader.dispose();
+			extractShader = null;
+		}
+
+		if (blurShader != null) {
+			blurShader.dispose();
+			blurShader = null;
+		}
+	}
+
+	private void disposeBuffers() {
+		if (sceneBuffer != null) {
+			sceneBuffer.dispose();
+			glowBuffer.dispose();
+			blurBuffer.dispose();
+			sceneBuffer = null;
+			glowBuffer = null;
+			blurBuffer = null;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package com.sgtcodfish.colourBlind;
+
+import com.artemis.Entity;
+import com.artemis.Manager;
+import com.artemis.World;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.components.Velocity;
+import com.sgtcodfish.colourBlind.systems.CollisionSystem;
+import com.sgtcodfish.colourBlind.systems.FlashlightSystem;
+import com.sgtcodfish.colourBlind.systems.MovementSystem;
+import com.sgtcodfish.colourBlind.systems.PlayerInputSystem;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
+
+/**
+ * Plays the game's levels with only its logic systems (PlayerInputSystem,
+ * MovementSystem, FlashlightSystem and CollisionSystem) and nothing which
+ * needs a window or GL, one tick per step, as fast as it can; e.g. for bots,
+ * fuzzing and benchmarks.
+ * 
+ * Levels come from a headless {@link LevelEntityFactory}, and the player is
+ * created by PlayerEntityFactory.createLogicPlayerEntity, so it moves and
+ * collides exactly as in the game. Using a door moves on to the next level
+ * before the next step, as ColourBlindGame does once the level is ready; with
+ * an {@link InputReplay}, the level changes before the same ticks as it did
+ * in the recording instead. Like the game, the world sees the player and the
+ * first level before the first tick, so a recording made in the game plays
+ * back the same here.
+ * 
+ * Input comes from whichever managers are given: an {@link InputActions} fed
+ * with key events, an InputReplay, and optionally an {@link InputRecorder}, a
+ * {@link WorkerPool} or a {@link SystemScheduler}. With none, the player
+ * never does anything.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class HeadlessSimulation {
+	public final World					world;
+	public final FixedStepClock			clock;
+
+	private final LevelEntityFactory	levelFactory;
+	private final DoorManager			doorManager;
+	private final CollisionSystem		collisionSystem;
+	private final InputReplay			replay;
+	private final InputRecorder			recorder;
+
+	private final Entity				playerEntity;
+	private Entity						levelEntity;
+
+	private int							levelsCompleted	= 0;
+	private boolean						finished		= false;
+
+	/**
+	 * Builds the world and starts the first level.
+	 * 
+	 * @param levelFactory
+	 *        The levels to play, which should be headless.
+	 * @param managers
+	 *        Any other managers to give the world, e.g. an InputReplay.
+	 * @throws GdxRuntimeException
+	 *         If there are no valid levels.
+	 */
+	public HeadlessSimulation(LevelEntityFactory levelFactory, Manager... managers) {
+		this.levelFactory = levelFactory;
+
+		world = new World();
+		clock = world.setManager(new FixedStepClock());
+		doorManager = world.setManager(new DoorManager());
+
+		for (Manager manager : managers) {
+			world.setManager(manager);
+		}
+
+		replay = world.getManager(InputReplay.class);
+		recorder = world.getManager(InputRecorder.class);
+
+		levelEntity = levelFactory.generateNextLevelEntity(world);
+		if (levelEntity == null) {
+			throw new GdxRuntimeException("HeadlessSimulation has no valid levels to play.");
+		}
+
+		final float tileHeight = ((PackedTileLayer) levelFactory.getCurrentMap().getLayers().get(0)).getTileHeight();
+		playerEntity = PlayerEntityFactory.createLogicPlayerEntity(world, tileHeight);
+		doorManager.setDoors(levelFactory.getCurrentDoorTriggers());
+
+		clock.setLogicSystem(new PlayerInputSystem());
+		clock.setLogicSystem(new MovementSystem());
+		clock.setLogicSystem(new FlashlightSystem());
+		collisionSystem = clock.setLogicSystem(new CollisionSystem(levelFactory.getCurrentCollisionGrid()));
+
+		world.initialize();
+
+		world.addEntity(playerEntity);
+		world.addEntity(levelEntity);
+	}
+
+	/**
+	 * Changes level if a door was used, then runs one tick.
+	 * 
+	 * @return False if there were no more levels to play, in which case no
+	 *         tick was run.
+	 */
+	public boolean step() {
+		if (finished) {
+			return false;
+		}
+
+		if (replay != null) {
+			doorManager.consumeDoorUsed();
+
+			while (replay.consumeLevelChange()) {
+				if (!nextLevel()) {
+					return false;
+				}
+			}
+		} else if (doorManager.consumeDoorUsed() && !nextLevel()) {
+			return false;
+		}
+
+		clock.update(clock.tickLength);
+		return true;
+	}
+
+	/**
+	 * Steps until the given number of ticks have run or there are no more
+	 * levels.
+	 * 
+	 * @return The number of ticks run.
+	 */
+	public int run(int ticks) {
+		int run = 0;
+
+		while (run < ticks && step()) {
+			run++;
+		}
+
+		return run;
+	}
+
+	/**
+	 * Moves on to the next level, putting the player back at the start, as
+	 * ColourBlindGame.nextLevel does.
+	 * 
+	 * @return False if there are no more levels.
+	 */
+	private boolean nextLevel() {
+		Entity nextLevelEntity = levelFactory.generateNextLevelEntity(world);
+
+		if (nextLevelEntity == null) {
+			finished = true;
+			return false;
+		}
+
+		levelEntity.deleteFromWorld();
+		levelEntity = nextLevelEntity;
+		world.addEntity(levelEntity);
+
+		collisionSystem.setGrid(levelFactory.getCurrentCollisionGrid());
+		doorManager.setDoors(levelFactory.getCurrentDoorTriggers());
+
+		playerEntity.getComponent(Position.class).teleport(PlayerEntityFactory.INITIAL_X,
+				PlayerEntityFactory.INITIAL_Y);
+		playerEntity.getComponent(Velocity.class).velocity.set(0.0f, 0.0f);
+
+		if (recorder != null) {
+			recorder.recordLevelChange();
+		}
+
+		levelsCompleted++;
+		return true;
+	}
+
+	/**
+	 * @return The player Entity.
+	 */
+	public Entity getPlayer() {
+		return playerEntity;
+	}
+
+	/**
+	 * @return The number of levels finished so far.
+	 */
+	public int getLevelsCompleted() {
+		return levelsCompleted;
+	}
+
+	/**
+	 * @return True once every level has been finished.
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+}
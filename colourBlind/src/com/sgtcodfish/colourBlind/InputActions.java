@@ -0,0 +1,179 @@
+package com.sgtcodfish.colourBlind;
+
+import com.artemis.Manager;
+import com.badlogic.gdx.InputProcessor;
+
+/**
+ * Keeps track of which keys are down from the key events the game is given,
+ * so that the actions each player is doing can be looked up once per tick
+ * rather than polling every key each player has bound.
+ * 
+ * Keys are tracked from when they go down until they go up, except that a key
+ * which goes up before any tick has seen it is kept until the next tick, so
+ * a key tapped between two ticks is still seen for one tick. Each tick,
+ * getActions ORs together the actions a player's table binds to the keys
+ * being tracked, which costs one lookup per key down however many keys are
+ * bound; endTick then forgets keys which have gone up.
+ * 
+ * Set as the game's InputProcessor (or added to an InputMultiplexer) to be
+ * given key events. It's a {@link Manager}, so the PlayerInputSystem can find
+ * it through world.getManager(InputActions.class); with none in the world, no
+ * keys are ever down.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class InputActions extends Manager implements InputProcessor {
+	/** The number of keycodes there are, and so the size of a key table. */
+	public static final int	KEY_COUNT		= 256;
+
+	private final boolean[]	down			= new boolean[KEY_COUNT];
+
+	// the keys being tracked, in no particular order, and which of them have
+	// gone down since the last tick
+	private final boolean[]	tracked			= new boolean[KEY_COUNT];
+	private final boolean[]	fresh			= new boolean[KEY_COUNT];
+	private final int[]		trackedKeys		= new int[KEY_COUNT];
+	private int				trackedCount	= 0;
+
+	@Override
+	protected void initialize() {
+	}
+
+	/**
+	 * @param keyTable
+	 *        The actions bound to each keycode, as masks of
+	 *        {@link PlayerAction} bits.
+	 * @return Every action bound to a key which is down, or which was tapped
+	 *         since the last tick.
+	 */
+	public int getActions(int[] keyTable) {
+		int actions = 0;
+
+		for (int i = 0; i < trackedCount; i++) {
+			actions |= keyTable[trackedKeys[i]];
+		}
+
+		return actions;
+	}
+
+	/**
+	 * Forgets every key tapped since the last tick, which this tick has now
+	 * seen; call once at the end of each tick, after every player's actions
+	 * have been got.
+	 */
+	public void endTick() {
+		int kept = 0;
+
+		for (int i = 0; i < trackedCount; i++) {
+			final int key = trackedKeys[i];
+			fresh[key] = false;
+
+			if (down[key]) {
+				trackedKeys[kept++] = key;
+			} else {
+				tracked[key] = false;
+			}
+		}
+
+		trackedCount = kept;
+	}
+
+	/**
+	 * @return True if the given key is down right now.
+	 */
+	public boolean isKeyDown(int keycode) {
+		return isValidKey(keycode) && down[keycode];
+	}
+
+	/**
+	 * Forgets every key, e.g. when the game loses focus and won't be told
+	 * about keys going up.
+	 */
+	public void clear() {
+		for (int i = 0; i < trackedCount; i++) {
+			down[trackedKeys[i]] = false;
+			tracked[trackedKeys[i]] = false;
+			fresh[trackedKeys[i]] = false;
+		}
+
+		trackedCount = 0;
+	}
+
+	@Override
+	public boolean keyDown(int keycode) {
+		if (!isValidKey(keycode)) {
+			return false;
+		}
+
+		down[keycode] = true;
+
+		if (!tracked[keycode]) {
+			tracked[keycode] = true;
+			fresh[keycode] = true;
+			trackedKeys[trackedCount++] = keycode;
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean keyUp(int keycode) {
+		if (!isValidKey(keycode)) {
+			return false;
+		}
+
+		down[keycode] = false;
+
+		// a key which a tick has already seen can be forgotten straight away
+		if (tracked[keycode] && !fresh[keycode]) {
+			untrack(keycode);
+		}
+
+		return false;
+	}
+
+	private void untrack(int keycode) {
+		tracked[keycode] = false;
+
+		for (int i = 0; i < trackedCount; i++) {
+			if (trackedKeys[i] == keycode) {
+				trackedKeys[i] = trackedKeys[--trackedCount];
+				return;
+			}
+		}
+	}
+
+	private static boolean isValidKey(int keycode) {
+		return keycode >= 0 && keycode < KEY_COUNT;
+	}
+
+	@Override
+	public boolean keyTyped(char character) {
+		return false;
+	}
+
+	@Override
+	public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+		return false;
+	}
+
+	@Override
+	public boolean touchUp(int screenX, int screenY, int pointer, int button) {
+		return false;
+	}
+
+	@Override
+	public boolean touchDragged(int screenX, int screenY, int pointer) {
+		return false;
+	}
+
+	@Override
+	public boolean mouseMoved(int screenX, int screenY) {
+		return false;
+	}
+
+	@Override
+	public boolean scrolled(int amount) {
+		return false;
+	}
+}
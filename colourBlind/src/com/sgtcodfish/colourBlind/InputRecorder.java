@@ -0,0 +1,75 @@
+package com.sgtcodfish.colourBlind;
+
+import com.artemis.Manager;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Records the actions every player holds on every tick into an
+ * {@link InputRecording}, along with the ticks on which the level changes, so
+ * that the run can be played back exactly by an {@link InputReplay}.
+ * 
+ * Creating a recorder reseeds {@link CBColour}'s Random with the recording's
+ * seed, so it should be created before anything random has been chosen.
+ * 
+ * The recorder is a {@link Manager}, so the PlayerInputSystem can find it
+ * through world.getManager(InputRecorder.class) and give it each player's
+ * actions as it works them out.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class InputRecorder extends Manager {
+	private final InputRecording	recording;
+
+	/**
+	 * Creates a recorder at the default tick rate, with a seed chosen from the
+	 * time.
+	 */
+	public InputRecorder() {
+		this(TimeUtils.nanoTime(), 1.0f / FixedStepClock.DEFAULT_TICK_RATE);
+	}
+
+	/**
+	 * @param seed
+	 *        The seed to give CBColour's Random.
+	 * @param tickLength
+	 *        The length of the ticks being recorded, which a replay must use
+	 *        too.
+	 */
+	public InputRecorder(long seed, float tickLength) {
+		recording = new InputRecording(seed, tickLength);
+		CBColour.setSeed(seed);
+	}
+
+	@Override
+	protected void initialize() {
+	}
+
+	/**
+	 * Records the actions of the next player in the current tick.
+	 */
+	public void record(int actions) {
+		recording.add(actions);
+	}
+
+	/**
+	 * Finishes the current tick; call once each tick after every player's
+	 * actions have been recorded.
+	 */
+	public void endTick() {
+		recording.endTick();
+	}
+
+	/**
+	 * Records that the level has changed before the next tick.
+	 */
+	public void recordLevelChange() {
+		recording.addLevelChange();
+	}
+
+	/**
+	 * @return The recording so far.
+	 */
+	public InputRecording getRecording() {
+		return recording;
+	}
+}
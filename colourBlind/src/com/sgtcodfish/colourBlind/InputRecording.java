@@ -0,0 +1,310 @@
+package com.sgtcodfish.colourBlind;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Everything needed to play a run of the game back exactly: the seed given to
+ * {@link CBColour}'s Random, the {@link PlayerAction}s held by each player on
+ * every tick, and the ticks on which the level changed. Recorded by an
+ * {@link InputRecorder} and played back by an {@link InputReplay}.
+ * 
+ * A recording can also hold a checksum of the game's state after each tick,
+ * so that a replay can check that it's still doing exactly what was recorded,
+ * e.g. after a change to the physics.
+ * 
+ * In the file, ticks are run length encoded and every number after the header
+ * is written as a variable length int, so a tick in which nothing changed
+ * costs nothing and most masks take a byte or two.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class InputRecording {
+	public static final int	MAGIC			= 0x43424952;	// "CBIR"
+	public static final int	VERSION			= 1;
+
+	/** The seed for CBColour's Random. */
+	public final long		seed;
+
+	/** The length of each tick the recording was made at, in seconds. */
+	public final float		tickLength;
+
+	// the number of players on each tick, and every player's actions on every
+	// tick in order
+	private final IntArray	tickSizes		= new IntArray();
+	private final IntArray	actions			= new IntArray();
+	private int				currentSize		= 0;
+
+	private final IntArray	levelChanges	= new IntArray();
+	private final IntArray	checksums		= new IntArray();
+
+	public InputRecording(long seed, float tickLength) {
+		this.seed = seed;
+		this.tickLength = tickLength;
+	}
+
+	/**
+	 * Adds one player's actions to the tick being recorded.
+	 */
+	public void add(int playerActions) {
+		actions.add(playerActions);
+		currentSize++;
+	}
+
+	/**
+	 * Finishes the tick being recorded.
+	 */
+	public void endTick() {
+		tickSizes.add(currentSize);
+		currentSize = 0;
+	}
+
+	/**
+	 * Notes that the level changed before the next tick.
+	 */
+	public void addLevelChange() {
+		levelChanges.add(getTickCount());
+	}
+
+	/**
+	 * Adds the checksum for the game's state after the last tick recorded.
+	 */
+	public void addChecksum(int checksum) {
+		checksums.add(checksum);
+	}
+
+	/**
+	 * @return The number of whole ticks recorded.
+	 */
+	public int getTickCount() {
+		return tickSizes.size;
+	}
+
+	/**
+	 * @return The number of players whose actions were recorded on the given
+	 *         tick.
+	 */
+	public int getTickSize(int tick) {
+		return tickSizes.get(tick);
+	}
+
+	/**
+	 * @param index
+	 *        The index of the actions among every tick's actions, in order.
+	 * @return The actions.
+	 */
+	public int getActions(int index) {
+		return actions.get(index);
+	}
+
+	/**
+	 * @return The number of level changes recorded.
+	 */
+	public int getLevelChangeCount() {
+		return levelChanges.size;
+	}
+
+	/**
+	 * @return The tick before which the given level change happened.
+	 */
+	public int getLevelChange(int index) {
+		return levelChanges.get(index);
+	}
+
+	/**
+	 * @return The number of ticks which have a checksum.
+	 */
+	public int getChecksumCount() {
+		return checksums.size;
+	}
+
+	/**
+	 * @return The checksum of the game's state after the given tick.
+	 */
+	public int getChecksum(int tick) {
+		return checksums.get(tick);
+	}
+
+	/**
+	 * Reads a recording.
+	 * 
+	 * @param file
+	 *        The recording.
+	 * @return The recording.
+	 */
+	public static InputRecording read(FileHandle file) {
+		return read(ByteBuffer.wrap(file.readBytes()));
+	}
+
+	/**
+	 * Reads a recording.
+	 * 
+	 * @param buffer
+	 *        The recording's bytes, from the buffer's position onwards.
+	 * @return The recording.
+	 */
+	public static InputRecording read(ByteBuffer buffer) {
+		if (buffer.getInt() != MAGIC) {
+			throw new GdxRuntimeException("Not an input recording.");
+		}
+
+		final int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new GdxRuntimeException("Unsupported input recording version: " + version);
+		}
+
+		InputRecording recording = new InputRecording(buffer.getLong(), buffer.getFloat());
+
+		final int tickCount = getVarInt(buffer);
+		while (recording.getTickCount() < tickCount) {
+			final int runLength = getVarInt(buffer);
+			final int size = getVarInt(buffer);
+			final int start = recording.actions.size;
+
+			for (int i = 0; i < size; i++) {
+				recording.add(getVarInt(buffer));
+			}
+
+			recording.endTick();
+
+			// the rest of the run is the same as its first tick
+			for (int tick = 1; tick < runLength; tick++) {
+				for (int i = 0; i < size; i++) {
+					recording.add(recording.actions.get(start + i));
+				}
+
+				recording.endTick();
+			}
+		}
+
+		final int levelChangeCount = getVarInt(buffer);
+		for (int i = 0; i < levelChangeCount; i++) {
+			recording.levelChanges.add(getVarInt(buffer));
+		}
+
+		final int checksumCount = getVarInt(buffer);
+		for (int i = 0; i < checksumCount; i++) {
+			recording.checksums.add(buffer.getInt());
+		}
+
+		return recording;
+	}
+
+	/**
+	 * Writes the recording to a file, replacing anything already there.
+	 * 
+	 * @param file
+	 *        The file to write to.
+	 */
+	public void write(FileHandle file) {
+		OutputStream stream = file.write(false);
+
+		try {
+			write(stream);
+		} catch (IOException e) {
+			throw new GdxRuntimeException("Couldn't write input recording " + file.path(), e);
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				// nothing more can be done
+			}
+		}
+	}
+
+	/**
+	 * Writes the recording.
+	 * 
+	 * @param stream
+	 *        The stream to write to, which is left open.
+	 * @throws IOException
+	 *         If the stream can't be written.
+	 */
+	public void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(seed);
+		out.writeFloat(tickLength);
+
+		putVarInt(out, getTickCount());
+
+		int start = 0;
+		int tick = 0;
+		while (tick < getTickCount()) {
+			final int size = tickSizes.get(tick);
+			int runLength = 1;
+
+			while (tick + runLength < getTickCount()
+					&& sameActions(start, start + size * runLength, size, tickSizes.get(tick + runLength))) {
+				runLength++;
+			}
+
+			putVarInt(out, runLength);
+			putVarInt(out, size);
+
+			for (int i = 0; i < size; i++) {
+				putVarInt(out, actions.get(start + i));
+			}
+
+			start += size * runLength;
+			tick += runLength;
+		}
+
+		putVarInt(out, levelChanges.size);
+		for (int i = 0; i < levelChanges.size; i++) {
+			putVarInt(out, levelChanges.get(i));
+		}
+
+		putVarInt(out, checksums.size);
+		for (int i = 0; i < checksums.size; i++) {
+			out.writeInt(checksums.get(i));
+		}
+
+		out.flush();
+	}
+
+	private boolean sameActions(int first, int second, int size, int secondSize) {
+		if (size != secondSize) {
+			return false;
+		}
+
+		for (int i = 0; i < size; i++) {
+			if (actions.get(first + i) != actions.get(second + i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int getVarInt(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		int b;
+
+		do {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		return value;
+	}
+
+	private static void putVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte(value);
+	}
+}
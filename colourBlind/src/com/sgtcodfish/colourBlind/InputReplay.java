@@ -0,0 +1,111 @@
+package com.sgtcodfish.colourBlind;
+
+import com.artemis.Manager;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Plays back an {@link InputRecording}, giving the PlayerInputSystem the
+ * actions each player held on each tick in place of the keyboard, so that a
+ * run can be repeated exactly.
+ * 
+ * For a replay to match its recording, the world must start as it did when
+ * the recording was made and must run ticks of the same length, and the level
+ * must change before the same ticks as it did in the recording; see
+ * consumeLevelChange. Creating a replay reseeds {@link CBColour}'s Random with
+ * the recording's seed.
+ * 
+ * Once the recording runs out, every player's actions are empty.
+ * 
+ * The replay is a {@link Manager}, so the PlayerInputSystem can find it
+ * through world.getManager(InputReplay.class).
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class InputReplay extends Manager {
+	private final InputRecording	recording;
+
+	private int						tick			= 0;
+	private int						next			= 0;
+	private int						tickEnd			= 0;
+	private int						levelChange		= 0;
+
+	public InputReplay(InputRecording recording) {
+		this.recording = recording;
+		CBColour.setSeed(recording.seed);
+
+		startTick();
+	}
+
+	@Override
+	protected void initialize() {
+		FixedStepClock clock = world.getManager(FixedStepClock.class);
+
+		if (clock != null && clock.tickLength != recording.tickLength) {
+			throw new GdxRuntimeException("Input recording was made at a tick length of " + recording.tickLength
+					+ "s, but the clock runs at " + clock.tickLength + "s.");
+		}
+	}
+
+	/**
+	 * @return The actions of the next player in the current tick.
+	 */
+	public int nextActions() {
+		return (next < tickEnd ? recording.getActions(next++) : 0);
+	}
+
+	/**
+	 * Moves on to the next tick; call once each tick after every player's
+	 * actions have been got.
+	 */
+	public void endTick() {
+		if (isFinished()) {
+			return;
+		}
+
+		// skip actions recorded for players which aren't there any more
+		next = tickEnd;
+		tick++;
+		startTick();
+	}
+
+	private void startTick() {
+		if (!isFinished()) {
+			tickEnd = next + recording.getTickSize(tick);
+		}
+	}
+
+	/**
+	 * @return True if the level changed before the current tick in the
+	 *         recording, in which case it should be changed now; each change
+	 *         is only reported once.
+	 */
+	public boolean consumeLevelChange() {
+		if (levelChange < recording.getLevelChangeCount() && recording.getLevelChange(levelChange) == tick) {
+			levelChange++;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The number of ticks played back so far.
+	 */
+	public int getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return True once every tick in the recording has been played back.
+	 */
+	public boolean isFinished() {
+		return tick >= recording.getTickCount();
+	}
+
+	/**
+	 * @return The recording being played back.
+	 */
+	public InputRecording getRecording() {
+		return recording;
+	}
+}
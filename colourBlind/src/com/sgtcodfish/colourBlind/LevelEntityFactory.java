@@ -1,37 +1,97 @@
 package com.sgtcodfish.colourBlind;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.artemis.Entity;
 import com.artemis.World;
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
 import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.maps.MapLayers;
 import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
-import com.badlogic.gdx.maps.tiled.TiledMapTileLayer.Cell;
-import com.badlogic.gdx.maps.tiled.TmxMapLoader;
 import com.badlogic.gdx.utils.Disposable;
+import com.sgtcodfish.colourBlind.collision.CollisionGrid;
+import com.sgtcodfish.colourBlind.collision.DoorTriggers;
 import com.sgtcodfish.colourBlind.components.Position;
 import com.sgtcodfish.colourBlind.components.TiledRenderable;
 import com.sgtcodfish.colourBlind.tiled.CBOrthogonalTiledMapRenderer;
+import com.sgtcodfish.colourBlind.tiled.CompiledLevel;
+import com.sgtcodfish.colourBlind.tiled.LevelData;
+import com.sgtcodfish.colourBlind.tiled.LevelLoader;
+import com.sgtcodfish.colourBlind.tiled.LevelParser;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
+import com.sgtcodfish.colourBlind.tiled.PlatformLabels;
 
 /**
  * Handles loading levels from data, storing them ready for use in entities, and
  * the creation of those entities.
  * 
+ * Levels are loaded lazily through an {@link AssetManager}, which parses them
+ * on a background thread; while one level is being played, the next is
+ * prefetched, and pumping update() once a frame lets it finish loading
+ * without stalling the game. Once it has loaded, the next level's renderer is
+ * created and its static layers baked in the frame after, and its collision
+ * grid and door triggers were already built as it loaded, so that moving on to
+ * it with generateNextLevelEntity only swaps references. Only a bounded number
+ * of levels are kept resident; when there are too many, the least recently
+ * used is disposed.
+ * 
+ * All the CPU work of loading levels which doesn't need GL - parsing, decoding
+ * and validating them - is started for the next few levels at once on a
+ * {@link LevelParser}, which spreads it across all the cores. Only levels
+ * fewer than maxResidentLevels ahead of the one being played are parsed, so
+ * parsed levels waiting to be played never outnumber the resident ones.
+ * Levels are still played in the order they were listed, however quickly each
+ * one parses, and whether a level is invalid is checked without waiting for
+ * it.
+ * 
+ * A factory created without a Batch is headless: it never touches GL, so it
+ * can run without a window. Levels are taken straight from the parser, with
+ * no textures or renderers, so their entities have nothing to draw but their
+ * collision grids and doors are the same; levels which can only be loaded by
+ * TmxMapLoader are skipped.
+ * 
  * @author Ashley Davis (SgtCoDFish)
  */
 public class LevelEntityFactory implements Disposable {
-	public ArrayList<LevelDetails>	levels			= null;
+	/**
+	 * The value in a platform colour grid for a tile with no platform. No
+	 * platform is ever fully transparent black, so this can't clash with a
+	 * real colour.
+	 */
+	public static final float		NO_PLATFORM_COLOUR	= 0.0f;
+
+	/** The number of levels kept resident unless another is given. */
+	public static final int									DEFAULT_MAX_RESIDENT_LEVELS	= 3;
+
+	/** The paths of every level, in the order they're played. */
+	public ArrayList<String>								levelPaths					= null;
 
-	private int						currentLevel	= 0;
-	private Batch					batch			= null;
+	private int												currentLevel				= 0;
+	private LevelDetails									current						= null;
+	private Batch											batch						= null;
+
+	private final int										maxResidentLevels;
+	private AssetManager									assetManager				= null;
+	private LevelParser										parser						= null;
+
+	// the levels ready to be played, in least recently used order.
+	private final LinkedHashMap<String, LevelDetails>		residentLevels				= new LinkedHashMap<String, LevelDetails>(
+																								16, 0.75f, true);
+
+	// the levels queued on or loaded by the asset manager.
+	private final HashSet<String>							requestedLevels				= new HashSet<String>();
+
+	// the levels which have been loaded and found to be invalid.
+	private final HashSet<String>							invalidLevels				= new HashSet<String>();
 
 	/**
 	 * Creates a LevelEntityFactory, loading all the levels in the given folder,
@@ -45,14 +105,58 @@ public class LevelEntityFactory implements Disposable {
 	 *        located.
 	 */
 	public LevelEntityFactory(Batch batch, String levelFolder) {
+		this(batch, levelFolder, DEFAULT_MAX_RESIDENT_LEVELS);
+	}
+
+	/**
+	 * Creates a headless LevelEntityFactory, loading all the levels in the
+	 * given folder with nothing to render them.
+	 * 
+	 * @param levelFolder
+	 *        The folder where the levels for this LevelEntityFactory are
+	 *        located.
+	 */
+	public LevelEntityFactory(String levelFolder) {
+		this(null, levelFolder, DEFAULT_MAX_RESIDENT_LEVELS);
+	}
+
+	/**
+	 * Creates a LevelEntityFactory for all the levels in the given folder,
+	 * keeping at most the given number of them loaded at once.
+	 * 
+	 * @param batch
+	 *        The {@link Batch} (probably {@link SpriteBatch}) to use to render
+	 *        the level, or null for a headless factory.
+	 * @param levelFolder
+	 *        The folder where the levels for this LevelEntityFactory are
+	 *        located.
+	 * @param maxResidentLevels
+	 *        The most levels to keep loaded; at least 2, so that the next level
+	 *        can be prefetched.
+	 */
+	public LevelEntityFactory(Batch batch, String levelFolder, int maxResidentLevels) {
+		if (maxResidentLevels < 2) {
+			throw new IllegalArgumentException("LevelEntityFactory needs to keep at least 2 levels resident.");
+		}
+
 		this.batch = batch;
 		this.currentLevel = 0;
+		this.maxResidentLevels = maxResidentLevels;
+
+		parser = new LevelParser();
+
+		if (batch != null) {
+			assetManager = new AssetManager();
+			assetManager.setLoader(LevelData.class, new LevelLoader(new InternalFileHandleResolver(), parser));
+		}
 
 		loadLevelsFromFolder(levelFolder);
+		parseAhead(0);
+		prefetch(0);
 	}
 
 	protected LevelEntityFactory() {
-
+		this.maxResidentLevels = DEFAULT_MAX_RESIDENT_LEVELS;
 	}
 
 	/**
@@ -89,89 +193,315 @@ public class LevelEntityFactory implements Disposable {
 	 *         null will be returned.
 	 */
 	public Entity generateNextLevelEntity(World world, float x, float y) {
-		Entity levelEntity = world.createEntity();
+		while (currentLevel < levelPaths.size()) {
+			LevelDetails level = getLevel(currentLevel);
+			currentLevel++;
 
-		LevelDetails level = levels.get(currentLevel);
+			if (level == null) {
+				// invalid level, try the next one
+				continue;
+			}
 
-		if (level == null) {
-			return null;
-		} else {
+			current = level;
+			parseAhead(currentLevel);
+			prefetch(currentLevel);
+
+			Entity levelEntity = world.createEntity();
 			levelEntity.addComponent(new Position(x, y));
-			levelEntity.addComponent(new TiledRenderable(level.platformColours, level.map, level.renderer));
 
-			currentLevel++;
+			if (level.renderable != null) {
+				levelEntity.addComponent(level.renderable);
+			}
 
 			return levelEntity;
 		}
+
+		return null;
+	}
+
+	/**
+	 * Lets any level being prefetched carry on loading, and prepares the next
+	 * level to be played once it has loaded. Should be called once per frame
+	 * on the rendering thread. A headless factory prepares the next level as
+	 * soon as it has been parsed, waiting for it if need be.
+	 */
+	public void update() {
+		if (assetManager != null) {
+			assetManager.update();
+		}
+
+		prepareNextLevel();
+	}
+
+	/**
+	 * @return True if generateNextLevelEntity can return without waiting for
+	 *         anything to load, either because the next level is ready or
+	 *         because there are no more levels.
+	 */
+	public boolean isNextLevelReady() {
+		for (int index = currentLevel; index < levelPaths.size(); index++) {
+			final String path = levelPaths.get(index);
+
+			if (residentLevels.containsKey(path)) {
+				return true;
+			} else if (!isInvalid(path)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Waits for the next level to finish loading and be prepared, for when
+	 * the level has to change at an exact moment, e.g. during a replay.
+	 */
+	public void finishNextLevel() {
+		while (assetManager != null && !isNextLevelReady()) {
+			update();
+		}
+	}
+
+	/**
+	 * Prepares the next level to be played if it has finished loading and
+	 * hasn't been prepared yet. If it turns out to be invalid, the level after
+	 * it is prefetched instead.
+	 */
+	private void prepareNextLevel() {
+		for (int index = currentLevel; index < levelPaths.size(); index++) {
+			final String path = levelPaths.get(index);
+
+			if (residentLevels.containsKey(path)) {
+				return;
+			} else if (isInvalid(path)) {
+				continue;
+			}
+
+			prefetch(index);
+
+			if (assetManager != null && !assetManager.isLoaded(path, LevelData.class)) {
+				return;
+			} else if (prepare(path) != null) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Starts loading the level with the given index in the background, if it
+	 * isn't loaded or loading already.
+	 * 
+	 * @param index
+	 *        The index of the level in levelPaths.
+	 */
+	public void prefetch(int index) {
+		if (index < 0 || index >= levelPaths.size()) {
+			return;
+		}
+
+		final String path = levelPaths.get(index);
+
+		// a headless factory takes its levels straight from the parser
+		if (assetManager == null) {
+			if (!residentLevels.containsKey(path)) {
+				parser.parse(path);
+			}
+
+			return;
+		}
+
+		if (!requestedLevels.contains(path)) {
+			Gdx.app.debug("LOAD_LEVELS", "Prefetching " + path);
+			assetManager.load(path, LevelData.class);
+			requestedLevels.add(path);
+		}
+	}
+
+	/**
+	 * Starts parsing the levels from the given index up to, but not including,
+	 * maxResidentLevels levels after the current one, skipping any which are
+	 * already resident, loading or known to be invalid.
+	 * 
+	 * @param from
+	 *        The index in levelPaths of the first level to parse.
+	 */
+	private void parseAhead(int from) {
+		final int end = Math.min(levelPaths.size(), currentLevel + maxResidentLevels - 1);
+
+		for (int index = Math.max(0, from); index < end; index++) {
+			final String path = levelPaths.get(index);
+
+			if (!residentLevels.containsKey(path) && !requestedLevels.contains(path) && !isInvalid(path)) {
+				parser.parse(path);
+			}
+		}
+	}
+
+	/**
+	 * Gets a level ready to be played, waiting for it to load if it hasn't
+	 * already. Must be called on the rendering thread.
+	 * 
+	 * @return The level, or null if it's invalid.
+	 */
+	private LevelDetails getLevel(int index) {
+		final String path = levelPaths.get(index);
+
+		LevelDetails level = residentLevels.get(path);
+		if (level != null) {
+			return level;
+		}
+
+		if (isInvalid(path)) {
+			Gdx.app.debug("LOAD_LEVELS", path + " is an invalid level format. Skipping.");
+			return null;
+		}
+
+		prefetch(index);
+		while (assetManager != null && !assetManager.isLoaded(path, LevelData.class)) {
+			assetManager.update();
+			Thread.yield();
+		}
+
+		return prepare(path);
 	}
 
 	/**
-	 * Loads all the levels in a specified folder. For internal use; construct a
-	 * new LevelEntityFactory to load the levels in a new folder.
+	 * Builds everything a loaded level needs to be played which has to be
+	 * built on the rendering thread: its renderer, with the static layers
+	 * baked, and the component which draws it. Must be called on the
+	 * rendering thread.
+	 * 
+	 * @return The level, or null if it's invalid.
+	 */
+	private LevelDetails prepare(String path) {
+		LevelData data = (assetManager != null ? assetManager.get(path, LevelData.class) : takeParsed(path));
+
+		if (data == null || data.platformColours == null || data.collisionGrid == null || !isValidLevel(data.map)) {
+			Gdx.app.debug("LOAD_LEVELS", path + " is an invalid level format. Skipping.");
+			invalidLevels.add(path);
+			unload(path);
+			return null;
+		}
+
+		LevelDetails level = new LevelDetails();
+		level.path = path;
+		level.map = data.map;
+		level.platformColours = data.platformColours;
+		level.staticBitplane = data.staticBitplane;
+		level.collisionGrid = data.collisionGrid;
+		level.doorTriggers = data.doorTriggers;
+
+		if (batch != null) {
+			level.renderer = new CBOrthogonalTiledMapRenderer(level.platformColours, level.map, this.batch);
+			level.renderable = new TiledRenderable(level.platformColours, level.map, level.renderer);
+
+			// bake now rather than in the first frame the level is drawn
+			level.renderer.cacheStaticLayers(level.renderable.regularLayers);
+		}
+
+		Gdx.app.debug("LOAD_LEVELS", "Prepared " + path);
+		residentLevels.put(path, level);
+		evictColdLevels();
+
+		return level;
+	}
+
+	/**
+	 * Builds a headless factory's level from the parser, without a texture.
+	 * 
+	 * @return The level, or null if it couldn't be parsed.
+	 */
+	private LevelData takeParsed(String path) {
+		CompiledLevel compiled = parser.take(path);
+
+		if (compiled == null) {
+			return null;
+		}
+
+		return new LevelData(compiled.createMap(null), compiled.labelPlatforms(), compiled.staticBitplane,
+				compiled.doorTiles);
+	}
+
+	/**
+	 * @return True if the level at the given path is known to be invalid,
+	 *         either from loading it or from the parser. Never waits for a
+	 *         level to be parsed.
+	 */
+	private boolean isInvalid(String path) {
+		// levels found to be invalid while parsing are never loaded at all
+		return invalidLevels.contains(path) || (!requestedLevels.contains(path) && parser.isKnownInvalid(path));
+	}
+
+	/**
+	 * Disposes the least recently used levels until no more than
+	 * maxResidentLevels are resident, never evicting the current level.
+	 */
+	private void evictColdLevels() {
+		Iterator<Map.Entry<String, LevelDetails>> it = residentLevels.entrySet().iterator();
+
+		while (residentLevels.size() > maxResidentLevels && it.hasNext()) {
+			LevelDetails level = it.next().getValue();
+
+			if (level == current) {
+				continue;
+			}
+
+			Gdx.app.debug("LOAD_LEVELS", "Evicting " + level.path);
+			it.remove();
+			level.dispose();
+		}
+	}
+
+	private void unload(String path) {
+		if (requestedLevels.remove(path)) {
+			assetManager.unload(path);
+		}
+	}
+
+	/**
+	 * Finds all the levels in a specified folder, without loading them. For
+	 * internal use; construct a new LevelEntityFactory to use the levels in a
+	 * new folder.
 	 * 
 	 * @param levelFolder
 	 *        The folder containing the level files.
 	 */
 	protected void loadLevelsFromFolder(String levelFolder) {
 		FileHandle handle = Gdx.files.internal(levelFolder);
-		FileHandle[] levelHandles = null;
+		levelPaths = new ArrayList<String>();
 
 		if (!handle.isDirectory()) {
 			Gdx.app.debug("LOAD_LEVELS",
 					"Non-directory detected by level loader, attempting to load files from list in: " + levelFolder);
 			String[] levelNames = handle.readString().split("\n");
-			levelHandles = new FileHandle[levelNames.length];
 
 			for (int i = 0; i < levelNames.length; i++) {
-				levelNames[i] = levelFolder + levelNames[i];
+				levelNames[i] = levelFolder + levelNames[i].trim();
 				FileHandle temp = Gdx.files.internal(levelNames[i]);
 
 				if (temp.exists()) {
 					Gdx.app.debug("LOAD_LEVELS", "Found level: " + levelNames[i]);
-					levelHandles[i] = temp;
+					levelPaths.add(temp.path());
 				}
 			}
 		} else {
 			Gdx.app.debug("LOAD_LEVELS", "Directory detected, loading from handle.list.");
-			levelHandles = handle.list(".tmx");
+
+			for (FileHandle fh : handle.list(".tmx")) {
+				levelPaths.add(fh.path());
+			}
 		}
 
-		if (levelHandles.length == 0) {
+		if (levelPaths.isEmpty()) {
 			String message = "No levels found in folder: " + levelFolder;
 			Gdx.app.debug("LOAD_LEVELS", message);
 			throw new IllegalArgumentException(message);
 		}
 
-		Gdx.app.debug("LOAD_LEVELS", String.valueOf(levelHandles.length) + " levels found in " + levelFolder + ".");
-
-		levels = new ArrayList<LevelDetails>(levelHandles.length);
-		TmxMapLoader loader = new TmxMapLoader();
-
-		for (FileHandle fh : levelHandles) {
-			TiledMap map = loader.load(fh.path());
-
-			if (!isValidLevel(map)) {
-				Gdx.app.debug("LOAD_LEVELS", fh.path() + " is an invalid level format. Skipping.");
-				continue;
-			}
-
-			LevelDetails level = new LevelDetails();
-			level.map = map;
-			level.platformColours = LevelEntityFactory.generatePlatformColours(map);
-			level.renderer = new CBOrthogonalTiledMapRenderer(level.platformColours, level.map, this.batch);
-			levels.add(level);
-		}
+		Gdx.app.debug("LOAD_LEVELS", String.valueOf(levelPaths.size()) + " levels found in " + levelFolder + ".");
 
 		if (Gdx.app.getLogLevel() == Application.LOG_DEBUG) {
-			String levelNameDebug = "Following levels were loaded: ";
-			String delim = ", ";
-
-			for (FileHandle fh : levelHandles) {
-				levelNameDebug += fh.name() + delim;
-			}
-
-			levelNameDebug = levelNameDebug.substring(0, levelNameDebug.length() - delim.length());
-			Gdx.app.debug("LOAD_LEVELS", levelNameDebug);
+			Gdx.app.debug("LOAD_LEVELS", "Following levels were found: " + levelPaths);
 		}
 	}
 
@@ -261,56 +591,66 @@ public class LevelEntityFactory implements Disposable {
 	 *         call to generateNextLevelEntity() will return null).
 	 */
 	public boolean isFactoryFinished() {
-		return currentLevel > levels.size();
+		return currentLevel >= levelPaths.size();
 	}
 
 	/**
-	 * Generates a color map from cells in the "platforms" layer of a map to
-	 * colours. Connected platforms all receieve the same colour, and each
-	 * platform receives a random colour.
+	 * Generates a colour grid for the "platforms" layer of a map. Connected
+	 * platforms all receieve the same colour, and each platform receives a
+	 * random colour, seeded by the map's "seed" property if it has one.
+	 * 
+	 * The grid holds one colour per tile, indexed by (row * width) + col, packed
+	 * with Color.toFloatBits and with the layer's opacity already applied so
+	 * that it can be handed straight to a batch. Tiles with no platform hold
+	 * NO_PLATFORM_COLOUR.
 	 * 
 	 * @param map
 	 *        The map, containing a layer called "platforms",
-	 * @return
+	 * @return The packed colour of every tile in the platforms layer.
 	 */
-	public static HashMap<Cell, Color> generatePlatformColours(TiledMap map) {
-		HashMap<Cell, Color> colourMap = new HashMap<Cell, Color>();
+	public static float[] generatePlatformColours(TiledMap map) {
+		return generatePlatformColours(map, PlatformLabels.seedFor(map, null));
+	}
 
-		CBColour platColour = null;
-		boolean samePlatform = false;
+	/**
+	 * Generates a colour grid for the "platforms" layer of a map, as
+	 * generatePlatformColours(TiledMap) does, with the colours chosen from the
+	 * given seed. Platforms are labelled by {@link PlatformLabels}, so tiles
+	 * joined vertically as well as horizontally share a colour.
+	 * 
+	 * @param map
+	 *        The map, containing a layer called "platforms",
+	 * @param seed
+	 *        The seed for the colours; the same seed always gives the same
+	 *        colours.
+	 * @return The packed colour of every tile in the platforms layer.
+	 */
+	public static float[] generatePlatformColours(TiledMap map, long seed) {
+		return labelPlatforms(map, seed).packColours(map.getLayers().get("platforms").getOpacity());
+	}
 
-		TiledMapTileLayer platformLayer = (TiledMapTileLayer) map.getLayers().get("platforms");
+	/**
+	 * Labels the platforms in the "platforms" layer of a map and gives each a
+	 * colour chosen from the given seed, as generatePlatformColours(TiledMap,
+	 * long) does, without packing the colours for rendering.
+	 * 
+	 * @param map
+	 *        The map, containing a layer called "platforms",
+	 * @param seed
+	 *        The seed for the colours; the same seed always gives the same
+	 *        colours.
+	 * @return The labelled platforms, with their colours assigned.
+	 */
+	public static PlatformLabels labelPlatforms(TiledMap map, long seed) {
+		PackedTileLayer platformLayer = (PackedTileLayer) map.getLayers().get("platforms");
 
 		if (platformLayer == null) {
-			throw new IllegalArgumentException("Invalid map passed to generate platform colours; no platforms layer.");
+			throw new IllegalArgumentException("Invalid map passed to label platforms; no platforms layer.");
 		}
 
-		final int WIDTH_IN_TILES = platformLayer.getWidth();
-		final int HEIGHT_IN_TILES = platformLayer.getHeight();
-
-		for (int y = 0; y < HEIGHT_IN_TILES; y++) {
-			for (int x = 0; x < WIDTH_IN_TILES; x++) {
-				Cell c = platformLayer.getCell(x, y);
-
-				if (c != null) {
-					// found a cell, start of platform?
-					if (!samePlatform) {
-						samePlatform = true;
-						platColour = new CBColour();
-					}
-
-					colourMap.put(c, platColour.toGdxColour());
-				} else {
-					if (samePlatform) {
-						// come to the end of a platform
-						samePlatform = false;
-						platColour = null;
-					}
-				}
-			}
-		}
-
-		return colourMap;
+		final PlatformLabels labels = PlatformLabels.label(platformLayer);
+		labels.assignColours(seed);
+		return labels;
 	}
 
 	/**
@@ -320,7 +660,60 @@ public class LevelEntityFactory implements Disposable {
 	 *         in use.
 	 */
 	public TiledMap getCurrentMap() {
-		return levels.get(currentLevel).map;
+		LevelDetails level = getCurrentLevel();
+		return (level != null ? level.map : null);
+	}
+
+	/**
+	 * Gets the platform colours of the currently used tiled map.
+	 * 
+	 * @return The platform colours of the map which is currently in use, or
+	 *         null if no map is currently in use.
+	 */
+	public float[] getCurrentPlatformColours() {
+		LevelDetails level = getCurrentLevel();
+		return (level != null ? level.platformColours : null);
+	}
+
+	/**
+	 * Gets the precompiled collision bitplane of the currently used tiled map,
+	 * if it was loaded from a compiled level.
+	 * 
+	 * @return The bitplane of the "level" layer, or null if the level wasn't
+	 *         compiled or no map is currently in use.
+	 */
+	public long[] getCurrentStaticBitplane() {
+		LevelDetails level = getCurrentLevel();
+		return (level != null ? level.staticBitplane : null);
+	}
+
+	/**
+	 * Gets the collision grid of the currently used tiled map, built as it
+	 * loaded.
+	 * 
+	 * @return The grid, or null if no map is currently in use.
+	 */
+	public CollisionGrid getCurrentCollisionGrid() {
+		LevelDetails level = getCurrentLevel();
+		return (level != null ? level.collisionGrid : null);
+	}
+
+	/**
+	 * Gets the doors of the currently used tiled map, found as it loaded.
+	 * 
+	 * @return The doors, or null if no map is currently in use.
+	 */
+	public DoorTriggers getCurrentDoorTriggers() {
+		LevelDetails level = getCurrentLevel();
+		return (level != null ? level.doorTriggers : null);
+	}
+
+	/**
+	 * @return The details of the level most recently generated by
+	 *         generateNextLevelEntity, or null if none has been generated.
+	 */
+	private LevelDetails getCurrentLevel() {
+		return current;
 	}
 
 	/**
@@ -329,13 +722,23 @@ public class LevelEntityFactory implements Disposable {
 	 */
 	@Override
 	public void dispose() {
-		if (levels != null && !levels.isEmpty()) {
-			for (LevelDetails level : levels) {
-				level.dispose();
-			}
+		for (LevelDetails level : residentLevels.values()) {
+			level.dispose();
+		}
+
+		residentLevels.clear();
+		requestedLevels.clear();
+		invalidLevels.clear();
+		current = null;
+
+		if (assetManager != null) {
+			assetManager.dispose();
+			assetManager = null;
+		}
 
-			levels.clear();
-			levels = null;
+		if (parser != null) {
+			parser.dispose();
+			parser = null;
 		}
 	}
 
@@ -345,23 +748,27 @@ public class LevelEntityFactory implements Disposable {
 	 * @author Ashley Davis (SgtCoDFish)
 	 */
 	private class LevelDetails implements Disposable {
+		public String						path			= null;
 		public TiledMap						map				= null;
-		public HashMap<Cell, Color>			platformColours	= null;
+		public float[]						platformColours	= null;
+		public long[]						staticBitplane	= null;
+		public CollisionGrid				collisionGrid	= null;
+		public DoorTriggers					doorTriggers	= null;
 		public CBOrthogonalTiledMapRenderer	renderer		= null;
+		public TiledRenderable				renderable		= null;
 
 		@Override
 		public void dispose() {
-			if (map != null) {
-				map.dispose();
+			// the map belongs to the asset manager, which disposes it on unload
+			if (path != null) {
+				unload(path);
 				map = null;
 			}
 
-			if (platformColours != null) {
-				platformColours.clear();
-			}
-
 			if (renderer != null) {
 				renderer.dispose();
+				renderer = null;
+				renderable = null;
 			}
 		}
 	}
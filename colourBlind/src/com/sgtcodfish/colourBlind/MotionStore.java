@@ -0,0 +1,322 @@
+package com.sgtcodfish.colourBlind;
+
+import java.util.Arrays;
+
+import com.artemis.ComponentMapper;
+import com.artemis.Entity;
+import com.artemis.Manager;
+import com.sgtcodfish.colourBlind.components.Facing;
+import com.sgtcodfish.colourBlind.components.PackedMotion;
+import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.components.Velocity;
+import com.sgtcodfish.colourBlind.components.Weight;
+
+/**
+ * Keeps the position, velocity and weight of every {@link PackedMotion}
+ * Entity in parallel float arrays, indexed by a dense slot per Entity, so that
+ * moving a crowd of entities is a few straight passes over flat arrays rather
+ * than a walk over a Vector2 per component per Entity.
+ * 
+ * Slots are always 0 to size() - 1; removing an Entity moves the Entity in the
+ * last slot into the gap, updating its PackedMotion.
+ * 
+ * Entities which also have a Position and Velocity keep them as views of
+ * their slot: pull() copies the components into the arrays, and push() copies
+ * the arrays back out, so systems which only know about Position and Velocity
+ * carry on working on packed entities as long as each batch of array work is
+ * wrapped in a pull() and push(). Weight and Facing are treated the same way
+ * if the Entity has them.
+ * 
+ * The store is a {@link Manager}, so systems can find it through
+ * world.getManager(MotionStore.class).
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class MotionStore extends Manager {
+	private static final int				DEFAULT_CAPACITY	= 64;
+
+	public float[]							x;
+	public float[]							y;
+	public float[]							previousX;
+	public float[]							previousY;
+	public float[]							velocityX;
+	public float[]							velocityY;
+	public float[]							weight;
+
+	/** Whether the Entity in each slot faces left, as in Facing. */
+	public boolean[]						facingLeft;
+
+	// the components each slot mirrors, or null where an Entity has none
+	private PackedMotion[]					handles;
+	private Position[]						positions;
+	private Velocity[]						velocities;
+	private Weight[]						weights;
+	private Facing[]						facings;
+
+	private ComponentMapper<PackedMotion>	pmm;
+	private ComponentMapper<Position>		pm;
+	private ComponentMapper<Velocity>		vm;
+	private ComponentMapper<Weight>			wm;
+	private ComponentMapper<Facing>			fm;
+
+	// the slot of each Entity, by id, or NO_SLOT, and the id in each slot
+	private int[]							slotOfEntity;
+	private int[]							entityOfSlot;
+
+	private int								size				= 0;
+
+	// the number of slots with any components to copy
+	private int								viewCount			= 0;
+
+	public MotionStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *        The number of entities to allocate room for up front.
+	 */
+	public MotionStore(int capacity) {
+		capacity = Math.max(1, capacity);
+
+		x = new float[capacity];
+		y = new float[capacity];
+		previousX = new float[capacity];
+		previousY = new float[capacity];
+		velocityX = new float[capacity];
+		velocityY = new float[capacity];
+		weight = new float[capacity];
+		facingLeft = new boolean[capacity];
+
+		handles = new PackedMotion[capacity];
+		positions = new Position[capacity];
+		velocities = new Velocity[capacity];
+		weights = new Weight[capacity];
+		facings = new Facing[capacity];
+
+		entityOfSlot = new int[capacity];
+		slotOfEntity = new int[capacity];
+		Arrays.fill(slotOfEntity, PackedMotion.NO_SLOT);
+	}
+
+	@Override
+	protected void initialize() {
+		pmm = world.getMapper(PackedMotion.class);
+		pm = world.getMapper(Position.class);
+		vm = world.getMapper(Velocity.class);
+		wm = world.getMapper(Weight.class);
+		fm = world.getMapper(Facing.class);
+	}
+
+	/**
+	 * @return The number of entities in the store, all of which are in slots
+	 *         below this.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return True if any Entity in the store has components which pull() and
+	 *         push() need to copy.
+	 */
+	public boolean hasViews() {
+		return viewCount > 0;
+	}
+
+	/**
+	 * Copies each view's Position, Velocity and Weight into the arrays, so
+	 * that changes made to them by other systems since the last push() are
+	 * seen.
+	 */
+	public void pull() {
+		if (viewCount == 0) {
+			return;
+		}
+
+		for (int i = 0; i < size; i++) {
+			final Position position = positions[i];
+
+			if (position != null) {
+				x[i] = position.position.x;
+				y[i] = position.position.y;
+
+				final Velocity velocity = velocities[i];
+				velocityX[i] = velocity.velocity.x;
+				velocityY[i] = velocity.velocity.y;
+			}
+
+			if (weights[i] != null) {
+				weight[i] = weights[i].weight;
+			}
+		}
+	}
+
+	/**
+	 * Copies the arrays back out to each view's Position, Velocity and Facing.
+	 */
+	public void push() {
+		if (viewCount == 0) {
+			return;
+		}
+
+		for (int i = 0; i < size; i++) {
+			final Position position = positions[i];
+
+			if (position != null) {
+				position.position.set(x[i], y[i]);
+				position.previous.set(previousX[i], previousY[i]);
+				velocities[i].velocity.set(velocityX[i], velocityY[i]);
+			}
+
+			if (facings[i] != null) {
+				facings[i].facingLeft = facingLeft[i];
+			}
+		}
+	}
+
+	@Override
+	public void added(Entity e) {
+		PackedMotion motion = pmm.getSafe(e);
+
+		if (motion != null && motion.store == null) {
+			add(e, motion);
+		}
+	}
+
+	@Override
+	public void changed(Entity e) {
+		PackedMotion motion = pmm.getSafe(e);
+
+		if (motion != null && motion.store == null) {
+			add(e, motion);
+		} else if (motion == null) {
+			remove(e);
+		}
+	}
+
+	@Override
+	public void deleted(Entity e) {
+		remove(e);
+	}
+
+	private void add(Entity e, PackedMotion motion) {
+		if (size == x.length) {
+			grow(size * 2);
+		}
+
+		ensureEntityCapacity(e.getId());
+
+		final int slot = size++;
+		Position position = pm.getSafe(e);
+		Velocity velocity = vm.getSafe(e);
+		Weight w = wm.getSafe(e);
+
+		if (position != null && velocity != null) {
+			x[slot] = position.position.x;
+			y[slot] = position.position.y;
+			previousX[slot] = position.previous.x;
+			previousY[slot] = position.previous.y;
+			velocityX[slot] = velocity.velocity.x;
+			velocityY[slot] = velocity.velocity.y;
+
+			positions[slot] = position;
+			velocities[slot] = velocity;
+		} else {
+			x[slot] = previousX[slot] = motion.startX;
+			y[slot] = previousY[slot] = motion.startY;
+			velocityX[slot] = motion.startVelocityX;
+			velocityY[slot] = motion.startVelocityY;
+		}
+
+		weight[slot] = (w != null ? w.weight : motion.startWeight);
+		weights[slot] = w;
+
+		facings[slot] = fm.getSafe(e);
+		facingLeft[slot] = (facings[slot] != null ? facings[slot].facingLeft : Facing.DEFAULT_FACING);
+
+		if (positions[slot] != null || weights[slot] != null || facings[slot] != null) {
+			viewCount++;
+		}
+
+		handles[slot] = motion;
+		motion.store = this;
+		motion.slot = slot;
+		slotOfEntity[e.getId()] = slot;
+		entityOfSlot[slot] = e.getId();
+	}
+
+	private void remove(Entity e) {
+		final int id = e.getId();
+
+		if (id >= slotOfEntity.length || slotOfEntity[id] == PackedMotion.NO_SLOT) {
+			return;
+		}
+
+		final int slot = slotOfEntity[id];
+		final int last = --size;
+
+		// the views are already up to date as of the last push()
+		if (positions[slot] != null || weights[slot] != null || facings[slot] != null) {
+			viewCount--;
+		}
+
+		handles[slot].store = null;
+		handles[slot].slot = PackedMotion.NO_SLOT;
+		slotOfEntity[id] = PackedMotion.NO_SLOT;
+
+		if (slot != last) {
+			x[slot] = x[last];
+			y[slot] = y[last];
+			previousX[slot] = previousX[last];
+			previousY[slot] = previousY[last];
+			velocityX[slot] = velocityX[last];
+			velocityY[slot] = velocityY[last];
+			weight[slot] = weight[last];
+			facingLeft[slot] = facingLeft[last];
+
+			handles[slot] = handles[last];
+			positions[slot] = positions[last];
+			velocities[slot] = velocities[last];
+			weights[slot] = weights[last];
+			facings[slot] = facings[last];
+
+			handles[slot].slot = slot;
+			entityOfSlot[slot] = entityOfSlot[last];
+			slotOfEntity[entityOfSlot[slot]] = slot;
+		}
+
+		handles[last] = null;
+		positions[last] = null;
+		velocities[last] = null;
+		weights[last] = null;
+		facings[last] = null;
+	}
+
+	private void grow(int capacity) {
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		previousX = Arrays.copyOf(previousX, capacity);
+		previousY = Arrays.copyOf(previousY, capacity);
+		velocityX = Arrays.copyOf(velocityX, capacity);
+		velocityY = Arrays.copyOf(velocityY, capacity);
+		weight = Arrays.copyOf(weight, capacity);
+		facingLeft = Arrays.copyOf(facingLeft, capacity);
+
+		handles = Arrays.copyOf(handles, capacity);
+		positions = Arrays.copyOf(positions, capacity);
+		velocities = Arrays.copyOf(velocities, capacity);
+		weights = Arrays.copyOf(weights, capacity);
+		facings = Arrays.copyOf(facings, capacity);
+
+		entityOfSlot = Arrays.copyOf(entityOfSlot, capacity);
+	}
+
+	private void ensureEntityCapacity(int id) {
+		if (id >= slotOfEntity.length) {
+			final int oldLength = slotOfEntity.length;
+			slotOfEntity = Arrays.copyOf(slotOfEntity, Math.max(id + 1, oldLength * 2));
+			Arrays.fill(slotOfEntity, oldLength, slotOfEntity.length, PackedMotion.NO_SLOT);
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.sgtcodfish.colourBlind;
+
+/**
+ * The things a player can do by pressing a key, each with its own bit so that
+ * every action a player is doing can be held in one int.
+ * 
+ * Keys are bound to actions by a PlayerInputListener, and the actions held or
+ * pressed each tick are worked out from the keys {@link InputActions} has
+ * seen.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public enum PlayerAction {
+	JUMP, LEFT, RIGHT, FLASHLIGHT, USE, RED, BLUE, GREEN, YELLOW;
+
+	/** The bit for this action in a mask of actions. */
+	public final int	mask	= 1 << ordinal();
+
+	/**
+	 * @return True if this action's bit is set in the given mask.
+	 */
+	public boolean isIn(int actions) {
+		return (actions & mask) != 0;
+	}
+}
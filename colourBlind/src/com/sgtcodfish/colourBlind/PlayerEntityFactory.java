@@ -8,6 +8,7 @@ import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.Texture.TextureFilter;
 import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Disposable;
 import com.sgtcodfish.colourBlind.components.Coloured;
@@ -30,10 +31,23 @@ public class PlayerEntityFactory implements Disposable {
 	public static int			DEFAULT_PLAYER_TEXTURE_WIDTH	= 64;
 	public static int			DEFAULT_PLAYER_TEXTURE_HEIGHT	= 128;
 
-	public static final Vector2	INITIAL_POSITION				= new Vector2(32.0f, 32.0f);
+	/** Where players start each level. */
+	public static final float	INITIAL_X						= 32.0f;
+	public static final float	INITIAL_Y						= 32.0f;
+
+	/**
+	 * @deprecated Use {@link #INITIAL_X} and {@link #INITIAL_Y}, which can't be
+	 *             changed; this is only a copy of them, and changing it has no
+	 *             effect.
+	 */
+	@Deprecated
+	public static final Vector2	INITIAL_POSITION				= new Vector2(INITIAL_X, INITIAL_Y);
 	public static final float	JUMP_VELOCITY					= 32.0f;
 	public static final float	RUN_VELOCITY					= 32.0f;
 
+	/** The number of tiles high the player is drawn, and so collides as. */
+	public static final float	HEIGHT_IN_TILES					= 2.5f;
+
 	public Texture				playerTexture					= null;
 
 	public Animation			stand							= null;
@@ -58,7 +72,7 @@ public class PlayerEntityFactory implements Disposable {
 
 		Entity e = world.createEntity();
 
-		e.addComponent(new Position(INITIAL_POSITION));
+		e.addComponent(new Position(INITIAL_X, INITIAL_Y));
 		e.addComponent(new Velocity());
 		if (takesFocus) {
 			e.addComponent(new FocusTaker());
@@ -78,6 +92,67 @@ public class PlayerEntityFactory implements Disposable {
 		return e;
 	}
 
+	/**
+	 * Creates a player entity with only the components the logic systems use,
+	 * with nothing to draw it, for running the game without a window. It
+	 * collides as the size it would be drawn at on a level with the given tile
+	 * height, as a player from createPlayerEntity does once its sprite has
+	 * been scaled.
+	 * 
+	 * @param world
+	 *        The world from which to create the entity.
+	 * @param tileHeight
+	 *        The height of the tiles of the level being played.
+	 * @return The player entity.
+	 */
+	public static Entity createLogicPlayerEntity(World world, float tileHeight) {
+		final Rectangle bounds = getLogicBounds(tileHeight);
+		Entity e = world.createEntity();
+
+		e.addComponent(new Position(INITIAL_X, INITIAL_Y));
+		e.addComponent(new Velocity());
+		e.addComponent(new PlayerInputListener());
+		e.addComponent(new Facing());
+		e.addComponent(new Coloured());
+		e.addComponent(new Weight());
+		e.addComponent(new Solid(bounds.x, bounds.y, bounds.width, bounds.height));
+		e.addComponent(new Flashlight("Player's Flashlight"));
+
+		return e;
+	}
+
+	/**
+	 * @param tileHeight
+	 *        The height of the tiles of the level being played.
+	 * @return The rectangle the player collides as, relative to its position,
+	 *         on a level with the given tile height; see
+	 *         createLogicPlayerEntity.
+	 */
+	public static Rectangle getLogicBounds(float tileHeight) {
+		final float scalingFactor = getScalingFactor(tileHeight);
+		float width = DEFAULT_PLAYER_TEXTURE_WIDTH;
+		float height = DEFAULT_PLAYER_TEXTURE_HEIGHT;
+
+		// scaled in the same way as HumanoidAnimatedSprite, to collide the same
+		width *= scalingFactor;
+		height *= scalingFactor;
+
+		return new Rectangle(0.0f, 0.0f, width, height);
+	}
+
+	/**
+	 * @param tileHeight
+	 *        The height of the tiles of the level being played.
+	 * @return The factor by which to scale the player's sprite so that it's
+	 *         HEIGHT_IN_TILES tiles high.
+	 */
+	public static float getScalingFactor(float tileHeight) {
+		final float playerHeight = (float) DEFAULT_PLAYER_TEXTURE_HEIGHT;
+		final float cellHeight = HEIGHT_IN_TILES * tileHeight;
+
+		return 1 / (playerHeight / cellHeight);
+	}
+
 	/**
 	 * Creates an entity with typical components one might expect a player
 	 * character to have, with the default that this entity does not take focus
@@ -0,0 +1,342 @@
+package com.sgtcodfish.colourBlind;
+
+import static com.badlogic.gdx.graphics.g2d.Batch.C1;
+import static com.badlogic.gdx.graphics.g2d.Batch.C2;
+import static com.badlogic.gdx.graphics.g2d.Batch.C3;
+import static com.badlogic.gdx.graphics.g2d.Batch.C4;
+import static com.badlogic.gdx.graphics.g2d.Batch.U1;
+import static com.badlogic.gdx.graphics.g2d.Batch.U2;
+import static com.badlogic.gdx.graphics.g2d.Batch.U3;
+import static com.badlogic.gdx.graphics.g2d.Batch.U4;
+import static com.badlogic.gdx.graphics.g2d.Batch.V1;
+import static com.badlogic.gdx.graphics.g2d.Batch.V2;
+import static com.badlogic.gdx.graphics.g2d.Batch.V3;
+import static com.badlogic.gdx.graphics.g2d.Batch.V4;
+import static com.badlogic.gdx.graphics.g2d.Batch.X1;
+import static com.badlogic.gdx.graphics.g2d.Batch.X2;
+import static com.badlogic.gdx.graphics.g2d.Batch.X3;
+import static com.badlogic.gdx.graphics.g2d.Batch.X4;
+import static com.badlogic.gdx.graphics.g2d.Batch.Y1;
+import static com.badlogic.gdx.graphics.g2d.Batch.Y2;
+import static com.badlogic.gdx.graphics.g2d.Batch.Y3;
+import static com.badlogic.gdx.graphics.g2d.Batch.Y4;
+
+import java.util.Arrays;
+
+import com.artemis.Manager;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+
+/**
+ * Collects the sprites drawn by every rendering system during a frame and
+ * draws them all in one batch pass when flushed, rather than each system
+ * beginning and ending the batch and swapping shaders for every Entity.
+ * 
+ * Submissions are sorted by layer first, so that everything on a lower layer
+ * is drawn beneath everything on a higher one, and then by shader and texture
+ * so that each layer costs as few state changes as possible. Submissions which
+ * tie on all three are drawn in the order they were made.
+ * 
+ * Per-Entity values which used to be uniforms, like a sprite's colour, should
+ * be passed as the vertex colour so that they don't break the batch. Uniforms
+ * which only change with the shader or layer can be set through a
+ * {@link ShaderSetup}.
+ * 
+ * The queue is a {@link Manager}, so systems can find it through
+ * world.getManager(RenderQueue.class).
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class RenderQueue extends Manager {
+	/** The layer for coloured platforms. */
+	public static final int									LAYER_PLATFORMS			= 0;
+
+	/** The layer for sprites, drawn over the level. */
+	public static final int									LAYER_SPRITES			= 1;
+
+	public static final int									MAX_LAYERS				= 1 << 8;
+
+	private static final int								DEFAULT_CAPACITY		= 256;
+	private static final int								VERTEX_SIZE				= 20;
+
+	// sort keys are packed as layer | shader | texture | submission index.
+	private static final int								INDEX_BITS				= 24;
+	private static final int								TEXTURE_BITS			= 16;
+	private static final int								SHADER_BITS				= 8;
+	private static final long								INDEX_MASK				= (1L << INDEX_BITS) - 1L;
+
+	/**
+	 * Sets any uniforms a shader needs which don't change from sprite to
+	 * sprite. Called with the shader bound each time the flush switches to the
+	 * shader or to a new layer using it.
+	 */
+	public interface ShaderSetup {
+		public void setup(ShaderProgram program, int layer);
+	}
+
+	private float[]											vertices;
+	private Texture[]										textures;
+	private ShaderProgram[]									shaders;
+	private int[]											layers;
+	private long[]											sortKeys;
+	private int												count					= 0;
+
+	// the shaders and textures seen this frame; their indices go in the keys.
+	private final Array<ShaderProgram>						frameShaders			= new Array<ShaderProgram>();
+	private final Array<Texture>							frameTextures			= new Array<Texture>();
+
+	private final ObjectMap<ShaderProgram, ShaderSetup>		shaderSetups			= new ObjectMap<ShaderProgram, ShaderSetup>();
+
+	private final float[]									quad					= new float[VERTEX_SIZE];
+
+	private int												pendingDrawCalls		= 0;
+	private int												drawCallsLastFrame		= 0;
+
+	public RenderQueue() {
+		vertices = new float[DEFAULT_CAPACITY * VERTEX_SIZE];
+		textures = new Texture[DEFAULT_CAPACITY];
+		shaders = new ShaderProgram[DEFAULT_CAPACITY];
+		layers = new int[DEFAULT_CAPACITY];
+		sortKeys = new long[DEFAULT_CAPACITY];
+	}
+
+	@Override
+	protected void initialize() {
+	}
+
+	/**
+	 * Registers the uniform setup for a shader, replacing any previous one.
+	 * 
+	 * @param program
+	 *        The shader.
+	 * @param setup
+	 *        The setup to run when the shader is bound, or null for none.
+	 */
+	public void setShaderSetup(ShaderProgram program, ShaderSetup setup) {
+		if (setup == null) {
+			shaderSetups.remove(program);
+		} else {
+			shaderSetups.put(program, setup);
+		}
+	}
+
+	/**
+	 * Queues a sprite given as 20 floats of vertex data, in the same layout
+	 * used by Batch.draw(Texture, float[], int, int).
+	 * 
+	 * @param layer
+	 *        The layer to draw on, from 0 to MAX_LAYERS - 1.
+	 * @param program
+	 *        The shader to draw with, or null for the batch's default.
+	 * @param texture
+	 *        The texture to draw.
+	 * @param spriteVertices
+	 *        The vertex data.
+	 * @param offset
+	 *        The index of the sprite's first float in spriteVertices.
+	 */
+	public void submit(int layer, ShaderProgram program, Texture texture, float[] spriteVertices, int offset) {
+		if (layer < 0 || layer >= MAX_LAYERS) {
+			throw new IllegalArgumentException("RenderQueue layers must be from 0 to " + (MAX_LAYERS - 1) + ".");
+		}
+
+		if (count == textures.length) {
+			grow();
+		}
+
+		System.arraycopy(spriteVertices, offset, vertices, count * VERTEX_SIZE, VERTEX_SIZE);
+		textures[count] = texture;
+		shaders[count] = program;
+		layers[count] = layer;
+		count++;
+	}
+
+	/**
+	 * Queues a texture region stretched over the given rectangle. A negative
+	 * width or height flips the region.
+	 * 
+	 * @param layer
+	 *        The layer to draw on, from 0 to MAX_LAYERS - 1.
+	 * @param program
+	 *        The shader to draw with, or null for the batch's default.
+	 * @param region
+	 *        The region to draw.
+	 * @param x
+	 *        The x coordinate of the region's left edge.
+	 * @param y
+	 *        The y coordinate of the region's bottom edge.
+	 * @param width
+	 *        The width to draw the region at.
+	 * @param height
+	 *        The height to draw the region at.
+	 * @param colour
+	 *        The vertex colour, packed with Color.toFloatBits.
+	 */
+	public void submit(int layer, ShaderProgram program, TextureRegion region, float x, float y, float width,
+			float height, float colour) {
+		final float[] quad = this.quad;
+
+		final float x2 = x + width;
+		final float y2 = y + height;
+		final float u = region.getU();
+		final float v = region.getV2();
+		final float u2 = region.getU2();
+		final float v2 = region.getV();
+
+		quad[X1] = x;
+		quad[Y1] = y;
+		quad[C1] = colour;
+		quad[U1] = u;
+		quad[V1] = v;
+
+		quad[X2] = x;
+		quad[Y2] = y2;
+		quad[C2] = colour;
+		quad[U2] = u;
+		quad[V2] = v2;
+
+		quad[X3] = x2;
+		quad[Y3] = y2;
+		quad[C3] = colour;
+		quad[U3] = u2;
+		quad[V3] = v2;
+
+		quad[X4] = x2;
+		quad[Y4] = y;
+		quad[C4] = colour;
+		quad[U4] = u2;
+		quad[V4] = v;
+
+		submit(layer, program, region.getTexture(), quad, 0);
+	}
+
+	/**
+	 * Records draw calls made this frame outside of the batch pass, e.g. for
+	 * cached static geometry, so that they're included in
+	 * getDrawCallsLastFrame.
+	 * 
+	 * @param drawCalls
+	 *        The number of draw calls made.
+	 */
+	public void countDrawCalls(int drawCalls) {
+		pendingDrawCalls += drawCalls;
+	}
+
+	/**
+	 * Draws everything queued since the last flush in one batch pass, then
+	 * empties the queue. The batch's projection matrix should already be set.
+	 * 
+	 * @param batch
+	 *        The batch to draw with; must not be drawing already.
+	 */
+	public void flush(Batch batch) {
+		for (int i = 0; i < count; i++) {
+			sortKeys[i] = ((long) layers[i] << (SHADER_BITS + TEXTURE_BITS + INDEX_BITS))
+					| ((long) indexOf(frameShaders, shaders[i], SHADER_BITS) << (TEXTURE_BITS + INDEX_BITS))
+					| ((long) indexOf(frameTextures, textures[i], TEXTURE_BITS) << INDEX_BITS) | i;
+		}
+
+		Arrays.sort(sortKeys, 0, count);
+
+		batch.begin();
+
+		ShaderProgram currentShader = null;
+		int currentLayer = -1;
+
+		for (int k = 0; k < count; k++) {
+			final int i = (int) (sortKeys[k] & INDEX_MASK);
+			final ShaderProgram program = shaders[i];
+
+			if (k == 0 || program != currentShader || layers[i] != currentLayer) {
+				// anything drawn so far needs the old uniforms.
+				batch.flush();
+
+				if (k == 0 || program != currentShader) {
+					batch.setShader(program);
+				}
+
+				currentShader = program;
+				currentLayer = layers[i];
+
+				ShaderSetup setup = (program != null ? shaderSetups.get(program) : null);
+				if (setup != null) {
+					setup.setup(program, currentLayer);
+				}
+			}
+
+			batch.draw(textures[i], vertices, i * VERTEX_SIZE, VERTEX_SIZE);
+		}
+
+		batch.end();
+		batch.setShader(null);
+
+		if (batch instanceof SpriteBatch) {
+			pendingDrawCalls += ((SpriteBatch) batch).renderCalls;
+		}
+
+		drawCallsLastFrame = pendingDrawCalls;
+		pendingDrawCalls = 0;
+
+		clear();
+	}
+
+	/**
+	 * Empties the queue without drawing anything.
+	 */
+	public void clear() {
+		// drop references so that disposed textures and shaders can be
+		// collected.
+		Arrays.fill(textures, 0, count, null);
+		Arrays.fill(shaders, 0, count, null);
+		frameShaders.clear();
+		frameTextures.clear();
+		count = 0;
+	}
+
+	/**
+	 * @return The number of sprites queued since the last flush.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @return The number of draw calls made during the last frame, counting
+	 *         both the batch pass and any passed to countDrawCalls.
+	 */
+	public int getDrawCallsLastFrame() {
+		return drawCallsLastFrame;
+	}
+
+	private static <T> int indexOf(Array<T> seen, T value, int bits) {
+		int index = seen.indexOf(value, true);
+
+		if (index == -1) {
+			index = seen.size;
+			seen.add(value);
+		}
+
+		// with more distinct values than fit in the key, the rest share the
+		// last slot; they're still drawn correctly, just with less sorting.
+		return Math.min(index, (1 << bits) - 1);
+	}
+
+	private void grow() {
+		final int capacity = textures.length * 2;
+
+		if (capacity > (1 << INDEX_BITS)) {
+			throw new IllegalStateException("Too many sprites queued in one frame.");
+		}
+
+		vertices = Arrays.copyOf(vertices, capacity * VERTEX_SIZE);
+		textures = Arrays.copyOf(textures, capacity);
+		shaders = Arrays.copyOf(shaders, capacity);
+		layers = Arrays.copyOf(layers, capacity);
+		sortKeys = Arrays.copyOf(sortKeys, capacity);
+	}
+}
@@ -0,0 +1,414 @@
+package com.sgtcodfish.colourBlind;
+
+import com.artemis.EntitySystem;
+import com.artemis.Manager;
+import com.artemis.utils.ImmutableBag;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.sgtcodfish.colourBlind.systems.ScheduledSystem;
+import com.sgtcodfish.colourBlind.systems.SystemAccess;
+
+/**
+ * Runs a list of logic systems once, running systems which don't conflict at
+ * the same time on the world's {@link WorkerPool}.
+ * 
+ * The scheduler builds a graph of the systems in which a system depends on
+ * every system before it in the list that it conflicts with, as declared by
+ * {@link ScheduledSystem}. The graph is kept from tick to tick, and only built
+ * again when the list of systems or one of their declarations changes, so a
+ * tick allocates nothing. Each system runs as soon as everything
+ * it depends on has finished, so the result is always the same as running
+ * the list in order. Systems which must stay on the main thread are run by
+ * the calling thread, which otherwise helps the pool until every system is
+ * done. Without a pool, or with a pool of one thread, the list is just run in
+ * order.
+ * 
+ * The time each system took and the longest chain of dependent systems (the
+ * critical path, which is the least time the tick could take however many
+ * threads there are) are recorded for each tick.
+ * 
+ * The scheduler is a {@link Manager}, so the FixedStepClock can find it
+ * through world.getManager(SystemScheduler.class) and use it to run logic
+ * ticks. Rendering systems are never run by the scheduler.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class SystemScheduler extends Manager {
+	private static final int	NONE				= -1;
+
+	private WorkerPool			pool				= null;
+
+	private EntitySystem[]		systems				= new EntitySystem[0];
+	private SystemAccess[]		accesses			= new SystemAccess[0];
+	private int[]				accessVersions		= new int[0];
+	private SystemJob[]			jobs				= new SystemJob[0];
+	private int					systemCount			= 0;
+
+	// the graph: the systems each system must run before, the number of
+	// systems each depends on, the systems which depend on nothing, and the
+	// number of systems each is still waiting on this tick
+	private int[][]				successors			= new int[0][];
+	private int[]				successorCounts		= new int[0];
+	private int[]				dependencyCounts	= new int[0];
+	private int[]				roots				= new int[0];
+	private int					rootCount			= 0;
+	private int[]				waitingOn			= new int[0];
+
+	// main thread systems which are ready to run, and the systems still to run
+	private int[]				mainReady			= new int[0];
+	private int					mainReadyCount		= 0;
+	private int					remaining			= 0;
+
+	private volatile Throwable	failure				= null;
+
+	// timings for the last tick, in nanoseconds
+	private long[]				nanos				= new long[0];
+	private long[]				finishes			= new long[0];
+	private int[]				criticalPrevious	= new int[0];
+	private int					criticalLast		= NONE;
+	private long				criticalPathNanos	= 0L;
+	private long				tickNanos			= 0L;
+
+	@Override
+	protected void initialize() {
+		pool = world.getManager(WorkerPool.class);
+	}
+
+	/**
+	 * Runs every system in the list once, returning when all of them have
+	 * finished.
+	 * 
+	 * @param logicSystems
+	 *        The systems, in the order in which they'd run one at a time.
+	 * @throws GdxRuntimeException
+	 *         If any system threw, once every system which had already
+	 *         started has finished; the rest are skipped.
+	 */
+	public void process(ImmutableBag<EntitySystem> logicSystems) {
+		final long start = TimeUtils.nanoTime();
+
+		if (hasChanged(logicSystems)) {
+			buildGraph(logicSystems);
+		}
+
+		if (pool == null || pool.getParallelism() == 1) {
+			for (int i = 0; i < systemCount; i++) {
+				runSystem(i);
+			}
+		} else {
+			runGraph();
+		}
+
+		tickNanos = TimeUtils.nanoTime() - start;
+		findCriticalPath();
+
+		if (failure != null) {
+			Throwable t = failure;
+			failure = null;
+			throw new GdxRuntimeException("A logic system failed.", t);
+		}
+	}
+
+	/**
+	 * @return True if the list of systems, or what any of them declares, is
+	 *         different from when the graph was last built.
+	 */
+	private boolean hasChanged(ImmutableBag<EntitySystem> logicSystems) {
+		if (logicSystems.size() != systemCount) {
+			return true;
+		}
+
+		for (int i = 0; i < systemCount; i++) {
+			final EntitySystem system = logicSystems.get(i);
+			final SystemAccess access = accessOf(system);
+
+			if (system != systems[i] || access != accesses[i] || access.getVersion() != accessVersions[i]) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void buildGraph(ImmutableBag<EntitySystem> logicSystems) {
+		systemCount = logicSystems.size();
+		ensureCapacity(systemCount);
+
+		for (int i = 0; i < systemCount; i++) {
+			final EntitySystem system = logicSystems.get(i);
+			systems[i] = system;
+			accesses[i] = accessOf(system);
+			accessVersions[i] = accesses[i].getVersion();
+			successorCounts[i] = 0;
+			dependencyCounts[i] = 0;
+		}
+
+		for (int i = 0; i < systemCount; i++) {
+			for (int j = i + 1; j < systemCount; j++) {
+				if (accesses[i].conflictsWith(accesses[j])) {
+					successors[i][successorCounts[i]++] = j;
+					dependencyCounts[j]++;
+				}
+			}
+		}
+
+		// find every system with nothing to wait on, so that all of them can be
+		// started before any, as once one has finished others may be released
+		rootCount = 0;
+		for (int i = 0; i < systemCount; i++) {
+			if (dependencyCounts[i] == 0) {
+				roots[rootCount++] = i;
+			}
+		}
+	}
+
+	private static SystemAccess accessOf(EntitySystem system) {
+		return (system instanceof ScheduledSystem ? ((ScheduledSystem) system).getAccess() : SystemAccess.EXCLUSIVE);
+	}
+
+	private void runGraph() {
+		mainReadyCount = 0;
+		remaining = systemCount;
+		System.arraycopy(dependencyCounts, 0, waitingOn, 0, systemCount);
+
+		for (int i = 0; i < rootCount; i++) {
+			dispatch(roots[i]);
+		}
+
+		while (true) {
+			final long seen = pool.getSignalCount();
+			int next = NONE;
+
+			synchronized (this) {
+				if (remaining == 0) {
+					break;
+				}
+
+				if (mainReadyCount > 0) {
+					next = mainReady[--mainReadyCount];
+				}
+			}
+
+			if (next != NONE) {
+				runSystem(next);
+				finish(next);
+			} else if (!pool.runQueuedJob()) {
+				pool.awaitSignal(seen);
+			}
+		}
+	}
+
+	private void dispatch(int system) {
+		if (accesses[system].isMainThread()) {
+			synchronized (this) {
+				mainReady[mainReadyCount++] = system;
+			}
+
+			pool.wake();
+		} else {
+			pool.execute(jobs[system]);
+		}
+	}
+
+	/**
+	 * Releases everything waiting on a system which has just finished.
+	 */
+	private void finish(int system) {
+		final int[] next = successors[system];
+		boolean done = false;
+
+		for (int i = 0; i < successorCounts[system]; i++) {
+			boolean ready = false;
+
+			synchronized (this) {
+				ready = (--waitingOn[next[i]] == 0);
+			}
+
+			if (ready) {
+				dispatch(next[i]);
+			}
+		}
+
+		synchronized (this) {
+			done = (--remaining == 0);
+		}
+
+		if (done) {
+			pool.wake();
+		}
+	}
+
+	private void runSystem(int system) {
+		final long start = TimeUtils.nanoTime();
+
+		if (failure == null) {
+			try {
+				systems[system].process();
+			} catch (Throwable t) {
+				failure = t;
+			}
+		}
+
+		nanos[system] = TimeUtils.nanoTime() - start;
+	}
+
+	private void findCriticalPath() {
+		criticalLast = NONE;
+		criticalPathNanos = 0L;
+
+		for (int i = 0; i < systemCount; i++) {
+			finishes[i] = 0L;
+			criticalPrevious[i] = NONE;
+		}
+
+		// successors always come later in the list, so one pass in order sees
+		// every system after everything it depends on
+		for (int i = 0; i < systemCount; i++) {
+			finishes[i] += nanos[i];
+
+			if (finishes[i] > criticalPathNanos) {
+				criticalPathNanos = finishes[i];
+				criticalLast = i;
+			}
+
+			for (int j = 0; j < successorCounts[i]; j++) {
+				final int next = successors[i][j];
+
+				if (finishes[i] > finishes[next]) {
+					finishes[next] = finishes[i];
+					criticalPrevious[next] = i;
+				}
+			}
+		}
+	}
+
+	private void ensureCapacity(int count) {
+		if (systems.length >= count) {
+			return;
+		}
+
+		systems = new EntitySystem[count];
+		accesses = new SystemAccess[count];
+		accessVersions = new int[count];
+		jobs = new SystemJob[count];
+		successors = new int[count][count];
+		successorCounts = new int[count];
+		dependencyCounts = new int[count];
+		waitingOn = new int[count];
+		roots = new int[count];
+		mainReady = new int[count];
+		nanos = new long[count];
+		finishes = new long[count];
+		criticalPrevious = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			jobs[i] = new SystemJob(i);
+		}
+	}
+
+	/**
+	 * @return The number of systems run in the last tick.
+	 */
+	public int getSystemCount() {
+		return systemCount;
+	}
+
+	/**
+	 * @return The system at the given index of the list run in the last tick.
+	 */
+	public EntitySystem getSystem(int system) {
+		return systems[system];
+	}
+
+	/**
+	 * @return The time the given system took in the last tick, in nanoseconds.
+	 */
+	public long getSystemNanos(int system) {
+		return nanos[system];
+	}
+
+	/**
+	 * @return The time the whole of the last tick took, in nanoseconds.
+	 */
+	public long getTickNanos() {
+		return tickNanos;
+	}
+
+	/**
+	 * @return The total time of the longest chain of dependent systems in the
+	 *         last tick, in nanoseconds.
+	 */
+	public long getCriticalPathNanos() {
+		return criticalPathNanos;
+	}
+
+	/**
+	 * @return The indices of the systems on the critical path of the last
+	 *         tick, in the order they ran.
+	 */
+	public int[] getCriticalPath() {
+		int length = 0;
+		for (int i = criticalLast; i != NONE; i = criticalPrevious[i]) {
+			length++;
+		}
+
+		int[] path = new int[length];
+		for (int i = criticalLast; i != NONE; i = criticalPrevious[i]) {
+			path[--length] = i;
+		}
+
+		return path;
+	}
+
+	/**
+	 * @return True if the later system had to wait for the earlier one in the
+	 *         last tick.
+	 */
+	public boolean dependsOn(int later, int earlier) {
+		for (int i = 0; i < successorCounts[earlier]; i++) {
+			if (successors[earlier][i] == later) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return A line describing the timings of the last tick, for logging.
+	 *         Systems are listed in order, with the ones on the critical path
+	 *         marked with a *.
+	 */
+	public String describeLastTick() {
+		StringBuilder builder = new StringBuilder();
+		boolean[] critical = new boolean[systemCount];
+
+		for (int i : getCriticalPath()) {
+			critical[i] = true;
+		}
+
+		builder.append("Tick took ").append(tickNanos / 1000L).append("us, critical path ")
+				.append(criticalPathNanos / 1000L).append("us:");
+
+		for (int i = 0; i < systemCount; i++) {
+			builder.append(' ').append(systems[i].getClass().getSimpleName()).append(critical[i] ? "*" : "")
+					.append(' ').append(nanos[i] / 1000L).append("us");
+		}
+
+		return builder.toString();
+	}
+
+	private class SystemJob implements Runnable {
+		private final int	system;
+
+		SystemJob(int system) {
+			this.system = system;
+		}
+
+		@Override
+		public void run() {
+			runSystem(system);
+			finish(system);
+		}
+	}
+}
@@ -0,0 +1,321 @@
+package com.sgtcodfish.colourBlind;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.artemis.Manager;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * A fixed pool of worker threads shared by every system in a world which can
+ * split its work up, so that the world never has more threads busy than there
+ * are processors.
+ * 
+ * The thread which hands a batch of jobs to the pool runs one of them itself,
+ * and then, rather than blocking, runs any other queued jobs until its batch
+ * is finished. So a pool with a parallelism of n only starts n - 1 threads of
+ * its own, a parallelism of 1 runs everything on the calling thread, and a job
+ * can hand out a batch of its own (e.g. a system run by the SystemScheduler
+ * splitting up its entities) without ever waiting on a thread that's waiting
+ * on it.
+ * 
+ * The queue and the bookkeeping for each batch are kept and reused, so once
+ * the pool has warmed up, handing out jobs allocates nothing.
+ * 
+ * The pool is a {@link Manager}, so systems can find it through
+ * world.getManager(WorkerPool.class); systems which find none just work
+ * serially.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class WorkerPool extends Manager implements Disposable {
+	private final int					parallelism;
+	private final Thread[]				threads;
+
+	// guards the queue and waiting for work; signals counts every job queued
+	// and every wake()
+	private final Object				lock		= new Object();
+	private final ArrayDeque<Runnable>	queue		= new ArrayDeque<Runnable>();
+	private long						signals		= 0L;
+
+	// batches which aren't being run, to be reused
+	private final Array<Batch>			freeBatches	= new Array<Batch>(false, 4);
+
+	private volatile boolean			disposed	= false;
+
+	/**
+	 * Creates a pool with one thread per available processor, counting the
+	 * calling thread.
+	 */
+	public WorkerPool() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param parallelism
+	 *        The number of jobs to run at once, counting the calling thread.
+	 */
+	public WorkerPool(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+		this.threads = new Thread[this.parallelism - 1];
+
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (!disposed) {
+						Runnable job = null;
+
+						synchronized (lock) {
+							while ((job = queue.poll()) == null) {
+								if (disposed) {
+									return;
+								}
+
+								try {
+									lock.wait();
+								} catch (InterruptedException e) {
+									return;
+								}
+							}
+						}
+
+						job.run();
+					}
+				}
+			}, "WorkerPool-" + i);
+
+			// never keep the game running just to finish a tick
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	@Override
+	protected void initialize() {
+	}
+
+	/**
+	 * @return The number of jobs which can run at once, counting the calling
+	 *         thread.
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Runs jobs[0] to jobs[count - 1] at once, running jobs[0] on the calling
+	 * thread, and returns when all of them have finished. Jobs must not share
+	 * anything they write to.
+	 * 
+	 * @param jobs
+	 *        The jobs to run.
+	 * @param count
+	 *        The number of jobs from the start of the array to run.
+	 * @throws GdxRuntimeException
+	 *         If any of the jobs threw, once all of them have finished.
+	 */
+	public void run(Runnable[] jobs, int count) {
+		if (count <= 0) {
+			return;
+		}
+
+		if (threads.length == 0 || count == 1) {
+			for (int i = 0; i < count; i++) {
+				jobs[i].run();
+			}
+
+			return;
+		}
+
+		final Batch batch = obtainBatch();
+		batch.reset(jobs, count);
+
+		for (int i = 1; i < count; i++) {
+			execute(batch.jobs[i]);
+		}
+
+		batch.jobs[0].run();
+
+		// every job has to finish before returning, or one could still be
+		// writing to entities the caller is about to read
+		while (true) {
+			final long seen = getSignalCount();
+
+			if (batch.remaining.get() == 0) {
+				break;
+			}
+
+			if (!runQueuedJob()) {
+				awaitSignal(seen);
+			}
+		}
+
+		final Throwable failure = batch.failure;
+		freeBatch(batch);
+
+		if (failure != null) {
+			throw new GdxRuntimeException("A job in the worker pool failed.", failure);
+		}
+	}
+
+	/**
+	 * Queues a job to be run by the next free thread. The job must catch
+	 * anything it throws, as there's nobody to throw it to.
+	 */
+	public void execute(Runnable job) {
+		synchronized (lock) {
+			queue.add(job);
+			signals++;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Runs one queued job on the calling thread, if there are any.
+	 * 
+	 * @return True if a job was run.
+	 */
+	public boolean runQueuedJob() {
+		Runnable job = null;
+
+		synchronized (lock) {
+			job = queue.poll();
+		}
+
+		if (job == null) {
+			return false;
+		}
+
+		job.run();
+		return true;
+	}
+
+	/**
+	 * @return A count which changes whenever a job is queued or wake() is
+	 *         called; read it before checking whatever is being waited for,
+	 *         then pass it to awaitSignal.
+	 */
+	public long getSignalCount() {
+		synchronized (lock) {
+			return signals;
+		}
+	}
+
+	/**
+	 * Waits until a job is queued or wake() is called, returning straight away
+	 * if either has happened since the signal count was read.
+	 * 
+	 * @param seen
+	 *        The signal count read before checking whatever is being waited
+	 *        for.
+	 */
+	public void awaitSignal(long seen) {
+		boolean interrupted = false;
+
+		synchronized (lock) {
+			while (signals == seen && queue.isEmpty()) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Wakes every thread in awaitSignal, e.g. when something they're waiting
+	 * for has finished.
+	 */
+	public void wake() {
+		synchronized (lock) {
+			signals++;
+			lock.notifyAll();
+		}
+	}
+
+	@Override
+	public void dispose() {
+		disposed = true;
+
+		for (Thread thread : threads) {
+			thread.interrupt();
+		}
+	}
+
+	private Batch obtainBatch() {
+		synchronized (freeBatches) {
+			return (freeBatches.size > 0 ? freeBatches.pop() : new Batch());
+		}
+	}
+
+	private void freeBatch(Batch batch) {
+		synchronized (freeBatches) {
+			freeBatches.add(batch);
+		}
+	}
+
+	/**
+	 * Counts down the jobs of one call to run(), keeping the first failure.
+	 * Batches are reused, along with the jobs wrapping the caller's.
+	 */
+	private class Batch {
+		final AtomicInteger	remaining	= new AtomicInteger();
+		volatile Throwable	failure		= null;
+		BatchJob[]			jobs		= new BatchJob[0];
+
+		void reset(Runnable[] callerJobs, int count) {
+			if (jobs.length < count) {
+				BatchJob[] bigger = new BatchJob[count];
+				System.arraycopy(jobs, 0, bigger, 0, jobs.length);
+
+				for (int i = jobs.length; i < count; i++) {
+					bigger[i] = new BatchJob(this);
+				}
+
+				jobs = bigger;
+			}
+
+			for (int i = 0; i < count; i++) {
+				jobs[i].job = callerJobs[i];
+			}
+
+			failure = null;
+			remaining.set(count);
+		}
+	}
+
+	/**
+	 * Runs one of the caller's jobs as part of a batch.
+	 */
+	private class BatchJob implements Runnable {
+		final Batch	batch;
+		Runnable	job	= null;
+
+		BatchJob(Batch batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void run() {
+			try {
+				job.run();
+			} catch (Throwable t) {
+				if (batch.failure == null) {
+					batch.failure = t;
+				}
+			} finally {
+				if (batch.remaining.decrementAndGet() == 0) {
+					wake();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.sgtcodfish.colourBlind.collision;
+
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.sgtcodfish.colourBlind.CBColour.GameColour;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
+import com.sgtcodfish.colourBlind.tiled.PlatformLabels;
+
+/**
+ * The collision bitplanes of a whole level: one for the static tiles of the
+ * "level" layer, and one per {@link GameColour} holding the static tiles plus
+ * the platforms of that colour. Each packs one bit per tile, with bit (y *
+ * width) + x set if that tile is solid.
+ * 
+ * A grid only reads the map it's built from, so it can be built on any thread
+ * as the level loads; setting it on a CollisionSystem is then just a matter of
+ * swapping references. A grid is never changed once built.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class CollisionGrid {
+	public final int		widthInTiles;
+	public final int		heightInTiles;
+	public final float		tileWidth;
+	public final float		tileHeight;
+
+	/** The tiles of the "level" layer, solid to entities with no colour. */
+	public final long[]		staticBitplane;
+
+	/** One bitplane per GameColour, indexed by ordinal. */
+	public final long[][]	colourBitplanes;
+
+	private CollisionGrid(int widthInTiles, int heightInTiles, float tileWidth, float tileHeight,
+			long[] staticBitplane, long[][] colourBitplanes) {
+		this.widthInTiles = widthInTiles;
+		this.heightInTiles = heightInTiles;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		this.staticBitplane = staticBitplane;
+		this.colourBitplanes = colourBitplanes;
+	}
+
+	/**
+	 * Builds the collision grid for a level.
+	 * 
+	 * @param map
+	 *        The level, with packed "level" and "platforms" layers.
+	 * @param platforms
+	 *        The platforms in the "platforms" layer of the map, each already
+	 *        given its colour (e.g. by PlatformLabels.assignColours), or null
+	 *        if no platforms should be solid.
+	 * @param precomputed
+	 *        The tiles in the "level" layer, packed as staticBitplane is (e.g.
+	 *        from a CompiledLevel), or null to scan the layer. Not modified.
+	 * @return The level's collision grid.
+	 */
+	public static CollisionGrid build(TiledMap map, PlatformLabels platforms, long[] precomputed) {
+		PackedTileLayer levelLayer = (PackedTileLayer) map.getLayers().get("level");
+		final int widthInTiles = levelLayer.getWidth();
+		final int heightInTiles = levelLayer.getHeight();
+
+		final int size = widthInTiles * heightInTiles;
+		final int words = (size + 63) >>> 6;
+
+		long[] staticBitplane = null;
+
+		if (precomputed != null) {
+			if (precomputed.length != words) {
+				throw new IllegalArgumentException("Static bitplane doesn't match the size of the level layer.");
+			}
+
+			staticBitplane = precomputed.clone();
+		} else {
+			staticBitplane = new long[words];
+
+			// for every tile in the level layer, make it collidable always.
+			final int[] tiles = levelLayer.getTiles();
+			for (int index = 0; index < size; index++) {
+				if (tiles[index] != PackedTileLayer.EMPTY) {
+					staticBitplane[index >>> 6] |= (1L << index);
+				}
+			}
+		}
+
+		final GameColour[] gameColours = GameColour.values();
+		final long[][] colourBitplanes = new long[gameColours.length][];
+
+		for (int i = 0; i < gameColours.length; i++) {
+			colourBitplanes[i] = staticBitplane.clone();
+		}
+
+		if (platforms != null) {
+			// the bitplane for each platform, indexed by id; 0 means no platform
+			final long[][] platformBitplanes = new long[platforms.count + 1][];
+			for (int id = 1; id <= platforms.count; id++) {
+				final GameColour colour = platforms.getColour(id);
+
+				if (colour == null) {
+					throw new IllegalArgumentException("Platforms must be given colours before building collision.");
+				}
+
+				platformBitplanes[id] = colourBitplanes[colour.ordinal()];
+			}
+
+			final int platformWidth = Math.min(widthInTiles, platforms.width);
+			final int platformHeight = Math.min(heightInTiles, platforms.height);
+
+			for (int y = 0; y < platformHeight; y++) {
+				for (int x = 0; x < platformWidth; x++) {
+					final int id = platforms.ids[(y * platforms.width) + x];
+
+					if (id != 0) {
+						final int index = (y * widthInTiles) + x;
+						platformBitplanes[id][index >>> 6] |= (1L << index);
+					}
+				}
+			}
+		}
+
+		return new CollisionGrid(widthInTiles, heightInTiles, levelLayer.getTileWidth(), levelLayer.getTileHeight(),
+				staticBitplane, colourBitplanes);
+	}
+}
@@ -0,0 +1,123 @@
+package com.sgtcodfish.colourBlind.collision;
+
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.math.Rectangle;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
+
+/**
+ * An index of the tiles in a level's "door" layer, packed one bit per tile
+ * like a {@link CollisionGrid}'s bitplanes, so that checking whether a box is
+ * touching a door only tests the few tiles the box covers.
+ * 
+ * Like a CollisionGrid, it's built once as the level loads and never changed.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class DoorTriggers {
+	public final int		widthInTiles;
+	public final int		heightInTiles;
+	public final float		tileWidth;
+	public final float		tileHeight;
+
+	private final long[]	doors;
+	private final int		doorCount;
+
+	private DoorTriggers(PackedTileLayer doorLayer, long[] doors, int doorCount) {
+		this.widthInTiles = doorLayer.getWidth();
+		this.heightInTiles = doorLayer.getHeight();
+		this.tileWidth = doorLayer.getTileWidth();
+		this.tileHeight = doorLayer.getTileHeight();
+		this.doors = doors;
+		this.doorCount = doorCount;
+	}
+
+	/**
+	 * Builds the door index for a level.
+	 * 
+	 * @param map
+	 *        The level, with a packed "door" layer.
+	 * @param doorTiles
+	 *        The index of every tile in the door layer (e.g. from a
+	 *        CompiledLevel), or null to scan the layer.
+	 * @return The level's doors, or null if it has no door layer.
+	 */
+	public static DoorTriggers build(TiledMap map, int[] doorTiles) {
+		PackedTileLayer doorLayer = (PackedTileLayer) map.getLayers().get("door");
+
+		if (doorLayer == null) {
+			return null;
+		}
+
+		final long[] doors = new long[((doorLayer.getWidth() * doorLayer.getHeight()) + 63) >>> 6];
+		int doorCount = 0;
+
+		if (doorTiles != null) {
+			for (int index : doorTiles) {
+				doors[index >>> 6] |= (1L << index);
+			}
+
+			doorCount = doorTiles.length;
+		} else {
+			final int[] tiles = doorLayer.getTiles();
+			for (int index = 0; index < tiles.length; index++) {
+				if (tiles[index] != PackedTileLayer.EMPTY) {
+					doors[index >>> 6] |= (1L << index);
+					doorCount++;
+				}
+			}
+		}
+
+		return new DoorTriggers(doorLayer, doors, doorCount);
+	}
+
+	/**
+	 * @return The number of door tiles in the level.
+	 */
+	public int getDoorCount() {
+		return doorCount;
+	}
+
+	/**
+	 * @return True if the tile at the given tile coordinates is a door. Tiles
+	 *         outside the level are never doors.
+	 */
+	public boolean isDoor(int tileX, int tileY) {
+		if (tileX < 0 || tileX >= widthInTiles || tileY < 0 || tileY >= heightInTiles) {
+			return false;
+		}
+
+		final int index = (tileY * widthInTiles) + tileX;
+		return (doors[index >>> 6] & (1L << index)) != 0L;
+	}
+
+	/**
+	 * Checks whether a box overlaps any door tile.
+	 * 
+	 * @param x
+	 *        The x coordinate of the owner of rect.
+	 * @param y
+	 *        The y coordinate of the owner of rect.
+	 * @param rect
+	 *        The box, relative to (x, y).
+	 * @return True if the box overlaps a door.
+	 */
+	public boolean overlaps(float x, float y, Rectangle rect) {
+		final float left = x + rect.x;
+		final float bottom = y + rect.y;
+
+		final int col1 = (int) Math.floor(left / tileWidth);
+		final int col2 = (int) Math.ceil((left + rect.width) / tileWidth) - 1;
+		final int row1 = (int) Math.floor(bottom / tileHeight);
+		final int row2 = (int) Math.ceil((bottom + rect.height) / tileHeight) - 1;
+
+		for (int row = row1; row <= row2; row++) {
+			for (int col = col1; col <= col2; col++) {
+				if (isDoor(col, row)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+}
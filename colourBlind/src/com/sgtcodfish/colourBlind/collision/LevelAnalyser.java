@@ -0,0 +1,816 @@
+package com.sgtcodfish.colourBlind.collision;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.sgtcodfish.colourBlind.CBColour.GameColour;
+import com.sgtcodfish.colourBlind.InputRecording;
+import com.sgtcodfish.colourBlind.PlayerAction;
+import com.sgtcodfish.colourBlind.PlayerEntityFactory;
+import com.sgtcodfish.colourBlind.components.Coloured;
+import com.sgtcodfish.colourBlind.components.Solid;
+import com.sgtcodfish.colourBlind.components.Weight;
+import com.sgtcodfish.colourBlind.systems.CollisionSystem;
+import com.sgtcodfish.colourBlind.systems.MovementSystem;
+
+/**
+ * Works out whether the player can reach a level's door with a given platform
+ * colouring, and the shortest sequence of inputs which gets it there, by
+ * searching the states the player can be in tick by tick; e.g. to find the
+ * colourings from LevelEntityFactory.generatePlatformColours which make a
+ * level impossible.
+ * 
+ * On each tick the player can hold left, right or neither, jump if it's
+ * standing still on the ground, and turn any colour it has room to be. Every
+ * move is made by a {@link CollisionSystem}'s own sweep, with the velocities
+ * PlayerInputSystem and MovementSystem would give it, so a plan which is
+ * found does exactly the same in the game. Since a jump always starts from
+ * the same speed and running always sets the same speed, the vertical speeds
+ * of a jump and of a fall, and the horizontal speeds of running and slowing
+ * down, are worked out once from JUMP_VELOCITY, RUN_VELOCITY, GRAVITY and
+ * FRICTION, and a state only holds its position and an index into each arc.
+ * 
+ * Each state is packed into a long key of the tile the player is in, its
+ * colour, whether it's on the ground and its two arc indices. States with the
+ * same key are treated as one, keeping whichever got there in fewest ticks.
+ * The search is A* over ticks, estimating the ticks left from the distance to
+ * the doors at the player's top speeds, so the plan found is as short as any
+ * which passes through different keys. Turning colour is only tried with a
+ * platform close enough to be touched on the next tick, since until then it
+ * makes no difference when it's done.
+ * 
+ * Because positions are only told apart to the tile, a door reported as
+ * unreachable might still be reached by some finer movement than the search
+ * tried; a door reported as reachable always comes with a plan which reaches
+ * it. The flashlight only changes what the player can see, so it plays no
+ * part in the search.
+ * 
+ * All storage is in primitive arrays which are kept between searches and only
+ * grow, so analysing many colourings of a level allocates little.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class LevelAnalyser {
+	/** The most states a search will find before giving up, by default. */
+	public static final int				DEFAULT_MAX_STATES	= 1 << 22;
+
+	// the most ticks a jump or a fall is followed for before its speed is
+	// taken to stay the same, and likewise for slowing down
+	private static final int			MAX_ARC_TICKS		= 255;
+	private static final int			MAX_DRIFT_TICKS		= 31;
+
+	private static final int			NONE				= -1;
+	private static final long			EMPTY				= -1L;
+	private static final int			INITIAL_CAPACITY	= 1024;
+
+	// node indices are held in the low bits of the entries in the open list,
+	// below the inverted tick count and the estimated total
+	private static final int			NODE_BITS			= 24;
+	private static final long			NODE_MASK			= (1L << NODE_BITS) - 1L;
+	private static final int			TICKS_SHIFT			= NODE_BITS;
+	private static final int			TICKS_MASK			= 0xFFFF;
+	private static final int			ESTIMATE_SHIFT		= TICKS_SHIFT + 16;
+
+	// the layout of a state's key
+	private static final int			TILE_MASK			= 0xFFFF;
+	private static final int			TILE_Y_SHIFT		= 16;
+	private static final int			COLOUR_SHIFT		= 32;
+	private static final int			COLOUR_MASK			= 0x3;
+	private static final int			GROUNDED_SHIFT		= 34;
+	private static final int			DRIFT_SHIFT			= 35;
+	private static final int			DRIFT_MASK			= 0x3F;
+	private static final int			ARC_SHIFT			= 41;
+	private static final int			ARC_MASK			= 0x1FF;
+
+	// the colours the player can turn, and the actions which turn it each one
+	private static final GameColour[]	PLAYER_COLOURS		= { GameColour.RED, GameColour.BLUE, GameColour.GREEN,
+			GameColour.YELLOW								};
+	private static final int[]			COLOUR_ACTIONS		= { PlayerAction.RED.mask, PlayerAction.BLUE.mask,
+			PlayerAction.GREEN.mask, PlayerAction.YELLOW.mask };
+	private static final int			COLOUR_MASKS		= PlayerAction.RED.mask | PlayerAction.BLUE.mask
+			| PlayerAction.GREEN.mask | PlayerAction.YELLOW.mask;
+
+	private static final int[]			HORIZONTAL_ACTIONS	= { 0, PlayerAction.LEFT.mask, PlayerAction.RIGHT.mask };
+
+	// the vertical speed on each tick of a jump, starting at JUMP_START, and
+	// of a fall from rest, starting at REST; NEXT_ARC gives the index of the
+	// speed on the following tick.
+	private static final float[]		ARC;
+	private static final int[]			NEXT_ARC;
+	private static final int			JUMP_START;
+	private static final int			REST;
+
+	// the horizontal speed on each tick of running and then slowing down to
+	// the right, starting at RUN_RIGHT, and likewise to the left; index 0 is
+	// standing still.
+	private static final float[]		DRIFT;
+	private static final int[]			NEXT_DRIFT;
+	private static final int			STILL				= 0;
+	private static final int			RUN_RIGHT;
+	private static final int			RUN_LEFT;
+
+	private static final float			MAX_RUN_SPEED;
+	private static final float			MAX_RISE_SPEED;
+
+	static {
+		final float gravity = Weight.DEFAULT_WEIGHT * MovementSystem.GRAVITY;
+		final FloatArray arc = new FloatArray();
+		final IntArray next = new IntArray();
+
+		// a jump carries on until it comes to rest at the top, from where it
+		// falls just as it would from rest
+		float speed = PlayerEntityFactory.JUMP_VELOCITY;
+		boolean reachesRest = false;
+
+		while (arc.size < MAX_ARC_TICKS) {
+			speed = snap(speed - gravity);
+
+			if (speed == 0.0f) {
+				reachesRest = true;
+				break;
+			}
+
+			arc.add(speed);
+			next.add(arc.size);
+		}
+
+		// a jump which never leaves the ground starts at rest
+		REST = arc.size;
+		JUMP_START = 0;
+		if (REST > 0) {
+			next.set(REST - 1, (reachesRest ? REST : REST - 1));
+		}
+
+		arc.add(0.0f);
+		next.add(REST);
+
+		speed = 0.0f;
+		for (int tick = 0; tick < MAX_ARC_TICKS; tick++) {
+			speed = snap(speed - gravity);
+
+			if (speed == arc.get(arc.size - 1)) {
+				break;
+			}
+
+			next.set(arc.size - 1, arc.size);
+			arc.add(speed);
+			next.add(arc.size - 1);
+		}
+
+		ARC = arc.toArray();
+		NEXT_ARC = next.toArray();
+
+		float maxRise = 0.0f;
+		for (int i = 0; i < ARC.length; i++) {
+			maxRise = Math.max(maxRise, ARC[i]);
+		}
+
+		MAX_RISE_SPEED = maxRise;
+
+		final FloatArray drift = new FloatArray();
+		final IntArray nextDrift = new IntArray();
+
+		drift.add(0.0f);
+		nextDrift.add(STILL);
+
+		RUN_RIGHT = addDrift(drift, nextDrift, PlayerEntityFactory.RUN_VELOCITY);
+		RUN_LEFT = addDrift(drift, nextDrift, -PlayerEntityFactory.RUN_VELOCITY);
+
+		DRIFT = drift.toArray();
+		NEXT_DRIFT = nextDrift.toArray();
+
+		MAX_RUN_SPEED = Math.abs(DRIFT[RUN_RIGHT]);
+
+	}
+
+	public final DoorTriggers			doors;
+
+	/** The rectangle the player collides as, relative to its position. */
+	public final Rectangle				bounds;
+
+	/** The most states a search will find before giving up. */
+	public int							maxStates			= DEFAULT_MAX_STATES;
+
+	private final CollisionSystem		collision;
+	private CollisionGrid				grid				= null;
+	private final Vector2				resolved			= new Vector2();
+
+	// the tiles which are solid for some colours but not others
+	private long[]						platformPlane		= null;
+
+	// the box around every door, in pixels
+	private boolean						hasDoors			= false;
+	private float						doorLeft			= Float.MAX_VALUE;
+	private float						doorRight			= -Float.MAX_VALUE;
+	private float						doorBottom			= Float.MAX_VALUE;
+
+	// per-node state, indexed by node
+	private float[]						nodeX				= new float[INITIAL_CAPACITY];
+	private float[]						nodeY				= new float[INITIAL_CAPACITY];
+	private long[]						nodeKey				= new long[INITIAL_CAPACITY];
+	private long[]						nodeState			= new long[INITIAL_CAPACITY];
+	private int[]						nodeParent			= new int[INITIAL_CAPACITY];
+	private int[]						nodeActions			= new int[INITIAL_CAPACITY];
+	private int[]						nodeTicks			= new int[INITIAL_CAPACITY];
+	private int[]						nodePresses			= new int[INITIAL_CAPACITY];
+	private boolean[]					nodeClosed			= new boolean[INITIAL_CAPACITY];
+	private int							nodeCount			= 0;
+	private boolean						truncated			= false;
+
+	// keys to nodes, with open addressing; the length is a power of two.
+	private long[]						tableKeys			= new long[INITIAL_CAPACITY * 2];
+	private int[]						tableNodes			= new int[INITIAL_CAPACITY * 2];
+	private int							tableShift			= 64 - 11;
+
+	// the open list, as a binary min-heap of packed entries
+	private long[]						heap				= new long[INITIAL_CAPACITY];
+	private int							heapSize			= 0;
+
+	/**
+	 * Creates an analyser for a player of the size createLogicPlayerEntity
+	 * gives it on this level.
+	 * 
+	 * @param grid
+	 *        The level's collision grid, built with the colouring to analyse.
+	 * @param doors
+	 *        The level's doors, or null if it has none.
+	 */
+	public LevelAnalyser(CollisionGrid grid, DoorTriggers doors) {
+		this(grid, doors, PlayerEntityFactory.getLogicBounds(grid.tileHeight));
+	}
+
+	/**
+	 * @param grid
+	 *        The level's collision grid, built with the colouring to analyse.
+	 * @param doors
+	 *        The level's doors, or null if it has none.
+	 * @param bounds
+	 *        The rectangle the player collides as, relative to its position.
+	 */
+	public LevelAnalyser(CollisionGrid grid, DoorTriggers doors, Rectangle bounds) {
+		this.doors = doors;
+		this.bounds = new Rectangle(bounds);
+
+		collision = new CollisionSystem(grid);
+		setGrid(grid);
+
+		if (doors != null) {
+			for (int y = 0; y < doors.heightInTiles; y++) {
+				for (int x = 0; x < doors.widthInTiles; x++) {
+					if (doors.isDoor(x, y)) {
+						hasDoors = true;
+						doorLeft = Math.min(doorLeft, x * doors.tileWidth);
+						doorRight = Math.max(doorRight, (x + 1) * doors.tileWidth);
+						doorBottom = Math.min(doorBottom, y * doors.tileHeight);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets the collision grid to search, e.g. the same level with another
+	 * colouring, keeping everything allocated for earlier searches.
+	 * 
+	 * @param grid
+	 *        The level's collision grid, built with the colouring to analyse.
+	 */
+	public void setGrid(CollisionGrid grid) {
+		this.grid = grid;
+		collision.setGrid(grid);
+
+		if (platformPlane == null || platformPlane.length != grid.staticBitplane.length) {
+			platformPlane = new long[grid.staticBitplane.length];
+		} else {
+			Arrays.fill(platformPlane, 0L);
+		}
+
+		for (long[] plane : grid.colourBitplanes) {
+			for (int i = 0; i < platformPlane.length; i++) {
+				platformPlane[i] |= plane[i] ^ grid.staticBitplane[i];
+			}
+		}
+	}
+
+	/**
+	 * @return The collision grid being searched.
+	 */
+	public CollisionGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Searches from where the player starts each level, in the colour it
+	 * starts the game in.
+	 * 
+	 * @return The result of the search.
+	 */
+	public Result analyse() {
+		return analyse(PlayerEntityFactory.INITIAL_X, PlayerEntityFactory.INITIAL_Y,
+				Coloured.DEFAULT_COLOUR.getColour());
+	}
+
+	/**
+	 * Searches for the shortest way to the door from the given position, with
+	 * the player at rest and not yet on the ground, as it is when a level
+	 * starts.
+	 * 
+	 * @param startX
+	 *        The player's x coordinate.
+	 * @param startY
+	 *        The player's y coordinate.
+	 * @param startColour
+	 *        The player's colour, which must be one the player can turn.
+	 * @return The result of the search.
+	 */
+	public Result analyse(float startX, float startY, GameColour startColour) {
+		final int colour = indexOf(startColour);
+
+		reset();
+
+		if (!hasDoors) {
+			return new Result(null, true, 0, 0);
+		}
+
+		offer(NONE, startX, startY, colour, false, STILL, REST, 0, 0);
+		int expanded = 0;
+
+		while (heapSize > 0) {
+			final int node = (int) (pop() & NODE_MASK);
+
+			if (nodeClosed[node]) {
+				continue;
+			}
+
+			nodeClosed[node] = true;
+			expanded++;
+
+			if (doors.overlaps(nodeX[node], nodeY[node], bounds)) {
+				return new Result(buildPlan(node), true, expanded, nodeCount);
+			}
+
+			expand(node);
+		}
+
+		return new Result(null, !truncated, expanded, nodeCount);
+	}
+
+	/**
+	 * Offers every state the player can be in one tick after the given node.
+	 */
+	private void expand(int node) {
+		final long key = nodeState[node];
+		final float x = nodeX[node];
+		final float y = nodeY[node];
+		final int colour = (int) ((key >>> COLOUR_SHIFT) & COLOUR_MASK);
+		final boolean grounded = ((key >>> GROUNDED_SHIFT) & 1L) != 0L;
+		final int drift = (int) ((key >>> DRIFT_SHIFT) & DRIFT_MASK);
+		final int arc = (int) ((key >>> ARC_SHIFT) & ARC_MASK);
+		final int ticks = nodeTicks[node] + 1;
+
+		// as in PlayerInputSystem.handleJump
+		final boolean canJump = (grounded && ARC[arc] == 0.0f);
+		final boolean canTurn = isPlatformNear(x, y, arc);
+
+		// staying the same colour is tried first, so that of two equally short
+		// plans the one which turns less is kept
+		for (int i = 0; i < PLAYER_COLOURS.length; i++) {
+			final int turnTo = (colour + i) % PLAYER_COLOURS.length;
+			int colourActions = 0;
+
+			if (turnTo != colour) {
+				if (!canTurn || overlapsSolid(turnTo, x, y)) {
+					continue;
+				}
+
+				colourActions = COLOUR_ACTIONS[turnTo];
+			}
+
+			for (int j = 0; j < HORIZONTAL_ACTIONS.length; j++) {
+				final int actions = HORIZONTAL_ACTIONS[j] | colourActions;
+
+				step(node, x, y, turnTo, drift, arc, actions, ticks);
+
+				if (canJump) {
+					step(node, x, y, turnTo, drift, arc, actions | PlayerAction.JUMP.mask, ticks);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs one tick with the given actions held, in the same order as the
+	 * game: PlayerInputSystem, then MovementSystem, then CollisionSystem.
+	 */
+	private void step(int parent, float x, float y, int colour, int drift, int arc, int actions, int ticks) {
+		arc = (PlayerAction.JUMP.isIn(actions) ? JUMP_START : NEXT_ARC[arc]);
+
+		if (PlayerAction.RIGHT.isIn(actions)) {
+			drift = RUN_RIGHT;
+		} else if (PlayerAction.LEFT.isIn(actions)) {
+			drift = RUN_LEFT;
+		} else {
+			drift = NEXT_DRIFT[drift];
+		}
+
+		final float newX = x + DRIFT[drift];
+		final float newY = y + ARC[arc];
+		final int contacts = collision.sweep(PLAYER_COLOURS[colour], bounds, x, y, newX - x, newY - y, resolved);
+
+		if ((contacts & (Solid.CONTACT_LEFT | Solid.CONTACT_RIGHT)) != 0) {
+			drift = STILL;
+		}
+
+		if ((contacts & (Solid.CONTACT_TOP | Solid.CONTACT_BOTTOM)) != 0) {
+			arc = REST;
+		}
+
+		final boolean grounded = (contacts & Solid.CONTACT_BOTTOM) != 0;
+		offer(parent, resolved.x, resolved.y, colour, grounded, drift, arc, actions, ticks);
+	}
+
+	/**
+	 * Adds a state, or improves the one with the same key if this gets there
+	 * in fewer ticks, or as few with fewer turns, and it hasn't been expanded
+	 * yet.
+	 */
+	private void offer(int parent, float x, float y, int colour, boolean grounded, int drift, int arc, int actions,
+			int ticks) {
+		final long state = ((long) colour << COLOUR_SHIFT) | ((grounded ? 1L : 0L) << GROUNDED_SHIFT)
+				| ((long) drift << DRIFT_SHIFT) | ((long) arc << ARC_SHIFT);
+		final long key = ((long) ((int) Math.floor(x / grid.tileWidth) & TILE_MASK))
+				| ((long) ((int) Math.floor(y / grid.tileHeight) & TILE_MASK) << TILE_Y_SHIFT) | state;
+		final int presses = (parent != NONE ? nodePresses[parent] : 0) + ((actions & COLOUR_MASKS) != 0 ? 1 : 0);
+
+		int slot = slotFor(key);
+		int node = tableNodes[slot];
+
+		if (tableKeys[slot] == key) {
+			if (nodeClosed[node] || nodeTicks[node] < ticks
+					|| (nodeTicks[node] == ticks && nodePresses[node] <= presses)) {
+				return;
+			}
+		} else {
+			if (nodeCount >= maxStates) {
+				truncated = true;
+				return;
+			}
+
+			node = addNode();
+			tableKeys[slot] = key;
+			tableNodes[slot] = node;
+			nodeKey[node] = key;
+
+			if (nodeCount * 2 > tableKeys.length) {
+				growTable();
+			}
+		}
+
+		nodeX[node] = x;
+		nodeY[node] = y;
+		nodeState[node] = state;
+		nodeParent[node] = parent;
+		nodeActions[node] = actions;
+		nodeTicks[node] = ticks;
+		nodePresses[node] = presses;
+
+		push(((long) (ticks + estimate(x, y)) << ESTIMATE_SHIFT)
+				| ((long) (TICKS_MASK - Math.min(ticks, TICKS_MASK)) << TICKS_SHIFT) | node);
+	}
+
+	/**
+	 * @return The fewest ticks in which the player could touch a door from
+	 *         the given position, if nothing were in the way.
+	 */
+	private int estimate(float x, float y) {
+		final float left = x + bounds.x;
+		final float top = y + bounds.y + bounds.height;
+
+		final float gapX = Math.max(0.0f, Math.max(doorLeft - (left + bounds.width), left - doorRight));
+		final float gapUp = Math.max(0.0f, doorBottom - top);
+
+		final int acrossTicks = (int) Math.ceil(gapX / MAX_RUN_SPEED);
+		final int upTicks = (MAX_RISE_SPEED > 0.0f ? (int) Math.ceil(gapUp / MAX_RISE_SPEED) : 0);
+		return Math.max(acrossTicks, upTicks);
+	}
+
+	/**
+	 * @return True if any platform is close enough to the player that it could
+	 *         be touched on the next tick.
+	 */
+	private boolean isPlatformNear(float x, float y, int arc) {
+		final float reachX = MAX_RUN_SPEED;
+		final float reachY = Math.max(MAX_RISE_SPEED, Math.abs(ARC[NEXT_ARC[arc]]));
+
+		final float left = x + bounds.x;
+		final float bottom = y + bounds.y;
+
+		final int col1 = Math.max(0, (int) Math.floor((left - reachX) / grid.tileWidth));
+		final int col2 = Math.min(grid.widthInTiles - 1,
+				(int) Math.ceil((left + bounds.width + reachX) / grid.tileWidth) - 1);
+		final int row1 = Math.max(0, (int) Math.floor((bottom - reachY) / grid.tileHeight));
+		final int row2 = Math.min(grid.heightInTiles - 1,
+				(int) Math.ceil((bottom + bounds.height + reachY) / grid.tileHeight) - 1);
+
+		for (int row = row1; row <= row2; row++) {
+			for (int col = col1; col <= col2; col++) {
+				final int index = (row * grid.widthInTiles) + col;
+
+				if ((platformPlane[index >>> 6] & (1L << index)) != 0L) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return True if the player would be inside a tile which is solid to the
+	 *         given colour.
+	 */
+	private boolean overlapsSolid(int colour, float x, float y) {
+		final float left = x + bounds.x;
+		final float bottom = y + bounds.y;
+
+		final int col1 = (int) Math.floor(left / grid.tileWidth);
+		final int col2 = (int) Math.ceil((left + bounds.width) / grid.tileWidth) - 1;
+		final int row1 = (int) Math.floor(bottom / grid.tileHeight);
+		final int row2 = (int) Math.ceil((bottom + bounds.height) / grid.tileHeight) - 1;
+
+		for (int row = row1; row <= row2; row++) {
+			for (int col = col1; col <= col2; col++) {
+				if (collision.isSolidTile(PLAYER_COLOURS[colour], col, row)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The actions held on each tick from the start to the given node,
+	 *         followed by a tick using the door.
+	 */
+	private int[] buildPlan(int node) {
+		final IntArray plan = new IntArray();
+
+		plan.add(PlayerAction.USE.mask);
+		for (; nodeParent[node] != NONE; node = nodeParent[node]) {
+			plan.add(nodeActions[node]);
+		}
+
+		plan.reverse();
+		return plan.toArray();
+	}
+
+	private void reset() {
+		Arrays.fill(nodeClosed, 0, nodeCount, false);
+		Arrays.fill(tableKeys, EMPTY);
+		nodeCount = 0;
+		heapSize = 0;
+		truncated = false;
+	}
+
+	private int addNode() {
+		if (nodeCount == nodeX.length) {
+			final int capacity = nodeCount * 2;
+
+			nodeX = Arrays.copyOf(nodeX, capacity);
+			nodeY = Arrays.copyOf(nodeY, capacity);
+			nodeKey = Arrays.copyOf(nodeKey, capacity);
+			nodeState = Arrays.copyOf(nodeState, capacity);
+			nodeParent = Arrays.copyOf(nodeParent, capacity);
+			nodeActions = Arrays.copyOf(nodeActions, capacity);
+			nodeTicks = Arrays.copyOf(nodeTicks, capacity);
+			nodePresses = Arrays.copyOf(nodePresses, capacity);
+			nodeClosed = Arrays.copyOf(nodeClosed, capacity);
+		}
+
+		nodeClosed[nodeCount] = false;
+		return nodeCount++;
+	}
+
+	/**
+	 * @return The slot holding the given key, or the empty slot where it
+	 *         belongs.
+	 */
+	private int slotFor(long key) {
+		final int mask = tableKeys.length - 1;
+		int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> tableShift);
+
+		while (tableKeys[slot] != EMPTY && tableKeys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private void growTable() {
+		tableKeys = new long[tableKeys.length * 2];
+		tableNodes = new int[tableKeys.length];
+		tableShift--;
+		Arrays.fill(tableKeys, EMPTY);
+
+		for (int node = 0; node < nodeCount; node++) {
+			final int slot = slotFor(nodeKey[node]);
+			tableKeys[slot] = nodeKey[node];
+			tableNodes[slot] = node;
+		}
+	}
+
+	private void push(long entry) {
+		if (heapSize == heap.length) {
+			heap = Arrays.copyOf(heap, heapSize * 2);
+		}
+
+		int i = heapSize++;
+		while (i > 0) {
+			final int parent = (i - 1) >>> 1;
+
+			if (heap[parent] <= entry) {
+				break;
+			}
+
+			heap[i] = heap[parent];
+			i = parent;
+		}
+
+		heap[i] = entry;
+	}
+
+	private long pop() {
+		final long top = heap[0];
+		final long last = heap[--heapSize];
+
+		int i = 0;
+		while (true) {
+			int child = (i * 2) + 1;
+
+			if (child >= heapSize) {
+				break;
+			}
+
+			if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+				child++;
+			}
+
+			if (last <= heap[child]) {
+				break;
+			}
+
+			heap[i] = heap[child];
+			i = child;
+		}
+
+		heap[i] = last;
+		return top;
+	}
+
+	private static int indexOf(GameColour colour) {
+		for (int i = 0; i < PLAYER_COLOURS.length; i++) {
+			if (PLAYER_COLOURS[i] == colour) {
+				return i;
+			}
+		}
+
+		throw new IllegalArgumentException("The player can't be " + colour + ".");
+	}
+
+	/**
+	 * Adds the speeds of running at the given speed and then slowing down, as
+	 * MovementSystem slows things, ending at STILL.
+	 * 
+	 * @return The index of the speed while running.
+	 */
+	private static int addDrift(FloatArray drift, IntArray next, float runSpeed) {
+		final int start = drift.size;
+		float speed = snap(runSpeed * MovementSystem.FRICTION);
+
+		while (speed != 0.0f && drift.size - start < MAX_DRIFT_TICKS) {
+			drift.add(speed);
+			next.add(drift.size);
+			speed = snap(speed * MovementSystem.FRICTION);
+		}
+
+		next.set(next.size - 1, (speed == 0.0f ? STILL : next.size - 1));
+		return start;
+	}
+
+	private static float snap(float speed) {
+		return (Math.abs(speed) < MovementSystem.MIN_SPEED ? 0.0f : speed);
+	}
+
+	/**
+	 * The result of analysing a level.
+	 * 
+	 * @author Ashley Davis (SgtCoDFish)
+	 */
+	public static class Result {
+		/**
+		 * The actions to hold on each tick, as PlayerAction masks, to reach the
+		 * door and go through it, or null if it can't be reached.
+		 */
+		public final int[]		actions;
+
+		/**
+		 * False if the search gave up after finding maxStates states, so the
+		 * door might still be reachable.
+		 */
+		public final boolean	complete;
+
+		public final int		statesExpanded;
+		public final int		statesFound;
+
+		public Result(int[] actions, boolean complete, int statesExpanded, int statesFound) {
+			this.actions = actions;
+			this.complete = complete;
+			this.statesExpanded = statesExpanded;
+			this.statesFound = statesFound;
+		}
+
+		/**
+		 * @return True if the door can be reached.
+		 */
+		public boolean isReachable() {
+			return actions != null;
+		}
+
+		/**
+		 * @return The number of ticks the plan takes, including going through
+		 *         the door, or 0 if there's no plan.
+		 */
+		public int getTicks() {
+			return (actions != null ? actions.length : 0);
+		}
+
+		/**
+		 * Makes a recording of the plan for one player, which an InputReplay
+		 * can play back in the game, ending with the level changing.
+		 * 
+		 * @param seed
+		 *        The seed to give the recording.
+		 * @param tickLength
+		 *        The length of the game's ticks, in seconds.
+		 * @return The recording, or null if there's no plan.
+		 */
+		public InputRecording toRecording(long seed, float tickLength) {
+			if (actions == null) {
+				return null;
+			}
+
+			InputRecording recording = new InputRecording(seed, tickLength);
+
+			for (int i = 0; i < actions.length; i++) {
+				recording.add(actions[i]);
+				recording.endTick();
+			}
+
+			recording.addLevelChange();
+			return recording;
+		}
+
+		/**
+		 * @return The plan as runs of actions, e.g. "RIGHT x12, RIGHT+JUMP,
+		 *         NONE x3, USE", or null if there's no plan.
+		 */
+		public String describeActions() {
+			if (actions == null) {
+				return null;
+			}
+
+			final StringBuilder builder = new StringBuilder();
+			final PlayerAction[] all = PlayerAction.values();
+
+			for (int start = 0, end = 0; start < actions.length; start = end) {
+				while (end < actions.length && actions[end] == actions[start]) {
+					end++;
+				}
+
+				if (start > 0) {
+					builder.append(", ");
+				}
+
+				if (actions[start] == 0) {
+					builder.append("NONE");
+				}
+
+				for (int i = 0, count = 0; i < all.length; i++) {
+					if (all[i].isIn(actions[start])) {
+						builder.append(count++ > 0 ? "+" : "").append(all[i].name());
+					}
+				}
+
+				if (end - start > 1) {
+					builder.append(" x").append(end - start);
+				}
+			}
+
+			return builder.toString();
+		}
+	}
+}
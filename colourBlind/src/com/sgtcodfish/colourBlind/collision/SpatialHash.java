@@ -0,0 +1,336 @@
+package com.sgtcodfish.colourBlind.collision;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * A uniform grid of cells, hashed into a fixed number of buckets, which maps
+ * axis-aligned boxes to the cells they cover so that finding everything near
+ * a box only means looking at the cells around it.
+ * 
+ * Boxes are identified by a non-negative integer id (e.g. an Entity id) and
+ * are updated incrementally: moving a box within the cells it already covers
+ * costs a handful of comparisons. All storage is kept in primitive arrays
+ * which only grow when more boxes or cells are in use than ever before, so
+ * steady-state updates and queries allocate nothing.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class SpatialHash {
+	private static final int	NONE				= -1;
+	private static final int	DEFAULT_CAPACITY	= 64;
+
+	public final float			cellWidth;
+	public final float			cellHeight;
+
+	// bucket heads; the length is always a power of two.
+	private int[]				buckets;
+	private int					bucketMask;
+
+	// nodes link one id to one cell, and are chained both by bucket and by id.
+	private int[]				nodeId;
+	private int[]				nodeCellX;
+	private int[]				nodeCellY;
+	private int[]				nodeNext;
+	private int[]				nodePrev;
+	private int[]				nodeNextForId;
+	private int					freeNode			= NONE;
+	private int					nodeCount			= 0;
+	private int					nodesInUse			= 0;
+
+	// per-id state, indexed by id.
+	private int[]				firstNode;
+	private int[]				minCellX;
+	private int[]				minCellY;
+	private int[]				maxCellX;
+	private int[]				maxCellY;
+	private int[]				queryStamp;
+	private int					currentStamp		= 0;
+
+	/**
+	 * Creates a spatial hash with the given cell size.
+	 * 
+	 * @param cellWidth
+	 *        The width of each cell, e.g. the tile width of the map.
+	 * @param cellHeight
+	 *        The height of each cell, e.g. the tile height of the map.
+	 */
+	public SpatialHash(float cellWidth, float cellHeight) {
+		if (cellWidth <= 0.0f || cellHeight <= 0.0f) {
+			throw new IllegalArgumentException("SpatialHash needs cells with positive size.");
+		}
+
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+
+		buckets = new int[DEFAULT_CAPACITY];
+		bucketMask = DEFAULT_CAPACITY - 1;
+		Arrays.fill(buckets, NONE);
+
+		nodeId = new int[DEFAULT_CAPACITY];
+		nodeCellX = new int[DEFAULT_CAPACITY];
+		nodeCellY = new int[DEFAULT_CAPACITY];
+		nodeNext = new int[DEFAULT_CAPACITY];
+		nodePrev = new int[DEFAULT_CAPACITY];
+		nodeNextForId = new int[DEFAULT_CAPACITY];
+
+		firstNode = new int[DEFAULT_CAPACITY];
+		minCellX = new int[DEFAULT_CAPACITY];
+		minCellY = new int[DEFAULT_CAPACITY];
+		maxCellX = new int[DEFAULT_CAPACITY];
+		maxCellY = new int[DEFAULT_CAPACITY];
+		queryStamp = new int[DEFAULT_CAPACITY];
+		Arrays.fill(firstNode, NONE);
+	}
+
+	/**
+	 * Inserts the box with the given id, or moves it if it's already present.
+	 * 
+	 * @param id
+	 *        The id of the box, which must not be negative.
+	 * @param x
+	 *        The x coordinate of the bottom left of the box.
+	 * @param y
+	 *        The y coordinate of the bottom left of the box.
+	 * @param width
+	 *        The width of the box.
+	 * @param height
+	 *        The height of the box.
+	 */
+	public void update(int id, float x, float y, float width, float height) {
+		ensureIdCapacity(id);
+
+		final int cx1 = cellX(x);
+		final int cy1 = cellY(y);
+		final int cx2 = Math.max(cx1, (int) Math.ceil((x + width) / cellWidth) - 1);
+		final int cy2 = Math.max(cy1, (int) Math.ceil((y + height) / cellHeight) - 1);
+
+		if (firstNode[id] != NONE) {
+			if (minCellX[id] == cx1 && minCellY[id] == cy1 && maxCellX[id] == cx2 && maxCellY[id] == cy2) {
+				return;
+			}
+
+			remove(id);
+		}
+
+		minCellX[id] = cx1;
+		minCellY[id] = cy1;
+		maxCellX[id] = cx2;
+		maxCellY[id] = cy2;
+
+		for (int cy = cy1; cy <= cy2; cy++) {
+			for (int cx = cx1; cx <= cx2; cx++) {
+				insertNode(id, cx, cy);
+			}
+		}
+	}
+
+	/**
+	 * Removes the box with the given id, if it's present.
+	 * 
+	 * @param id
+	 *        The id of the box to remove.
+	 */
+	public void remove(int id) {
+		if (id < 0 || id >= firstNode.length) {
+			return;
+		}
+
+		int node = firstNode[id];
+		while (node != NONE) {
+			final int next = nodeNextForId[node];
+			unlinkNode(node);
+			node = next;
+		}
+
+		firstNode[id] = NONE;
+	}
+
+	/**
+	 * Removes every box.
+	 */
+	public void clear() {
+		for (int i = 0; i < firstNode.length; i++) {
+			remove(i);
+		}
+	}
+
+	/**
+	 * Finds the ids of every box which shares a cell with the given box. Each
+	 * id is reported once, however many cells it shares. Boxes in a shared
+	 * cell may not actually overlap the query box, so callers should still do
+	 * their own overlap test.
+	 * 
+	 * @param x
+	 *        The x coordinate of the bottom left of the query box.
+	 * @param y
+	 *        The y coordinate of the bottom left of the query box.
+	 * @param width
+	 *        The width of the query box.
+	 * @param height
+	 *        The height of the query box.
+	 * @param ignoreId
+	 *        An id to leave out of the results, e.g. the box being queried for,
+	 *        or a negative number to leave nothing out.
+	 * @param out
+	 *        Cleared, then filled with the ids found.
+	 * @return The number of ids found.
+	 */
+	public int query(float x, float y, float width, float height, int ignoreId, IntArray out) {
+		out.clear();
+
+		if (++currentStamp == 0) {
+			// the stamp wrapped around; old stamps could now collide.
+			Arrays.fill(queryStamp, 0);
+			currentStamp = 1;
+		}
+
+		final int cx1 = cellX(x);
+		final int cy1 = cellY(y);
+		final int cx2 = Math.max(cx1, (int) Math.ceil((x + width) / cellWidth) - 1);
+		final int cy2 = Math.max(cy1, (int) Math.ceil((y + height) / cellHeight) - 1);
+
+		for (int cy = cy1; cy <= cy2; cy++) {
+			for (int cx = cx1; cx <= cx2; cx++) {
+				int node = buckets[hash(cx, cy)];
+
+				while (node != NONE) {
+					final int id = nodeId[node];
+
+					if (nodeCellX[node] == cx && nodeCellY[node] == cy && id != ignoreId
+							&& queryStamp[id] != currentStamp) {
+						queryStamp[id] = currentStamp;
+						out.add(id);
+					}
+
+					node = nodeNext[node];
+				}
+			}
+		}
+
+		return out.size;
+	}
+
+	/**
+	 * @return The number of (id, cell) pairs currently stored.
+	 */
+	public int size() {
+		return nodesInUse;
+	}
+
+	protected int cellX(float x) {
+		return (int) Math.floor(x / cellWidth);
+	}
+
+	protected int cellY(float y) {
+		return (int) Math.floor(y / cellHeight);
+	}
+
+	private int hash(int cx, int cy) {
+		return ((cx * 73856093) ^ (cy * 19349663)) & bucketMask;
+	}
+
+	private void insertNode(int id, int cx, int cy) {
+		if (freeNode == NONE) {
+			if (nodeCount == nodeId.length) {
+				growNodes();
+			}
+
+			freeNode = nodeCount++;
+			nodeNext[freeNode] = NONE;
+		}
+
+		final int node = freeNode;
+		freeNode = nodeNext[node];
+
+		nodeId[node] = id;
+		nodeCellX[node] = cx;
+		nodeCellY[node] = cy;
+
+		final int bucket = hash(cx, cy);
+		nodePrev[node] = NONE;
+		nodeNext[node] = buckets[bucket];
+		if (buckets[bucket] != NONE) {
+			nodePrev[buckets[bucket]] = node;
+		}
+		buckets[bucket] = node;
+
+		nodeNextForId[node] = firstNode[id];
+		firstNode[id] = node;
+
+		nodesInUse++;
+	}
+
+	private void unlinkNode(int node) {
+		final int prev = nodePrev[node];
+		final int next = nodeNext[node];
+
+		if (prev != NONE) {
+			nodeNext[prev] = next;
+		} else {
+			buckets[hash(nodeCellX[node], nodeCellY[node])] = next;
+		}
+
+		if (next != NONE) {
+			nodePrev[next] = prev;
+		}
+
+		nodeNext[node] = freeNode;
+		freeNode = node;
+
+		nodesInUse--;
+	}
+
+	private void growNodes() {
+		final int capacity = nodeId.length * 2;
+
+		nodeId = Arrays.copyOf(nodeId, capacity);
+		nodeCellX = Arrays.copyOf(nodeCellX, capacity);
+		nodeCellY = Arrays.copyOf(nodeCellY, capacity);
+		nodeNext = Arrays.copyOf(nodeNext, capacity);
+		nodePrev = Arrays.copyOf(nodePrev, capacity);
+		nodeNextForId = Arrays.copyOf(nodeNextForId, capacity);
+
+		// keep chains short by keeping about one bucket per node.
+		buckets = new int[capacity];
+		bucketMask = capacity - 1;
+		Arrays.fill(buckets, NONE);
+
+		for (int id = 0; id < firstNode.length; id++) {
+			for (int node = firstNode[id]; node != NONE; node = nodeNextForId[node]) {
+				final int bucket = hash(nodeCellX[node], nodeCellY[node]);
+
+				nodePrev[node] = NONE;
+				nodeNext[node] = buckets[bucket];
+				if (buckets[bucket] != NONE) {
+					nodePrev[buckets[bucket]] = node;
+				}
+				buckets[bucket] = node;
+			}
+		}
+	}
+
+	private void ensureIdCapacity(int id) {
+		if (id < 0) {
+			throw new IllegalArgumentException("SpatialHash ids must not be negative.");
+		} else if (id < firstNode.length) {
+			return;
+		}
+
+		int capacity = firstNode.length;
+		while (capacity <= id) {
+			capacity *= 2;
+		}
+
+		final int oldCapacity = firstNode.length;
+		firstNode = Arrays.copyOf(firstNode, capacity);
+		Arrays.fill(firstNode, oldCapacity, capacity, NONE);
+
+		minCellX = Arrays.copyOf(minCellX, capacity);
+		minCellY = Arrays.copyOf(minCellY, capacity);
+		maxCellX = Arrays.copyOf(maxCellX, capacity);
+		maxCellY = Arrays.copyOf(maxCellY, capacity);
+		queryStamp = Arrays.copyOf(queryStamp, capacity);
+	}
+}
@@ -0,0 +1,31 @@
+package com.sgtcodfish.colourBlind.components;
+
+import com.artemis.Component;
+import com.sgtcodfish.colourBlind.tiled.ChunkedTileRenderer;
+import com.sgtcodfish.colourBlind.tiled.ChunkedTileWorld;
+
+/**
+ * Holds a level streamed in chunks, for levels too big to keep whole as a
+ * TiledMap in a {@link TiledRenderable}. Only the chunks near the camera are
+ * ever decoded and drawn.
+ * 
+ * Note that the creator of the component is responsible for disposing of the
+ * renderer when finished with it.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class ChunkedRenderable extends Component {
+	public final ChunkedTileWorld		world;
+	public final ChunkedTileRenderer	renderer;
+
+	/**
+	 * @param world
+	 *        The level to render.
+	 * @param renderer
+	 *        A renderer for the level.
+	 */
+	public ChunkedRenderable(ChunkedTileWorld world, ChunkedTileRenderer renderer) {
+		this.world = world;
+		this.renderer = renderer;
+	}
+}
@@ -11,10 +11,10 @@ import com.sgtcodfish.colourBlind.CBColour.GameColour;
  * @author Ashley Davis (SgtCoDFish)
  */
 public class Coloured extends Component {
-	public static final CBColour	COLOUR_RED		= new CBColour(GameColour.RED);
-	public static final CBColour	COLOUR_BLUE		= new CBColour(GameColour.BLUE);
-	public static final CBColour	COLOUR_GREEN	= new CBColour(GameColour.GREEN);
-	public static final CBColour	COLOUR_YELLOW	= new CBColour(GameColour.YELLOW);
+	public static final CBColour	COLOUR_RED		= CBColour.get(GameColour.RED);
+	public static final CBColour	COLOUR_BLUE		= CBColour.get(GameColour.BLUE);
+	public static final CBColour	COLOUR_GREEN	= CBColour.get(GameColour.GREEN);
+	public static final CBColour	COLOUR_YELLOW	= CBColour.get(GameColour.YELLOW);
 
 	public static final CBColour	DEFAULT_COLOUR	= COLOUR_RED;
 
@@ -0,0 +1,90 @@
+package com.sgtcodfish.colourBlind.components;
+
+import com.artemis.Component;
+import com.sgtcodfish.colourBlind.MotionStore;
+
+/**
+ * Marks an Entity whose position, velocity and weight are kept in a
+ * {@link MotionStore}, in parallel arrays shared with every other such Entity,
+ * and moved by BatchMovementSystem rather than MovementSystem.
+ * 
+ * An Entity which also has a Position and Velocity (and optionally a Weight
+ * and Facing) keeps them, and they stay usable by every other system: the
+ * store copies them in before each batch and back out after it. An Entity
+ * with neither, such as a particle, lives only in the store's arrays, starting
+ * from the values given here, and is read through this component instead.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class PackedMotion extends Component {
+	public static final int	NO_SLOT	= -1;
+
+	/** The starting state of an Entity with no Position or Velocity. */
+	public final float		startX;
+	public final float		startY;
+	public final float		startVelocityX;
+	public final float		startVelocityY;
+	public final float		startWeight;
+
+	/**
+	 * The store holding the Entity and its slot in the store's arrays, or null
+	 * and NO_SLOT if it isn't in one yet. Set by the store; slots can change
+	 * as other entities are removed.
+	 */
+	public MotionStore		store	= null;
+	public int				slot	= NO_SLOT;
+
+	/**
+	 * Creates a PackedMotion for an Entity which has its own Position and
+	 * Velocity.
+	 */
+	public PackedMotion() {
+		this(0.0f, 0.0f, 0.0f, 0.0f, 0.0f);
+	}
+
+	/**
+	 * Creates a PackedMotion for an Entity which may have no Position or
+	 * Velocity, starting it with the given values if so.
+	 * 
+	 * @param x
+	 *        The starting x coordinate.
+	 * @param y
+	 *        The starting y coordinate.
+	 * @param velocityX
+	 *        The starting x velocity.
+	 * @param velocityY
+	 *        The starting y velocity.
+	 * @param weight
+	 *        The multiplier for gravity, as in Weight; 0.0f for none.
+	 */
+	public PackedMotion(float x, float y, float velocityX, float velocityY, float weight) {
+		this.startX = x;
+		this.startY = y;
+		this.startVelocityX = velocityX;
+		this.startVelocityY = velocityY;
+		this.startWeight = weight;
+	}
+
+	/**
+	 * @return True if the Entity is in a store.
+	 */
+	public boolean isStored() {
+		return store != null;
+	}
+
+	public float getX() {
+		return (store != null ? store.x[slot] : startX);
+	}
+
+	public float getY() {
+		return (store != null ? store.y[slot] : startY);
+	}
+
+	public float getVelocityX() {
+		return (store != null ? store.velocityX[slot] : startVelocityX);
+	}
+
+	public float getVelocityY() {
+		return (store != null ? store.velocityY[slot] : startVelocityY);
+	}
+}
@@ -3,12 +3,19 @@ package com.sgtcodfish.colourBlind.components;
 import com.artemis.Component;
 import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.sgtcodfish.colourBlind.InputActions;
+import com.sgtcodfish.colourBlind.PlayerAction;
 
 /**
  * Signifies that this component should react to input in the way a player
  * character should i.e. moving about with arrow keys/WASD, jumping, changing
  * colour, using a door.
  * 
+ * Keys are bound to {@link PlayerAction}s through a table indexed by keycode,
+ * and each tick the PlayerInputSystem updates the actions being held and the
+ * ones which have just been pressed, so that things which should happen once
+ * per key press don't happen every tick the key is held.
+ * 
  * @author Ashley Davis (SgtCoDFish)
  */
 public class PlayerInputListener extends Component {
@@ -25,24 +32,62 @@ public class PlayerInputListener extends Component {
 	public static final int[]	DEFAULT_GREEN_KEYS		= { Keys.J };
 	public static final int[]	DEFAULT_YELLOW_KEYS		= { Keys.L };
 
-	public int[]				jumpKeys				= DEFAULT_JUMP_KEYS;
+	/**
+	 * The keys bound to each action, kept in step with {@link #keyTable} by
+	 * {@link #bind} and {@link #unbind}.
+	 * 
+	 * @deprecated Only read these; assigning to them has no effect. Use
+	 *             {@link #bind} and {@link #unbind} to change bindings.
+	 */
+	@Deprecated
+	public int[]				jumpKeys				= null;
 
-	public int[]				leftKeys				= DEFAULT_LEFT_KEYS;
-	public int[]				rightKeys				= DEFAULT_RIGHT_KEYS;
+	/** @deprecated See {@link #jumpKeys}. */
+	@Deprecated
+	public int[]				leftKeys				= null;
+	/** @deprecated See {@link #jumpKeys}. */
+	@Deprecated
+	public int[]				rightKeys				= null;
 
-	public int[]				flashlightKeys			= DEFAULT_FLASHLIGHT_KEYS;
-	public int[]				useKeys					= DEFAULT_USE_KEYS;
+	/** @deprecated See {@link #jumpKeys}. */
+	@Deprecated
+	public int[]				flashlightKeys			= null;
+	/** @deprecated See {@link #jumpKeys}. */
+	@Deprecated
+	public int[]				useKeys					= null;
 
-	public int[]				redKeys					= DEFAULT_RED_KEYS;
-	public int[]				blueKeys				= DEFAULT_BLUE_KEYS;
-	public int[]				greenKeys				= DEFAULT_GREEN_KEYS;
-	public int[]				yellowKeys				= DEFAULT_YELLOW_KEYS;
+	/** @deprecated See {@link #jumpKeys}. */
+	@Deprecated
+	public int[]				redKeys					= null;
+	/** @deprecated See {@link #jumpKeys}. */
+	@Deprecated
+	public int[]				blueKeys				= null;
+	/** @deprecated See {@link #jumpKeys}. */
+	@Deprecated
+	public int[]				greenKeys				= null;
+	/** @deprecated See {@link #jumpKeys}. */
+	@Deprecated
+	public int[]				yellowKeys				= null;
+
+	/**
+	 * The actions bound to each keycode, as masks of PlayerAction bits, so
+	 * that a key can be bound to more than one action.
+	 */
+	public final int[]			keyTable				= new int[InputActions.KEY_COUNT];
+
+	/** Every action held during the current tick. */
+	public int					actions					= 0;
+
+	/** The actions which were held this tick but not the tick before. */
+	public int					pressed					= 0;
 
 	/**
 	 * Creates an input listener with sensible default keys, as defined as
 	 * public static final int[] types in this class.
 	 */
 	public PlayerInputListener() {
+		this(DEFAULT_JUMP_KEYS, DEFAULT_LEFT_KEYS, DEFAULT_RIGHT_KEYS, DEFAULT_FLASHLIGHT_KEYS, DEFAULT_USE_KEYS,
+				DEFAULT_RED_KEYS, DEFAULT_BLUE_KEYS, DEFAULT_GREEN_KEYS, DEFAULT_YELLOW_KEYS);
 	}
 
 	/**
@@ -76,17 +121,113 @@ public class PlayerInputListener extends Component {
 			throw new GdxRuntimeException("Trying to create PlayerInputListener component with invalid keys.");
 		}
 
-		this.jumpKeys = jumpKeys;
+		bind(PlayerAction.JUMP, jumpKeys);
+
+		bind(PlayerAction.LEFT, leftKeys);
+		bind(PlayerAction.RIGHT, rightKeys);
+
+		bind(PlayerAction.FLASHLIGHT, flashlightKeys);
+		bind(PlayerAction.USE, useKeys);
+
+		bind(PlayerAction.RED, redKeys);
+		bind(PlayerAction.BLUE, blueKeys);
+		bind(PlayerAction.GREEN, greenKeys);
+		bind(PlayerAction.YELLOW, yellowKeys);
+	}
+
+	/**
+	 * Binds each of the given keys to an action, as well as anything they're
+	 * already bound to.
+	 * 
+	 * @throws GdxRuntimeException
+	 *         If any of the keys isn't a valid keycode.
+	 */
+	public void bind(PlayerAction action, int... keys) {
+		for (int key : keys) {
+			if (key < 0 || key >= keyTable.length) {
+				throw new GdxRuntimeException("Trying to bind invalid key " + key + " to " + action + ".");
+			}
+
+			keyTable[key] |= action.mask;
+		}
+
+		updateKeyFields();
+	}
+
+	/**
+	 * Unbinds every key from an action.
+	 */
+	public void unbind(PlayerAction action) {
+		for (int i = 0; i < keyTable.length; i++) {
+			keyTable[i] &= ~action.mask;
+		}
+
+		updateKeyFields();
+	}
+
+	/**
+	 * Starts a new tick in which the given actions are held, working out which
+	 * of them have just been pressed.
+	 */
+	public void update(int held) {
+		pressed = held & ~actions;
+		actions = held;
+	}
+
+	/**
+	 * @return True if the action is held this tick.
+	 */
+	public boolean isHeld(PlayerAction action) {
+		return action.isIn(actions);
+	}
+
+	/**
+	 * @return True if the action was pressed this tick, having not been held
+	 *         the tick before.
+	 */
+	public boolean isPressed(PlayerAction action) {
+		return action.isIn(pressed);
+	}
 
-		this.leftKeys = leftKeys;
-		this.rightKeys = rightKeys;
+	/**
+	 * Refills the deprecated per-action key fields from the key table.
+	 */
+	@SuppressWarnings("deprecation")
+	private void updateKeyFields() {
+		jumpKeys = keysFor(PlayerAction.JUMP);
+
+		leftKeys = keysFor(PlayerAction.LEFT);
+		rightKeys = keysFor(PlayerAction.RIGHT);
+
+		flashlightKeys = keysFor(PlayerAction.FLASHLIGHT);
+		useKeys = keysFor(PlayerAction.USE);
 
-		this.flashlightKeys = flashlightKeys;
-		this.useKeys = useKeys;
+		redKeys = keysFor(PlayerAction.RED);
+		blueKeys = keysFor(PlayerAction.BLUE);
+		greenKeys = keysFor(PlayerAction.GREEN);
+		yellowKeys = keysFor(PlayerAction.YELLOW);
+	}
+
+	/**
+	 * @return Every key bound to the action, in keycode order.
+	 */
+	private int[] keysFor(PlayerAction action) {
+		int count = 0;
+
+		for (int i = 0; i < keyTable.length; i++) {
+			if (action.isIn(keyTable[i])) {
+				count++;
+			}
+		}
+
+		final int[] keys = new int[count];
+
+		for (int i = 0, j = 0; i < keyTable.length; i++) {
+			if (action.isIn(keyTable[i])) {
+				keys[j++] = i;
+			}
+		}
 
-		this.redKeys = redKeys;
-		this.blueKeys = blueKeys;
-		this.greenKeys = greenKeys;
-		this.yellowKeys = yellowKeys;
+		return keys;
 	}
 }
@@ -8,10 +8,19 @@ import com.badlogic.gdx.utils.GdxRuntimeException;
  * Holds an object's position in the world, and can convert between world and
  * tile coordinates.
  * 
+ * For an Entity with a PackedMotion, the vectors are views of its slot in the
+ * MotionStore, brought up to date by BatchMovementSystem every tick.
+ * 
  * @author Ashley Davis (SgtCoDFish)
  */
 public class Position extends Component {
-	public Vector2	position	= null;
+	public Vector2			position	= null;
+
+	/**
+	 * The position at the end of the previous logic tick, used for
+	 * interpolating between ticks when rendering.
+	 */
+	public final Vector2	previous;
 
 	public Position() {
 		this(new Vector2(0.0f, 0.0f));
@@ -21,8 +30,41 @@ public class Position extends Component {
 		this(new Vector2(x, y));
 	}
 
+	/**
+	 * @param v
+	 *        The starting position, which is copied rather than kept.
+	 */
 	public Position(Vector2 v) {
-		position = v;
+		position = new Vector2(v);
+		previous = new Vector2(v);
+	}
+
+	/**
+	 * Moves the position to the given coordinates without any interpolation
+	 * from where it was before, e.g. for a respawn.
+	 * 
+	 * @param x
+	 *        The new x coordinate.
+	 * @param y
+	 *        The new y coordinate.
+	 */
+	public void teleport(float x, float y) {
+		position.set(x, y);
+		previous.set(x, y);
+	}
+
+	/**
+	 * Calculates the position between the previous tick and the current one.
+	 * 
+	 * @param alpha
+	 *        How far between the previous and current position to go, from
+	 *        0.0f (previous) to 1.0f (current).
+	 * @param out
+	 *        The vector in which to store the result.
+	 * @return out, for chaining.
+	 */
+	public Vector2 interpolate(float alpha, Vector2 out) {
+		return out.set(previous).lerp(position, alpha);
 	}
 
 	/**
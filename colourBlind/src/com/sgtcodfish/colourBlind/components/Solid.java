@@ -11,8 +11,25 @@ import com.badlogic.gdx.math.Rectangle;
  * @author Ashley Davis (SgtCoDFish)
  */
 public class Solid extends Component {
+	/** No contact was made on the last collision pass. */
+	public static final int	CONTACT_NONE	= 0;
+	/** The left side of the rectangle hit something on the last pass. */
+	public static final int	CONTACT_LEFT	= 1 << 0;
+	/** The right side of the rectangle hit something on the last pass. */
+	public static final int	CONTACT_RIGHT	= 1 << 1;
+	/** The bottom of the rectangle hit something, i.e. the Entity landed. */
+	public static final int	CONTACT_BOTTOM	= 1 << 2;
+	/** The top of the rectangle hit something, e.g. a ceiling. */
+	public static final int	CONTACT_TOP		= 1 << 3;
+
 	public final Rectangle	rect;
-	public boolean			grounded	= false;
+	public boolean			grounded		= false;
+
+	/**
+	 * The contacts made during the last collision pass, as a combination of
+	 * the CONTACT_* flags.
+	 */
+	public int				contacts		= CONTACT_NONE;
 
 	/**
 	 * Constructs a new Solid component with the specified dimensions of the
@@ -33,4 +50,14 @@ public class Solid extends Component {
 	public Solid(float x, float y, float width, float height) {
 		rect = new Rectangle(x, y, width, height);
 	}
+
+	/**
+	 * @param contact
+	 *        One or more of the CONTACT_* flags.
+	 * @return True if any of the given contacts were made during the last
+	 *         collision pass.
+	 */
+	public boolean hasContact(int contact) {
+		return (contacts & contact) != 0;
+	}
 }
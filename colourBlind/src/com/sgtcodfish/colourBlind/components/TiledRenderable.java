@@ -1,15 +1,11 @@
 package com.sgtcodfish.colourBlind.components;
 
-import java.util.HashMap;
-
 import com.artemis.Component;
-import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.maps.MapLayers;
 import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
-import com.badlogic.gdx.maps.tiled.TiledMapTileLayer.Cell;
 import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.sgtcodfish.colourBlind.tiled.CBOrthogonalTiledMapRenderer;
+import com.sgtcodfish.colourBlind.tiled.PackedTileLayer;
 
 /**
  * Holds a TiledMap, which will be rendered in the ColourBlind fashion - that
@@ -32,10 +28,10 @@ public class TiledRenderable extends Component {
 	public final TiledMap						map;
 	public final CBOrthogonalTiledMapRenderer	renderer;
 	public final float							unitScale;
-	public final HashMap<Cell, Color>			platformColours;
+	public final float[]						platformColours;
 
-	public final TiledMapTileLayer[]			regularLayers;
-	public final TiledMapTileLayer				platformLayer;
+	public final PackedTileLayer[]				regularLayers;
+	public final PackedTileLayer				platformLayer;
 
 	/**
 	 * Use TiledRenderable(TiledMap); it handles the linking of the map to a
@@ -43,7 +39,7 @@ public class TiledRenderable extends Component {
 	 */
 	protected TiledRenderable() {
 		throw new IllegalStateException(
-				"In TiledRenderable() - the component should be immutable, use TiledRenderable(HashMap<>, TiledMap) or TiledRenderable(HashMap<>, TiledMap, float).");
+				"In TiledRenderable() - the component should be immutable, use TiledRenderable(float[], TiledMap) or TiledRenderable(float[], TiledMap, float).");
 	}
 
 	/**
@@ -51,13 +47,13 @@ public class TiledRenderable extends Component {
 	 * factor which will leave the map unchanged.
 	 * 
 	 * @param platformColours
-	 *        A hash map which contains mappings for platform-layer cells to
-	 *        their respective colours. Can be created by
+	 *        The packed colour of every platform-layer tile, indexed by (row *
+	 *        width) + col. Can be created by
 	 *        LevelEntityFactory.generatePlatformColours(TiledMap).
 	 * @param map
 	 *        The map to render.
 	 */
-	public TiledRenderable(HashMap<Cell, Color> platformColours, TiledMap map, CBOrthogonalTiledMapRenderer renderer) {
+	public TiledRenderable(float[] platformColours, TiledMap map, CBOrthogonalTiledMapRenderer renderer) {
 		this(platformColours, map, renderer, DEFAULT_UNIT_SCALE);
 	}
 
@@ -67,16 +63,15 @@ public class TiledRenderable extends Component {
 	 * the map when finished with it.
 	 * 
 	 * @param platformColours
-	 *        A hash map which contains mappings for platform-layer cells to
-	 *        their respective colours. Can be created by
+	 *        The packed colour of every platform-layer tile, indexed by (row *
+	 *        width) + col. Can be created by
 	 *        LevelEntityFactory.generatePlatformColours(TiledMap).
 	 * @param map
 	 *        The map which will be rendered.
 	 * @param unitScale
 	 *        The scaling factor for the map.
 	 */
-	public TiledRenderable(HashMap<Cell, Color> platformColours, TiledMap map, CBOrthogonalTiledMapRenderer renderer,
-			float unitScale) {
+	public TiledRenderable(float[] platformColours, TiledMap map, CBOrthogonalTiledMapRenderer renderer, float unitScale) {
 		this.map = map;
 		this.unitScale = unitScale;
 		this.platformColours = platformColours;
@@ -85,13 +80,13 @@ public class TiledRenderable extends Component {
 		// We do some code theatrics to get the members to all stay final, but
 		// it's worth it.
 		MapLayers layers = map.getLayers();
-		platformLayer = (TiledMapTileLayer) map.getLayers().get("platforms");
+		platformLayer = (PackedTileLayer) map.getLayers().get("platforms");
 
 		if (platformLayer == null) {
 			throw new GdxRuntimeException("No platform layer found in map passed to TiledRenderable. Don't do that.");
 		}
 
-		regularLayers = new TiledMapTileLayer[(layers.getCount() - 1)];
+		regularLayers = new PackedTileLayer[(layers.getCount() - 1)];
 		boolean platFound = false;
 
 		for (int i = 0; i < layers.getCount(); i++) {
@@ -105,7 +100,7 @@ public class TiledRenderable extends Component {
 
 				continue;
 			} else {
-				regularLayers[i - (platFound ? 1 : 0)] = (TiledMapTileLayer) layers.get(i);
+				regularLayers[i - (platFound ? 1 : 0)] = (PackedTileLayer) layers.get(i);
 			}
 		}
 	}
@@ -6,6 +6,9 @@ import com.badlogic.gdx.math.Vector2;
 /**
  * Holds a movable Entity's velocity.
  * 
+ * For an Entity with a PackedMotion, the vector is a view of its slot in the
+ * MotionStore, like Position's.
+ * 
  * @author Ashley Davis (SgtCoDFish)
  */
 public class Velocity extends Component {
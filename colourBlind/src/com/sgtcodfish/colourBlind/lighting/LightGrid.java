@@ -0,0 +1,410 @@
+package com.sgtcodfish.colourBlind.lighting;
+
+import java.nio.ByteBuffer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.Texture.TextureWrap;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Splits the view into square tiles and works out which lights touch each
+ * tile, so that a fragment shader only has to look at the few lights near it
+ * rather than every light in the scene.
+ * 
+ * Binning happens on the CPU in build(), which needs no GL context. upload()
+ * then packs the results into two small RGBA8888 textures, since 8 bit
+ * textures are all that's guaranteed to be available:
+ * <ul>
+ * <li>The index texture has one row per tile. Texel 0 holds the number of
+ * lights in the tile, then each light in the tile has two texels: its index,
+ * and its position relative to the tile's centre, a byte per axis offset by
+ * TILE_OFFSET_BIAS, followed by its radius.</li>
+ * <li>The light texture has two texels per visible light: the position
+ * relative to the grid origin, then the radius.</li>
+ * </ul>
+ * Other values are stored as 16 bit integers in two channels, high byte first;
+ * positions are offset by POSITION_BIAS so that lights just off the view can be
+ * stored.
+ * 
+ * Reading 16 bit positions needs highp floats, which fragment shaders don't
+ * always have on GLES2, so shaders without highp use the tile-relative copies
+ * instead. Those only reach TILE_OFFSET_BIAS units from the tile's centre, so
+ * lights centred further away than that are drawn at the limit; flashlights
+ * are far smaller than that.
+ * 
+ * There's no limit on the number of lights, only on the lights per tile. When a
+ * tile has more than lightsPerTile lights touching it, the largest are kept,
+ * and the overflow is counted so that it can be reported.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class LightGrid implements Disposable {
+	/** The default width and height of a tile, in world units. */
+	public static final float	DEFAULT_TILE_SIZE		= 64.0f;
+
+	/**
+	 * The default number of lights a tile can hold. Must match LIGHTS_PER_TILE
+	 * in the shaders.
+	 */
+	public static final int		DEFAULT_LIGHTS_PER_TILE	= 16;
+
+	/** Added to positions before they're packed, so they're never negative. */
+	public static final int		POSITION_BIAS			= 32768;
+
+	/**
+	 * Added to positions relative to a tile's centre before they're packed
+	 * into a byte.
+	 */
+	public static final int		TILE_OFFSET_BIAS		= 128;
+
+	private static final int	MAX_PACKED				= 65535;
+	private static final int	MAX_BYTE				= 255;
+	private static final int	MIN_LIGHT_CAPACITY		= 64;
+
+	public final float			tileSize;
+	public final int			lightsPerTile;
+
+	private float				originX					= 0.0f;
+	private float				originY					= 0.0f;
+	private int					tilesWide				= 0;
+	private int					tilesHigh				= 0;
+
+	// the lights in each tile, lightsPerTile slots per tile.
+	private int[]				tileCounts				= new int[0];
+	private int[]				tileLights				= new int[0];
+
+	// the lights which touch the view, as (x, y, radius) with x and y relative
+	// to the origin; tileLights indexes into this.
+	private float[]				visibleLights			= new float[MIN_LIGHT_CAPACITY * 3];
+	private int					visibleCount			= 0;
+
+	private int					overflowCount			= 0;
+
+	private Pixmap				indexPixmap				= null;
+	private Texture				indexTexture			= null;
+	private Pixmap				lightPixmap				= null;
+	private Texture				lightTexture			= null;
+
+	/**
+	 * Creates a light grid with the default tile size and lights per tile.
+	 */
+	public LightGrid() {
+		this(DEFAULT_TILE_SIZE, DEFAULT_LIGHTS_PER_TILE);
+	}
+
+	/**
+	 * Creates a light grid.
+	 * 
+	 * @param tileSize
+	 *        The width and height of each tile, in world units.
+	 * @param lightsPerTile
+	 *        The most lights any one tile can hold.
+	 */
+	public LightGrid(float tileSize, int lightsPerTile) {
+		if (tileSize <= 0.0f || lightsPerTile <= 0) {
+			throw new IllegalArgumentException("LightGrid needs a positive tile size and lights per tile.");
+		}
+
+		this.tileSize = tileSize;
+		this.lightsPerTile = lightsPerTile;
+	}
+
+	/**
+	 * Bins lights into the tiles covering the given view. Lights which don't
+	 * touch the view are left out entirely.
+	 * 
+	 * @param lights
+	 *        The lights, as (x, y, radius) triples in world units.
+	 * @param lightCount
+	 *        The number of lights in the array.
+	 * @param viewX
+	 *        The x coordinate of the left of the view.
+	 * @param viewY
+	 *        The y coordinate of the bottom of the view.
+	 * @param viewWidth
+	 *        The width of the view.
+	 * @param viewHeight
+	 *        The height of the view.
+	 */
+	public void build(float[] lights, int lightCount, float viewX, float viewY, float viewWidth, float viewHeight) {
+		originX = viewX;
+		originY = viewY;
+
+		final int wide = Math.max(1, (int) Math.ceil(viewWidth / tileSize));
+		final int high = Math.max(1, (int) Math.ceil(viewHeight / tileSize));
+
+		if (wide * high != tileCounts.length) {
+			tileCounts = new int[wide * high];
+			tileLights = new int[wide * high * lightsPerTile];
+		} else {
+			for (int i = 0; i < tileCounts.length; i++) {
+				tileCounts[i] = 0;
+			}
+		}
+
+		tilesWide = wide;
+		tilesHigh = high;
+		visibleCount = 0;
+		overflowCount = 0;
+
+		for (int light = 0; light < lightCount; light++) {
+			final float x = lights[light * 3 + 0] - originX;
+			final float y = lights[light * 3 + 1] - originY;
+			final float radius = lights[light * 3 + 2];
+
+			final int col1 = Math.max(0, (int) Math.floor((x - radius) / tileSize));
+			final int col2 = Math.min(tilesWide - 1, (int) Math.floor((x + radius) / tileSize));
+			final int row1 = Math.max(0, (int) Math.floor((y - radius) / tileSize));
+			final int row2 = Math.min(tilesHigh - 1, (int) Math.floor((y + radius) / tileSize));
+
+			if (radius <= 0.0f || col1 > col2 || row1 > row2) {
+				continue;
+			}
+
+			final int index = addVisibleLight(x, y, radius);
+
+			for (int row = row1; row <= row2; row++) {
+				for (int col = col1; col <= col2; col++) {
+					if (touchesTile(x, y, radius, col, row)) {
+						addToTile((row * tilesWide) + col, index);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the result of the last build() into the light textures, creating
+	 * or resizing them as needed. Must be called on the rendering thread.
+	 */
+	public void upload() {
+		final int indexWidth = (lightsPerTile * 2) + 1;
+		final int indexHeight = tilesWide * tilesHigh;
+
+		if (indexPixmap == null || indexPixmap.getHeight() != indexHeight) {
+			disposeIndexTexture();
+			indexPixmap = new Pixmap(indexWidth, indexHeight, Format.RGBA8888);
+			indexTexture = createTexture(indexPixmap);
+		}
+
+		final int lightWidth = lightTextureWidth();
+		if (lightPixmap == null || lightPixmap.getWidth() != lightWidth) {
+			disposeLightTexture();
+			lightPixmap = new Pixmap(lightWidth, 1, Format.RGBA8888);
+			lightTexture = createTexture(lightPixmap);
+		}
+
+		ByteBuffer pixels = indexPixmap.getPixels();
+		for (int tile = 0; tile < indexHeight; tile++) {
+			final int rowStart = tile * indexWidth * 4;
+			final float centreX = ((tile % tilesWide) + 0.5f) * tileSize;
+			final float centreY = ((tile / tilesWide) + 0.5f) * tileSize;
+
+			putPair(pixels, rowStart, tileCounts[tile], 0);
+
+			for (int i = 0; i < tileCounts[tile]; i++) {
+				final int light = tileLights[(tile * lightsPerTile) + i];
+				final int offset = rowStart + (i * 2 + 1) * 4;
+
+				putPair(pixels, offset, light, 0);
+				putOffset(pixels, offset + 4, visibleLights[light * 3 + 0] - centreX, visibleLights[light * 3 + 1]
+						- centreY, Math.round(visibleLights[light * 3 + 2]));
+			}
+		}
+
+		pixels = lightPixmap.getPixels();
+		for (int light = 0; light < visibleCount; light++) {
+			final int x = Math.round(visibleLights[light * 3 + 0]) + POSITION_BIAS;
+			final int y = Math.round(visibleLights[light * 3 + 1]) + POSITION_BIAS;
+			final int radius = Math.round(visibleLights[light * 3 + 2]);
+
+			putPair(pixels, light * 8, x, y);
+			putPair(pixels, light * 8 + 4, radius, 0);
+		}
+
+		indexTexture.draw(indexPixmap, 0, 0);
+		lightTexture.draw(lightPixmap, 0, 0);
+	}
+
+	/**
+	 * Binds the light textures and sets the uniforms a shader needs to read
+	 * them. Leaves texture unit 0 active.
+	 * 
+	 * @param program
+	 *        The shader, which must already be bound.
+	 * @param indexUnit
+	 *        The texture unit to bind the index texture to.
+	 * @param lightUnit
+	 *        The texture unit to bind the light texture to.
+	 */
+	public void setupShaderUniforms(ShaderProgram program, int indexUnit, int lightUnit) {
+		if (indexTexture == null) {
+			program.setUniformi("lightsOn", 0);
+			return;
+		}
+
+		indexTexture.bind(indexUnit);
+		lightTexture.bind(lightUnit);
+		Gdx.gl.glActiveTexture(GL20.GL_TEXTURE0);
+
+		program.setUniformi("lightIndices", indexUnit);
+		program.setUniformi("lightData", lightUnit);
+		program.setUniformf("lightGridOrigin", originX, originY);
+		program.setUniformf("lightGridTiles", tilesWide, tilesHigh);
+		program.setUniformf("lightTileSize", tileSize);
+		program.setUniformf("lightIndicesSize", indexPixmap.getWidth(), indexPixmap.getHeight());
+		program.setUniformf("lightDataWidth", lightPixmap.getWidth());
+		program.setUniformi("lightsOn", visibleCount);
+	}
+
+	/**
+	 * @return The number of lights which touched the view in the last build.
+	 */
+	public int getVisibleCount() {
+		return visibleCount;
+	}
+
+	/**
+	 * @return The number of times in the last build that a light didn't fit in
+	 *         a tile, or replaced a smaller one.
+	 */
+	public int getOverflowCount() {
+		return overflowCount;
+	}
+
+	/**
+	 * @return The number of lights in the given tile after the last build.
+	 */
+	public int getTileCount(int col, int row) {
+		return tileCounts[(row * tilesWide) + col];
+	}
+
+	public int getTilesWide() {
+		return tilesWide;
+	}
+
+	public int getTilesHigh() {
+		return tilesHigh;
+	}
+
+	@Override
+	public void dispose() {
+		disposeIndexTexture();
+		disposeLightTexture();
+	}
+
+	private int addVisibleLight(float x, float y, float radius) {
+		if ((visibleCount + 1) * 3 > visibleLights.length) {
+			float[] bigger = new float[visibleLights.length * 2];
+			System.arraycopy(visibleLights, 0, bigger, 0, visibleLights.length);
+			visibleLights = bigger;
+		}
+
+		visibleLights[visibleCount * 3 + 0] = x;
+		visibleLights[visibleCount * 3 + 1] = y;
+		visibleLights[visibleCount * 3 + 2] = radius;
+
+		return visibleCount++;
+	}
+
+	private void addToTile(int tile, int light) {
+		final int start = tile * lightsPerTile;
+
+		if (tileCounts[tile] < lightsPerTile) {
+			tileLights[start + tileCounts[tile]] = light;
+			tileCounts[tile]++;
+			return;
+		}
+
+		overflowCount++;
+
+		// the tile's full, so keep whichever lights are largest.
+		int smallest = start;
+		for (int i = start + 1; i < start + lightsPerTile; i++) {
+			if (visibleLights[tileLights[i] * 3 + 2] < visibleLights[tileLights[smallest] * 3 + 2]) {
+				smallest = i;
+			}
+		}
+
+		if (visibleLights[light * 3 + 2] > visibleLights[tileLights[smallest] * 3 + 2]) {
+			tileLights[smallest] = light;
+		}
+	}
+
+	private boolean touchesTile(float x, float y, float radius, int col, int row) {
+		final float left = col * tileSize;
+		final float bottom = row * tileSize;
+
+		final float dx = x - Math.max(left, Math.min(x, left + tileSize));
+		final float dy = y - Math.max(bottom, Math.min(y, bottom + tileSize));
+
+		return (dx * dx) + (dy * dy) < (radius * radius);
+	}
+
+	private int lightTextureWidth() {
+		int capacity = MIN_LIGHT_CAPACITY;
+		while (capacity < visibleCount) {
+			capacity *= 2;
+		}
+
+		return capacity * 2;
+	}
+
+	private static void putPair(ByteBuffer pixels, int offset, int first, int second) {
+		first = Math.max(0, Math.min(MAX_PACKED, first));
+		second = Math.max(0, Math.min(MAX_PACKED, second));
+
+		pixels.put(offset + 0, (byte) (first >>> 8));
+		pixels.put(offset + 1, (byte) first);
+		pixels.put(offset + 2, (byte) (second >>> 8));
+		pixels.put(offset + 3, (byte) second);
+	}
+
+	private static void putOffset(ByteBuffer pixels, int offset, float x, float y, int radius) {
+		final int packedX = Math.max(0, Math.min(MAX_BYTE, Math.round(x) + TILE_OFFSET_BIAS));
+		final int packedY = Math.max(0, Math.min(MAX_BYTE, Math.round(y) + TILE_OFFSET_BIAS));
+		radius = Math.max(0, Math.min(MAX_PACKED, radius));
+
+		pixels.put(offset + 0, (byte) packedX);
+		pixels.put(offset + 1, (byte) packedY);
+		pixels.put(offset + 2, (byte) (radius >>> 8));
+		pixels.put(offset + 3, (byte) radius);
+	}
+
+	private static Texture createTexture(Pixmap pixmap) {
+		Texture texture = new Texture(pixmap);
+		texture.setFilter(TextureFilter.Nearest, TextureFilter.Nearest);
+		texture.setWrap(TextureWrap.ClampToEdge, TextureWrap.ClampToEdge);
+		return texture;
+	}
+
+	private void disposeIndexTexture() {
+		if (indexTexture != null) {
+			indexTexture.dispose();
+			indexTexture = null;
+		}
+
+		if (indexPixmap != null) {
+			indexPixmap.dispose();
+			indexPixmap = null;
+		}
+	}
+
+	private void disposeLightTexture() {
+		if (lightTexture != null) {
+			lightTexture.dispose();
+			lightTexture = null;
+		}
+
+		if (lightPixmap != null) {
+			lightPixmap.dispose();
+			lightPixmap = null;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.sgtcodfish.colourBlind.systems;
+
+import com.artemis.Aspect;
+import com.artemis.Entity;
+import com.artemis.EntitySystem;
+import com.artemis.utils.ImmutableBag;
+import com.sgtcodfish.colourBlind.FixedStepClock;
+import com.sgtcodfish.colourBlind.MotionStore;
+import com.sgtcodfish.colourBlind.components.Facing;
+import com.sgtcodfish.colourBlind.components.PackedMotion;
+import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.components.Velocity;
+import com.sgtcodfish.colourBlind.components.Weight;
+
+/**
+ * Moves every {@link PackedMotion} Entity exactly as MovementSystem moves
+ * everything else, but over the parallel arrays of the world's
+ * {@link MotionStore} rather than Entity by Entity: gravity, facing, friction
+ * and integration are each a straight loop over flat float arrays with no
+ * component lookups, which the JIT can unroll and vectorise.
+ * 
+ * Entities with Position and Velocity views have them copied into the store
+ * before the loops and back out after, so other systems see the results as
+ * usual.
+ * 
+ * Like MovementSystem, this should be run by a {@link FixedStepClock}.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class BatchMovementSystem extends EntitySystem implements ScheduledSystem {
+	private static final SystemAccess	ACCESS	= new SystemAccess().reads(Weight.class)
+			.writes(MotionStore.class, Position.class, Velocity.class, Facing.class);
+
+	private MotionStore					store	= null;
+
+	@SuppressWarnings("unchecked")
+	public BatchMovementSystem() {
+		super(Aspect.getAspectForAll(PackedMotion.class));
+	}
+
+	@Override
+	protected void initialize() {
+		store = world.getManager(MotionStore.class);
+
+		if (store == null) {
+			throw new IllegalStateException("BatchMovementSystem needs a MotionStore manager in the world.");
+		}
+	}
+
+	@Override
+	protected boolean checkProcessing() {
+		return store.size() > 0;
+	}
+
+	@Override
+	protected void processEntities(ImmutableBag<Entity> entities) {
+		store.pull();
+		move(store.size(), store.x, store.y, store.previousX, store.previousY, store.velocityX, store.velocityY,
+				store.weight, store.facingLeft);
+		store.push();
+	}
+
+	/**
+	 * Moves the first count entities in the given arrays by one tick, in the
+	 * same way and in the same order of operations as MovementSystem.process.
+	 */
+	protected static void move(final int count, final float[] x, final float[] y, final float[] previousX,
+			final float[] previousY, final float[] velocityX, final float[] velocityY, final float[] weight,
+			final boolean[] facingLeft) {
+		System.arraycopy(x, 0, previousX, 0, count);
+		System.arraycopy(y, 0, previousY, 0, count);
+
+		// entities with no weight have 0 here, which leaves them unchanged
+		for (int i = 0; i < count; i++) {
+			velocityY[i] -= weight[i] * MovementSystem.GRAVITY;
+		}
+
+		for (int i = 0; i < count; i++) {
+			final float vx = velocityX[i];
+
+			if (vx != 0.0f) {
+				facingLeft[i] = (vx < 0.0f);
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			final float vx = velocityX[i] * MovementSystem.FRICTION;
+			velocityX[i] = (Math.abs(vx) < MovementSystem.MIN_SPEED ? 0.0f : vx);
+		}
+
+		for (int i = 0; i < count; i++) {
+			final float vy = velocityY[i];
+			velocityY[i] = (Math.abs(vy) < MovementSystem.MIN_SPEED ? 0.0f : vy);
+		}
+
+		for (int i = 0; i < count; i++) {
+			x[i] += velocityX[i];
+			y[i] += velocityY[i];
+		}
+	}
+
+	@Override
+	public SystemAccess getAccess() {
+		return ACCESS;
+	}
+}
@@ -0,0 +1,66 @@
+package com.sgtcodfish.colourBlind.systems;
+
+import com.artemis.Aspect;
+import com.artemis.ComponentMapper;
+import com.artemis.Entity;
+import com.artemis.annotations.Mapper;
+import com.artemis.systems.EntityProcessingSystem;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.sgtcodfish.colourBlind.RenderQueue;
+import com.sgtcodfish.colourBlind.components.ChunkedRenderable;
+
+/**
+ * Handles rendering of ChunkedRenderable-component-including Entities, in the
+ * same way as TiledMapRenderingSystem does for TiledRenderables. Each frame
+ * the chunks around the camera are made resident, chunks which have just come
+ * into view are baked into static geometry, and the visible platforms are
+ * submitted to the world's {@link RenderQueue}.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class ChunkedWorldRenderingSystem extends EntityProcessingSystem {
+	@Mapper
+	ComponentMapper<ChunkedRenderable>	crm		= null;
+
+	public OrthographicCamera			camera	= null;
+	public ShaderProgram				program	= null;
+
+	private RenderQueue					queue	= null;
+
+	/**
+	 * @param camera
+	 *        The camera which describes the view of the scene.
+	 * @param program
+	 *        The shader to use, should support rendering platforms.
+	 */
+	@SuppressWarnings("unchecked")
+	public ChunkedWorldRenderingSystem(OrthographicCamera camera, ShaderProgram program) {
+		super(Aspect.getAspectForAll(ChunkedRenderable.class));
+
+		if (camera == null || program == null) {
+			throw new IllegalArgumentException("ChunkedWorldRenderingSystem needs a camera and a shader.");
+		}
+
+		this.camera = camera;
+		this.program = program;
+	}
+
+	@Override
+	protected void process(Entity e) {
+		ChunkedRenderable c = crm.get(e);
+
+		c.renderer.setView(camera);
+		queue.countDrawCalls(c.renderer.renderStaticLayers());
+		c.renderer.submitPlatforms(queue, RenderQueue.LAYER_PLATFORMS, program);
+	}
+
+	@Override
+	protected void initialize() {
+		queue = world.getManager(RenderQueue.class);
+
+		if (queue == null) {
+			throw new IllegalStateException("ChunkedWorldRenderingSystem needs a RenderQueue manager in the world.");
+		}
+	}
+}
@@ -5,32 +5,112 @@ import com.artemis.ComponentMapper;
 import com.artemis.Entity;
 import com.artemis.annotations.Mapper;
 import com.artemis.systems.EntityProcessingSystem;
+import com.artemis.utils.ImmutableBag;
 import com.badlogic.gdx.maps.tiled.TiledMap;
-import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
+import com.sgtcodfish.colourBlind.CBColour.GameColour;
+import com.sgtcodfish.colourBlind.collision.CollisionGrid;
+import com.sgtcodfish.colourBlind.collision.SpatialHash;
+import com.sgtcodfish.colourBlind.components.Coloured;
 import com.sgtcodfish.colourBlind.components.Position;
 import com.sgtcodfish.colourBlind.components.Solid;
 import com.sgtcodfish.colourBlind.components.Velocity;
+import com.sgtcodfish.colourBlind.tiled.ChunkedTileWorld;
+import com.sgtcodfish.colourBlind.tiled.PlatformLabels;
+import com.sgtcodfish.colourBlind.tiled.TileChunk;
 
 /**
  * Checks to see if solid entities are in contact with other solid entities.
  * 
+ * Entities are resolved against the tile grid built from the "level" layer by
+ * sweeping their {@link Solid} rectangle along each axis in turn; only the
+ * tiles the rectangle passes through are ever tested, so the cost of a check
+ * depends on the Entity's size and speed and not on the size of the map. The
+ * map is assumed to be positioned at the origin.
+ * 
+ * Tiles to the left, right or below the map are treated as solid, while the
+ * area above the map is open.
+ * 
+ * Platforms are solid only to entities whose {@link Coloured} colour matches
+ * their own. To keep that check cheap, one bitplane per {@link GameColour} is
+ * packed into the level's {@link CollisionGrid}, so the collision test for any
+ * Entity is a single word-and-mask regardless of its colour. Grids are built
+ * as levels load, off the rendering thread, so changing level only swaps
+ * which grid is in use.
+ * 
+ * Levels too big to keep whole can instead be collided against as a
+ * {@link ChunkedTileWorld}, in which case each chunk holds the bitplanes for
+ * its own tiles and only the chunks entities are near are ever built.
+ * 
+ * Moves along a single axis are always swept exactly. Diagonal moves are, by
+ * default, resolved continuously by marching the rectangle through the tile
+ * boundaries in the order it crosses them, so it can't clip through the
+ * corner of a tile between its start and end positions however fast it goes.
+ * Setting continuous to false instead sweeps x and then y separately, which
+ * is slightly cheaper but lets fast diagonal moves cut corners.
+ * 
+ * Solid entities also collide with each other. Every Entity is kept in a
+ * {@link SpatialHash} with one cell per tile, updated at the start of each
+ * pass, so each Entity is only tested against entities in the cells it
+ * covers. An Entity overlapping another is pushed out along the shallower
+ * axis; entities without a Velocity are never pushed, so they act as
+ * obstacles to everything else.
+ * 
  * @author Ashley Davis (SgtCoDFish)
  */
-public class CollisionSystem extends EntityProcessingSystem {
+public class CollisionSystem extends EntityProcessingSystem implements ScheduledSystem {
+	private static final SystemAccess	ACCESS				= new SystemAccess().reads(Coloured.class)
+			.writes(Position.class, Velocity.class, Solid.class, ChunkedTileWorld.class);
+
 	@Mapper
-	ComponentMapper<Position>	pm					= null;
+	ComponentMapper<Position>			pm					= null;
 
 	@Mapper
-	ComponentMapper<Velocity>	vm					= null;
+	ComponentMapper<Velocity>			vm					= null;
 
 	@Mapper
-	ComponentMapper<Solid>		sm					= null;
+	ComponentMapper<Solid>				sm					= null;
+
+	@Mapper
+	ComponentMapper<Coloured>			cm					= null;
+
+	/**
+	 * The tiles of the "level" layer packed one bit per tile, with bit (y *
+	 * width) + x set if that tile is solid. Used for entities which have no
+	 * colour. Shared with the current CollisionGrid, so must not be modified.
+	 */
+	public long[]						staticBitplane		= null;
+
+	/**
+	 * One bitplane per {@link GameColour}, indexed by ordinal; each holds the
+	 * static tiles plus the platforms of that colour.
+	 */
+	public long[][]						colourCollidables	= null;
+
+	/**
+	 * Whether diagonal moves are resolved continuously (true) or by sweeping
+	 * each axis separately (false).
+	 */
+	public boolean						continuous			= true;
+
+	private CollisionGrid				grid				= null;
+	private ChunkedTileWorld			tileWorld			= null;
+
+	private int							widthInTiles		= 0;
+	private int							heightInTiles		= 0;
+	private float						tileWidth			= 0.0f;
+	private float						tileHeight			= 0.0f;
+
+	private final Vector2				resolved			= new Vector2();
 
-	public boolean[]			staticCollidables	= null;
-	public boolean[]			collisionMap		= null;
+	// whether the last sweepX or sweepY was stopped by a tile, including one
+	// it only just reached
+	private boolean						blocked				= false;
 
-	private TiledMap			map					= null;
+	private SpatialHash					spatialHash			= null;
+	private final IntArray				neighbours			= new IntArray();
 
 	/**
 	 * Use this constructor; creates a CollisionSystem and sets the collision
@@ -38,57 +118,687 @@ public class CollisionSystem extends EntityProcessingSystem {
 	 * 
 	 * @param map
 	 *        The level with which to initiate the component map. All the tiles
-	 *        from the "level" layer will be added to the staticCollidables.
+	 *        from the "level" layer will be added to the staticBitplane.
+	 * @param platforms
+	 *        The platforms in the "platforms" layer of the map, with their
+	 *        colours assigned, as created by
+	 *        LevelEntityFactory.labelPlatforms(TiledMap, long).
+	 */
+	public CollisionSystem(TiledMap map, PlatformLabels platforms) {
+		this(map, platforms, (long[]) null);
+	}
+
+	/**
+	 * Creates a CollisionSystem for a level with a precomputed static
+	 * bitplane; see setMap(TiledMap, PlatformLabels, long[]).
 	 */
 	@SuppressWarnings("unchecked")
-	public CollisionSystem(TiledMap map) {
-		this(map, Aspect.getAspectForAll(Position.class, Solid.class));
+	public CollisionSystem(TiledMap map, PlatformLabels platforms, long[] staticBitplane) {
+		this(map, platforms, staticBitplane, Aspect.getAspectForAll(Position.class, Solid.class));
 	}
 
-	public CollisionSystem(TiledMap map, Aspect aspect) {
+	public CollisionSystem(TiledMap map, PlatformLabels platforms, Aspect aspect) {
+		this(map, platforms, null, aspect);
+	}
+
+	public CollisionSystem(TiledMap map, PlatformLabels platforms, long[] staticBitplane, Aspect aspect) {
 		super(aspect);
-		setMap(map);
+		setMap(map, platforms, staticBitplane);
 	}
 
-	public void setMap(TiledMap map) {
-		this.map = map;
-		initCollidables();
+	/**
+	 * Creates a CollisionSystem for a level streamed in chunks; see
+	 * setWorld(ChunkedTileWorld).
+	 */
+	@SuppressWarnings("unchecked")
+	public CollisionSystem(ChunkedTileWorld world) {
+		this(world, Aspect.getAspectForAll(Position.class, Solid.class));
 	}
 
-	private void initCollidables() {
-		TiledMapTileLayer levelLayer = ((TiledMapTileLayer) map.getLayers().get("level"));
-		final int widthInTiles = levelLayer.getWidth();
-		final int heightInTiles = levelLayer.getHeight();
+	/**
+	 * Creates a CollisionSystem for a level whose collision grid has already
+	 * been built; see setGrid(CollisionGrid).
+	 */
+	@SuppressWarnings("unchecked")
+	public CollisionSystem(CollisionGrid grid) {
+		this(grid, Aspect.getAspectForAll(Position.class, Solid.class));
+	}
 
-		final int size = widthInTiles * heightInTiles;
+	public CollisionSystem(CollisionGrid grid, Aspect aspect) {
+		super(aspect);
+		setGrid(grid);
+	}
 
-		staticCollidables = new boolean[size];
+	public CollisionSystem(ChunkedTileWorld world, Aspect aspect) {
+		super(aspect);
+		setWorld(world);
+	}
 
-		// for every tile in the level layer, make it collidable always.
-		for (int y = 0; y < heightInTiles; y++) {
-			for (int x = 0; x < widthInTiles; x++) {
-				staticCollidables[(y * widthInTiles) + x] = (levelLayer.getCell(x, y) != null);
-			}
+	/**
+	 * Sets the map against which entities collide, building the static and
+	 * per-colour collision bitplanes for it on the calling thread.
+	 * 
+	 * @param map
+	 *        The level to collide against.
+	 * @param platforms
+	 *        The platforms in the "platforms" layer of the map, with their
+	 *        colours assigned, or null if no platforms should be solid.
+	 */
+	public void setMap(TiledMap map, PlatformLabels platforms) {
+		setMap(map, platforms, null);
+	}
+
+	/**
+	 * Sets the map against which entities collide, using a precomputed static
+	 * bitplane (e.g. from a CompiledLevel) rather than scanning the "level"
+	 * layer for it.
+	 * 
+	 * @param map
+	 *        The level to collide against.
+	 * @param platforms
+	 *        The platforms in the "platforms" layer of the map, with their
+	 *        colours assigned, or null if no platforms should be solid.
+	 * @param staticBitplane
+	 *        The tiles in the "level" layer of the map, packed as
+	 *        staticBitplane is, or null to scan the layer.
+	 */
+	public void setMap(TiledMap map, PlatformLabels platforms, long[] staticBitplane) {
+		setGrid(CollisionGrid.build(map, platforms, staticBitplane));
+	}
+
+	/**
+	 * Sets the level against which entities collide from its prebuilt
+	 * collision grid. Nothing is scanned or copied, so this is cheap enough to
+	 * swap levels with mid-frame when the grid was built as the level loaded.
+	 * 
+	 * @param grid
+	 *        The collision grid of the level to collide against.
+	 */
+	public void setGrid(CollisionGrid grid) {
+		this.grid = grid;
+		this.tileWorld = null;
+
+		staticBitplane = grid.staticBitplane;
+		colourCollidables = grid.colourBitplanes;
+
+		this.widthInTiles = grid.widthInTiles;
+		this.heightInTiles = grid.heightInTiles;
+		this.tileWidth = grid.tileWidth;
+		this.tileHeight = grid.tileHeight;
+
+		initSpatialHash();
+	}
+
+	/**
+	 * @return The collision grid being collided against, or null if colliding
+	 *         against a ChunkedTileWorld.
+	 */
+	public CollisionGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Sets a level streamed in chunks as the one against which entities
+	 * collide. No bitplanes are built for the whole level; each tile checked
+	 * is looked up in its chunk's bitplanes instead, decoding the chunk if it
+	 * isn't resident.
+	 * 
+	 * @param world
+	 *        The level to collide against.
+	 */
+	public void setWorld(ChunkedTileWorld world) {
+		this.grid = null;
+		this.tileWorld = world;
+
+		staticBitplane = null;
+		colourCollidables = null;
+
+		this.widthInTiles = world.width;
+		this.heightInTiles = world.height;
+		this.tileWidth = world.tileWidth;
+		this.tileHeight = world.tileHeight;
+
+		initSpatialHash();
+	}
+
+	private void initSpatialHash() {
+		if (spatialHash == null || spatialHash.cellWidth != tileWidth || spatialHash.cellHeight != tileHeight) {
+			spatialHash = new SpatialHash(tileWidth, tileHeight);
+		} else {
+			spatialHash.clear();
 		}
 	}
 
+	/**
+	 * Checks if the tile at the given tile coordinates blocks movement.
+	 * 
+	 * @param tileX
+	 *        The x coordinate of the tile, which may be outside the map.
+	 * @param tileY
+	 *        The y coordinate of the tile, which may be outside the map.
+	 * @return True if the tile is solid, false otherwise.
+	 */
+	public boolean isSolidTile(int tileX, int tileY) {
+		return isSolidTile(TileChunk.STATIC_PLANE, tileX, tileY);
+	}
+
+	/**
+	 * Checks if the tile at the given tile coordinates blocks movement for an
+	 * Entity of the given colour.
+	 * 
+	 * @param colour
+	 *        The colour of the Entity, or null if it has no colour.
+	 * @param tileX
+	 *        The x coordinate of the tile, which may be outside the map.
+	 * @param tileY
+	 *        The y coordinate of the tile, which may be outside the map.
+	 * @return True if the tile is solid for that colour, false otherwise.
+	 */
+	public boolean isSolidTile(GameColour colour, int tileX, int tileY) {
+		return isSolidTile(planeFor(colour), tileX, tileY);
+	}
+
+	/**
+	 * @param colour
+	 *        The colour of an Entity, or null if it has no colour.
+	 * @return The bitplane of tiles solid to an Entity of that colour, or null
+	 *         if colliding with a ChunkedTileWorld.
+	 */
+	public long[] bitplaneFor(GameColour colour) {
+		if (tileWorld != null) {
+			return null;
+		}
+
+		return (colour != null ? colourCollidables[colour.ordinal()] : staticBitplane);
+	}
+
+	/**
+	 * @param colour
+	 *        The colour of an Entity, or null if it has no colour.
+	 * @return The collision plane for an Entity of that colour: the colour's
+	 *         ordinal, or TileChunk.STATIC_PLANE.
+	 */
+	protected int planeFor(GameColour colour) {
+		return (colour != null ? colour.ordinal() : TileChunk.STATIC_PLANE);
+	}
+
+	protected boolean isSolidTile(int plane, int tileX, int tileY) {
+		if (tileX < 0 || tileX >= widthInTiles || tileY < 0) {
+			return true;
+		} else if (tileY >= heightInTiles) {
+			return false;
+		}
+
+		if (tileWorld != null) {
+			return tileWorld.isSolid(plane, tileX, tileY);
+		}
+
+		final long[] bitplane = (plane == TileChunk.STATIC_PLANE ? staticBitplane : colourCollidables[plane]);
+		final int index = (tileY * widthInTiles) + tileX;
+		return (bitplane[index >>> 6] & (1L << index)) != 0L;
+	}
+
+	/**
+	 * Brings the spatial hash up to date with where every Entity has moved to
+	 * this tick, before any of them are resolved.
+	 */
+	@Override
+	protected void begin() {
+		ImmutableBag<Entity> actives = getActives();
+
+		for (int i = 0, size = actives.size(); i < size; i++) {
+			updateSpatialHash(actives.get(i));
+		}
+	}
+
+	@Override
+	protected void removed(Entity e) {
+		spatialHash.remove(e.getId());
+	}
+
 	@Override
 	protected void process(Entity e) {
-		Vector2 p = pm.get(e).position;
-		Vector2 v = vm.get(e).velocity;
+		Velocity vel = vm.getSafe(e);
+		if (vel == null) {
+			// entities which can't move can't be pushed, either.
+			return;
+		}
+
+		Position pos = pm.get(e);
+		Vector2 p = pos.position;
+		Vector2 v = vel.velocity;
 		Solid s = sm.get(e);
+		Coloured c = cm.getSafe(e);
+
+		final int plane = planeFor(c != null ? c.colour.getColour() : null);
+
+		// MovementSystem has already moved the Entity this tick, so start from
+		// where it was before that and sweep it along its velocity.
+		final float startX = pos.previous.x;
+		final float startY = pos.previous.y;
+
+		final float dx = p.x - startX;
+		final float dy = p.y - startY;
 
-		if (p.x <= 32.0f || p.x >= 800.0f) {
+		int contacts = sweep(plane, s.rect, startX, startY, dx, dy, resolved);
+
+		if ((contacts & (Solid.CONTACT_LEFT | Solid.CONTACT_RIGHT)) != 0) {
 			v.x = 0.0f;
-			p.x = 32.0f;
 		}
 
-		if (p.y <= 32.0f) {
+		if ((contacts & (Solid.CONTACT_TOP | Solid.CONTACT_BOTTOM)) != 0) {
 			v.y = 0.0f;
-			s.grounded = true;
-			p.y = 32.0f;
+		}
+
+		p.set(resolved);
+		updateSpatialHash(e);
+
+		contacts |= resolveEntities(e, plane, p, v, s.rect);
+
+		s.contacts = contacts;
+		s.grounded = s.hasContact(Solid.CONTACT_BOTTOM);
+	}
+
+	/**
+	 * Pushes an Entity out of any other solid entities it overlaps, along
+	 * whichever axis needs the smaller push. Pushes are swept against the tile
+	 * grid, so an Entity can't be pushed into a wall.
+	 * 
+	 * @param e
+	 *        The Entity to push.
+	 * @param plane
+	 *        The collision plane for the Entity, from planeFor.
+	 * @param p
+	 *        The Entity's position, which will be updated.
+	 * @param v
+	 *        The Entity's velocity, which is stopped along any axis on which it
+	 *        was pushed back.
+	 * @param rect
+	 *        The Entity's collision rectangle.
+	 * @return The contacts made, as a combination of the Solid.CONTACT_* flags.
+	 */
+	protected int resolveEntities(Entity e, int plane, Vector2 p, Vector2 v, Rectangle rect) {
+		int contacts = Solid.CONTACT_NONE;
+
+		spatialHash.query(p.x + rect.x, p.y + rect.y, rect.width, rect.height, e.getId(), neighbours);
+
+		for (int i = 0; i < neighbours.size; i++) {
+			Entity other = world.getEntity(neighbours.get(i));
+			Vector2 op = pm.get(other).position;
+			Rectangle otherRect = sm.get(other).rect;
+
+			final float left = p.x + rect.x;
+			final float bottom = p.y + rect.y;
+			final float otherLeft = op.x + otherRect.x;
+			final float otherBottom = op.y + otherRect.y;
+
+			final float overlapX = Math.min(left + rect.width, otherLeft + otherRect.width) - Math.max(left, otherLeft);
+			final float overlapY = Math.min(bottom + rect.height, otherBottom + otherRect.height)
+					- Math.max(bottom, otherBottom);
+
+			if (overlapX <= 0.0f || overlapY <= 0.0f) {
+				continue;
+			}
+
+			if (overlapX < overlapY) {
+				final boolean pushLeft = (left + rect.width * 0.5f) < (otherLeft + otherRect.width * 0.5f);
+				p.x = sweepX(plane, rect, p.x, p.y, (pushLeft ? -overlapX : overlapX));
+
+				if (pushLeft) {
+					contacts |= Solid.CONTACT_RIGHT;
+					v.x = Math.min(v.x, 0.0f);
+				} else {
+					contacts |= Solid.CONTACT_LEFT;
+					v.x = Math.max(v.x, 0.0f);
+				}
+			} else {
+				final boolean pushDown = (bottom + rect.height * 0.5f) < (otherBottom + otherRect.height * 0.5f);
+				p.y = sweepY(plane, rect, p.x, p.y, (pushDown ? -overlapY : overlapY));
+
+				if (pushDown) {
+					contacts |= Solid.CONTACT_TOP;
+					v.y = Math.min(v.y, 0.0f);
+				} else {
+					contacts |= Solid.CONTACT_BOTTOM;
+					v.y = Math.max(v.y, 0.0f);
+				}
+			}
+		}
+
+		if (contacts != Solid.CONTACT_NONE) {
+			updateSpatialHash(e);
+		}
+
+		return contacts;
+	}
+
+	private void updateSpatialHash(Entity e) {
+		Vector2 p = pm.get(e).position;
+		Rectangle r = sm.get(e).rect;
+
+		spatialHash.update(e.getId(), p.x + r.x, p.y + r.y, r.width, r.height);
+	}
+
+	/**
+	 * Moves a rectangle from (x, y) by (dx, dy) against the tiles, exactly as
+	 * an Entity of the given colour is moved each tick but without colliding
+	 * with other entities, e.g. for working out where the player could go
+	 * without a world.
+	 * 
+	 * @param colour
+	 *        The colour of the owner of rect, or null if it has no colour.
+	 * @param rect
+	 *        The rectangle, relative to (x, y).
+	 * @param x
+	 *        The starting x coordinate of the owner of rect.
+	 * @param y
+	 *        The starting y coordinate of the owner of rect.
+	 * @param dx
+	 *        The distance to move along x.
+	 * @param dy
+	 *        The distance to move along y.
+	 * @param out
+	 *        Set to the position reached by the owner of rect.
+	 * @return The contacts made, as a combination of the Solid.CONTACT_* flags.
+	 */
+	public int sweep(GameColour colour, Rectangle rect, float x, float y, float dx, float dy, Vector2 out) {
+		return sweep(planeFor(colour), rect, x, y, dx, dy, out);
+	}
+
+	/**
+	 * Moves a rectangle by (dx, dy) continuously or along each axis in turn,
+	 * depending on continuous; see sweep(GameColour, ...).
+	 */
+	protected int sweep(int plane, Rectangle rect, float x, float y, float dx, float dy, Vector2 out) {
+		if (continuous && dx != 0.0f && dy != 0.0f) {
+			return sweepContinuous(plane, rect, x, y, dx, dy, out);
+		} else {
+			return sweepAxes(plane, rect, x, y, dx, dy, out);
+		}
+	}
+
+	/**
+	 * Moves a rectangle from (x, y) by (dx, dy) by sweeping it along x and then
+	 * along y.
+	 * 
+	 * @param plane
+	 *        The collision plane to collide with, from planeFor.
+	 * @param rect
+	 *        The rectangle, relative to (x, y).
+	 * @param x
+	 *        The starting x coordinate of the owner of rect.
+	 * @param y
+	 *        The starting y coordinate of the owner of rect.
+	 * @param dx
+	 *        The distance to move along x.
+	 * @param dy
+	 *        The distance to move along y.
+	 * @param out
+	 *        Set to the position reached by the owner of rect.
+	 * @return The contacts made, as a combination of the Solid.CONTACT_* flags.
+	 */
+	protected int sweepAxes(int plane, Rectangle rect, float x, float y, float dx, float dy, Vector2 out) {
+		int contacts = Solid.CONTACT_NONE;
+
+		final float newX = sweepX(plane, rect, x, y, dx);
+		if (blocked) {
+			contacts |= (dx > 0.0f ? Solid.CONTACT_RIGHT : Solid.CONTACT_LEFT);
+		}
+
+		final float newY = sweepY(plane, rect, newX, y, dy);
+		if (blocked) {
+			contacts |= (dy > 0.0f ? Solid.CONTACT_TOP : Solid.CONTACT_BOTTOM);
+		}
+
+		out.set(newX, newY);
+		return contacts;
+	}
+
+	/**
+	 * Moves a rectangle from (x, y) by (dx, dy), marching it through the tile
+	 * grid one column or row boundary at a time in the order the boundaries are
+	 * crossed (a DDA over the grid). The first solid tile met stops movement
+	 * along that axis, and the rest of the move slides along the other axis.
+	 * 
+	 * Each step checks only the single column or row the rectangle is entering,
+	 * so the cost is proportional to the number of tiles crossed.
+	 * 
+	 * @param plane
+	 *        The collision plane to collide with, from planeFor.
+	 * @param rect
+	 *        The rectangle, relative to (x, y).
+	 * @param x
+	 *        The starting x coordinate of the owner of rect.
+	 * @param y
+	 *        The starting y coordinate of the owner of rect.
+	 * @param dx
+	 *        The distance to move along x.
+	 * @param dy
+	 *        The distance to move along y.
+	 * @param out
+	 *        Set to the position reached by the owner of rect.
+	 * @return The contacts made, as a combination of the Solid.CONTACT_* flags.
+	 */
+	protected int sweepContinuous(int plane, Rectangle rect, float x, float y, float dx, float dy, Vector2 out) {
+		final float left = x + rect.x;
+		final float bottom = y + rect.y;
+		final float right = left + rect.width;
+		final float top = bottom + rect.height;
+
+		// the columns and rows currently covered by the rectangle
+		int colLo = (int) Math.floor(left / tileWidth);
+		int colHi = (int) Math.ceil(right / tileWidth) - 1;
+		int rowLo = (int) Math.floor(bottom / tileHeight);
+		int rowHi = (int) Math.ceil(top / tileHeight) - 1;
+
+		// the next column and row the leading edges will enter
+		int nextCol = (dx > 0.0f ? colHi + 1 : colLo - 1);
+		int nextRow = (dy > 0.0f ? rowHi + 1 : rowLo - 1);
+
+		while (true) {
+			// how far along the move, from 0 to 1, each boundary is reached
+			final float tCol = (dx > 0.0f ? ((nextCol * tileWidth) - right) : (((nextCol + 1) * tileWidth) - left))
+					/ dx;
+			final float tRow = (dy > 0.0f ? ((nextRow * tileHeight) - top) : (((nextRow + 1) * tileHeight) - bottom))
+					/ dy;
+
+			if (tCol > 1.0f && tRow > 1.0f) {
+				out.set(x + dx, y + dy);
+				return Solid.CONTACT_NONE;
+			}
+
+			if (tCol <= tRow) {
+				// the trailing edge may have left a row by now
+				if (dy > 0.0f) {
+					rowLo = (int) Math.floor((bottom + dy * tCol) / tileHeight);
+				} else {
+					rowHi = (int) Math.ceil((top + dy * tCol) / tileHeight) - 1;
+				}
+
+				for (int row = rowLo; row <= rowHi; row++) {
+					if (isSolidTile(plane, nextCol, row)) {
+						final float hitX = (dx > 0.0f ? (nextCol * tileWidth) - rect.width - rect.x
+								: ((nextCol + 1) * tileWidth) - rect.x);
+						final float hitY = y + dy * tCol;
+						final float remainingY = (y + dy) - hitY;
+
+						int contacts = (dx > 0.0f ? Solid.CONTACT_RIGHT : Solid.CONTACT_LEFT);
+
+						final float newY = sweepY(plane, rect, hitX, hitY, remainingY);
+						if (blocked) {
+							contacts |= (dy > 0.0f ? Solid.CONTACT_TOP : Solid.CONTACT_BOTTOM);
+						}
+
+						out.set(hitX, newY);
+						return contacts;
+					}
+				}
+
+				if (dx > 0.0f) {
+					colHi = nextCol++;
+				} else {
+					colLo = nextCol--;
+				}
+			} else {
+				// the trailing edge may have left a column by now
+				if (dx > 0.0f) {
+					colLo = (int) Math.floor((left + dx * tRow) / tileWidth);
+				} else {
+					colHi = (int) Math.ceil((right + dx * tRow) / tileWidth) - 1;
+				}
+
+				for (int col = colLo; col <= colHi; col++) {
+					if (isSolidTile(plane, col, nextRow)) {
+						final float hitY = (dy > 0.0f ? (nextRow * tileHeight) - rect.height - rect.y
+								: ((nextRow + 1) * tileHeight) - rect.y);
+						final float hitX = x + dx * tRow;
+						final float remainingX = (x + dx) - hitX;
+
+						int contacts = (dy > 0.0f ? Solid.CONTACT_TOP : Solid.CONTACT_BOTTOM);
+
+						final float newX = sweepX(plane, rect, hitX, hitY, remainingX);
+						if (blocked) {
+							contacts |= (dx > 0.0f ? Solid.CONTACT_RIGHT : Solid.CONTACT_LEFT);
+						}
+
+						out.set(newX, hitY);
+						return contacts;
+					}
+				}
+
+				if (dy > 0.0f) {
+					rowHi = nextRow++;
+				} else {
+					rowLo = nextRow--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves a rectangle horizontally from (x, y) by dx, stopping it flush
+	 * against the first solid column of tiles it would enter or end up
+	 * touching; afterwards, blocked is true if it was stopped.
+	 * 
+	 * @param plane
+	 *        The collision plane to collide with, from planeFor.
+	 * @param rect
+	 *        The rectangle, relative to (x, y).
+	 * @param x
+	 *        The starting x coordinate of the owner of rect.
+	 * @param y
+	 *        The y coordinate of the owner of rect.
+	 * @param dx
+	 *        The distance to move.
+	 * @return The x coordinate reached by the owner of rect.
+	 */
+	protected float sweepX(int plane, Rectangle rect, float x, float y, float dx) {
+		blocked = false;
+
+		if (dx == 0.0f) {
+			return x;
+		}
+
+		final float bottom = y + rect.y;
+		final int row1 = (int) Math.floor(bottom / tileHeight);
+		final int row2 = (int) Math.ceil((bottom + rect.height) / tileHeight) - 1;
+
+		if (dx > 0.0f) {
+			final float right = x + rect.x + rect.width;
+			final int col1 = (int) Math.ceil(right / tileWidth);
+			// a move ending exactly on a column boundary checks the column it
+			// touches, too
+			final int col2 = (int) Math.floor((right + dx) / tileWidth);
+
+			for (int col = col1; col <= col2; col++) {
+				for (int row = row1; row <= row2; row++) {
+					if (isSolidTile(plane, col, row)) {
+						blocked = true;
+						return (col * tileWidth) - rect.width - rect.x;
+					}
+				}
+			}
 		} else {
-			s.grounded = false;
+			final float left = x + rect.x;
+			final int col1 = (int) Math.floor(left / tileWidth) - 1;
+			final int col2 = (int) Math.ceil((left + dx) / tileWidth) - 1;
+
+			for (int col = col1; col >= col2; col--) {
+				for (int row = row1; row <= row2; row++) {
+					if (isSolidTile(plane, col, row)) {
+						blocked = true;
+						return ((col + 1) * tileWidth) - rect.x;
+					}
+				}
+			}
 		}
+
+		return x + dx;
+	}
+
+	/**
+	 * Moves a rectangle vertically from (x, y) by dy, stopping it flush against
+	 * the first solid row of tiles it would enter or end up touching;
+	 * afterwards, blocked is true if it was stopped.
+	 * 
+	 * @param plane
+	 *        The collision plane to collide with, from planeFor.
+	 * @param rect
+	 *        The rectangle, relative to (x, y).
+	 * @param x
+	 *        The x coordinate of the owner of rect.
+	 * @param y
+	 *        The starting y coordinate of the owner of rect.
+	 * @param dy
+	 *        The distance to move.
+	 * @return The y coordinate reached by the owner of rect.
+	 */
+	protected float sweepY(int plane, Rectangle rect, float x, float y, float dy) {
+		blocked = false;
+
+		if (dy == 0.0f) {
+			return y;
+		}
+
+		final float left = x + rect.x;
+		final int col1 = (int) Math.floor(left / tileWidth);
+		final int col2 = (int) Math.ceil((left + rect.width) / tileWidth) - 1;
+
+		if (dy > 0.0f) {
+			final float top = y + rect.y + rect.height;
+			final int row1 = (int) Math.ceil(top / tileHeight);
+			// a move ending exactly on a row boundary checks the row it
+			// touches, too
+			final int row2 = (int) Math.floor((top + dy) / tileHeight);
+
+			for (int row = row1; row <= row2; row++) {
+				for (int col = col1; col <= col2; col++) {
+					if (isSolidTile(plane, col, row)) {
+						blocked = true;
+						return (row * tileHeight) - rect.height - rect.y;
+					}
+				}
+			}
+		} else {
+			final float bottom = y + rect.y;
+			final int row1 = (int) Math.floor(bottom / tileHeight) - 1;
+			final int row2 = (int) Math.ceil((bottom + dy) / tileHeight) - 1;
+
+			for (int row = row1; row >= row2; row--) {
+				for (int col = col1; col <= col2; col++) {
+					if (isSolidTile(plane, col, row)) {
+						blocked = true;
+						return ((row + 1) * tileHeight) - rect.y;
+					}
+				}
+			}
+		}
+
+		return y + dy;
+	}
+
+	@Override
+	public SystemAccess getAccess() {
+		return ACCESS;
 	}
 }
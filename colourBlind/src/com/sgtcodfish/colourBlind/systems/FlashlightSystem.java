@@ -4,34 +4,59 @@ import com.artemis.Aspect;
 import com.artemis.ComponentMapper;
 import com.artemis.Entity;
 import com.artemis.annotations.Mapper;
-import com.artemis.systems.EntityProcessingSystem;
+import com.artemis.utils.ImmutableBag;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Disposable;
 import com.sgtcodfish.colourBlind.components.Flashlight;
 import com.sgtcodfish.colourBlind.components.Position;
+import com.sgtcodfish.colourBlind.lighting.LightGrid;
 
 /**
+ * Turns flashlights on and off, and collects the lights which are on during
+ * each tick into lightList.
+ * 
+ * There's no limit to the number of lights which can be on at once. Once per
+ * frame, updateLightGrid bins the lights into a {@link LightGrid} covering the
+ * camera's view, so that the shader only evaluates the lights near each
+ * fragment; the per-tile limit of the grid is the only budget.
+ * 
+ * With enough flashlights they're updated in parallel chunks on the world's
+ * WorkerPool, if it has one. Each chunk after the first collects its lights
+ * separately, and they're appended to lightList in chunk order at the end of
+ * the tick, so lightList is always in the same order as on one thread.
+ * 
  * @author Ashley Davis (SgtCoDFish)
  */
-public class FlashlightSystem extends EntityProcessingSystem {
-	public static final String	GDX_DEBUG_TAG		= "FLASHLIGHT_SYSTEM";
-	/**
-	 * The maximum number of lights that can be handled by the shader. Should be
-	 * synchronized to relevant shaders.
-	 */
-	public static final int		MAX_SHADER_LIGHTS	= 8;
+public class FlashlightSystem extends ParallelEntityProcessingSystem implements Disposable, ScheduledSystem {
+	private static final SystemAccess	ACCESS					= new SystemAccess().reads(Position.class)
+			.writes(Flashlight.class);
+
+	public static final String			GDX_DEBUG_TAG			= "FLASHLIGHT_SYSTEM";
+	/** The number of lights lightList has room for before it first grows. */
+	public static final int				INITIAL_LIGHT_CAPACITY	= 8;
 	/** The number of floats which are needed to describe a flashlight */
-	public static final int		FLASHLIGHT_FLOATS	= 3;
-	public static final int		SHADER_ARRAY_SIZE	= MAX_SHADER_LIGHTS * FLASHLIGHT_FLOATS;
+	public static final int				FLASHLIGHT_FLOATS		= 3;
+
+	/** The texture units the light grid is bound to for the shader. */
+	public static final int				LIGHT_INDEX_UNIT		= 1;
+	public static final int				LIGHT_DATA_UNIT			= 2;
 
 	@Mapper
-	ComponentMapper<Position>	pm;
+	ComponentMapper<Position>			pm;
 	@Mapper
-	ComponentMapper<Flashlight>	fm;
+	ComponentMapper<Flashlight>			fm;
 
-	public float[]				lightList			= null;
-	public int					lightsForShader		= 0;
+	public float[]						lightList				= null;
+	public int							lightsForShader			= 0;
+
+	private final LightGrid				lightGrid				= new LightGrid();
+
+	// the lights turned on in each chunk but the first, which uses lightList
+	private float[][]					chunkLights				= new float[0][];
+	private int[]						chunkLightCounts		= new int[0];
 
 	@SuppressWarnings("unchecked")
 	public FlashlightSystem() {
@@ -41,8 +66,8 @@ public class FlashlightSystem extends EntityProcessingSystem {
 	public FlashlightSystem(Aspect aspect) {
 		super(aspect);
 
-		// (x, y, radius) for each of the 8 possible lights
-		lightList = new float[SHADER_ARRAY_SIZE];
+		// (x, y, radius) for each light; grows as needed
+		lightList = new float[INITIAL_LIGHT_CAPACITY * FLASHLIGHT_FLOATS];
 	}
 
 	@Override
@@ -50,8 +75,38 @@ public class FlashlightSystem extends EntityProcessingSystem {
 		lightsForShader = 0;
 	}
 
+	@Override
+	protected void prepareChunks(int chunkCount) {
+		if (chunkLights.length < chunkCount) {
+			float[][] lights = new float[chunkCount][];
+			System.arraycopy(chunkLights, 0, lights, 0, chunkLights.length);
+
+			for (int i = chunkLights.length; i < chunkCount; i++) {
+				lights[i] = new float[INITIAL_LIGHT_CAPACITY * FLASHLIGHT_FLOATS];
+			}
+
+			chunkLights = lights;
+			chunkLightCounts = new int[chunkCount];
+		}
+
+		for (int i = 0; i < chunkCount; i++) {
+			chunkLightCounts[i] = 0;
+		}
+	}
+
+	@Override
+	protected void processChunk(ImmutableBag<Entity> entities, int start, int end, int chunk) {
+		for (int i = start; i < end; i++) {
+			process(entities.get(i), chunk);
+		}
+	}
+
 	@Override
 	protected void process(Entity e) {
+		process(e, 0);
+	}
+
+	private void process(Entity e, int chunk) {
 		Flashlight f = fm.get(e);
 		Vector2 p = pm.get(e).position;
 		float delta = world.getDelta();
@@ -59,10 +114,14 @@ public class FlashlightSystem extends EntityProcessingSystem {
 		if (f.onTime >= 0.0f) {
 			f.onTime += delta;
 
-			handleFlashlightOn(p.x, p.y, f.radius);
+			if (chunk == 0) {
+				handleFlashlightOn(p.x, p.y, f.radius);
+			} else {
+				addChunkLight(chunk, p.x, p.y, f.radius);
+			}
 
 			if (f.onTime >= f.duration) {
-				Gdx.app.debug(GDX_DEBUG_TAG, f + " time up. Cooldown starting.");
+				debug(f + " time up. Cooldown starting.");
 				f.onTime = Flashlight.NOT_ON;
 				f.cooldownRemaining = f.cooldown;
 			}
@@ -70,13 +129,13 @@ public class FlashlightSystem extends EntityProcessingSystem {
 			f.cooldownRemaining -= delta;
 
 			if (f.cooldownRemaining <= 0.0f) {
-				Gdx.app.debug(GDX_DEBUG_TAG, f + " finished cooldown.");
+				debug(f + " finished cooldown.");
 				f.cooldownRemaining = Flashlight.NOT_ON;
 			}
 		} else {
 			if (f.flaggedForStart) {
 				if (f.usable()) {
-					Gdx.app.debug(GDX_DEBUG_TAG, f + " started.");
+					debug(f + " started.");
 					f.onTime = 0.0f;
 				}
 
@@ -85,6 +144,53 @@ public class FlashlightSystem extends EntityProcessingSystem {
 		}
 	}
 
+	@Override
+	protected void end() {
+		for (int chunk = 1; chunk < chunkLightCounts.length; chunk++) {
+			final int floats = chunkLightCounts[chunk] * FLASHLIGHT_FLOATS;
+
+			if (floats == 0) {
+				continue;
+			}
+
+			ensureLightCapacity(lightsForShader * FLASHLIGHT_FLOATS + floats);
+			System.arraycopy(chunkLights[chunk], 0, lightList, lightsForShader * FLASHLIGHT_FLOATS, floats);
+			lightsForShader += chunkLightCounts[chunk];
+			chunkLightCounts[chunk] = 0;
+		}
+	}
+
+	private void addChunkLight(int chunk, float x, float y, float radius) {
+		int offset = chunkLightCounts[chunk] * FLASHLIGHT_FLOATS;
+		float[] lights = chunkLights[chunk];
+
+		if (offset + FLASHLIGHT_FLOATS > lights.length) {
+			float[] biggerList = new float[lights.length * 2];
+			System.arraycopy(lights, 0, biggerList, 0, lights.length);
+			lights = chunkLights[chunk] = biggerList;
+		}
+
+		lights[offset + 0] = x;
+		lights[offset + 1] = y;
+		lights[offset + 2] = radius;
+		chunkLightCounts[chunk]++;
+	}
+
+	private void ensureLightCapacity(int floats) {
+		if (floats > lightList.length) {
+			float[] biggerList = new float[Math.max(floats, lightList.length * 2)];
+			System.arraycopy(lightList, 0, biggerList, 0, lightList.length);
+			lightList = biggerList;
+		}
+	}
+
+	// Gdx.app is only missing when running without a backend, e.g. benchmarks
+	private static void debug(String message) {
+		if (Gdx.app != null) {
+			Gdx.app.debug(GDX_DEBUG_TAG, message);
+		}
+	}
+
 	/**
 	 * Updates the lightList array to hold a given position and radius of an
 	 * "on" flashlight.
@@ -97,7 +203,10 @@ public class FlashlightSystem extends EntityProcessingSystem {
 	 *        The radius of the light.
 	 */
 	protected void handleFlashlightOn(float x, float y, float radius) {
-		int lfs3 = lightsForShader * 3;
+		int lfs3 = lightsForShader * FLASHLIGHT_FLOATS;
+
+		ensureLightCapacity(lfs3 + FLASHLIGHT_FLOATS);
+
 		lightList[lfs3 + 0] = x;
 		lightList[lfs3 + 1] = y;
 		lightList[lfs3 + 2] = radius;
@@ -105,19 +214,48 @@ public class FlashlightSystem extends EntityProcessingSystem {
 	}
 
 	/**
-	 * Sets up a LibGDX {@link ShaderProgram} with a uniform called
-	 * "float flashlights[MAX_SHADER_LIGHTS];" which contains the coordinates
-	 * and radii of all the flashlights which are "on" during this tick.
+	 * Bins the lights from the last tick into the light grid for the camera's
+	 * current view, and uploads the grid. Should be called once per frame on
+	 * the rendering thread, after the camera has moved and before anything
+	 * using setupShaderUniforms is drawn.
 	 * 
-	 * Also sets a uniform int called "lightsOn" which is the number of lights
-	 * in the array, 0 <= lightsOn <= MAX_SHADER_LIGHTS. This should be used to
-	 * iterate over the lights.
+	 * @param camera
+	 *        The camera the lights will be drawn with.
+	 */
+	public void updateLightGrid(OrthographicCamera camera) {
+		final float viewWidth = camera.viewportWidth * camera.zoom;
+		final float viewHeight = camera.viewportHeight * camera.zoom;
+
+		lightGrid.build(lightList, lightsForShader, camera.position.x - viewWidth / 2.0f, camera.position.y
+				- viewHeight / 2.0f, viewWidth, viewHeight);
+		lightGrid.upload();
+
+		if (lightGrid.getOverflowCount() > 0) {
+			Gdx.app.debug(GDX_DEBUG_TAG, lightGrid.getOverflowCount()
+					+ " light-tile pairs were over the light grid budget; the smallest lights were dropped.");
+		}
+	}
+
+	/**
+	 * Sets up a LibGDX {@link ShaderProgram} to read the light grid: binds the
+	 * grid's textures and sets the uniforms describing them, along with a
+	 * uniform int called "lightsOn" which is the number of lights touching the
+	 * view, so the shader can skip lighting altogether when it's 0.
 	 * 
 	 * @param program
 	 *        The program whose uniforms will be modified.
 	 */
 	public void setupShaderUniforms(ShaderProgram program) {
-		program.setUniform3fv("flashlights", lightList, 0, SHADER_ARRAY_SIZE);
-		program.setUniformi("lightsOn", lightsForShader);
+		lightGrid.setupShaderUniforms(program, LIGHT_INDEX_UNIT, LIGHT_DATA_UNIT);
+	}
+
+	@Override
+	public void dispose() {
+		lightGrid.dispose();
+	}
+
+	@Override
+	public SystemAccess getAccess() {
+		return ACCESS;
 	}
 }
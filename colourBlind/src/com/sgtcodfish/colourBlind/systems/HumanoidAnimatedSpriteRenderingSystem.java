@@ -6,10 +6,14 @@ import com.artemis.Entity;
 import com.artemis.annotations.Mapper;
 import com.artemis.systems.EntityProcessingSystem;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Vector2;
+import com.sgtcodfish.colourBlind.FixedStepClock;
+import com.sgtcodfish.colourBlind.RenderQueue;
 import com.sgtcodfish.colourBlind.components.Coloured;
 import com.sgtcodfish.colourBlind.components.Facing;
 import com.sgtcodfish.colourBlind.components.FocusTaker;
@@ -20,30 +24,42 @@ import com.sgtcodfish.colourBlind.components.Velocity;
 
 /**
  * Handles drawing a coloured animated humanoid sprite, capable of animating
- * running, standing or jumping. Uses a shader to achieve the colour; the shader
- * should have a uniform called "inputColour" for the player's colour.
+ * running, standing or jumping. Sprites are submitted to the world's
+ * {@link RenderQueue} with the Entity's {@link Coloured} colour as their vertex
+ * colour, which the shader uses to fill the sprite.
+ * 
+ * Entities are drawn interpolated between their last two logic ticks if the
+ * world has a {@link FixedStepClock}.
  * 
  * @author Ashley Davis (SgtCoDFish)
  */
 public class HumanoidAnimatedSpriteRenderingSystem extends EntityProcessingSystem {
+	// the colour of sprites which have no Coloured component
+	private static final float						WHITE_BITS		= Color.WHITE.toFloatBits();
+
 	@Mapper
-	private ComponentMapper<HumanoidAnimatedSprite>	hasm	= null;
+	private ComponentMapper<HumanoidAnimatedSprite>	hasm			= null;
 	@Mapper
-	private ComponentMapper<Position>				pm		= null;
+	private ComponentMapper<Position>				pm				= null;
 	@Mapper
-	private ComponentMapper<Velocity>				vm		= null;
+	private ComponentMapper<Velocity>				vm				= null;
 	@Mapper
-	private ComponentMapper<Facing>					fm		= null;
+	private ComponentMapper<Facing>					fm				= null;
 	@Mapper
-	private ComponentMapper<Coloured>				cm		= null;
+	private ComponentMapper<Coloured>				cm				= null;
 	@Mapper
-	private ComponentMapper<FocusTaker>				ftm		= null;
+	private ComponentMapper<FocusTaker>				ftm				= null;
 	@Mapper
-	private ComponentMapper<Solid>					sm		= null;
+	private ComponentMapper<Solid>					sm				= null;
+
+	public OrthographicCamera						camera			= null;
+	public Batch									batch			= null;
+	public ShaderProgram							program			= null;
 
-	public OrthographicCamera						camera	= null;
-	public Batch									batch	= null;
-	public ShaderProgram							program	= null;
+	private float									alpha			= 1.0f;
+	private final Vector2							drawPosition	= new Vector2();
+
+	private RenderQueue								queue			= null;
 
 	/**
 	 * Creates a new HumanoidAnimatedSpriteRenderingSystem with the given
@@ -59,8 +75,7 @@ public class HumanoidAnimatedSpriteRenderingSystem extends EntityProcessingSyste
 	 * @param batch
 	 *        The batch to which we should render.
 	 * @param shader
-	 *        The shader to use. Must have a uniform called inputColour for the
-	 *        Coloured component.
+	 *        The shader to use. Must fill the sprite with its vertex colour.
 	 */
 	protected HumanoidAnimatedSpriteRenderingSystem(Aspect aspect, OrthographicCamera camera, Batch batch,
 			ShaderProgram program) {
@@ -93,8 +108,7 @@ public class HumanoidAnimatedSpriteRenderingSystem extends EntityProcessingSyste
 	 * @param batch
 	 *        The batch to which we should render.
 	 * @param shader
-	 *        The shader to use. Must have a uniform called inputColour for the
-	 *        Coloured component.
+	 *        The shader to use. Must fill the sprite with its vertex colour.
 	 */
 	@SuppressWarnings("unchecked")
 	public HumanoidAnimatedSpriteRenderingSystem(OrthographicCamera camera, Batch batch, ShaderProgram program) {
@@ -136,23 +150,37 @@ public class HumanoidAnimatedSpriteRenderingSystem extends EntityProcessingSyste
 
 		// Check if this Entity has a FocusTaker, that is a component indicating
 		// that the camera should follow it.
+		p.interpolate(alpha, drawPosition);
+
 		if (ftm.get(e) != null) {
-			camera.position.x = p.x();
-			camera.position.y = p.y();
+			camera.position.x = drawPosition.x;
+			camera.position.y = drawPosition.y;
 			camera.update();
 		}
 
-		batch.begin();
-		batch.setShader(program);
-		program.setUniformf("inputColour", cm.get(e).colour.toGdxColour());
-		program.setUniformf("platform", 0.0f);
-		batch.draw(frame, p.position.x + (facingLeft ? (float) has.width : 0.0f), p.position.y, (float) has.width
-				* (facingLeft ? -1.0f : 1.0f), (float) has.height);
-		batch.end();
+		Coloured c = cm.getSafe(e);
+		final float colour = (c != null ? c.colour.toFloatBits() : WHITE_BITS);
+
+		queue.submit(RenderQueue.LAYER_SPRITES, program, frame, drawPosition.x
+				+ (facingLeft ? (float) has.width : 0.0f), drawPosition.y, (float) has.width
+				* (facingLeft ? -1.0f : 1.0f), (float) has.height, colour);
 	}
 
 	@Override
 	protected void begin() {
 		batch.setProjectionMatrix(camera.combined);
+
+		FixedStepClock clock = world.getManager(FixedStepClock.class);
+		alpha = (clock != null ? clock.getAlpha() : 1.0f);
+	}
+
+	@Override
+	protected void initialize() {
+		queue = world.getManager(RenderQueue.class);
+
+		if (queue == null) {
+			throw new IllegalStateException(
+					"HumanoidAnimatedSpriteRenderingSystem needs a RenderQueue manager in the world.");
+		}
 	}
 }
@@ -4,9 +4,10 @@ import com.artemis.Aspect;
 import com.artemis.ComponentMapper;
 import com.artemis.Entity;
 import com.artemis.annotations.Mapper;
-import com.artemis.systems.EntityProcessingSystem;
 import com.badlogic.gdx.math.Vector2;
+import com.sgtcodfish.colourBlind.FixedStepClock;
 import com.sgtcodfish.colourBlind.components.Facing;
+import com.sgtcodfish.colourBlind.components.PackedMotion;
 import com.sgtcodfish.colourBlind.components.Position;
 import com.sgtcodfish.colourBlind.components.Velocity;
 import com.sgtcodfish.colourBlind.components.Weight;
@@ -16,25 +17,42 @@ import com.sgtcodfish.colourBlind.components.Weight;
  * their position, after handling the effects of gravity or any other
  * accelerations.
  * 
+ * Velocities and accelerations are per logic tick, so this system should be
+ * run by a {@link FixedStepClock} rather than once per rendered frame.
+ * 
  * Also handles changing an entitiy's Facing, if it has one.
  * 
+ * Entities with a {@link PackedMotion} are left to BatchMovementSystem.
+ * 
+ * Each Entity moves independently, so with enough entities they're moved in
+ * parallel chunks on the world's WorkerPool, if it has one.
+ * 
  * @author Ashley Davis (SgtCoDFish)
  */
-public class MovementSystem extends EntityProcessingSystem {
-	public static final float	GRAVITY	= 1.0f;
+public class MovementSystem extends ParallelEntityProcessingSystem implements ScheduledSystem {
+	private static final SystemAccess	ACCESS		= new SystemAccess().reads(Weight.class)
+			.writes(Position.class, Velocity.class, Facing.class);
+
+	public static final float			GRAVITY		= 1.0f;
+
+	/** What horizontal velocity is multiplied by each tick. */
+	public static final float			FRICTION	= 0.75f;
+
+	/** Speeds below this along either axis are snapped to 0. */
+	public static final float			MIN_SPEED	= 0.25f;
 
 	@Mapper
-	ComponentMapper<Position>	pm		= null;
+	ComponentMapper<Position>			pm			= null;
 	@Mapper
-	ComponentMapper<Velocity>	vm		= null;
+	ComponentMapper<Velocity>			vm			= null;
 	@Mapper
-	ComponentMapper<Weight>		wm		= null;
+	ComponentMapper<Weight>				wm			= null;
 	@Mapper
-	ComponentMapper<Facing>		fm		= null;
+	ComponentMapper<Facing>				fm			= null;
 
 	@SuppressWarnings("unchecked")
 	public MovementSystem() {
-		super(Aspect.getAspectForAll(Position.class, Velocity.class));
+		super(Aspect.getAspectForAll(Position.class, Velocity.class).exclude(PackedMotion.class));
 	}
 
 	public MovementSystem(Aspect aspect) {
@@ -43,29 +61,37 @@ public class MovementSystem extends EntityProcessingSystem {
 
 	@Override
 	protected void process(Entity e) {
-		Vector2 position = pm.get(e).position;
+		Position p = pm.get(e);
+		Vector2 position = p.position;
 		Vector2 velocity = vm.get(e).velocity;
-		Weight w = wm.get(e);
+		Weight w = wm.getSafe(e);
+
+		p.previous.set(position);
 
 		if (w != null) {
 			velocity.y -= w.weight * GRAVITY;
 		}
 
-		Facing f = fm.get(e);
+		Facing f = fm.getSafe(e);
 		if (f != null && velocity.x != 0.0f) {
 			f.facingLeft = (velocity.x < 0.0f);
 		}
 
-		velocity.x *= 0.75f;
+		velocity.x *= FRICTION;
 
-		if (Math.abs(velocity.x) < 0.25f) {
+		if (Math.abs(velocity.x) < MIN_SPEED) {
 			velocity.x = 0.0f;
 		}
 
-		if (Math.abs(velocity.y) < 0.25f) {
+		if (Math.abs(velocity.y) < MIN_SPEED) {
 			velocity.y = 0.0f;
 		}
 
 		position.add(velocity);
 	}
+
+	@Override
+	public SystemAccess getAccess() {
+		return ACCESS;
+	}
 }
@@ -0,0 +1,159 @@
+package com.sgtcodfish.colourBlind.systems;
+
+import com.artemis.Aspect;
+import com.artemis.Entity;
+import com.artemis.EntitySystem;
+import com.artemis.utils.ImmutableBag;
+import com.sgtcodfish.colourBlind.WorkerPool;
+
+/**
+ * Like Artemis' EntityProcessingSystem, processes each Entity in turn, but
+ * once there are enough entities splits them into contiguous chunks and
+ * processes the chunks at once on the world's {@link WorkerPool}.
+ * 
+ * process(Entity) must only change the Entity it's given. A subclass which
+ * collects anything across entities should override processChunk to collect
+ * it per chunk and combine the chunks in end(), in chunk order, so that the
+ * result is the same as processing every Entity in order on one thread;
+ * prepareChunks is called before each pass with the number of chunks.
+ * 
+ * Below the serial threshold, or with no WorkerPool in the world, every
+ * Entity is processed on the calling thread as one chunk.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public abstract class ParallelEntityProcessingSystem extends EntitySystem {
+	/** The fewest entities which are worth splitting up. */
+	public static final int	DEFAULT_SERIAL_THRESHOLD	= 4096;
+
+	/** The fewest entities to give to any one chunk. */
+	public static final int	MIN_CHUNK_SIZE				= 1024;
+
+	private final int		serialThreshold;
+
+	private WorkerPool		pool						= null;
+	private ChunkJob[]		jobs						= new ChunkJob[0];
+
+	public ParallelEntityProcessingSystem(Aspect aspect) {
+		this(aspect, DEFAULT_SERIAL_THRESHOLD);
+	}
+
+	/**
+	 * @param aspect
+	 *        The aspect of the entities to process.
+	 * @param serialThreshold
+	 *        The number of entities below which they're all processed on the
+	 *        calling thread.
+	 */
+	public ParallelEntityProcessingSystem(Aspect aspect, int serialThreshold) {
+		super(aspect);
+
+		this.serialThreshold = serialThreshold;
+	}
+
+	@Override
+	protected void initialize() {
+		pool = world.getManager(WorkerPool.class);
+	}
+
+	/**
+	 * Processes a single Entity. May be called on any thread, at the same time
+	 * as it's called for other entities.
+	 */
+	protected abstract void process(Entity e);
+
+	/**
+	 * Called before each pass with the number of chunks the entities will be
+	 * split into, which is 1 when processing serially.
+	 */
+	protected void prepareChunks(int chunkCount) {
+	}
+
+	/**
+	 * Processes entities start to end - 1 of the system's entities, which make
+	 * up the given chunk. May be called on any thread, at the same time as
+	 * it's called for other chunks.
+	 */
+	protected void processChunk(ImmutableBag<Entity> entities, int start, int end, int chunk) {
+		for (int i = start; i < end; i++) {
+			process(entities.get(i));
+		}
+	}
+
+	/**
+	 * @return The number of chunks the given number of entities would be
+	 *         split into.
+	 */
+	public int getChunkCount(int entityCount) {
+		if (pool == null || entityCount < serialThreshold) {
+			return 1;
+		}
+
+		return Math.max(1, Math.min(pool.getParallelism(), entityCount / MIN_CHUNK_SIZE));
+	}
+
+	@Override
+	protected final void processEntities(ImmutableBag<Entity> entities) {
+		final int size = entities.size();
+		final int chunkCount = getChunkCount(size);
+
+		prepareChunks(chunkCount);
+
+		if (chunkCount == 1) {
+			processChunk(entities, 0, size, 0);
+			return;
+		}
+
+		if (jobs.length < chunkCount) {
+			jobs = new ChunkJob[chunkCount];
+
+			for (int i = 0; i < chunkCount; i++) {
+				jobs[i] = new ChunkJob();
+			}
+		}
+
+		// spread the remainder over the first chunks so none is more than one
+		// Entity bigger than another
+		final int chunkSize = size / chunkCount;
+		final int remainder = size % chunkCount;
+		int start = 0;
+
+		for (int i = 0; i < chunkCount; i++) {
+			final int end = start + chunkSize + (i < remainder ? 1 : 0);
+			jobs[i].set(entities, start, end, i);
+			start = end;
+		}
+
+		try {
+			pool.run(jobs, chunkCount);
+		} finally {
+			for (int i = 0; i < chunkCount; i++) {
+				jobs[i].entities = null;
+			}
+		}
+	}
+
+	@Override
+	protected boolean checkProcessing() {
+		return true;
+	}
+
+	private class ChunkJob implements Runnable {
+		ImmutableBag<Entity>	entities	= null;
+		int						start		= 0;
+		int						end			= 0;
+		int						chunk		= 0;
+
+		void set(ImmutableBag<Entity> entities, int start, int end, int chunk) {
+			this.entities = entities;
+			this.start = start;
+			this.end = end;
+			this.chunk = chunk;
+		}
+
+		@Override
+		public void run() {
+			processChunk(entities, start, end, chunk);
+		}
+	}
+}
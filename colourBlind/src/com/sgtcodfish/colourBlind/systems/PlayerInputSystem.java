@@ -7,32 +7,53 @@ import com.artemis.annotations.Mapper;
 import com.artemis.systems.EntityProcessingSystem;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.math.Vector2;
+import com.sgtcodfish.colourBlind.DoorManager;
+import com.sgtcodfish.colourBlind.InputActions;
+import com.sgtcodfish.colourBlind.InputRecorder;
+import com.sgtcodfish.colourBlind.InputReplay;
+import com.sgtcodfish.colourBlind.PlayerAction;
 import com.sgtcodfish.colourBlind.PlayerEntityFactory;
 import com.sgtcodfish.colourBlind.components.Coloured;
 import com.sgtcodfish.colourBlind.components.Facing;
 import com.sgtcodfish.colourBlind.components.Flashlight;
 import com.sgtcodfish.colourBlind.components.PlayerInputListener;
+import com.sgtcodfish.colourBlind.components.Position;
 import com.sgtcodfish.colourBlind.components.Solid;
 import com.sgtcodfish.colourBlind.components.Velocity;
 
 /**
- * Handles input for Entities with PlayerInputListener components.
+ * Handles input for Entities with PlayerInputListener components, using the
+ * keys tracked by the world's {@link InputActions}, or the actions played
+ * back by its {@link InputReplay} if it has one. If the world has an
+ * {@link InputRecorder}, every player's actions are recorded each tick.
  * 
  * @author Ashley Davis (SgtCoDFish)
  */
-public class PlayerInputSystem extends EntityProcessingSystem {
+public class PlayerInputSystem extends EntityProcessingSystem implements ScheduledSystem {
+	private static final SystemAccess		ACCESS		= new SystemAccess()
+			.reads(Position.class)
+			.writes(PlayerInputListener.class, Velocity.class, Flashlight.class, Coloured.class, Solid.class,
+					DoorManager.class, InputActions.class, InputReplay.class, InputRecorder.class);
+
+	@Mapper
+	ComponentMapper<PlayerInputListener>	pim			= null;
 	@Mapper
-	ComponentMapper<PlayerInputListener>	pim	= null;
+	ComponentMapper<Velocity>				vm			= null;
 	@Mapper
-	ComponentMapper<Velocity>				vm	= null;
+	ComponentMapper<Flashlight>				fm			= null;
 	@Mapper
-	ComponentMapper<Flashlight>				fm	= null;
+	ComponentMapper<Coloured>				cm			= null;
 	@Mapper
-	ComponentMapper<Coloured>				cm	= null;
+	ComponentMapper<Facing>					fam			= null;
 	@Mapper
-	ComponentMapper<Facing>					fam	= null;
+	ComponentMapper<Solid>					sm			= null;
 	@Mapper
-	ComponentMapper<Solid>					sm	= null;
+	ComponentMapper<Position>				pm			= null;
+
+	private DoorManager						doorManager	= null;
+	private InputActions					input		= null;
+	private InputReplay						replay		= null;
+	private InputRecorder					recorder	= null;
 
 	@SuppressWarnings("unchecked")
 	public PlayerInputSystem() {
@@ -105,7 +126,17 @@ public class PlayerInputSystem extends EntityProcessingSystem {
 	 *        The entity which should do the interacting.
 	 */
 	protected void handleUse(Entity e) {
-		// throw new GdxRuntimeException("PlayerInputSystem.handleUse NYI.");
+		Position p = pm.getSafe(e);
+		Solid s = sm.getSafe(e);
+
+		if (doorManager == null || p == null || s == null) {
+			return;
+		}
+
+		// the level isn't changed until the tick is over; see DoorManager.
+		if (doorManager.use(p.position.x, p.position.y, s.rect)) {
+			Gdx.app.debug("USE", "Door used at " + p.position);
+		}
 	}
 
 	/**
@@ -148,75 +179,102 @@ public class PlayerInputSystem extends EntityProcessingSystem {
 		cm.get(e).colour = Coloured.COLOUR_YELLOW;
 	}
 
+	@Override
+	protected void initialize() {
+		// doors are optional, e.g. for worlds with no levels
+		doorManager = world.getManager(DoorManager.class);
+
+		// with no InputActions, no keys are ever down
+		input = world.getManager(InputActions.class);
+
+		// a replay takes the place of the keys, and a recorder keeps whichever
+		// actions were used
+		replay = world.getManager(InputReplay.class);
+		recorder = world.getManager(InputRecorder.class);
+	}
+
 	/**
-	 * Handles any input as described by the arrays of keys in the associated
-	 * PlayerInputListener.
+	 * Handles the actions the keys bound in the associated PlayerInputListener
+	 * map to. Moving and jumping happen every tick their keys are held, and
+	 * everything else once each time a key is pressed.
 	 */
 	@Override
 	protected void process(Entity e) {
 		PlayerInputListener inputListener = pim.get(e);
+		int actions = 0;
 
-		for (int key : inputListener.jumpKeys) {
-			if (Gdx.input.isKeyPressed(key)) {
-				handleJump(e);
-				break;
-			}
+		if (replay != null) {
+			actions = replay.nextActions();
+		} else if (input != null) {
+			actions = input.getActions(inputListener.keyTable);
 		}
 
-		for (int key : inputListener.leftKeys) {
-			if (Gdx.input.isKeyPressed(key)) {
-				handleMoveLeft(e);
-				break;
-			}
+		if (recorder != null) {
+			recorder.record(actions);
 		}
 
-		for (int key : inputListener.rightKeys) {
-			if (Gdx.input.isKeyPressed(key)) {
-				handleMoveRight(e);
-				break;
-			}
+		inputListener.update(actions);
+
+		if (inputListener.isHeld(PlayerAction.JUMP)) {
+			handleJump(e);
 		}
 
-		for (int key : inputListener.flashlightKeys) {
-			if (Gdx.input.isKeyPressed(key)) {
-				handleActivateFlashlight(e);
-				break;
-			}
+		if (inputListener.isHeld(PlayerAction.LEFT)) {
+			handleMoveLeft(e);
 		}
 
-		for (int key : inputListener.useKeys) {
-			if (Gdx.input.isKeyPressed(key)) {
-				handleUse(e);
-				break;
-			}
+		if (inputListener.isHeld(PlayerAction.RIGHT)) {
+			handleMoveRight(e);
 		}
 
-		for (int key : inputListener.redKeys) {
-			if (Gdx.input.isKeyPressed(key)) {
-				handleTurnRed(e);
-				break;
-			}
+		if (inputListener.pressed == 0) {
+			return;
 		}
 
-		for (int key : inputListener.blueKeys) {
-			if (Gdx.input.isKeyPressed(key)) {
-				handleTurnBlue(e);
-				break;
-			}
+		if (inputListener.isPressed(PlayerAction.FLASHLIGHT)) {
+			handleActivateFlashlight(e);
 		}
 
-		for (int key : inputListener.greenKeys) {
-			if (Gdx.input.isKeyPressed(key)) {
-				handleTurnGreen(e);
-				break;
-			}
+		if (inputListener.isPressed(PlayerAction.USE)) {
+			handleUse(e);
 		}
 
-		for (int key : inputListener.yellowKeys) {
-			if (Gdx.input.isKeyPressed(key)) {
-				handleTurnYellow(e);
-				break;
-			}
+		if (inputListener.isPressed(PlayerAction.RED)) {
+			handleTurnRed(e);
+		}
+
+		if (inputListener.isPressed(PlayerAction.BLUE)) {
+			handleTurnBlue(e);
+		}
+
+		if (inputListener.isPressed(PlayerAction.GREEN)) {
+			handleTurnGreen(e);
+		}
+
+		if (inputListener.isPressed(PlayerAction.YELLOW)) {
+			handleTurnYellow(e);
 		}
 	}
+
+	@Override
+	protected void end() {
+		// every listener has seen this tick's keys, so keys tapped since the
+		// last tick can be forgotten
+		if (input != null) {
+			input.endTick();
+		}
+
+		if (replay != null) {
+			replay.endTick();
+		}
+
+		if (recorder != null) {
+			recorder.endTick();
+		}
+	}
+
+	@Override
+	public SystemAccess getAccess() {
+		return ACCESS;
+	}
 }
@@ -0,0 +1,18 @@
+package com.sgtcodfish.colourBlind.systems;
+
+import com.sgtcodfish.colourBlind.SystemScheduler;
+
+/**
+ * A system which declares what it reads and writes, so that the
+ * {@link SystemScheduler} can run it at the same time as systems it doesn't
+ * conflict with.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public interface ScheduledSystem {
+	/**
+	 * @return What the system reads and writes while it's processed. Should
+	 *         always return the same declaration.
+	 */
+	public SystemAccess getAccess();
+}
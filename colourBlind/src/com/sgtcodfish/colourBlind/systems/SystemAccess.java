@@ -0,0 +1,156 @@
+package com.sgtcodfish.colourBlind.systems;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import com.artemis.Component;
+import com.artemis.Manager;
+import com.sgtcodfish.colourBlind.SystemScheduler;
+
+/**
+ * What a {@link ScheduledSystem} reads and writes while it's processed, used
+ * by the {@link SystemScheduler} to work out which systems can run at the same
+ * time. Types are usually {@link Component} classes, but anything else which
+ * systems share, such as a {@link Manager}, can be declared by its class too.
+ * 
+ * Two systems conflict if either writes a type the other reads or writes, or
+ * if either is exclusive, which is what a system with no declaration is taken
+ * to be.
+ * 
+ * Each type is given a bit the first time any system declares it, and the
+ * types a system reads and writes are kept as sets of those bits, so checking
+ * two systems for a conflict never allocates. Every declaration changes the
+ * version, so that a scheduler can tell when it needs to check again.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class SystemAccess {
+	/** Conflicts with every other system. */
+	public static final SystemAccess				EXCLUSIVE	= new SystemAccess().exclusive();
+
+	// the bit given to each type declared by any system, and the types by bit
+	private static final HashMap<Class<?>, Integer>	typeBits	= new HashMap<Class<?>, Integer>();
+	private static final ArrayList<Class<?>>		types		= new ArrayList<Class<?>>();
+
+	private final BitSet							reads		= new BitSet();
+	private final BitSet							writes		= new BitSet();
+
+	private boolean									exclusive	= false;
+	private boolean									mainThread	= false;
+	private int										version		= 0;
+
+	/**
+	 * Declares types which are read but never written.
+	 * 
+	 * @return This, for chaining.
+	 */
+	public SystemAccess reads(Class<?>... types) {
+		for (Class<?> type : types) {
+			reads.set(bitFor(type));
+		}
+
+		version++;
+		return this;
+	}
+
+	/**
+	 * Declares types which are written, and possibly read.
+	 * 
+	 * @return This, for chaining.
+	 */
+	public SystemAccess writes(Class<?>... types) {
+		for (Class<?> type : types) {
+			writes.set(bitFor(type));
+		}
+
+		version++;
+		return this;
+	}
+
+	/**
+	 * Declares that the system can't run at the same time as any other, e.g.
+	 * because it adds or removes entities.
+	 * 
+	 * @return This, for chaining.
+	 */
+	public SystemAccess exclusive() {
+		exclusive = true;
+		version++;
+		return this;
+	}
+
+	/**
+	 * Declares that the system must be run on the thread driving the world,
+	 * e.g. because it polls Gdx.input. It can still run at the same time as
+	 * other systems on other threads.
+	 * 
+	 * @return This, for chaining.
+	 */
+	public SystemAccess onMainThread() {
+		mainThread = true;
+		version++;
+		return this;
+	}
+
+	public boolean isExclusive() {
+		return exclusive;
+	}
+
+	public boolean isMainThread() {
+		return mainThread;
+	}
+
+	/**
+	 * @return A number which changes whenever anything more is declared.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return True if this and other can't safely run at the same time.
+	 */
+	public boolean conflictsWith(SystemAccess other) {
+		if (exclusive || other.exclusive) {
+			return true;
+		}
+
+		return writes.intersects(other.writes) || writes.intersects(other.reads) || reads.intersects(other.writes);
+	}
+
+	@Override
+	public String toString() {
+		if (exclusive) {
+			return "exclusive";
+		}
+
+		return "reads " + describe(reads) + ", writes " + describe(writes) + (mainThread ? ", on the main thread" : "");
+	}
+
+	private static String describe(BitSet bits) {
+		final ArrayList<Class<?>> declared = new ArrayList<Class<?>>();
+
+		synchronized (typeBits) {
+			for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+				declared.add(types.get(bit));
+			}
+		}
+
+		return declared.toString();
+	}
+
+	private static int bitFor(Class<?> type) {
+		synchronized (typeBits) {
+			Integer bit = typeBits.get(type);
+
+			if (bit == null) {
+				bit = types.size();
+				typeBits.put(type, bit);
+				types.add(type);
+			}
+
+			return bit;
+		}
+	}
+}
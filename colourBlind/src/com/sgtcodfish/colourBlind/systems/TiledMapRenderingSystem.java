@@ -8,12 +8,16 @@ import com.artemis.systems.EntityProcessingSystem;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
-import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.sgtcodfish.colourBlind.RenderQueue;
 import com.sgtcodfish.colourBlind.components.Position;
 import com.sgtcodfish.colourBlind.components.TiledRenderable;
 
 /**
- * Handles rendering of TiledRenderable-component-including Entities.
+ * Handles rendering of TiledRenderable-component-including Entities. The
+ * regular layers of each map are cached by its renderer the first time it's
+ * drawn; only the platform layer is drawn every frame, by submitting it to the
+ * world's {@link RenderQueue}. The shader's flashlight uniforms are expected
+ * to be set through the queue's ShaderSetup for it.
  * 
  * @author Ashley Davis (SgtCoDFish)
  */
@@ -28,6 +32,8 @@ public class TiledMapRenderingSystem extends EntityProcessingSystem {
 	public Batch						batch	= null;
 	public ShaderProgram				program	= null;
 
+	private RenderQueue					queue	= null;
+
 	/**
 	 * Creates a new TiledMapRenderingSystem with the given aspect, camera,
 	 * shader and batch. You probably want the
@@ -97,22 +103,28 @@ public class TiledMapRenderingSystem extends EntityProcessingSystem {
 	protected void process(Entity e) {
 		TiledRenderable t = trm.get(e);
 
-		t.renderer.setView(camera);
-		batch.begin();
-		batch.setShader(null);
-
-		for (TiledMapTileLayer layer : t.regularLayers) {
-			t.renderer.renderTileLayer(layer);
+		// everything but the platforms is fixed for the life of the level, so
+		// it's baked once and then drawn as a few static meshes.
+		if (!t.renderer.hasStaticCache()) {
+			t.renderer.cacheStaticLayers(t.regularLayers);
 		}
 
-		batch.setShader(program);
-		world.getSystem(FlashlightSystem.class).setupShaderUniforms(program);
-		t.renderer.renderTileLayer(t.platformLayer);
-		batch.end();
+		t.renderer.setView(camera);
+		queue.countDrawCalls(t.renderer.renderStaticLayers());
+		t.renderer.submitTileLayer(t.platformLayer, queue, RenderQueue.LAYER_PLATFORMS, program);
 	}
 
 	@Override
 	protected void begin() {
 		batch.setProjectionMatrix(camera.combined);
 	}
+
+	@Override
+	protected void initialize() {
+		queue = world.getManager(RenderQueue.class);
+
+		if (queue == null) {
+			throw new IllegalStateException("TiledMapRenderingSystem needs a RenderQueue manager in the world.");
+		}
+	}
 }
@@ -21,53 +21,279 @@ import static com.badlogic.gdx.graphics.g2d.Batch.Y2;
 import static com.badlogic.gdx.graphics.g2d.Batch.Y3;
 import static com.badlogic.gdx.graphics.g2d.Batch.Y4;
 
-import java.util.HashMap;
-
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapLayers;
 import com.badlogic.gdx.maps.tiled.TiledMap;
 import com.badlogic.gdx.maps.tiled.TiledMapTile;
 import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
 import com.badlogic.gdx.maps.tiled.TiledMapTileLayer.Cell;
 import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
+import com.badlogic.gdx.utils.Array;
+import com.sgtcodfish.colourBlind.LevelEntityFactory;
+import com.sgtcodfish.colourBlind.RenderQueue;
 
+/**
+ * Renders a Colour Blind level, whose tile layers are {@link PackedTileLayer}s.
+ * Layers which never change can be baked once into {@link SpriteCache}s with
+ * cacheStaticLayers, split into square chunks of tiles so that chunks outside
+ * the view are skipped; the "platforms" layer is drawn every frame through the
+ * batch, with each platform tile given its colour from a dense grid of packed
+ * colours, as made by LevelEntityFactory.generatePlatformColours.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
 public class CBOrthogonalTiledMapRenderer extends OrthogonalTiledMapRenderer {
-	private static final float		DEFAULT_UNIT_SCALE	= 1.0f;
-	private float[]					vertices			= new float[20];
+	private static final float		DEFAULT_UNIT_SCALE		= 1.0f;
+
+	/** The width and height, in tiles, of each chunk of cached static tiles. */
+	public static final int			STATIC_CHUNK_SIZE		= 16;
+
+	/** The most sprites a single indexed SpriteCache can hold. */
+	private static final int		MAX_SPRITES_PER_CACHE	= 5460;
+
+	private static final int		NO_CHUNK				= -1;
+
+	private float[]					vertices				= new float[20];
 
-	private HashMap<Cell, Color>	platformColours		= null;
+	private float[]					platformColours			= null;
+	private PackedTileLayer			platformLayer			= null;
 
-	public CBOrthogonalTiledMapRenderer(HashMap<Cell, Color> platformColours, TiledMap map) {
+	private Array<SpriteCache>		staticCaches			= null;
+
+	// for each chunk, the index of its cache in staticCaches and its id in
+	// that cache, or NO_CHUNK if the chunk is empty.
+	private int[]					chunkCaches				= null;
+	private int[]					chunkIds				= null;
+	private int						chunksWide				= 0;
+	private int						chunksHigh				= 0;
+	private float					chunkWidth				= 0.0f;
+	private float					chunkHeight				= 0.0f;
+
+	public CBOrthogonalTiledMapRenderer(float[] platformColours, TiledMap map) {
 		this(platformColours, map, DEFAULT_UNIT_SCALE, new SpriteBatch());
 	}
 
-	public CBOrthogonalTiledMapRenderer(HashMap<Cell, Color> platformColours, TiledMap map, Batch batch) {
+	public CBOrthogonalTiledMapRenderer(float[] platformColours, TiledMap map, Batch batch) {
 		this(platformColours, map, DEFAULT_UNIT_SCALE, batch);
 	}
 
-	public CBOrthogonalTiledMapRenderer(HashMap<Cell, Color> platformColours, TiledMap map, float unitScale) {
+	public CBOrthogonalTiledMapRenderer(float[] platformColours, TiledMap map, float unitScale) {
 		this(platformColours, map, unitScale, new SpriteBatch());
 	}
 
-	public CBOrthogonalTiledMapRenderer(HashMap<Cell, Color> platformColours, TiledMap map, float unitScale, Batch batch) {
+	public CBOrthogonalTiledMapRenderer(float[] platformColours, TiledMap map, float unitScale, Batch batch) {
 		super(map, unitScale, batch);
 		if (platformColours == null) {
 			throw new IllegalArgumentException(
 					"Trying to create CBOrthogonalTiledMapRenderer with no platform colours. Did you want a regular OrthogonalTiledMapRenderer?");
-		} else {
-			this.platformColours = platformColours;
 		}
+
+		MapLayer platforms = map.getLayers().get("platforms");
+		if (platforms != null && !(platforms instanceof PackedTileLayer)) {
+			throw new IllegalArgumentException(
+					"Trying to create CBOrthogonalTiledMapRenderer for a map whose layers haven't been packed. Use PackedTileLayer.packLayers.");
+		}
+
+		this.platformLayer = (PackedTileLayer) platforms;
+
+		if (platformLayer != null && platformColours.length != platformLayer.getWidth() * platformLayer.getHeight()) {
+			throw new IllegalArgumentException(
+					"Trying to create CBOrthogonalTiledMapRenderer with platform colours for a different sized map.");
+		}
+
+		this.platformColours = platformColours;
 	}
 
 	/**
-	 * An overridden render function for handling rendering of "coloured"
-	 * platforms which only reveal their colour under a shader-driven
-	 * flashlight.
+	 * Bakes the given layers into static geometry, replacing anything baked
+	 * before. The layers are drawn in the order given, and must all be the same
+	 * size. Must be called on the rendering thread.
+	 * 
+	 * @param layers
+	 *        The layers to bake; these should never change afterwards.
 	 */
+	public void cacheStaticLayers(PackedTileLayer[] layers) {
+		disposeStaticCaches();
+
+		if (layers.length == 0) {
+			return;
+		}
+
+		final int layerWidth = layers[0].getWidth();
+		final int layerHeight = layers[0].getHeight();
+
+		chunksWide = (layerWidth + STATIC_CHUNK_SIZE - 1) / STATIC_CHUNK_SIZE;
+		chunksHigh = (layerHeight + STATIC_CHUNK_SIZE - 1) / STATIC_CHUNK_SIZE;
+		chunkWidth = STATIC_CHUNK_SIZE * layers[0].getTileWidth() * unitScale;
+		chunkHeight = STATIC_CHUNK_SIZE * layers[0].getTileHeight() * unitScale;
+
+		chunkCaches = new int[chunksWide * chunksHigh];
+		chunkIds = new int[chunksWide * chunksHigh];
+		staticCaches = new Array<SpriteCache>();
+
+		SpriteCache cache = null;
+		int spritesInCache = 0;
+		int spritesLeft = countTiles(layers, 0, 0, layerWidth, layerHeight);
+
+		for (int chunkY = 0; chunkY < chunksHigh; chunkY++) {
+			for (int chunkX = 0; chunkX < chunksWide; chunkX++) {
+				final int chunk = (chunkY * chunksWide) + chunkX;
+				final int col1 = chunkX * STATIC_CHUNK_SIZE;
+				final int row1 = chunkY * STATIC_CHUNK_SIZE;
+				final int col2 = Math.min(layerWidth, col1 + STATIC_CHUNK_SIZE);
+				final int row2 = Math.min(layerHeight, row1 + STATIC_CHUNK_SIZE);
+
+				final int sprites = countTiles(layers, col1, row1, col2, row2);
+				if (sprites == 0) {
+					chunkCaches[chunk] = NO_CHUNK;
+					continue;
+				}
+
+				if (cache == null || spritesInCache + sprites > MAX_SPRITES_PER_CACHE) {
+					cache = new SpriteCache(Math.min(MAX_SPRITES_PER_CACHE, spritesLeft), true);
+					staticCaches.add(cache);
+					spritesInCache = 0;
+				}
+
+				cache.beginCache();
+				for (PackedTileLayer layer : layers) {
+					final float color = Color.toFloatBits(1.0f, 1.0f, 1.0f, layer.getOpacity());
+					cacheTiles(cache, layer, color, col1, row1, col2, row2);
+				}
+
+				chunkCaches[chunk] = staticCaches.size - 1;
+				chunkIds[chunk] = cache.endCache();
+				spritesInCache += sprites;
+				spritesLeft -= sprites;
+			}
+		}
+	}
+
+	/**
+	 * @return True if cacheStaticLayers has been called since this renderer was
+	 *         created or its caches were last disposed.
+	 */
+	public boolean hasStaticCache() {
+		return staticCaches != null;
+	}
+
+	/**
+	 * Draws the chunks of static layers which are inside the current view.
+	 * Must not be called between begin() and end() on the batch.
+	 * 
+	 * @return The number of chunks drawn.
+	 */
+	public int renderStaticLayers() {
+		if (staticCaches == null) {
+			return 0;
+		}
+
+		int chunksDrawn = 0;
+
+		final int chunkX1 = Math.max(0, (int) (viewBounds.x / chunkWidth));
+		final int chunkX2 = Math.min(chunksWide, (int) ((viewBounds.x + viewBounds.width + chunkWidth) / chunkWidth));
+		final int chunkY1 = Math.max(0, (int) (viewBounds.y / chunkHeight));
+		final int chunkY2 = Math.min(chunksHigh,
+				(int) ((viewBounds.y + viewBounds.height + chunkHeight) / chunkHeight));
+
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+		for (int i = 0; i < staticCaches.size; i++) {
+			SpriteCache cache = staticCaches.get(i);
+			boolean begun = false;
+
+			for (int chunkY = chunkY1; chunkY < chunkY2; chunkY++) {
+				for (int chunkX = chunkX1; chunkX < chunkX2; chunkX++) {
+					final int chunk = (chunkY * chunksWide) + chunkX;
+
+					if (chunkCaches[chunk] != i) {
+						continue;
+					}
+
+					if (!begun) {
+						cache.setProjectionMatrix(spriteBatch.getProjectionMatrix());
+						cache.begin();
+						begun = true;
+					}
+
+					cache.draw(chunkIds[chunk]);
+					chunksDrawn++;
+				}
+			}
+
+			if (begun) {
+				cache.end();
+			}
+		}
+
+		Gdx.gl.glDisable(GL20.GL_BLEND);
+
+		return chunksDrawn;
+	}
+
+	/**
+	 * Renders every visible layer through the batch, including packed ones,
+	 * which the base renderer would skip.
+	 */
+	@Override
+	public void render() {
+		beginRender();
+		for (MapLayer layer : map.getLayers()) {
+			renderLayer(layer);
+		}
+		endRender();
+	}
+
 	@Override
-	public void renderTileLayer(TiledMapTileLayer layer) {
+	public void render(int[] layers) {
+		final MapLayers mapLayers = map.getLayers();
+
+		beginRender();
+		for (int layer : layers) {
+			renderLayer(mapLayers.get(layer));
+		}
+		endRender();
+	}
+
+	private void renderLayer(MapLayer layer) {
+		if (!layer.isVisible()) {
+			return;
+		}
+
+		if (layer instanceof PackedTileLayer) {
+			drawTileLayer((PackedTileLayer) layer, null, 0, null);
+		} else if (layer instanceof TiledMapTileLayer) {
+			renderTileLayer((TiledMapTileLayer) layer);
+		}
+	}
+
+	/**
+	 * Like renderTileLayer, but queues the visible tiles to be drawn in a
+	 * later batch pass instead of drawing them straight away.
+	 * 
+	 * @param layer
+	 *        The layer to draw.
+	 * @param queue
+	 *        The queue to submit the tiles to.
+	 * @param renderLayer
+	 *        The queue layer to draw the tiles on.
+	 * @param program
+	 *        The shader to draw the tiles with.
+	 */
+	public void submitTileLayer(PackedTileLayer layer, RenderQueue queue, int renderLayer, ShaderProgram program) {
+		drawTileLayer(layer, queue, renderLayer, program);
+	}
+
+	private void drawTileLayer(PackedTileLayer layer, RenderQueue queue, int renderLayer, ShaderProgram program) {
 		final Color batchColor = spriteBatch.getColor();
 		final float color = Color.toFloatBits(batchColor.r, batchColor.g, batchColor.b,
 				batchColor.a * layer.getOpacity());
@@ -89,136 +315,210 @@ public class CBOrthogonalTiledMapRenderer extends OrthogonalTiledMapRenderer {
 		float y = row1 * layerTileHeight;
 		float xStart = col1 * layerTileWidth;
 		final float[] vertices = this.vertices;
+		final int[] tiles = layer.getTiles();
 
 		for (int row = row1; row < row2; row++) {
+			final int rowStart = row * layerWidth;
 			float x = xStart;
 			for (int col = col1; col < col2; col++) {
-				final Cell cell = layer.getCell(col, row);
-				if (cell == null) {
+				final int packed = tiles[rowStart + col];
+				if (packed == PackedTileLayer.EMPTY) {
 					x += layerTileWidth;
 					continue;
 				}
-				final TiledMapTile tile = cell.getTile();
+				final TiledMapTile tile = layer.getTile(packed);
 
 				if (tile != null) {
-					final boolean flipX = cell.getFlipHorizontally();
-					final boolean flipY = cell.getFlipVertically();
-					final int rotations = cell.getRotation();
-
-					TextureRegion region = tile.getTextureRegion();
-
-					float x1 = x;
-					float y1 = y;
-					float x2 = x1 + region.getRegionWidth() * unitScale;
-					float y2 = y1 + region.getRegionHeight() * unitScale;
-
-					float u1 = region.getU();
-					float v1 = region.getV2();
-					float u2 = region.getU2();
-					float v2 = region.getV();
-
-					Color cb = platformColours.get(cell);
-					if (cb != null) {
-						final float platF = Color.toFloatBits(cb.r, cb.g, cb.b, cb.a * layer.getOpacity());
-						vertices[C1] = platF;
-						vertices[C2] = platF;
-						vertices[C3] = platF;
-						vertices[C4] = platF;
+					final float platF = (layer == platformLayer ? platformColours[rowStart + col]
+							: LevelEntityFactory.NO_PLATFORM_COLOUR);
+
+					if (platF != LevelEntityFactory.NO_PLATFORM_COLOUR) {
+						buildVertices(packed, tile.getTextureRegion(), x, y, platF);
 					} else {
-						vertices[C1] = color;
-						vertices[C2] = color;
-						vertices[C3] = color;
-						vertices[C4] = color;
+						buildVertices(packed, tile.getTextureRegion(), x, y, color);
 					}
 
-					vertices[X1] = x1;
-					vertices[Y1] = y1;
-					vertices[U1] = u1;
-					vertices[V1] = v1;
-
-					vertices[X2] = x1;
-					vertices[Y2] = y2;
-					vertices[U2] = u1;
-					vertices[V2] = v2;
-
-					vertices[X3] = x2;
-					vertices[Y3] = y2;
-					vertices[U3] = u2;
-					vertices[V3] = v2;
-
-					vertices[X4] = x2;
-					vertices[Y4] = y1;
-					vertices[U4] = u2;
-					vertices[V4] = v1;
-
-					if (flipX) {
-						float temp = vertices[U1];
-						vertices[U1] = vertices[U3];
-						vertices[U3] = temp;
-						temp = vertices[U2];
-						vertices[U2] = vertices[U4];
-						vertices[U4] = temp;
-					}
-					if (flipY) {
-						float temp = vertices[V1];
-						vertices[V1] = vertices[V3];
-						vertices[V3] = temp;
-						temp = vertices[V2];
-						vertices[V2] = vertices[V4];
-						vertices[V4] = temp;
-					}
-					if (rotations != 0) {
-						switch (rotations) {
-						case Cell.ROTATE_90: {
-							float tempV = vertices[V1];
-							vertices[V1] = vertices[V2];
-							vertices[V2] = vertices[V3];
-							vertices[V3] = vertices[V4];
-							vertices[V4] = tempV;
-
-							float tempU = vertices[U1];
-							vertices[U1] = vertices[U2];
-							vertices[U2] = vertices[U3];
-							vertices[U3] = vertices[U4];
-							vertices[U4] = tempU;
-							break;
-						}
-						case Cell.ROTATE_180: {
-							float tempU = vertices[U1];
-							vertices[U1] = vertices[U3];
-							vertices[U3] = tempU;
-							tempU = vertices[U2];
-							vertices[U2] = vertices[U4];
-							vertices[U4] = tempU;
-							float tempV = vertices[V1];
-							vertices[V1] = vertices[V3];
-							vertices[V3] = tempV;
-							tempV = vertices[V2];
-							vertices[V2] = vertices[V4];
-							vertices[V4] = tempV;
-							break;
-						}
-						case Cell.ROTATE_270: {
-							float tempV = vertices[V1];
-							vertices[V1] = vertices[V4];
-							vertices[V4] = vertices[V3];
-							vertices[V3] = vertices[V2];
-							vertices[V2] = tempV;
-
-							float tempU = vertices[U1];
-							vertices[U1] = vertices[U4];
-							vertices[U4] = vertices[U3];
-							vertices[U3] = vertices[U2];
-							vertices[U2] = tempU;
-							break;
-						}
-						}
+					if (queue != null) {
+						queue.submit(renderLayer, program, tile.getTextureRegion().getTexture(), vertices, 0);
+					} else {
+						spriteBatch.draw(tile.getTextureRegion().getTexture(), vertices, 0, 20);
 					}
-					spriteBatch.draw(region.getTexture(), vertices, 0, 20);
 				}
 				x += layerTileWidth;
 			}
 			y += layerTileHeight;
 		}
 	}
+
+	@Override
+	public void dispose() {
+		disposeStaticCaches();
+		super.dispose();
+	}
+
+	private void disposeStaticCaches() {
+		if (staticCaches != null) {
+			for (SpriteCache cache : staticCaches) {
+				cache.dispose();
+			}
+
+			staticCaches = null;
+		}
+
+		chunkCaches = null;
+		chunkIds = null;
+	}
+
+	private static int countTiles(PackedTileLayer[] layers, int col1, int row1, int col2, int row2) {
+		int count = 0;
+
+		for (PackedTileLayer layer : layers) {
+			final int[] tiles = layer.getTiles();
+			final int layerWidth = layer.getWidth();
+
+			for (int row = row1; row < row2; row++) {
+				for (int col = col1; col < col2; col++) {
+					final int packed = tiles[(row * layerWidth) + col];
+					if (packed != PackedTileLayer.EMPTY && layer.getTile(packed) != null) {
+						count++;
+					}
+				}
+			}
+		}
+
+		return count;
+	}
+
+	private void cacheTiles(SpriteCache cache, PackedTileLayer layer, float color, int col1, int row1, int col2,
+			int row2) {
+		final float layerTileWidth = layer.getTileWidth() * unitScale;
+		final float layerTileHeight = layer.getTileHeight() * unitScale;
+		final int[] tiles = layer.getTiles();
+		final int layerWidth = layer.getWidth();
+
+		for (int row = row1; row < row2; row++) {
+			for (int col = col1; col < col2; col++) {
+				final int packed = tiles[(row * layerWidth) + col];
+				final TiledMapTile tile = (packed != PackedTileLayer.EMPTY ? layer.getTile(packed) : null);
+				if (tile == null) {
+					continue;
+				}
+
+				TextureRegion region = tile.getTextureRegion();
+				buildVertices(packed, region, col * layerTileWidth, row * layerTileHeight, color);
+				cache.add(region.getTexture(), vertices, 0, 20);
+			}
+		}
+	}
+
+	/**
+	 * Fills the vertices array with the quad for a single packed tile, taking
+	 * into account its flips and rotation.
+	 */
+	private void buildVertices(int packed, TextureRegion region, float x, float y, float color) {
+		final float[] vertices = this.vertices;
+
+		final boolean flipX = PackedTileLayer.isFlippedHorizontally(packed);
+		final boolean flipY = PackedTileLayer.isFlippedVertically(packed);
+		final int rotations = PackedTileLayer.rotationOf(packed);
+
+		float x1 = x;
+		float y1 = y;
+		float x2 = x1 + region.getRegionWidth() * unitScale;
+		float y2 = y1 + region.getRegionHeight() * unitScale;
+
+		float u1 = region.getU();
+		float v1 = region.getV2();
+		float u2 = region.getU2();
+		float v2 = region.getV();
+
+		vertices[C1] = color;
+		vertices[C2] = color;
+		vertices[C3] = color;
+		vertices[C4] = color;
+
+		vertices[X1] = x1;
+		vertices[Y1] = y1;
+		vertices[U1] = u1;
+		vertices[V1] = v1;
+
+		vertices[X2] = x1;
+		vertices[Y2] = y2;
+		vertices[U2] = u1;
+		vertices[V2] = v2;
+
+		vertices[X3] = x2;
+		vertices[Y3] = y2;
+		vertices[U3] = u2;
+		vertices[V3] = v2;
+
+		vertices[X4] = x2;
+		vertices[Y4] = y1;
+		vertices[U4] = u2;
+		vertices[V4] = v1;
+
+		if (flipX) {
+			float temp = vertices[U1];
+			vertices[U1] = vertices[U3];
+			vertices[U3] = temp;
+			temp = vertices[U2];
+			vertices[U2] = vertices[U4];
+			vertices[U4] = temp;
+		}
+		if (flipY) {
+			float temp = vertices[V1];
+			vertices[V1] = vertices[V3];
+			vertices[V3] = temp;
+			temp = vertices[V2];
+			vertices[V2] = vertices[V4];
+			vertices[V4] = temp;
+		}
+		if (rotations != 0) {
+			switch (rotations) {
+			case Cell.ROTATE_90: {
+				float tempV = vertices[V1];
+				vertices[V1] = vertices[V2];
+				vertices[V2] = vertices[V3];
+				vertices[V3] = vertices[V4];
+				vertices[V4] = tempV;
+
+				float tempU = vertices[U1];
+				vertices[U1] = vertices[U2];
+				vertices[U2] = vertices[U3];
+				vertices[U3] = vertices[U4];
+				vertices[U4] = tempU;
+				break;
+			}
+			case Cell.ROTATE_180: {
+				float tempU = vertices[U1];
+				vertices[U1] = vertices[U3];
+				vertices[U3] = tempU;
+				tempU = vertices[U2];
+				vertices[U2] = vertices[U4];
+				vertices[U4] = tempU;
+				float tempV = vertices[V1];
+				vertices[V1] = vertices[V3];
+				vertices[V3] = tempV;
+				tempV = vertices[V2];
+				vertices[V2] = vertices[V4];
+				vertices[V4] = tempV;
+				break;
+			}
+			case Cell.ROTATE_270: {
+				float tempV = vertices[V1];
+				vertices[V1] = vertices[V4];
+				vertices[V4] = vertices[V3];
+				vertices[V3] = vertices[V2];
+				vertices[V2] = tempV;
+
+				float tempU = vertices[U1];
+				vertices[U1] = vertices[U4];
+				vertices[U4] = vertices[U3];
+				vertices[U3] = vertices[U2];
+				vertices[U2] = tempU;
+				break;
+			}
+			}
+		}
+	}
 }
@@ -0,0 +1,51 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+/**
+ * Somewhere the tiles of a {@link ChunkedTileWorld} are decoded from, a chunk
+ * at a time, so that the world never needs the whole level in memory.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public interface ChunkSource {
+	/**
+	 * @return The width of the level, in tiles.
+	 */
+	public int getWidth();
+
+	/**
+	 * @return The height of the level, in tiles.
+	 */
+	public int getHeight();
+
+	/**
+	 * @return The width of a tile, in pixels.
+	 */
+	public int getTileWidth();
+
+	/**
+	 * @return The height of a tile, in pixels.
+	 */
+	public int getTileHeight();
+
+	/**
+	 * @return The names of the level's layers, in the order they're drawn.
+	 */
+	public String[] getLayerNames();
+
+	/**
+	 * @param layer
+	 *        The index of a layer.
+	 * @return The opacity of that layer.
+	 */
+	public float getLayerOpacity(int layer);
+
+	/**
+	 * Fills in the tiles of every layer and the colour of every platform tile
+	 * of an empty chunk, for the chunk's chunkX and chunkY. Tiles outside the
+	 * level are left empty.
+	 * 
+	 * @param chunk
+	 *        The chunk to fill in.
+	 */
+	public void decode(TileChunk chunk);
+}
@@ -0,0 +1,387 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+import static com.badlogic.gdx.graphics.g2d.Batch.C1;
+import static com.badlogic.gdx.graphics.g2d.Batch.C2;
+import static com.badlogic.gdx.graphics.g2d.Batch.C3;
+import static com.badlogic.gdx.graphics.g2d.Batch.C4;
+import static com.badlogic.gdx.graphics.g2d.Batch.U1;
+import static com.badlogic.gdx.graphics.g2d.Batch.U2;
+import static com.badlogic.gdx.graphics.g2d.Batch.U3;
+import static com.badlogic.gdx.graphics.g2d.Batch.U4;
+import static com.badlogic.gdx.graphics.g2d.Batch.V1;
+import static com.badlogic.gdx.graphics.g2d.Batch.V2;
+import static com.badlogic.gdx.graphics.g2d.Batch.V3;
+import static com.badlogic.gdx.graphics.g2d.Batch.V4;
+import static com.badlogic.gdx.graphics.g2d.Batch.X1;
+import static com.badlogic.gdx.graphics.g2d.Batch.X2;
+import static com.badlogic.gdx.graphics.g2d.Batch.X3;
+import static com.badlogic.gdx.graphics.g2d.Batch.X4;
+import static com.badlogic.gdx.graphics.g2d.Batch.Y1;
+import static com.badlogic.gdx.graphics.g2d.Batch.Y2;
+import static com.badlogic.gdx.graphics.g2d.Batch.Y3;
+import static com.badlogic.gdx.graphics.g2d.Batch.Y4;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.LongMap;
+import com.sgtcodfish.colourBlind.CBColour;
+import com.sgtcodfish.colourBlind.CBColour.GameColour;
+import com.sgtcodfish.colourBlind.RenderQueue;
+
+/**
+ * Renders a {@link ChunkedTileWorld} in the same way CBOrthogonalTiledMapRenderer
+ * renders a TiledMap: every layer but "platforms" is baked into static
+ * geometry, and the platforms are submitted to a {@link RenderQueue} every
+ * frame with their colours.
+ * 
+ * Static geometry is built a chunk at a time, the first time the chunk comes
+ * into view, and each chunk gets its own {@link SpriteCache}. Once a chunk is
+ * evicted from the world its cache is cleared and kept for the next chunk to
+ * come into view, so the number of caches only ever grows to the number of
+ * chunks the view has needed at once.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class ChunkedTileRenderer implements Disposable {
+	/** The most sprites a single indexed SpriteCache can hold. */
+	private static final int		MAX_SPRITES_PER_CACHE	= 5460;
+
+	private final ChunkedTileWorld	world;
+	private final TextureRegion[]	regions;
+	private final float				unitScale;
+
+	// the layers baked into static geometry, and their colours
+	private final int[]				staticLayers;
+	private final float[]			staticColours;
+	private final int				cacheSize;
+
+	// indexed as TileChunk.colours, packed with the platform layer's opacity
+	private final float[]			platformColours;
+
+	private final LongMap<ChunkMesh>	meshes					= new LongMap<ChunkMesh>();
+	private final Array<ChunkMesh>	meshList				= new Array<ChunkMesh>(false, 16);
+	private final Array<SpriteCache>	freeCaches				= new Array<SpriteCache>(false, 16);
+
+	private final Rectangle			viewBounds				= new Rectangle();
+	private final Matrix4			projection				= new Matrix4();
+	private final float[]			vertices				= new float[20];
+
+	/**
+	 * @param world
+	 *        The world to render.
+	 * @param regions
+	 *        The region for each tile, indexed by tile id, as made by
+	 *        CompiledLevel.createTileRegions.
+	 */
+	public ChunkedTileRenderer(ChunkedTileWorld world, TextureRegion[] regions) {
+		this(world, regions, 1.0f);
+	}
+
+	/**
+	 * @param world
+	 *        The world to render.
+	 * @param regions
+	 *        The region for each tile, indexed by tile id, as made by
+	 *        CompiledLevel.createTileRegions.
+	 * @param unitScale
+	 *        The scaling factor for the world.
+	 */
+	public ChunkedTileRenderer(ChunkedTileWorld world, TextureRegion[] regions, float unitScale) {
+		this.world = world;
+		this.regions = regions;
+		this.unitScale = unitScale;
+
+		final String[] layerNames = world.source.getLayerNames();
+		final int staticLayerCount = layerNames.length - (world.platformLayer != -1 ? 1 : 0);
+
+		staticLayers = new int[staticLayerCount];
+		staticColours = new float[staticLayerCount];
+
+		for (int layer = 0, i = 0; layer < layerNames.length; layer++) {
+			if (layer != world.platformLayer) {
+				staticLayers[i] = layer;
+				staticColours[i] = Color.toFloatBits(1.0f, 1.0f, 1.0f, world.source.getLayerOpacity(layer));
+				i++;
+			}
+		}
+
+		cacheSize = staticLayerCount * TileChunk.AREA;
+		if (cacheSize > MAX_SPRITES_PER_CACHE) {
+			throw new IllegalArgumentException("Too many layers to cache a whole chunk in one SpriteCache.");
+		}
+
+		final GameColour[] gameColours = GameColour.values();
+		final float opacity = (world.platformLayer != -1 ? world.source.getLayerOpacity(world.platformLayer) : 1.0f);
+
+		platformColours = new float[gameColours.length + 1];
+		platformColours[TileChunk.NO_COLOUR] = Color.toFloatBits(1.0f, 1.0f, 1.0f, opacity);
+		for (int i = 0; i < gameColours.length; i++) {
+			platformColours[i + 1] = CBColour.get(gameColours[i]).toFloatBits(opacity);
+		}
+	}
+
+	/**
+	 * Sets the area to draw, and the world's area to keep resident, to what
+	 * the camera can see.
+	 * 
+	 * @param camera
+	 *        The camera.
+	 */
+	public void setView(OrthographicCamera camera) {
+		final float width = camera.viewportWidth * camera.zoom;
+		final float height = camera.viewportHeight * camera.zoom;
+
+		viewBounds.set(camera.position.x - width / 2, camera.position.y - height / 2, width, height);
+		projection.set(camera.combined);
+
+		world.update(viewBounds.x / unitScale, viewBounds.y / unitScale, viewBounds.width / unitScale,
+				viewBounds.height / unitScale);
+	}
+
+	/**
+	 * @return The area drawn, in world coordinates.
+	 */
+	public Rectangle getViewBounds() {
+		return viewBounds;
+	}
+
+	/**
+	 * Draws the static layers of every chunk in view, building the geometry
+	 * for any which haven't been drawn since they were last decoded. Must not
+	 * be called between begin() and end() on a batch.
+	 * 
+	 * @return The number of chunks drawn.
+	 */
+	public int renderStaticLayers() {
+		releaseEvictedMeshes();
+
+		final float chunkWidth = TileChunk.SIZE * world.tileWidth * unitScale;
+		final float chunkHeight = TileChunk.SIZE * world.tileHeight * unitScale;
+
+		final int chunkX1 = Math.max(0, (int) (viewBounds.x / chunkWidth));
+		final int chunkX2 = Math.min(world.chunksWide - 1, (int) ((viewBounds.x + viewBounds.width) / chunkWidth));
+		final int chunkY1 = Math.max(0, (int) (viewBounds.y / chunkHeight));
+		final int chunkY2 = Math.min(world.chunksHigh - 1, (int) ((viewBounds.y + viewBounds.height) / chunkHeight));
+
+		int chunksDrawn = 0;
+
+		Gdx.gl.glEnable(GL20.GL_BLEND);
+		Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+		for (int chunkY = chunkY1; chunkY <= chunkY2; chunkY++) {
+			for (int chunkX = chunkX1; chunkX <= chunkX2; chunkX++) {
+				ChunkMesh mesh = meshes.get(TileChunk.keyFor(chunkX, chunkY));
+
+				if (mesh == null) {
+					mesh = buildMesh(world.getChunk(chunkX, chunkY));
+				}
+
+				if (mesh.cache == null) {
+					continue;
+				}
+
+				mesh.cache.setProjectionMatrix(projection);
+				mesh.cache.begin();
+				mesh.cache.draw(mesh.id);
+				mesh.cache.end();
+				chunksDrawn++;
+			}
+		}
+
+		Gdx.gl.glDisable(GL20.GL_BLEND);
+
+		return chunksDrawn;
+	}
+
+	/**
+	 * Queues the visible tiles of the "platforms" layer to be drawn in their
+	 * colours.
+	 * 
+	 * @param queue
+	 *        The queue to submit the tiles to.
+	 * @param renderLayer
+	 *        The queue layer to draw the tiles on.
+	 * @param program
+	 *        The shader to draw the tiles with.
+	 */
+	public void submitPlatforms(RenderQueue queue, int renderLayer, ShaderProgram program) {
+		final int platformLayer = world.platformLayer;
+		if (platformLayer == -1) {
+			return;
+		}
+
+		final float tileWidth = world.tileWidth * unitScale;
+		final float tileHeight = world.tileHeight * unitScale;
+
+		final int col1 = Math.max(0, (int) (viewBounds.x / tileWidth));
+		final int col2 = Math.min(world.width, (int) ((viewBounds.x + viewBounds.width + tileWidth) / tileWidth));
+		final int row1 = Math.max(0, (int) (viewBounds.y / tileHeight));
+		final int row2 = Math.min(world.height, (int) ((viewBounds.y + viewBounds.height + tileHeight) / tileHeight));
+
+		for (int row = row1; row < row2; row++) {
+			for (int col = col1; col < col2; col++) {
+				final TileChunk chunk = world.getChunk(col >> TileChunk.SHIFT, row >> TileChunk.SHIFT);
+				final int index = ((row & TileChunk.MASK) << TileChunk.SHIFT) + (col & TileChunk.MASK);
+				final short tile = chunk.tiles[platformLayer][index];
+
+				if (tile == 0 || tile >= regions.length || regions[tile] == null) {
+					continue;
+				}
+
+				final TextureRegion region = regions[tile];
+				buildVertices(region, col * tileWidth, row * tileHeight, platformColours[chunk.colours[index]]);
+				queue.submit(renderLayer, program, region.getTexture(), vertices, 0);
+			}
+		}
+	}
+
+	@Override
+	public void dispose() {
+		for (ChunkMesh mesh : meshList) {
+			if (mesh.cache != null) {
+				mesh.cache.dispose();
+			}
+		}
+
+		for (SpriteCache cache : freeCaches) {
+			cache.dispose();
+		}
+
+		meshes.clear();
+		meshList.clear();
+		freeCaches.clear();
+	}
+
+	private ChunkMesh buildMesh(TileChunk chunk) {
+		ChunkMesh mesh = new ChunkMesh(chunk.chunkX, chunk.chunkY);
+		meshes.put(TileChunk.keyFor(chunk.chunkX, chunk.chunkY), mesh);
+		meshList.add(mesh);
+
+		if (countTiles(chunk) == 0) {
+			return mesh;
+		}
+
+		mesh.cache = (freeCaches.size > 0 ? freeCaches.pop() : new SpriteCache(cacheSize, true));
+		mesh.cache.beginCache();
+
+		final float tileWidth = world.tileWidth * unitScale;
+		final float tileHeight = world.tileHeight * unitScale;
+		final float x1 = (chunk.chunkX << TileChunk.SHIFT) * tileWidth;
+		final float y1 = (chunk.chunkY << TileChunk.SHIFT) * tileHeight;
+
+		for (int i = 0; i < staticLayers.length; i++) {
+			final short[] tiles = chunk.tiles[staticLayers[i]];
+
+			for (int index = 0; index < TileChunk.AREA; index++) {
+				final short tile = tiles[index];
+
+				if (tile == 0 || tile >= regions.length || regions[tile] == null) {
+					continue;
+				}
+
+				final TextureRegion region = regions[tile];
+				buildVertices(region, x1 + (index & TileChunk.MASK) * tileWidth, y1 + (index >> TileChunk.SHIFT)
+						* tileHeight, staticColours[i]);
+				mesh.cache.add(region.getTexture(), vertices, 0, 20);
+			}
+		}
+
+		mesh.id = mesh.cache.endCache();
+		return mesh;
+	}
+
+	private int countTiles(TileChunk chunk) {
+		int count = 0;
+
+		for (int i = 0; i < staticLayers.length; i++) {
+			final short[] tiles = chunk.tiles[staticLayers[i]];
+
+			for (int index = 0; index < TileChunk.AREA; index++) {
+				if (tiles[index] != 0) {
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	private void releaseEvictedMeshes() {
+		for (int i = meshList.size - 1; i >= 0; i--) {
+			ChunkMesh mesh = meshList.get(i);
+
+			if (!world.isResident(mesh.chunkX, mesh.chunkY)) {
+				meshList.removeIndex(i);
+				meshes.remove(TileChunk.keyFor(mesh.chunkX, mesh.chunkY));
+
+				if (mesh.cache != null) {
+					mesh.cache.clear();
+					freeCaches.add(mesh.cache);
+				}
+			}
+		}
+	}
+
+	private void buildVertices(TextureRegion region, float x, float y, float color) {
+		final float[] vertices = this.vertices;
+
+		final float x2 = x + region.getRegionWidth() * unitScale;
+		final float y2 = y + region.getRegionHeight() * unitScale;
+
+		final float u1 = region.getU();
+		final float v1 = region.getV2();
+		final float u2 = region.getU2();
+		final float v2 = region.getV();
+
+		vertices[C1] = color;
+		vertices[C2] = color;
+		vertices[C3] = color;
+		vertices[C4] = color;
+
+		vertices[X1] = x;
+		vertices[Y1] = y;
+		vertices[U1] = u1;
+		vertices[V1] = v1;
+
+		vertices[X2] = x;
+		vertices[Y2] = y2;
+		vertices[U2] = u1;
+		vertices[V2] = v2;
+
+		vertices[X3] = x2;
+		vertices[Y3] = y2;
+		vertices[U3] = u2;
+		vertices[V3] = v2;
+
+		vertices[X4] = x2;
+		vertices[Y4] = y;
+		vertices[U4] = u2;
+		vertices[V4] = v1;
+	}
+
+	/**
+	 * The static geometry of one chunk; cache is null if the chunk has no
+	 * static tiles.
+	 */
+	private static class ChunkMesh {
+		final int	chunkX;
+		final int	chunkY;
+
+		SpriteCache	cache	= null;
+		int			id		= 0;
+
+		ChunkMesh(int chunkX, int chunkY) {
+			this.chunkX = chunkX;
+			this.chunkY = chunkY;
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongMap;
+
+/**
+ * A level split into {@link TileChunk}s, of which only those near the camera
+ * are kept in memory. Each update, every chunk within margin chunks of the
+ * view is made resident, decoding it from the world's {@link ChunkSource} if
+ * it isn't already, and every chunk more than a chunk further out than that is
+ * evicted, so both the memory used and the work done per frame depend on the
+ * size of the view rather than the size of the level.
+ * 
+ * Chunks outside the view are also decoded if something asks for them, e.g.
+ * the CollisionSystem checking an Entity off screen; they're evicted by the
+ * first update after they stop being used. Evicted chunks are kept to be
+ * reused, so streaming allocates nothing once the view's worth of chunks has
+ * been made.
+ * 
+ * The map is assumed to be positioned at the origin.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class ChunkedTileWorld {
+	/** The number of chunks kept around the view by default. */
+	public static final int			DEFAULT_MARGIN	= 1;
+
+	public final ChunkSource		source;
+
+	public final int				width;
+	public final int				height;
+	public final int				tileWidth;
+	public final int				tileHeight;
+
+	/** The width and height of the level, in chunks. */
+	public final int				chunksWide;
+	public final int				chunksHigh;
+
+	/** The index of the "platforms" layer, or -1 if there's none. */
+	public final int				platformLayer;
+
+	/** The index of the "level" layer, or -1 if there's none. */
+	public final int				levelLayer;
+
+	private final int				margin;
+	private final int				layerCount;
+
+	private final LongMap<TileChunk>	resident		= new LongMap<TileChunk>();
+	private final Array<TileChunk>	residentChunks	= new Array<TileChunk>(false, 16);
+	private final Array<TileChunk>	freeChunks		= new Array<TileChunk>(false, 16);
+
+	// the last chunk looked up, since lookups tend to hit the same chunk.
+	private TileChunk				lastChunk		= null;
+
+	private int						frame			= 0;
+
+	private int						chunksDecoded	= 0;
+	private int						chunksEvicted	= 0;
+
+	public ChunkedTileWorld(ChunkSource source) {
+		this(source, DEFAULT_MARGIN);
+	}
+
+	/**
+	 * @param source
+	 *        Where the level's chunks are decoded from.
+	 * @param margin
+	 *        The number of chunks around the view which are kept resident, so
+	 *        that chunks are decoded before they come into view.
+	 */
+	public ChunkedTileWorld(ChunkSource source, int margin) {
+		if (margin < 0) {
+			throw new IllegalArgumentException("Chunk margin can't be negative.");
+		}
+
+		this.source = source;
+		this.margin = margin;
+
+		this.width = source.getWidth();
+		this.height = source.getHeight();
+		this.tileWidth = source.getTileWidth();
+		this.tileHeight = source.getTileHeight();
+
+		this.chunksWide = (width + TileChunk.SIZE - 1) >> TileChunk.SHIFT;
+		this.chunksHigh = (height + TileChunk.SIZE - 1) >> TileChunk.SHIFT;
+
+		final String[] layerNames = source.getLayerNames();
+		this.layerCount = layerNames.length;
+
+		int platforms = -1;
+		int level = -1;
+		for (int i = 0; i < layerNames.length; i++) {
+			if (platforms == -1 && "platforms".equals(layerNames[i])) {
+				platforms = i;
+			} else if (level == -1 && "level".equals(layerNames[i])) {
+				level = i;
+			}
+		}
+
+		this.platformLayer = platforms;
+		this.levelLayer = level;
+	}
+
+	/**
+	 * Makes every chunk within the margin of the view resident, and evicts
+	 * those well outside it.
+	 * 
+	 * @param view
+	 *        The area in view, in world coordinates.
+	 */
+	public void update(Rectangle view) {
+		update(view.x, view.y, view.width, view.height);
+	}
+
+	/**
+	 * Makes every chunk within the margin of the given area resident, and
+	 * evicts those well outside it.
+	 */
+	public void update(float x, float y, float w, float h) {
+		frame++;
+
+		final float chunkWidth = TileChunk.SIZE * tileWidth;
+		final float chunkHeight = TileChunk.SIZE * tileHeight;
+
+		final int chunkX1 = (int) Math.floor(x / chunkWidth) - margin;
+		final int chunkX2 = (int) Math.floor((x + w) / chunkWidth) + margin;
+		final int chunkY1 = (int) Math.floor(y / chunkHeight) - margin;
+		final int chunkY2 = (int) Math.floor((y + h) / chunkHeight) + margin;
+
+		for (int chunkY = Math.max(0, chunkY1); chunkY <= Math.min(chunksHigh - 1, chunkY2); chunkY++) {
+			for (int chunkX = Math.max(0, chunkX1); chunkX <= Math.min(chunksWide - 1, chunkX2); chunkX++) {
+				getChunk(chunkX, chunkY);
+			}
+		}
+
+		// the extra chunk of grace stops chunks on the edge of the margin being
+		// decoded and evicted over and over as the view wobbles, and chunks
+		// used since the last update are kept for whatever is using them.
+		for (int i = residentChunks.size - 1; i >= 0; i--) {
+			TileChunk chunk = residentChunks.get(i);
+
+			if (chunk.lastUsed < frame - 1
+					&& (chunk.chunkX < chunkX1 - 1 || chunk.chunkX > chunkX2 + 1 || chunk.chunkY < chunkY1 - 1 || chunk.chunkY > chunkY2 + 1)) {
+				evict(i);
+			}
+		}
+	}
+
+	/**
+	 * Gets a chunk, decoding it if it isn't resident.
+	 * 
+	 * @param chunkX
+	 *        The x coordinate of the chunk, from 0 to chunksWide - 1.
+	 * @param chunkY
+	 *        The y coordinate of the chunk, from 0 to chunksHigh - 1.
+	 * @return The chunk, which is only valid until the next update.
+	 */
+	public TileChunk getChunk(int chunkX, int chunkY) {
+		TileChunk chunk = lastChunk;
+
+		if (chunk == null || chunk.chunkX != chunkX || chunk.chunkY != chunkY) {
+			chunk = resident.get(TileChunk.keyFor(chunkX, chunkY));
+
+			if (chunk == null) {
+				chunk = decode(chunkX, chunkY);
+			}
+
+			lastChunk = chunk;
+		}
+
+		chunk.lastUsed = frame;
+		return chunk;
+	}
+
+	/**
+	 * @return True if the chunk at the given chunk coordinates is in memory.
+	 */
+	public boolean isResident(int chunkX, int chunkY) {
+		return resident.containsKey(TileChunk.keyFor(chunkX, chunkY));
+	}
+
+	/**
+	 * Checks if a tile is solid, decoding its chunk if needed.
+	 * 
+	 * @param plane
+	 *        A GameColour's ordinal, or TileChunk.STATIC_PLANE.
+	 * @param tileX
+	 *        The x coordinate of the tile, which must be inside the level.
+	 * @param tileY
+	 *        The y coordinate of the tile, which must be inside the level.
+	 * @return True if the tile is solid in the given plane.
+	 */
+	public boolean isSolid(int plane, int tileX, int tileY) {
+		return getChunk(tileX >> TileChunk.SHIFT, tileY >> TileChunk.SHIFT).isSolid(plane, tileX & TileChunk.MASK,
+				tileY & TileChunk.MASK);
+	}
+
+	/**
+	 * @param layer
+	 *        The index of a layer.
+	 * @param tileX
+	 *        The x coordinate of the tile, which must be inside the level.
+	 * @param tileY
+	 *        The y coordinate of the tile, which must be inside the level.
+	 * @return The id of the tile, or 0 if there's none.
+	 */
+	public short getTile(int layer, int tileX, int tileY) {
+		return getChunk(tileX >> TileChunk.SHIFT, tileY >> TileChunk.SHIFT).tiles[layer][((tileY & TileChunk.MASK) << TileChunk.SHIFT)
+				+ (tileX & TileChunk.MASK)];
+	}
+
+	/**
+	 * @return The chunks currently in memory, in no particular order. Must not
+	 *         be modified.
+	 */
+	public Array<TileChunk> getResidentChunks() {
+		return residentChunks;
+	}
+
+	/**
+	 * @return The number of chunks decoded since the world was created.
+	 */
+	public int getChunksDecoded() {
+		return chunksDecoded;
+	}
+
+	/**
+	 * @return The number of chunks evicted since the world was created.
+	 */
+	public int getChunksEvicted() {
+		return chunksEvicted;
+	}
+
+	/**
+	 * Evicts every chunk, e.g. to start again from a different part of the
+	 * level.
+	 */
+	public void clear() {
+		for (int i = residentChunks.size - 1; i >= 0; i--) {
+			evict(i);
+		}
+	}
+
+	private TileChunk decode(int chunkX, int chunkY) {
+		if (chunkX < 0 || chunkX >= chunksWide || chunkY < 0 || chunkY >= chunksHigh) {
+			throw new IllegalArgumentException("Chunk (" + chunkX + ", " + chunkY + ") is outside the level.");
+		}
+
+		TileChunk chunk = (freeChunks.size > 0 ? freeChunks.pop() : new TileChunk(layerCount));
+
+		chunk.reset(chunkX, chunkY);
+		source.decode(chunk);
+		chunk.buildCollision(levelLayer);
+
+		resident.put(TileChunk.keyFor(chunkX, chunkY), chunk);
+		residentChunks.add(chunk);
+		chunksDecoded++;
+
+		return chunk;
+	}
+
+	private void evict(int index) {
+		TileChunk chunk = residentChunks.removeIndex(index);
+		resident.remove(TileChunk.keyFor(chunk.chunkX, chunk.chunkY));
+
+		if (lastChunk == chunk) {
+			lastChunk = null;
+		}
+
+		freeChunks.add(chunk);
+		chunksEvicted++;
+	}
+}
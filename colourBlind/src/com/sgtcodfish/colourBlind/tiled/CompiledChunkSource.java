@@ -0,0 +1,95 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+import com.sgtcodfish.colourBlind.CBColour.GameColour;
+
+/**
+ * Decodes the chunks of a {@link ChunkedTileWorld} from a
+ * {@link CompiledLevel}. Platforms get the same colours they'd get if the
+ * level were loaded as a TiledMap, since they're chosen from the level's seed
+ * and platform ids in the same way.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class CompiledChunkSource implements ChunkSource {
+	private final CompiledLevel	level;
+	private final int			platformLayer;
+
+	// the colour of each platform as TileChunk stores it, indexed by id.
+	private final byte[]		platformColours;
+
+	public CompiledChunkSource(CompiledLevel level) {
+		this.level = level;
+		this.platformLayer = level.indexOfLayer("platforms");
+
+		final GameColour[] chosen = PlatformLabels.chooseColours(level.seed, level.platformCount);
+		platformColours = new byte[level.platformCount + 1];
+
+		for (int id = 1; id <= level.platformCount; id++) {
+			platformColours[id] = (byte) (chosen[id].ordinal() + 1);
+		}
+	}
+
+	@Override
+	public int getWidth() {
+		return level.width;
+	}
+
+	@Override
+	public int getHeight() {
+		return level.height;
+	}
+
+	@Override
+	public int getTileWidth() {
+		return level.tileWidth;
+	}
+
+	@Override
+	public int getTileHeight() {
+		return level.tileHeight;
+	}
+
+	@Override
+	public String[] getLayerNames() {
+		return level.layerNames;
+	}
+
+	@Override
+	public float getLayerOpacity(int layer) {
+		return level.layerOpacities[layer];
+	}
+
+	@Override
+	public void decode(TileChunk chunk) {
+		final int x1 = chunk.chunkX << TileChunk.SHIFT;
+		final int y1 = chunk.chunkY << TileChunk.SHIFT;
+
+		for (int layer = 0; layer < level.layerNames.length; layer++) {
+			final int layerWidth = level.layerWidths[layer];
+			final int columns = Math.min(TileChunk.SIZE, layerWidth - x1);
+			final int rows = Math.min(TileChunk.SIZE, level.layerHeights[layer] - y1);
+
+			for (int row = 0; row < rows; row++) {
+				System.arraycopy(level.layerTiles[layer], ((y1 + row) * layerWidth) + x1, chunk.tiles[layer],
+						row << TileChunk.SHIFT, columns);
+			}
+		}
+
+		if (platformLayer == -1 || level.platformIds == null) {
+			return;
+		}
+
+		final int layerWidth = level.layerWidths[platformLayer];
+		final int columns = Math.min(TileChunk.SIZE, layerWidth - x1);
+		final int rows = Math.min(TileChunk.SIZE, level.layerHeights[platformLayer] - y1);
+
+		for (int row = 0; row < rows; row++) {
+			final int from = ((y1 + row) * layerWidth) + x1;
+			final int to = row << TileChunk.SHIFT;
+
+			for (int col = 0; col < columns; col++) {
+				chunk.colours[to + col] = platformColours[level.platformIds[from + col]];
+			}
+		}
+	}
+}
@@ -0,0 +1,658 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.StringTokenizer;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.maps.MapProperties;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSet;
+import com.badlogic.gdx.maps.tiled.TmxMapHelper;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.XmlReader;
+import com.badlogic.gdx.utils.XmlReader.Element;
+
+/**
+ * A level compiled ahead of time from a .tmx file into a compact binary form,
+ * so that loading it needs no XML parsing, base64 decoding or inflating, and
+ * none of the per-tile scans done when a level is loaded from a TiledMap.
+ * 
+ * A compiled level holds:
+ * <ul>
+ * <li>The tileset, by the path of its image.</li>
+ * <li>Every tile layer's tile ids as a short[], with rows running from the
+ * bottom of the map to the top like a {@link TiledMapTileLayer}'s.</li>
+ * <li>The bitplane of tiles in the "level" layer, as used by the
+ * CollisionSystem.</li>
+ * <li>The bitplane of tiles in the "platforms" layer.</li>
+ * <li>The platform connectivity: the id of the platform each platform tile
+ * belongs to, or 0, as labelled by {@link PlatformLabels}, and the seed for
+ * the platforms' colours.</li>
+ * <li>The door triggers: the index of each tile in the "door" layer.</li>
+ * </ul>
+ * 
+ * Compiled levels are written with LevelCompiler, and live beside the .tmx
+ * file they were compiled from with the extension EXTENSION. Everything is
+ * stored big endian, and bitplanes use the same layout as CollisionSystem:
+ * bit (index &amp; 63) of word (index &gt;&gt;&gt; 6) for tile index
+ * (y * width) + x.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class CompiledLevel {
+	/** The extension used for compiled levels, including the dot. */
+	public static final String	EXTENSION			= ".cbl";
+
+	public static final int		MAGIC				= 0x43424C56;	// "CBLV"
+	public static final int		VERSION				= 2;
+
+	private static final int	FLIP_MASK			= 0xE0000000;
+
+	public int					width				= 0;
+	public int					height				= 0;
+	public int					tileWidth			= 0;
+	public int					tileHeight			= 0;
+
+	/** The seed for the platforms' colours; see PlatformLabels.seedFor. */
+	public long					seed				= PlatformLabels.DEFAULT_SEED;
+
+	public String				tilesetName			= null;
+
+	/** The tileset's image, relative to the level file. */
+	public String				tilesetImage		= null;
+	public int					firstGid			= 1;
+	public int					tilesetTileWidth	= 0;
+	public int					tilesetTileHeight	= 0;
+	public int					spacing				= 0;
+	public int					margin				= 0;
+
+	public String[]				layerNames			= null;
+	public int[]				layerWidths			= null;
+	public int[]				layerHeights		= null;
+	public float[]				layerOpacities		= null;
+	public boolean[]			layerVisible		= null;
+	public short[][]			layerTiles			= null;
+
+	/** The tiles in the "level" layer, or null if there's no level layer. */
+	public long[]				staticBitplane		= null;
+
+	/** The tiles in the "platforms" layer, or null if there's no platforms layer. */
+	public long[]				platformBitplane	= null;
+
+	/**
+	 * The id of the platform each tile in the "platforms" layer belongs to,
+	 * from 1 to platformCount, or 0 if there's no platform there.
+	 */
+	public int[]				platformIds			= null;
+	public int					platformCount		= 0;
+
+	/** The index of every tile in the "door" layer, or null if there's no door layer. */
+	public int[]				doorTiles			= null;
+
+	/**
+	 * @param tmxFile
+	 *        A .tmx file.
+	 * @return The compiled level which would sit beside the .tmx file.
+	 */
+	public static FileHandle compiledFileFor(FileHandle tmxFile) {
+		return tmxFile.sibling(tmxFile.nameWithoutExtension() + EXTENSION);
+	}
+
+	/**
+	 * Resolves the tileset's image in the same way TmxMapLoader does, so that
+	 * compiled and uncompiled levels share the same texture.
+	 * 
+	 * @param levelFile
+	 *        The file this level was read from.
+	 * @return The tileset's image.
+	 */
+	public FileHandle resolveTilesetImage(FileHandle levelFile) {
+		StringTokenizer tokenizer = new StringTokenizer(tilesetImage, "\\/");
+		FileHandle result = levelFile.parent();
+
+		while (tokenizer.hasMoreElements()) {
+			String token = tokenizer.nextToken();
+
+			if (token.equals("..")) {
+				result = result.parent();
+			} else {
+				result = result.child(token);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Compiles a .tmx file. Only the first tileset is kept, and tiles may not
+	 * be flipped, which the levels never need.
+	 * 
+	 * @param tmxFile
+	 *        The .tmx file to compile.
+	 * @return The compiled level.
+	 * @throws IOException
+	 *         If the file can't be read.
+	 */
+	public static CompiledLevel compile(FileHandle tmxFile) throws IOException {
+		Element root = new XmlReader().parse(tmxFile);
+		CompiledLevel level = new CompiledLevel();
+
+		level.width = root.getIntAttribute("width", 0);
+		level.height = root.getIntAttribute("height", 0);
+		level.tileWidth = root.getIntAttribute("tilewidth", 0);
+		level.tileHeight = root.getIntAttribute("tileheight", 0);
+		level.seed = PlatformLabels.seedFor(getProperty(root, PlatformLabels.SEED_PROPERTY),
+				tmxFile.nameWithoutExtension());
+
+		Array<Element> tilesets = root.getChildrenByName("tileset");
+		if (tilesets.size != 1 || tilesets.get(0).getAttribute("source", null) != null) {
+			throw new GdxRuntimeException(tmxFile.path() + ": compiled levels need exactly one embedded tileset.");
+		}
+
+		Element tileset = tilesets.get(0);
+		level.tilesetName = tileset.getAttribute("name", "");
+		level.tilesetImage = tileset.getChildByName("image").getAttribute("source");
+		level.firstGid = tileset.getIntAttribute("firstgid", 1);
+		level.tilesetTileWidth = tileset.getIntAttribute("tilewidth", 0);
+		level.tilesetTileHeight = tileset.getIntAttribute("tileheight", 0);
+		level.spacing = tileset.getIntAttribute("spacing", 0);
+		level.margin = tileset.getIntAttribute("margin", 0);
+
+		Array<Element> layers = root.getChildrenByName("layer");
+		final int layerCount = layers.size;
+
+		level.layerNames = new String[layerCount];
+		level.layerWidths = new int[layerCount];
+		level.layerHeights = new int[layerCount];
+		level.layerOpacities = new float[layerCount];
+		level.layerVisible = new boolean[layerCount];
+		level.layerTiles = new short[layerCount][];
+
+		for (int i = 0; i < layerCount; i++) {
+			Element layer = layers.get(i);
+			final int layerWidth = layer.getIntAttribute("width", 0);
+			final int layerHeight = layer.getIntAttribute("height", 0);
+
+			level.layerNames[i] = layer.getAttribute("name", "");
+			level.layerWidths[i] = layerWidth;
+			level.layerHeights[i] = layerHeight;
+			level.layerOpacities[i] = layer.getFloatAttribute("opacity", 1.0f);
+			level.layerVisible[i] = (layer.getIntAttribute("visible", 1) == 1);
+
+			int[] ids = TmxMapHelper.getTileIds(layer, layerWidth, layerHeight);
+			short[] tiles = new short[layerWidth * layerHeight];
+
+			for (int y = 0; y < layerHeight; y++) {
+				// .tmx rows run from the top down
+				final int row = (layerHeight - 1 - y) * layerWidth;
+
+				for (int x = 0; x < layerWidth; x++) {
+					final int id = ids[row + x];
+
+					if ((id & FLIP_MASK) != 0 || id > Short.MAX_VALUE) {
+						throw new GdxRuntimeException(tmxFile.path() + ": layer " + level.layerNames[i]
+								+ " has a flipped or out of range tile.");
+					}
+
+					tiles[(y * layerWidth) + x] = (short) id;
+				}
+			}
+
+			level.layerTiles[i] = tiles;
+		}
+
+		level.buildCollisionData();
+		return level;
+	}
+
+	/**
+	 * Reads a compiled level from a file, memory mapping it where the file is
+	 * on disk and reading it in whole where it isn't, e.g. inside an APK.
+	 * 
+	 * @param file
+	 *        The compiled level.
+	 * @return The level.
+	 * @throws IOException
+	 *         If the file can't be read.
+	 */
+	public static CompiledLevel read(FileHandle file) throws IOException {
+		return read(map(file));
+	}
+
+	/**
+	 * Reads a compiled level.
+	 * 
+	 * @param buffer
+	 *        The level's bytes, from the buffer's position onwards.
+	 * @return The level.
+	 */
+	public static CompiledLevel read(ByteBuffer buffer) {
+		if (buffer.getInt() != MAGIC) {
+			throw new GdxRuntimeException("Not a compiled level.");
+		}
+
+		final int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new GdxRuntimeException("Unsupported compiled level version: " + version);
+		}
+
+		CompiledLevel level = new CompiledLevel();
+
+		level.width = buffer.getInt();
+		level.height = buffer.getInt();
+		level.tileWidth = buffer.getInt();
+		level.tileHeight = buffer.getInt();
+		level.seed = buffer.getLong();
+
+		level.tilesetName = getString(buffer);
+		level.tilesetImage = getString(buffer);
+		level.firstGid = buffer.getInt();
+		level.tilesetTileWidth = buffer.getInt();
+		level.tilesetTileHeight = buffer.getInt();
+		level.spacing = buffer.getInt();
+		level.margin = buffer.getInt();
+
+		final int layerCount = buffer.getInt();
+		level.layerNames = new String[layerCount];
+		level.layerWidths = new int[layerCount];
+		level.layerHeights = new int[layerCount];
+		level.layerOpacities = new float[layerCount];
+		level.layerVisible = new boolean[layerCount];
+		level.layerTiles = new short[layerCount][];
+
+		for (int i = 0; i < layerCount; i++) {
+			level.layerNames[i] = getString(buffer);
+			level.layerWidths[i] = buffer.getInt();
+			level.layerHeights[i] = buffer.getInt();
+			level.layerOpacities[i] = buffer.getFloat();
+			level.layerVisible[i] = (buffer.get() != 0);
+			level.layerTiles[i] = getShorts(buffer, level.layerWidths[i] * level.layerHeights[i]);
+		}
+
+		level.staticBitplane = getLongs(buffer);
+		level.platformBitplane = getLongs(buffer);
+
+		level.platformCount = buffer.getInt();
+		if (level.platformCount >= 0) {
+			level.platformIds = new int[buffer.getInt()];
+			buffer.asIntBuffer().get(level.platformIds);
+			buffer.position(buffer.position() + level.platformIds.length * 4);
+		}
+
+		final int doorCount = buffer.getInt();
+		if (doorCount >= 0) {
+			level.doorTiles = new int[doorCount];
+			buffer.asIntBuffer().get(level.doorTiles);
+			buffer.position(buffer.position() + doorCount * 4);
+		}
+
+		return level;
+	}
+
+	/**
+	 * Writes this level in the compiled format.
+	 * 
+	 * @param stream
+	 *        The stream to write to, which is left open.
+	 * @throws IOException
+	 *         If the stream can't be written.
+	 */
+	public void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+
+		out.writeInt(width);
+		out.writeInt(height);
+		out.writeInt(tileWidth);
+		out.writeInt(tileHeight);
+		out.writeLong(seed);
+
+		putString(out, tilesetName);
+		putString(out, tilesetImage);
+		out.writeInt(firstGid);
+		out.writeInt(tilesetTileWidth);
+		out.writeInt(tilesetTileHeight);
+		out.writeInt(spacing);
+		out.writeInt(margin);
+
+		out.writeInt(layerNames.length);
+		for (int i = 0; i < layerNames.length; i++) {
+			putString(out, layerNames[i]);
+			out.writeInt(layerWidths[i]);
+			out.writeInt(layerHeights[i]);
+			out.writeFloat(layerOpacities[i]);
+			out.writeByte(layerVisible[i] ? 1 : 0);
+
+			for (short tile : layerTiles[i]) {
+				out.writeShort(tile);
+			}
+		}
+
+		putLongs(out, staticBitplane);
+		putLongs(out, platformBitplane);
+
+		if (platformIds == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(platformCount);
+			out.writeInt(platformIds.length);
+
+			for (int id : platformIds) {
+				out.writeInt(id);
+			}
+		}
+
+		if (doorTiles == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(doorTiles.length);
+
+			for (int door : doorTiles) {
+				out.writeInt(door);
+			}
+		}
+
+		out.flush();
+	}
+
+	/**
+	 * Builds a TiledMap from this level, like the one TmxMapLoader would load
+	 * from the original .tmx file but with every layer a PackedTileLayer.
+	 * 
+	 * Without a texture, the map's tileset has no tiles, so the map can't be
+	 * drawn, but its layers still hold every tile for collisions and doors,
+	 * e.g. for running the game's logic without a window.
+	 * 
+	 * @param texture
+	 *        The tileset's image, already loaded, or null.
+	 * @return The map.
+	 */
+	public TiledMap createMap(Texture texture) {
+		TiledMap map = new TiledMap();
+
+		MapProperties mapProperties = map.getProperties();
+		mapProperties.put("orientation", "orthogonal");
+		mapProperties.put("width", width);
+		mapProperties.put("height", height);
+		mapProperties.put("tilewidth", tileWidth);
+		mapProperties.put("tileheight", tileHeight);
+
+		TiledMapTileSet tileset = new TiledMapTileSet();
+		tileset.setName(tilesetName);
+
+		MapProperties tilesetProperties = tileset.getProperties();
+		tilesetProperties.put("firstgid", firstGid);
+		tilesetProperties.put("imagesource", tilesetImage);
+		tilesetProperties.put("tilewidth", tilesetTileWidth);
+		tilesetProperties.put("tileheight", tilesetTileHeight);
+		tilesetProperties.put("margin", margin);
+		tilesetProperties.put("spacing", spacing);
+
+		if (texture != null) {
+			tilesetProperties.put("imagewidth", texture.getWidth());
+			tilesetProperties.put("imageheight", texture.getHeight());
+
+			final TextureRegion[] regions = createTileRegions(texture);
+
+			for (int id = firstGid; id < regions.length; id++) {
+				TiledMapTile tile = new StaticTiledMapTile(regions[id]);
+				tile.setId(id);
+				tileset.putTile(id, tile);
+			}
+		}
+
+		map.getTileSets().addTileSet(tileset);
+
+		for (int i = 0; i < layerNames.length; i++) {
+			final int layerWidth = layerWidths[i];
+			final int layerHeight = layerHeights[i];
+			final short[] tiles = layerTiles[i];
+
+			PackedTileLayer layer = new PackedTileLayer(layerWidth, layerHeight, tileWidth, tileHeight,
+					map.getTileSets());
+			layer.setName(layerNames[i]);
+			layer.setOpacity(layerOpacities[i]);
+			layer.setVisible(layerVisible[i]);
+
+			// compiled levels have no flipped tiles, so the ids are the packed
+			// tiles as they are.
+			final int[] packed = layer.getTiles();
+			for (int index = 0; index < packed.length; index++) {
+				packed[index] = tiles[index] & PackedTileLayer.ID_MASK;
+			}
+
+			map.getLayers().add(layer);
+		}
+
+		return map;
+	}
+
+	/**
+	 * Cuts the tileset's image into one region per tile, in the same order as
+	 * TmxMapLoader would.
+	 * 
+	 * @param texture
+	 *        The tileset's image, already loaded.
+	 * @return The region for each tile, indexed by tile id; ids below firstGid
+	 *         are null.
+	 */
+	public TextureRegion[] createTileRegions(Texture texture) {
+		final int stopWidth = texture.getWidth() - tilesetTileWidth;
+		final int stopHeight = texture.getHeight() - tilesetTileHeight;
+		final int columns = (stopWidth < margin ? 0 : ((stopWidth - margin) / (tilesetTileWidth + spacing)) + 1);
+		final int rows = (stopHeight < margin ? 0 : ((stopHeight - margin) / (tilesetTileHeight + spacing)) + 1);
+
+		final TextureRegion[] regions = new TextureRegion[firstGid + (columns * rows)];
+		int id = firstGid;
+
+		for (int y = margin; y <= stopHeight; y += tilesetTileHeight + spacing) {
+			for (int x = margin; x <= stopWidth; x += tilesetTileWidth + spacing) {
+				regions[id++] = new TextureRegion(texture, x, y, tilesetTileWidth, tilesetTileHeight);
+			}
+		}
+
+		return regions;
+	}
+
+	/**
+	 * Gives each platform a colour chosen from this level's seed, in the same
+	 * way as LevelEntityFactory.labelPlatforms(TiledMap, long) but without
+	 * labelling the platforms again.
+	 * 
+	 * @return The platforms in the "platforms" layer, with their colours
+	 *         assigned, or null if there's no platforms layer.
+	 */
+	public PlatformLabels labelPlatforms() {
+		final int platformLayer = indexOfLayer("platforms");
+
+		if (platformLayer == -1 || platformIds == null) {
+			return null;
+		}
+
+		final PlatformLabels labels = new PlatformLabels(layerWidths[platformLayer], layerHeights[platformLayer],
+				platformIds, platformCount);
+		labels.assignColours(seed);
+		return labels;
+	}
+
+	/**
+	 * Gives each platform a colour chosen from this level's seed, in the same
+	 * way as LevelEntityFactory.generatePlatformColours(TiledMap, long) but
+	 * without labelling the platforms again.
+	 * 
+	 * @return The packed colour of every tile in the "platforms" layer, or null
+	 *         if there's no platforms layer.
+	 */
+	public float[] generatePlatformColours() {
+		final PlatformLabels labels = labelPlatforms();
+		return (labels != null ? labels.packColours(layerOpacities[indexOfLayer("platforms")]) : null);
+	}
+
+	/**
+	 * Checks this level has the layers every level needs, in the same way as
+	 * LevelEntityFactory.isValidLevel(TiledMap).
+	 * 
+	 * @return True if the level has "level", "platforms" and "door" layers.
+	 */
+	public boolean isValidLevel() {
+		return indexOfLayer("level") != -1 && indexOfLayer("platforms") != -1 && indexOfLayer("door") != -1;
+	}
+
+	/**
+	 * @param name
+	 *        The name of a layer.
+	 * @return The index of the first layer with that name, or -1 if there's
+	 *         none.
+	 */
+	public int indexOfLayer(String name) {
+		for (int i = 0; i < layerNames.length; i++) {
+			if (layerNames[i].equals(name)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Fills in the bitplanes, platform connectivity and door triggers from the
+	 * layers' tiles.
+	 */
+	private void buildCollisionData() {
+		final int levelLayer = indexOfLayer("level");
+		if (levelLayer != -1) {
+			staticBitplane = toBitplane(layerTiles[levelLayer]);
+		}
+
+		final int platformLayer = indexOfLayer("platforms");
+		if (platformLayer != -1) {
+			final short[] tiles = layerTiles[platformLayer];
+			platformBitplane = toBitplane(tiles);
+
+			PlatformLabels labels = PlatformLabels.label(tiles, layerWidths[platformLayer],
+					layerHeights[platformLayer]);
+			platformIds = labels.ids;
+			platformCount = labels.count;
+		}
+
+		final int doorLayer = indexOfLayer("door");
+		if (doorLayer != -1) {
+			final short[] tiles = layerTiles[doorLayer];
+			IntArray doors = new IntArray();
+
+			for (int i = 0; i < tiles.length; i++) {
+				if (tiles[i] != 0) {
+					doors.add(i);
+				}
+			}
+
+			doorTiles = doors.toArray();
+		}
+	}
+
+	private static String getProperty(Element element, String name) {
+		Element properties = element.getChildByName("properties");
+
+		if (properties != null) {
+			for (Element property : properties.getChildrenByName("property")) {
+				if (name.equals(property.getAttribute("name", null))) {
+					return property.getAttribute("value", null);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private static long[] toBitplane(short[] tiles) {
+		final long[] bitplane = new long[(tiles.length + 63) >>> 6];
+
+		for (int i = 0; i < tiles.length; i++) {
+			if (tiles[i] != 0) {
+				bitplane[i >>> 6] |= (1L << i);
+			}
+		}
+
+		return bitplane;
+	}
+
+	private static ByteBuffer map(FileHandle file) throws IOException {
+		if (file.file().isFile()) {
+			RandomAccessFile raf = new RandomAccessFile(file.file(), "r");
+
+			try {
+				// the mapping stays valid after the channel is closed.
+				FileChannel channel = raf.getChannel();
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+			} finally {
+				raf.close();
+			}
+		} else {
+			return ByteBuffer.wrap(file.readBytes());
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		final byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new GdxRuntimeException(e);
+		}
+	}
+
+	private static void putString(DataOutputStream out, String string) throws IOException {
+		final byte[] bytes = string.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static short[] getShorts(ByteBuffer buffer, int count) {
+		final short[] shorts = new short[count];
+		buffer.asShortBuffer().get(shorts);
+		buffer.position(buffer.position() + count * 2);
+		return shorts;
+	}
+
+	private static long[] getLongs(ByteBuffer buffer) {
+		final int count = buffer.getInt();
+
+		if (count < 0) {
+			return null;
+		}
+
+		final long[] longs = new long[count];
+		buffer.asLongBuffer().get(longs);
+		buffer.position(buffer.position() + count * 8);
+		return longs;
+	}
+
+	private static void putLongs(DataOutputStream out, long[] longs) throws IOException {
+		if (longs == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		out.writeInt(longs.length);
+		for (long value : longs) {
+			out.writeLong(value);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.utils.Disposable;
+import com.sgtcodfish.colourBlind.collision.CollisionGrid;
+import com.sgtcodfish.colourBlind.collision.DoorTriggers;
+
+/**
+ * The parts of a level which can be built away from the rendering thread: the
+ * map itself, the colours of its platforms, its collision grid and its door
+ * triggers. Loaded by {@link LevelLoader}; the grid and doors are built in the
+ * constructor, so a LevelData should be created on the loading thread.
+ * 
+ * Levels built from a {@link CompiledLevel} also carry the data it holds which
+ * would otherwise have to be found by scanning the map; for levels loaded by
+ * TmxMapLoader those fields are null.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class LevelData implements Disposable {
+	public final TiledMap		map;
+
+	/** The platforms of the "platforms" layer and their colours, or null. */
+	public final PlatformLabels	platforms;
+
+	/** The packed colour of each tile in the "platforms" layer, or null. */
+	public final float[]		platformColours;
+
+	/** The tiles in the "level" layer, packed as in CollisionSystem, or null. */
+	public final long[]			staticBitplane;
+
+	/** The index of every tile in the "door" layer, or null. */
+	public final int[]			doorTiles;
+
+	/** The level's collision grid, or null if the map has no "level" layer. */
+	public final CollisionGrid	collisionGrid;
+
+	/** The level's doors, or null if the map has no "door" layer. */
+	public final DoorTriggers	doorTriggers;
+
+	/**
+	 * @param map
+	 *        The level's map.
+	 * @param platforms
+	 *        The map's platforms with their colours assigned, as created by
+	 *        LevelEntityFactory.labelPlatforms(TiledMap, long), or null if it
+	 *        has no "platforms" layer.
+	 */
+	public LevelData(TiledMap map, PlatformLabels platforms) {
+		this(map, platforms, null, null);
+	}
+
+	/**
+	 * @param map
+	 *        The level's map.
+	 * @param platforms
+	 *        The map's platforms with their colours assigned, as created by
+	 *        LevelEntityFactory.labelPlatforms(TiledMap, long), or null if it
+	 *        has no "platforms" layer.
+	 * @param staticBitplane
+	 *        The tiles in the map's "level" layer, or null to find them from
+	 *        the map.
+	 * @param doorTiles
+	 *        The tiles in the map's "door" layer, or null to find them from the
+	 *        map.
+	 */
+	public LevelData(TiledMap map, PlatformLabels platforms, long[] staticBitplane, int[] doorTiles) {
+		this.map = map;
+		this.platforms = platforms;
+		this.platformColours = (platforms != null ? platforms.packColours(map.getLayers().get("platforms")
+				.getOpacity()) : null);
+		this.staticBitplane = staticBitplane;
+		this.doorTiles = doorTiles;
+
+		// collision is built from the colour of each platform rather than its
+		// packed render colour, which depends on the palette and opacity.
+		this.collisionGrid = (map.getLayers().get("level") != null ? CollisionGrid.build(map, platforms,
+				staticBitplane) : null);
+		this.doorTriggers = DoorTriggers.build(map, doorTiles);
+	}
+
+	@Override
+	public void dispose() {
+		map.dispose();
+	}
+}
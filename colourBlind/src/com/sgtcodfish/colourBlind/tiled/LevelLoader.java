@@ -0,0 +1,115 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+import java.io.IOException;
+
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.sgtcodfish.colourBlind.LevelEntityFactory;
+
+/**
+ * Loads a {@link LevelData} from a .tmx file through an {@link AssetManager}.
+ * 
+ * If a {@link CompiledLevel} sits beside the .tmx file, it's loaded instead,
+ * and the .tmx file is never read; otherwise the .tmx file is parsed as usual.
+ * Given a {@link LevelParser}, the loader instead takes levels it has already
+ * parsed on other threads, compiled in memory if they weren't compiled ahead
+ * of time, and only falls back to TmxMapLoader for levels it couldn't parse.
+ * 
+ * Parsing the map and generating its platform colours both happen on the
+ * AssetManager's loading thread; the only work left for the rendering thread
+ * is uploading the tileset textures, which the AssetManager loads as
+ * dependencies. Unloading the level unloads its textures once no other level
+ * is using them.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class LevelLoader extends AsynchronousAssetLoader<LevelData, LevelLoader.Parameters> {
+	public static class Parameters extends AssetLoaderParameters<LevelData> {
+	}
+
+	private final TmxMapLoader	tmxLoader;
+	private final LevelParser	parser;
+	private LevelData			level		= null;
+	private CompiledLevel		compiled	= null;
+
+	public LevelLoader(FileHandleResolver resolver) {
+		this(resolver, null);
+	}
+
+	/**
+	 * @param resolver
+	 *        The resolver for level files.
+	 * @param parser
+	 *        The parser to take levels from, or null to read them here.
+	 */
+	public LevelLoader(FileHandleResolver resolver, LevelParser parser) {
+		super(resolver);
+		this.tmxLoader = new TmxMapLoader(resolver);
+		this.parser = parser;
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public Array<AssetDescriptor> getDependencies(String fileName, FileHandle file, Parameters parameter) {
+		FileHandle compiledFile = CompiledLevel.compiledFileFor(file);
+		compiled = null;
+
+		if (parser != null) {
+			compiled = parser.take(fileName);
+		} else if (compiledFile.exists()) {
+			try {
+				compiled = CompiledLevel.read(compiledFile);
+			} catch (IOException e) {
+				throw new GdxRuntimeException("Couldn't load compiled level " + compiledFile.path(), e);
+			}
+		}
+
+		if (compiled != null) {
+			Array<AssetDescriptor> dependencies = new Array<AssetDescriptor>();
+			dependencies.add(new AssetDescriptor<Texture>(compiled.resolveTilesetImage(compiledFile), Texture.class));
+			return dependencies;
+		} else {
+			return tmxLoader.getDependencies(fileName, file, null);
+		}
+	}
+
+	@Override
+	public void loadAsync(AssetManager manager, String fileName, FileHandle file, Parameters parameter) {
+		if (compiled != null) {
+			FileHandle image = compiled.resolveTilesetImage(CompiledLevel.compiledFileFor(file));
+			TiledMap map = compiled.createMap(manager.get(image.path(), Texture.class));
+
+			level = new LevelData(map, compiled.labelPlatforms(), compiled.staticBitplane,
+					compiled.doorTiles);
+			compiled = null;
+			return;
+		}
+
+		tmxLoader.loadAsync(manager, fileName, file, null);
+		TiledMap map = tmxLoader.loadSync(manager, fileName, file, null);
+		PackedTileLayer.packLayers(map);
+
+		// a map with no platforms is an invalid level, which the factory will
+		// find and skip.
+		PlatformLabels platforms = (map.getLayers().get("platforms") != null ? LevelEntityFactory.labelPlatforms(
+				map, PlatformLabels.seedFor(map, file.nameWithoutExtension())) : null);
+
+		level = new LevelData(map, platforms);
+	}
+
+	@Override
+	public LevelData loadSync(AssetManager manager, String fileName, FileHandle file, Parameters parameter) {
+		LevelData loaded = level;
+		level = null;
+		return loaded;
+	}
+}
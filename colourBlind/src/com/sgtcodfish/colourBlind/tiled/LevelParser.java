@@ -0,0 +1,189 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Parses and validates levels in parallel, one task per level, on a pool with
+ * a thread per core. Everything done here is plain CPU work which doesn't need
+ * GL: reading a {@link CompiledLevel}, or compiling one in memory from a .tmx
+ * file, which parses the XML, decodes every layer and builds the collision,
+ * platform and door data.
+ * 
+ * Results are looked up by path, so the order in which levels finish parsing
+ * never affects the order in which they're played. Taking a result which
+ * hasn't finished yet waits for it. A parsed level is held until it's taken,
+ * so callers should only parse as far ahead as they're willing to hold.
+ * 
+ * Whether a level is valid is remembered as soon as it has been parsed, even
+ * once it has been taken, so it can be checked at any time without waiting.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class LevelParser implements Disposable {
+	private final FileHandleResolver						resolver;
+	private final ExecutorService							executor;
+	private final HashMap<String, Future<CompiledLevel>>	pending	= new HashMap<String, Future<CompiledLevel>>();
+
+	// whether each level which has finished parsing is valid
+	private final HashMap<String, Boolean>					valid	= new HashMap<String, Boolean>();
+
+	/**
+	 * Creates a LevelParser for internal files with one thread per available
+	 * processor.
+	 */
+	public LevelParser() {
+		this(new InternalFileHandleResolver(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param resolver
+	 *        The resolver for level paths.
+	 * @param threads
+	 *        The number of levels to parse at once.
+	 */
+	public LevelParser(FileHandleResolver resolver, int threads) {
+		this.resolver = resolver;
+		executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+			private int	count	= 0;
+
+			@Override
+			public Thread newThread(Runnable r) {
+				// never keep the game running just to finish parsing
+				Thread thread = new Thread(r, "LevelParser-" + (count++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Starts parsing every level in the list which isn't already being parsed.
+	 * 
+	 * @param paths
+	 *        The paths of the .tmx files of the levels.
+	 */
+	public synchronized void parseAll(List<String> paths) {
+		for (String path : paths) {
+			parse(path);
+		}
+	}
+
+	/**
+	 * Starts parsing a level, if it isn't already being parsed.
+	 * 
+	 * @param path
+	 *        The path of the level's .tmx file.
+	 */
+	public synchronized void parse(final String path) {
+		if (pending.containsKey(path)) {
+			return;
+		}
+
+		pending.put(path, executor.submit(new Callable<CompiledLevel>() {
+			@Override
+			public CompiledLevel call() throws Exception {
+				final CompiledLevel level = parseNow(resolver.resolve(path));
+				recordValidity(path, level.isValidLevel());
+				return level;
+			}
+		}));
+	}
+
+	/**
+	 * Checks whether a level is invalid, without waiting for it to be parsed.
+	 * An invalid level is never worth taking, so it's dropped if it hasn't
+	 * been taken already.
+	 * 
+	 * @param path
+	 *        The path of the level's .tmx file.
+	 * @return True if the level has been parsed and is missing a layer every
+	 *         level needs. Levels which haven't finished parsing, or couldn't
+	 *         be parsed, aren't known to be invalid, since TmxMapLoader may
+	 *         still be able to load them.
+	 */
+	public synchronized boolean isKnownInvalid(String path) {
+		if (Boolean.FALSE.equals(valid.get(path))) {
+			pending.remove(path);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Takes a parsed level, waiting for it to be parsed if needed and starting
+	 * it if it was never asked for. The level is forgotten afterwards, so
+	 * taking the same path again will parse it again.
+	 * 
+	 * @param path
+	 *        The path of the level's .tmx file.
+	 * @return The parsed level, or null if it couldn't be parsed, in which case
+	 *         it should be loaded from the .tmx file as usual.
+	 */
+	public CompiledLevel take(String path) {
+		Future<CompiledLevel> future = null;
+
+		synchronized (this) {
+			parse(path);
+			future = pending.remove(path);
+		}
+
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new GdxRuntimeException("Interrupted while parsing " + path, e);
+		} catch (ExecutionException e) {
+			Gdx.app.debug("LOAD_LEVELS", "Couldn't parse " + path + ": " + e.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * Stops parsing; any levels not yet taken are discarded.
+	 */
+	@Override
+	public synchronized void dispose() {
+		executor.shutdownNow();
+		pending.clear();
+		valid.clear();
+	}
+
+	/**
+	 * Parses a level on the calling thread.
+	 * 
+	 * @param tmxFile
+	 *        The level's .tmx file.
+	 * @return The parsed level, read from its CompiledLevel if there is one
+	 *         and compiled from the .tmx file otherwise.
+	 * @throws Exception
+	 *         If the level can't be read or compiled.
+	 */
+	public static CompiledLevel parseNow(FileHandle tmxFile) throws Exception {
+		FileHandle compiledFile = CompiledLevel.compiledFileFor(tmxFile);
+
+		if (compiledFile.exists()) {
+			return CompiledLevel.read(compiledFile);
+		} else {
+			return CompiledLevel.compile(tmxFile);
+		}
+	}
+
+	private synchronized void recordValidity(String path, boolean isValid) {
+		valid.put(path, isValid);
+	}
+}
@@ -0,0 +1,272 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapLayers;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer.Cell;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSet;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSets;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * A tile layer which stores each tile as a single packed int rather than as a
+ * {@link Cell} object: the tile's id in the low 16 bits, then a bit for each
+ * flip and two bits for the rotation, with 0 meaning there's no tile. A layer
+ * is one int[] however many tiles it has, so it costs 4 bytes per tile where
+ * a TiledMapTileLayer costs a reference per tile plus a whole Cell object for
+ * every tile which isn't empty, and scanning it never leaves the array.
+ * 
+ * Tiles are indexed (y * width) + x, with rows running from the bottom of the
+ * map to the top like a TiledMapTileLayer's. Tile ids are looked up in the
+ * map's tilesets through a table built the first time a tile is asked for, so
+ * the tilesets must all be added before then.
+ * 
+ * Levels are loaded with every tile layer packed, whether from a
+ * CompiledLevel or from a .tmx file through packLayers.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class PackedTileLayer extends MapLayer {
+	/** The packed value of an empty tile. */
+	public static final int				EMPTY				= 0;
+
+	/** The largest tile id which can be packed. */
+	public static final int				MAX_ID				= 0xFFFF;
+
+	public static final int				ID_MASK				= 0xFFFF;
+	public static final int				FLIP_HORIZONTALLY	= 1 << 16;
+	public static final int				FLIP_VERTICALLY		= 1 << 17;
+	public static final int				ROTATION_SHIFT		= 18;
+	public static final int				ROTATION_MASK		= 3 << ROTATION_SHIFT;
+
+	private final int					width;
+	private final int					height;
+	private final float					tileWidth;
+	private final float					tileHeight;
+
+	private final int[]					tiles;
+	private final TiledMapTileSets		tileSets;
+
+	// each tile by id, built when first needed
+	private TiledMapTile[]				tileLookup			= null;
+
+	/**
+	 * Creates an empty layer.
+	 * 
+	 * @param width
+	 *        The width of the layer, in tiles.
+	 * @param height
+	 *        The height of the layer, in tiles.
+	 * @param tileWidth
+	 *        The width of a tile, in pixels.
+	 * @param tileHeight
+	 *        The height of a tile, in pixels.
+	 * @param tileSets
+	 *        The tilesets the layer's tile ids refer to.
+	 */
+	public PackedTileLayer(int width, int height, int tileWidth, int tileHeight, TiledMapTileSets tileSets) {
+		this.width = width;
+		this.height = height;
+		this.tileWidth = tileWidth;
+		this.tileHeight = tileHeight;
+		this.tileSets = tileSets;
+
+		tiles = new int[width * height];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public float getTileWidth() {
+		return tileWidth;
+	}
+
+	public float getTileHeight() {
+		return tileHeight;
+	}
+
+	/**
+	 * @return The packed tiles, indexed (y * width) + x, which may be read and
+	 *         written directly.
+	 */
+	public int[] getTiles() {
+		return tiles;
+	}
+
+	/**
+	 * @return The packed tile at the given coordinates, or EMPTY if there's no
+	 *         tile there or the coordinates are outside the layer.
+	 */
+	public int get(int x, int y) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return EMPTY;
+		}
+
+		return tiles[(y * width) + x];
+	}
+
+	/**
+	 * Sets the packed tile at the given coordinates, which must be inside the
+	 * layer.
+	 */
+	public void set(int x, int y, int packed) {
+		tiles[(y * width) + x] = packed;
+	}
+
+	/**
+	 * @return True if there's a tile at the given coordinates.
+	 */
+	public boolean hasTile(int x, int y) {
+		return get(x, y) != EMPTY;
+	}
+
+	/**
+	 * @param packed
+	 *        A packed tile.
+	 * @return The tile it refers to in the layer's tilesets, or null if it's
+	 *         empty or not in any of them.
+	 */
+	public TiledMapTile getTile(int packed) {
+		final int id = idOf(packed);
+
+		if (tileLookup == null) {
+			tileLookup = buildTileLookup(tileSets);
+		}
+
+		return (id < tileLookup.length ? tileLookup[id] : null);
+	}
+
+	/**
+	 * Packs a tile.
+	 * 
+	 * @param id
+	 *        The tile's id, from 1 to MAX_ID.
+	 * @param flipHorizontally
+	 *        Whether the tile is flipped horizontally.
+	 * @param flipVertically
+	 *        Whether the tile is flipped vertically.
+	 * @param rotation
+	 *        One of the Cell.ROTATE_* constants.
+	 * @return The packed tile.
+	 */
+	public static int pack(int id, boolean flipHorizontally, boolean flipVertically, int rotation) {
+		if (id <= 0 || id > MAX_ID) {
+			throw new GdxRuntimeException("Tile id " + id + " can't be packed; ids must be from 1 to " + MAX_ID + ".");
+		}
+
+		return id | (flipHorizontally ? FLIP_HORIZONTALLY : 0) | (flipVertically ? FLIP_VERTICALLY : 0)
+				| ((rotation << ROTATION_SHIFT) & ROTATION_MASK);
+	}
+
+	public static int idOf(int packed) {
+		return packed & ID_MASK;
+	}
+
+	public static boolean isFlippedHorizontally(int packed) {
+		return (packed & FLIP_HORIZONTALLY) != 0;
+	}
+
+	public static boolean isFlippedVertically(int packed) {
+		return (packed & FLIP_VERTICALLY) != 0;
+	}
+
+	/**
+	 * @return The rotation of a packed tile, as one of the Cell.ROTATE_*
+	 *         constants.
+	 */
+	public static int rotationOf(int packed) {
+		return (packed & ROTATION_MASK) >>> ROTATION_SHIFT;
+	}
+
+	/**
+	 * Packs a layer of Cells.
+	 * 
+	 * @param layer
+	 *        The layer to pack.
+	 * @param tileSets
+	 *        The tilesets the layer's tiles are from.
+	 * @return The packed layer, with the same name, opacity, visibility and
+	 *         properties.
+	 */
+	public static PackedTileLayer fromLayer(TiledMapTileLayer layer, TiledMapTileSets tileSets) {
+		PackedTileLayer packed = new PackedTileLayer(layer.getWidth(), layer.getHeight(), (int) layer.getTileWidth(),
+				(int) layer.getTileHeight(), tileSets);
+
+		packed.setName(layer.getName());
+		packed.setOpacity(layer.getOpacity());
+		packed.setVisible(layer.isVisible());
+		packed.getProperties().putAll(layer.getProperties());
+
+		for (int y = 0; y < layer.getHeight(); y++) {
+			for (int x = 0; x < layer.getWidth(); x++) {
+				final Cell cell = layer.getCell(x, y);
+
+				if (cell != null && cell.getTile() != null) {
+					packed.set(x, y, pack(cell.getTile().getId(), cell.getFlipHorizontally(),
+							cell.getFlipVertically(), cell.getRotation()));
+				}
+			}
+		}
+
+		return packed;
+	}
+
+	/**
+	 * Replaces every TiledMapTileLayer in a map with a PackedTileLayer, in the
+	 * same place, so that the map's Cells can be garbage collected.
+	 * 
+	 * @param map
+	 *        The map, e.g. as loaded by TmxMapLoader.
+	 */
+	public static void packLayers(TiledMap map) {
+		final MapLayers layers = map.getLayers();
+		final Array<MapLayer> packed = new Array<MapLayer>(layers.getCount());
+
+		for (MapLayer layer : layers) {
+			if (layer instanceof TiledMapTileLayer) {
+				packed.add(fromLayer((TiledMapTileLayer) layer, map.getTileSets()));
+			} else {
+				packed.add(layer);
+			}
+		}
+
+		while (layers.getCount() > 0) {
+			layers.remove(layers.getCount() - 1);
+		}
+
+		for (MapLayer layer : packed) {
+			layers.add(layer);
+		}
+	}
+
+	private static TiledMapTile[] buildTileLookup(TiledMapTileSets tileSets) {
+		int maxId = 0;
+
+		for (TiledMapTileSet tileSet : tileSets) {
+			for (TiledMapTile tile : tileSet) {
+				maxId = Math.max(maxId, tile.getId());
+			}
+		}
+
+		final TiledMapTile[] lookup = new TiledMapTile[Math.min(maxId, MAX_ID) + 1];
+
+		// later tilesets win, as with TiledMapTileSets.getTile
+		for (TiledMapTileSet tileSet : tileSets) {
+			for (TiledMapTile tile : tileSet) {
+				if (tile.getId() > 0 && tile.getId() <= MAX_ID) {
+					lookup[tile.getId()] = tile;
+				}
+			}
+		}
+
+		return lookup;
+	}
+}
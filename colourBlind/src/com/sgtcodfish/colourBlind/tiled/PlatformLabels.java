@@ -0,0 +1,428 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.sgtcodfish.colourBlind.CBColour;
+import com.sgtcodfish.colourBlind.CBColour.GameColour;
+import com.sgtcodfish.colourBlind.LevelEntityFactory;
+
+/**
+ * Splits the tiles of a "platforms" layer into platforms, where a platform is
+ * every tile connected to another by an edge (up, down, left or right), and
+ * labels each tile with the id of its platform. Ids run from 1 to count in the
+ * order their platforms are first met scanning from the bottom row up; 0 means
+ * there's no platform there.
+ * 
+ * Labelling is a single union-find pass over the grid: each horizontal run of
+ * tiles gets a provisional label, which is joined with the label of every run
+ * it touches in the row below, and a second pass then replaces each label with
+ * its platform's id. The union-find only ever holds one entry per run, and the
+ * whole thing is linear in the size of the grid, so the id grid itself is the
+ * only large allocation.
+ * 
+ * Every tile of a given platform can be found in time proportional to the size
+ * of the platform, through an index built the first time it's needed.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class PlatformLabels {
+	/** The seed used for maps with no seed of their own. */
+	public static final long	DEFAULT_SEED	= 0L;
+
+	/** The name of the map property which holds a level's seed. */
+	public static final String	SEED_PROPERTY	= "seed";
+
+	public final int			width;
+	public final int			height;
+
+	/** The id of each tile's platform, indexed (y * width) + x. */
+	public final int[]			ids;
+
+	/** The number of platforms. */
+	public final int			count;
+
+	// the tiles of each platform, grouped by id; platform n's tiles are
+	// indexTiles[indexStarts[n]] up to indexTiles[indexStarts[n + 1]].
+	private int[]				indexStarts		= null;
+	private int[]				indexTiles		= null;
+
+	// the colour of each platform, indexed by id, as last chosen by
+	// assignColours; kept so that recolouring allocates nothing per platform.
+	private GameColour[]		colours			= null;
+
+	/**
+	 * Wraps an existing platform id grid, e.g. one read from a
+	 * {@link CompiledLevel}.
+	 * 
+	 * @param width
+	 *        The width of the grid.
+	 * @param height
+	 *        The height of the grid.
+	 * @param ids
+	 *        The id grid, which isn't copied.
+	 * @param count
+	 *        The number of platforms.
+	 */
+	public PlatformLabels(int width, int height, int[] ids, int count) {
+		if (ids.length != width * height) {
+			throw new IllegalArgumentException("Platform id grid doesn't match its width and height.");
+		}
+
+		this.width = width;
+		this.height = height;
+		this.ids = ids;
+		this.count = count;
+	}
+
+	/**
+	 * Labels the platforms in a tile layer.
+	 * 
+	 * @param layer
+	 *        The "platforms" layer of a map.
+	 * @return The labels.
+	 */
+	public static PlatformLabels label(PackedTileLayer layer) {
+		final int width = layer.getWidth();
+		final int height = layer.getHeight();
+		final int[] tiles = layer.getTiles();
+		final int[] grid = new int[width * height];
+
+		for (int i = 0; i < grid.length; i++) {
+			if (tiles[i] != PackedTileLayer.EMPTY) {
+				grid[i] = -1;
+			}
+		}
+
+		return label(grid, width, height);
+	}
+
+	/**
+	 * Labels the platforms in a grid of tile ids.
+	 * 
+	 * @param tiles
+	 *        The tile ids, with 0 meaning there's no tile, indexed (y * width)
+	 *        + x.
+	 * @param width
+	 *        The width of the grid.
+	 * @param height
+	 *        The height of the grid.
+	 * @return The labels.
+	 */
+	public static PlatformLabels label(short[] tiles, int width, int height) {
+		final int[] grid = new int[width * height];
+
+		for (int i = 0; i < grid.length; i++) {
+			if (tiles[i] != 0) {
+				grid[i] = -1;
+			}
+		}
+
+		return label(grid, width, height);
+	}
+
+	/**
+	 * Labels a grid in place.
+	 * 
+	 * @param grid
+	 *        -1 for every tile with a platform and 0 for every tile without,
+	 *        replaced by the platform ids.
+	 */
+	private static PlatformLabels label(int[] grid, int width, int height) {
+		// parent[label] <= label always, since unions keep the smaller root.
+		int[] parent = new int[64];
+		int labels = 0;
+
+		for (int y = 0; y < height; y++) {
+			final int row = y * width;
+			int x = 0;
+
+			while (x < width) {
+				if (grid[row + x] == 0) {
+					x++;
+					continue;
+				}
+
+				final int label = ++labels;
+				if (label == parent.length) {
+					parent = Arrays.copyOf(parent, parent.length * 2);
+				}
+				parent[label] = label;
+
+				for (; x < width && grid[row + x] != 0; x++) {
+					grid[row + x] = label;
+
+					if (y > 0) {
+						final int below = grid[row - width + x];
+
+						if (below != 0) {
+							union(parent, label, below);
+						}
+					}
+				}
+			}
+		}
+
+		// replace each root with a compact id, in order; every non-root's
+		// root is smaller than it, so has already been given its id.
+		final int[] compact = new int[labels + 1];
+		int count = 0;
+
+		for (int label = 1; label <= labels; label++) {
+			final int root = find(parent, label);
+			compact[label] = (root == label ? ++count : compact[root]);
+		}
+
+		for (int i = 0; i < grid.length; i++) {
+			grid[i] = compact[grid[i]];
+		}
+
+		return new PlatformLabels(width, height, grid, count);
+	}
+
+	private static int find(int[] parent, int label) {
+		while (parent[label] != label) {
+			// path halving
+			parent[label] = parent[parent[label]];
+			label = parent[label];
+		}
+
+		return label;
+	}
+
+	private static void union(int[] parent, int a, int b) {
+		final int rootA = find(parent, a);
+		final int rootB = find(parent, b);
+
+		if (rootA < rootB) {
+			parent[rootB] = rootA;
+		} else if (rootB < rootA) {
+			parent[rootA] = rootB;
+		}
+	}
+
+	/**
+	 * @param id
+	 *        A platform id, from 1 to count.
+	 * @return The number of tiles in the platform.
+	 */
+	public int getSize(int id) {
+		buildIndex();
+		return indexStarts[id + 1] - indexStarts[id];
+	}
+
+	/**
+	 * Gets the tiles in a platform.
+	 * 
+	 * @param id
+	 *        A platform id, from 1 to count.
+	 * @param out
+	 *        An array at least getSize(id) long, which is filled with the index
+	 *        ((y * width) + x) of each tile in the platform, in ascending
+	 *        order.
+	 * @return The number of tiles written to out.
+	 */
+	public int getTiles(int id, int[] out) {
+		buildIndex();
+
+		final int start = indexStarts[id];
+		final int size = indexStarts[id + 1] - start;
+		System.arraycopy(indexTiles, start, out, 0, size);
+		return size;
+	}
+
+	/**
+	 * Gives each platform a colour, chosen with a Random seeded with the given
+	 * seed, so the same level always gets the same colours.
+	 * 
+	 * @param seed
+	 *        The level's seed.
+	 * @param opacity
+	 *        The opacity of the platforms layer.
+	 * @return The packed colour of every tile, or
+	 *         LevelEntityFactory.NO_PLATFORM_COLOUR where there's no platform.
+	 */
+	public float[] generateColours(long seed, float opacity) {
+		assignColours(seed);
+		return packColours(opacity);
+	}
+
+	/**
+	 * Gives each platform a colour chosen from the given seed, as
+	 * generateColours does, without packing them for rendering.
+	 * 
+	 * @param seed
+	 *        The level's seed.
+	 */
+	public void assignColours(long seed) {
+		if (colours == null) {
+			colours = new GameColour[count + 1];
+		}
+
+		chooseColours(seed, colours);
+	}
+
+	/**
+	 * Packs the colours last given to the platforms for rendering.
+	 * 
+	 * @param opacity
+	 *        The opacity of the platforms layer.
+	 * @return The packed colour of every tile, or
+	 *         LevelEntityFactory.NO_PLATFORM_COLOUR where there's no platform.
+	 * @throws IllegalStateException
+	 *         If the platforms haven't been given colours yet.
+	 */
+	public float[] packColours(float opacity) {
+		if (colours == null) {
+			throw new IllegalStateException("Platform colours must be assigned before they can be packed.");
+		}
+
+		final GameColour[] gameColours = GameColour.values();
+		final float[] packed = new float[gameColours.length];
+
+		for (int i = 0; i < gameColours.length; i++) {
+			packed[i] = CBColour.get(gameColours[i]).toFloatBits(opacity);
+		}
+
+		final float[] platformColours = new float[count + 1];
+
+		platformColours[0] = LevelEntityFactory.NO_PLATFORM_COLOUR;
+		for (int id = 1; id <= count; id++) {
+			platformColours[id] = packed[colours[id].ordinal()];
+		}
+
+		final float[] colourGrid = new float[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			colourGrid[i] = platformColours[ids[i]];
+		}
+
+		return colourGrid;
+	}
+
+	/**
+	 * @param id
+	 *        A platform id, from 1 to count.
+	 * @return The colour last given to the platform, or null if the platforms
+	 *         haven't been given colours yet.
+	 */
+	public GameColour getColour(int id) {
+		return (colours != null ? colours[id] : null);
+	}
+
+	/**
+	 * Chooses the colour of each platform in a level, in the same way as
+	 * generateColours, for code which needs the colours themselves rather than
+	 * a grid of packed colours.
+	 * 
+	 * @param seed
+	 *        The level's seed.
+	 * @param count
+	 *        The number of platforms.
+	 * @return The colour of each platform, indexed by id; index 0 is null.
+	 */
+	public static GameColour[] chooseColours(long seed, int count) {
+		final GameColour[] colours = new GameColour[count + 1];
+		chooseColours(seed, colours);
+		return colours;
+	}
+
+	/**
+	 * Chooses the colour of each platform in a level into an existing array.
+	 * The seed is mixed before seeding a Random, since the first values from
+	 * Randoms with nearby seeds, such as the name hashes of "level1" and
+	 * "level2", are nearly always the same.
+	 * 
+	 * @param seed
+	 *        The level's seed.
+	 * @param out
+	 *        An array one longer than the number of platforms, filled with the
+	 *        colour of each platform indexed by id; index 0 is left alone.
+	 */
+	public static void chooseColours(long seed, GameColour[] out) {
+		final Random random = new Random(mixSeed(seed));
+
+		for (int id = 1; id < out.length; id++) {
+			out[id] = CBColour.random(random).getColour();
+		}
+	}
+
+	/**
+	 * Gets the seed for a level: its "seed" map property if it has one, so that
+	 * a designer can pick colours they like, or otherwise a hash of its name.
+	 * 
+	 * @param map
+	 *        The level's map, or null to use its name.
+	 * @param levelName
+	 *        The level's file name without its extension, or null.
+	 * @return The seed.
+	 */
+	public static long seedFor(TiledMap map, String levelName) {
+		Object property = (map != null ? map.getProperties().get(SEED_PROPERTY) : null);
+		return seedFor(property != null ? property.toString() : null, levelName);
+	}
+
+	/**
+	 * Gets the seed for a level.
+	 * 
+	 * @param seedProperty
+	 *        The level's "seed" property, or null if it has none.
+	 * @param levelName
+	 *        The level's file name without its extension, or null.
+	 * @return The seed property if there is one, or otherwise a hash of the
+	 *         level name, or DEFAULT_SEED if there's neither.
+	 */
+	public static long seedFor(String seedProperty, String levelName) {
+		if (seedProperty != null) {
+			try {
+				return Long.parseLong(seedProperty.trim());
+			} catch (NumberFormatException e) {
+				return seedProperty.hashCode();
+			}
+		}
+
+		return (levelName != null ? levelName.hashCode() : DEFAULT_SEED);
+	}
+
+	/**
+	 * Scrambles a seed with the splitmix64 finaliser, so that seeds which
+	 * differ in only a few bits give unrelated results.
+	 * 
+	 * @param seed
+	 *        The seed.
+	 * @return The mixed seed.
+	 */
+	public static long mixSeed(long seed) {
+		seed = (seed ^ (seed >>> 30)) * 0xBF58476D1CE4E5B9L;
+		seed = (seed ^ (seed >>> 27)) * 0x94D049BB133111EBL;
+		return seed ^ (seed >>> 31);
+	}
+
+	private void buildIndex() {
+		if (indexStarts != null) {
+			return;
+		}
+
+		final int[] starts = new int[count + 2];
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] != 0) {
+				starts[ids[i] + 1]++;
+			}
+		}
+
+		for (int id = 1; id < starts.length; id++) {
+			starts[id] += starts[id - 1];
+		}
+
+		final int[] next = Arrays.copyOf(starts, count + 1);
+		final int[] tiles = new int[starts[count + 1]];
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] != 0) {
+				tiles[next[ids[i]]++] = i;
+			}
+		}
+
+		indexStarts = starts;
+		indexTiles = tiles;
+	}
+}
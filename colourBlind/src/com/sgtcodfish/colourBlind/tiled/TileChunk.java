@@ -0,0 +1,145 @@
+package com.sgtcodfish.colourBlind.tiled;
+
+import java.util.Arrays;
+
+import com.sgtcodfish.colourBlind.CBColour.GameColour;
+
+/**
+ * A square block of SIZE by SIZE tiles from a {@link ChunkedTileWorld},
+ * holding the tiles of every layer in that block, the colour of each platform
+ * tile and the block's collision bitplanes.
+ * 
+ * Tiles are indexed (localY * SIZE) + localX, with rows running from the
+ * bottom of the chunk to the top like a TiledMapTileLayer's, and the
+ * bitplanes use the same layout as CollisionSystem's, so a whole chunk's
+ * collision for one colour fits in WORDS longs.
+ * 
+ * Chunks are reused by their world once evicted, so nothing should keep hold
+ * of one after the world has been updated.
+ * 
+ * @author Ashley Davis (SgtCoDFish)
+ */
+public class TileChunk {
+	/** The width and height of a chunk, in tiles. */
+	public static final int		SIZE			= 32;
+
+	/** log2(SIZE), for turning tile coordinates into chunk coordinates. */
+	public static final int		SHIFT			= 5;
+
+	/** SIZE - 1, for turning tile coordinates into coordinates in a chunk. */
+	public static final int		MASK			= SIZE - 1;
+
+	/** The number of tiles in a chunk. */
+	public static final int		AREA			= SIZE * SIZE;
+
+	/** The number of longs in one of a chunk's bitplanes. */
+	public static final int		WORDS			= AREA >>> 6;
+
+	/** The colour of a tile which isn't a platform. */
+	public static final byte	NO_COLOUR		= 0;
+
+	/** The collision plane for entities which have no colour. */
+	public static final int		STATIC_PLANE	= -1;
+
+	public int					chunkX			= 0;
+	public int					chunkY			= 0;
+
+	/** The tile ids of each layer in the chunk, 0 meaning no tile. */
+	public final short[][]		tiles;
+
+	/**
+	 * The colour of each platform tile as its GameColour's ordinal + 1, or
+	 * NO_COLOUR.
+	 */
+	public final byte[]			colours			= new byte[AREA];
+
+	/** The tiles solid to entities with no colour. */
+	public final long[]			solid			= new long[WORDS];
+
+	/**
+	 * The tiles solid to entities of each {@link GameColour}, indexed by
+	 * ordinal; the static tiles plus the platforms of that colour.
+	 */
+	public final long[][]		colourSolid;
+
+	// the world's frame when this chunk was last used, for eviction.
+	int							lastUsed		= 0;
+
+	/**
+	 * @param layers
+	 *        The number of layers in the world the chunk is from.
+	 */
+	public TileChunk(int layers) {
+		tiles = new short[layers][AREA];
+		colourSolid = new long[GameColour.values().length][WORDS];
+	}
+
+	/**
+	 * Empties the chunk and moves it to the given chunk coordinates, ready to
+	 * be decoded.
+	 */
+	void reset(int chunkX, int chunkY) {
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+
+		for (int i = 0; i < tiles.length; i++) {
+			Arrays.fill(tiles[i], (short) 0);
+		}
+
+		Arrays.fill(colours, NO_COLOUR);
+	}
+
+	/**
+	 * Builds the collision bitplanes from the decoded tiles.
+	 * 
+	 * @param levelLayer
+	 *        The index of the "level" layer, whose tiles are always solid, or
+	 *        -1 if there's none.
+	 */
+	void buildCollision(int levelLayer) {
+		Arrays.fill(solid, 0L);
+
+		if (levelLayer != -1) {
+			final short[] level = tiles[levelLayer];
+
+			for (int i = 0; i < AREA; i++) {
+				if (level[i] != 0) {
+					solid[i >>> 6] |= (1L << i);
+				}
+			}
+		}
+
+		for (int c = 0; c < colourSolid.length; c++) {
+			System.arraycopy(solid, 0, colourSolid[c], 0, WORDS);
+		}
+
+		for (int i = 0; i < AREA; i++) {
+			if (colours[i] != NO_COLOUR) {
+				colourSolid[colours[i] - 1][i >>> 6] |= (1L << i);
+			}
+		}
+	}
+
+	/**
+	 * @param plane
+	 *        A GameColour's ordinal, or STATIC_PLANE.
+	 * @param localX
+	 *        The x coordinate of the tile in the chunk, from 0 to SIZE - 1.
+	 * @param localY
+	 *        The y coordinate of the tile in the chunk, from 0 to SIZE - 1.
+	 * @return True if the tile is solid in the given plane.
+	 */
+	public boolean isSolid(int plane, int localX, int localY) {
+		final long[] bitplane = (plane == STATIC_PLANE ? solid : colourSolid[plane]);
+		final int index = (localY << SHIFT) + localX;
+		return (bitplane[index >>> 6] & (1L << index)) != 0L;
+	}
+
+	/**
+	 * @return The key of the chunk at the given chunk coordinates, as used by
+	 *         ChunkedTileWorld.
+	 */
+	public static long keyFor(int chunkX, int chunkY) {
+		return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+	}
+}